@@ -2,6 +2,12 @@ package com.feedback.config;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 /**
  * Properties specific to JHipster.
  * <p>
@@ -10,4 +16,1102 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
 @ConfigurationProperties(prefix = "application", ignoreUnknownFields = false)
 public class ApplicationProperties {
 
+    private final UserStats userStats = new UserStats();
+
+    private final UserTokens userTokens = new UserTokens();
+
+    private final Replicas replicas = new Replicas();
+
+    private final Registration registration = new Registration();
+
+    private final Cache cache = new Cache();
+
+    private final Audit audit = new Audit();
+
+    public UserStats getUserStats() {
+        return userStats;
+    }
+
+    public UserTokens getUserTokens() {
+        return userTokens;
+    }
+
+    public Replicas getReplicas() {
+        return replicas;
+    }
+
+    public Registration getRegistration() {
+        return registration;
+    }
+
+    public Cache getCache() {
+        return cache;
+    }
+
+    public Audit getAudit() {
+        return audit;
+    }
+
+    public static class UserStats {
+
+        private String reconciliationCron = "0 30 * * * ?";
+
+        public String getReconciliationCron() {
+            return reconciliationCron;
+        }
+
+        public void setReconciliationCron(String reconciliationCron) {
+            this.reconciliationCron = reconciliationCron;
+        }
+    }
+
+    public static class UserTokens {
+
+        private long activationValiditySeconds = 259200;
+
+        private long resetValiditySeconds = 86400;
+
+        private int purgeChunkSize = 500;
+
+        private String purgeCron = "0 15 1 * * ?";
+
+        public long getActivationValiditySeconds() {
+            return activationValiditySeconds;
+        }
+
+        public void setActivationValiditySeconds(long activationValiditySeconds) {
+            this.activationValiditySeconds = activationValiditySeconds;
+        }
+
+        public long getResetValiditySeconds() {
+            return resetValiditySeconds;
+        }
+
+        public void setResetValiditySeconds(long resetValiditySeconds) {
+            this.resetValiditySeconds = resetValiditySeconds;
+        }
+
+        public int getPurgeChunkSize() {
+            return purgeChunkSize;
+        }
+
+        public void setPurgeChunkSize(int purgeChunkSize) {
+            this.purgeChunkSize = purgeChunkSize;
+        }
+
+        public String getPurgeCron() {
+            return purgeCron;
+        }
+
+        public void setPurgeCron(String purgeCron) {
+            this.purgeCron = purgeCron;
+        }
+    }
+
+    public static class Replicas {
+
+        private boolean enabled = false;
+
+        private boolean pinAfterWrite = true;
+
+        private long healthCheckIntervalMs = 10000;
+
+        private int validationTimeoutSeconds = 2;
+
+        private List<Pool> pools = new ArrayList<>();
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public boolean isPinAfterWrite() {
+            return pinAfterWrite;
+        }
+
+        public void setPinAfterWrite(boolean pinAfterWrite) {
+            this.pinAfterWrite = pinAfterWrite;
+        }
+
+        public long getHealthCheckIntervalMs() {
+            return healthCheckIntervalMs;
+        }
+
+        public void setHealthCheckIntervalMs(long healthCheckIntervalMs) {
+            this.healthCheckIntervalMs = healthCheckIntervalMs;
+        }
+
+        public int getValidationTimeoutSeconds() {
+            return validationTimeoutSeconds;
+        }
+
+        public void setValidationTimeoutSeconds(int validationTimeoutSeconds) {
+            this.validationTimeoutSeconds = validationTimeoutSeconds;
+        }
+
+        public List<Pool> getPools() {
+            return pools;
+        }
+
+        public void setPools(List<Pool> pools) {
+            this.pools = pools;
+        }
+
+        public static class Pool {
+
+            private String url;
+
+            private String username;
+
+            private String password;
+
+            private int maximumPoolSize = 10;
+
+            public String getUrl() {
+                return url;
+            }
+
+            public void setUrl(String url) {
+                this.url = url;
+            }
+
+            public String getUsername() {
+                return username;
+            }
+
+            public void setUsername(String username) {
+                this.username = username;
+            }
+
+            public String getPassword() {
+                return password;
+            }
+
+            public void setPassword(String password) {
+                this.password = password;
+            }
+
+            public int getMaximumPoolSize() {
+                return maximumPoolSize;
+            }
+
+            public void setMaximumPoolSize(int maximumPoolSize) {
+                this.maximumPoolSize = maximumPoolSize;
+            }
+        }
+    }
+
+    public static class Registration {
+
+        private boolean async = false;
+
+        private int queueCapacity = 1000;
+
+        private int hashThreads = 2;
+
+        private int persistThreads = 1;
+
+        private int mailThreads = 1;
+
+        private long statusRetentionSeconds = 3600;
+
+        public boolean isAsync() {
+            return async;
+        }
+
+        public void setAsync(boolean async) {
+            this.async = async;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+
+        public int getHashThreads() {
+            return hashThreads;
+        }
+
+        public void setHashThreads(int hashThreads) {
+            this.hashThreads = hashThreads;
+        }
+
+        public int getPersistThreads() {
+            return persistThreads;
+        }
+
+        public void setPersistThreads(int persistThreads) {
+            this.persistThreads = persistThreads;
+        }
+
+        public int getMailThreads() {
+            return mailThreads;
+        }
+
+        public void setMailThreads(int mailThreads) {
+            this.mailThreads = mailThreads;
+        }
+
+        public long getStatusRetentionSeconds() {
+            return statusRetentionSeconds;
+        }
+
+        public void setStatusRetentionSeconds(long statusRetentionSeconds) {
+            this.statusRetentionSeconds = statusRetentionSeconds;
+        }
+    }
+
+    public static class Cache {
+
+        /**
+         * Cache regions by alias, see CacheConfiguration. Unset values fall back to jhipster.cache.ehcache.
+         */
+        private Map<String, Region> regions = new LinkedHashMap<>();
+
+        private final Invalidation invalidation = new Invalidation();
+
+        private final Warmup warmup = new Warmup();
+
+        private final Responses responses = new Responses();
+
+        private final Autotune autotune = new Autotune();
+
+        public Map<String, Region> getRegions() {
+            return regions;
+        }
+
+        public void setRegions(Map<String, Region> regions) {
+            this.regions = regions;
+        }
+
+        public Invalidation getInvalidation() {
+            return invalidation;
+        }
+
+        public Warmup getWarmup() {
+            return warmup;
+        }
+
+        public Responses getResponses() {
+            return responses;
+        }
+
+        public Autotune getAutotune() {
+            return autotune;
+        }
+
+        public static class Region {
+
+            private Long maxEntries;
+
+            private long offHeapMb = 0;
+
+            private Long timeToLiveSeconds;
+
+            private long timeToIdleSeconds = 0;
+
+            public Long getMaxEntries() {
+                return maxEntries;
+            }
+
+            public void setMaxEntries(Long maxEntries) {
+                this.maxEntries = maxEntries;
+            }
+
+            public long getOffHeapMb() {
+                return offHeapMb;
+            }
+
+            public void setOffHeapMb(long offHeapMb) {
+                this.offHeapMb = offHeapMb;
+            }
+
+            public Long getTimeToLiveSeconds() {
+                return timeToLiveSeconds;
+            }
+
+            public void setTimeToLiveSeconds(Long timeToLiveSeconds) {
+                this.timeToLiveSeconds = timeToLiveSeconds;
+            }
+
+            public long getTimeToIdleSeconds() {
+                return timeToIdleSeconds;
+            }
+
+            public void setTimeToIdleSeconds(long timeToIdleSeconds) {
+                this.timeToIdleSeconds = timeToIdleSeconds;
+            }
+        }
+
+        public static class Warmup {
+
+            private boolean enabled = true;
+
+            private int users = 500;
+
+            private int lookbackDays = 30;
+
+            private int threads = 4;
+
+            private long budgetMs = 10000;
+
+            public boolean isEnabled() {
+                return enabled;
+            }
+
+            public void setEnabled(boolean enabled) {
+                this.enabled = enabled;
+            }
+
+            public int getUsers() {
+                return users;
+            }
+
+            public void setUsers(int users) {
+                this.users = users;
+            }
+
+            public int getLookbackDays() {
+                return lookbackDays;
+            }
+
+            public void setLookbackDays(int lookbackDays) {
+                this.lookbackDays = lookbackDays;
+            }
+
+            public int getThreads() {
+                return threads;
+            }
+
+            public void setThreads(int threads) {
+                this.threads = threads;
+            }
+
+            public long getBudgetMs() {
+                return budgetMs;
+            }
+
+            public void setBudgetMs(long budgetMs) {
+                this.budgetMs = budgetMs;
+            }
+        }
+
+        public static class Responses {
+
+            private boolean enabled = true;
+
+            private boolean gzip = true;
+
+            public boolean isEnabled() {
+                return enabled;
+            }
+
+            public void setEnabled(boolean enabled) {
+                this.enabled = enabled;
+            }
+
+            public boolean isGzip() {
+                return gzip;
+            }
+
+            public void setGzip(boolean gzip) {
+                this.gzip = gzip;
+            }
+        }
+
+        public static class Autotune {
+
+            private boolean enabled = false;
+
+            private long intervalMs = 60000;
+
+            private long minEntries = 100;
+
+            private long maxEntries = 100000;
+
+            private double growBelowHeapRatio = 0.5;
+
+            private double shrinkAboveHeapRatio = 0.75;
+
+            private double stepRatio = 0.25;
+
+            private double minMarginalHitRatio = 0.01;
+
+            private int marginalHitRatioPeriods = 10;
+
+            public boolean isEnabled() {
+                return enabled;
+            }
+
+            public void setEnabled(boolean enabled) {
+                this.enabled = enabled;
+            }
+
+            public long getIntervalMs() {
+                return intervalMs;
+            }
+
+            public void setIntervalMs(long intervalMs) {
+                this.intervalMs = intervalMs;
+            }
+
+            public long getMinEntries() {
+                return minEntries;
+            }
+
+            public void setMinEntries(long minEntries) {
+                this.minEntries = minEntries;
+            }
+
+            public long getMaxEntries() {
+                return maxEntries;
+            }
+
+            public void setMaxEntries(long maxEntries) {
+                this.maxEntries = maxEntries;
+            }
+
+            public double getGrowBelowHeapRatio() {
+                return growBelowHeapRatio;
+            }
+
+            public void setGrowBelowHeapRatio(double growBelowHeapRatio) {
+                this.growBelowHeapRatio = growBelowHeapRatio;
+            }
+
+            public double getShrinkAboveHeapRatio() {
+                return shrinkAboveHeapRatio;
+            }
+
+            public void setShrinkAboveHeapRatio(double shrinkAboveHeapRatio) {
+                this.shrinkAboveHeapRatio = shrinkAboveHeapRatio;
+            }
+
+            public double getStepRatio() {
+                return stepRatio;
+            }
+
+            public void setStepRatio(double stepRatio) {
+                this.stepRatio = stepRatio;
+            }
+
+            public double getMinMarginalHitRatio() {
+                return minMarginalHitRatio;
+            }
+
+            public void setMinMarginalHitRatio(double minMarginalHitRatio) {
+                this.minMarginalHitRatio = minMarginalHitRatio;
+            }
+
+            public int getMarginalHitRatioPeriods() {
+                return marginalHitRatioPeriods;
+            }
+
+            public void setMarginalHitRatioPeriods(int marginalHitRatioPeriods) {
+                this.marginalHitRatioPeriods = marginalHitRatioPeriods;
+            }
+        }
+
+        public static class Invalidation {
+
+            private boolean enabled = false;
+
+            /**
+             * "multicast", or "loopback" to only reach the nodes running in the same JVM.
+             */
+            private String transport = "multicast";
+
+            private String channel = "RetroApp";
+
+            private String multicastGroup = "239.255.27.1";
+
+            private int multicastPort = 45588;
+
+            private int multicastTimeToLive = 1;
+
+            public boolean isEnabled() {
+                return enabled;
+            }
+
+            public void setEnabled(boolean enabled) {
+                this.enabled = enabled;
+            }
+
+            public String getTransport() {
+                return transport;
+            }
+
+            public void setTransport(String transport) {
+                this.transport = transport;
+            }
+
+            public String getChannel() {
+                return channel;
+            }
+
+            public void setChannel(String channel) {
+                this.channel = channel;
+            }
+
+            public String getMulticastGroup() {
+                return multicastGroup;
+            }
+
+            public void setMulticastGroup(String multicastGroup) {
+                this.multicastGroup = multicastGroup;
+            }
+
+            public int getMulticastPort() {
+                return multicastPort;
+            }
+
+            public void setMulticastPort(int multicastPort) {
+                this.multicastPort = multicastPort;
+            }
+
+            public int getMulticastTimeToLive() {
+                return multicastTimeToLive;
+            }
+
+            public void setMulticastTimeToLive(int multicastTimeToLive) {
+                this.multicastTimeToLive = multicastTimeToLive;
+            }
+        }
+    }
+
+    public static class Audit {
+
+        private String backend = "database";
+
+        private String dataStorage = "collection";
+
+        private final Writer writer = new Writer();
+
+        private final Export export = new Export();
+
+        private final Rollup rollup = new Rollup();
+
+        private final Retention retention = new Retention();
+
+        private final MappedFile mappedFile = new MappedFile();
+
+        private final Archive archive = new Archive();
+
+        private final Stream stream = new Stream();
+
+        private final Coalescing coalescing = new Coalescing();
+
+        private final Index index = new Index();
+
+        public String getBackend() {
+            return backend;
+        }
+
+        public void setBackend(String backend) {
+            this.backend = backend;
+        }
+
+        public String getDataStorage() {
+            return dataStorage;
+        }
+
+        public void setDataStorage(String dataStorage) {
+            this.dataStorage = dataStorage;
+        }
+
+        public Writer getWriter() {
+            return writer;
+        }
+
+        public Export getExport() {
+            return export;
+        }
+
+        public Rollup getRollup() {
+            return rollup;
+        }
+
+        public Retention getRetention() {
+            return retention;
+        }
+
+        public MappedFile getMappedFile() {
+            return mappedFile;
+        }
+
+        public Archive getArchive() {
+            return archive;
+        }
+
+        public Stream getStream() {
+            return stream;
+        }
+
+        public Coalescing getCoalescing() {
+            return coalescing;
+        }
+
+        public Index getIndex() {
+            return index;
+        }
+
+        public static class Writer {
+
+            private boolean async = false;
+
+            private int queueCapacity = 10000;
+
+            private int batchSize = 100;
+
+            private long flushIntervalMs = 1000;
+
+            /**
+             * Spilling by default, so that the batches which cannot be inserted are not lost.
+             */
+            private String overflow = "spill";
+
+            private String spillDirectory = System.getProperty("user.home") + "/RetroApp-audit/spill";
+
+            private long shutdownTimeoutMs = 10000;
+
+            public boolean isAsync() {
+                return async;
+            }
+
+            public void setAsync(boolean async) {
+                this.async = async;
+            }
+
+            public int getQueueCapacity() {
+                return queueCapacity;
+            }
+
+            public void setQueueCapacity(int queueCapacity) {
+                this.queueCapacity = queueCapacity;
+            }
+
+            public int getBatchSize() {
+                return batchSize;
+            }
+
+            public void setBatchSize(int batchSize) {
+                this.batchSize = batchSize;
+            }
+
+            public long getFlushIntervalMs() {
+                return flushIntervalMs;
+            }
+
+            public void setFlushIntervalMs(long flushIntervalMs) {
+                this.flushIntervalMs = flushIntervalMs;
+            }
+
+            public String getOverflow() {
+                return overflow;
+            }
+
+            public void setOverflow(String overflow) {
+                this.overflow = overflow;
+            }
+
+            public String getSpillDirectory() {
+                return spillDirectory;
+            }
+
+            public void setSpillDirectory(String spillDirectory) {
+                this.spillDirectory = spillDirectory;
+            }
+
+            public long getShutdownTimeoutMs() {
+                return shutdownTimeoutMs;
+            }
+
+            public void setShutdownTimeoutMs(long shutdownTimeoutMs) {
+                this.shutdownTimeoutMs = shutdownTimeoutMs;
+            }
+        }
+
+        public static class Export {
+
+            private int fetchSize = 500;
+
+            public int getFetchSize() {
+                return fetchSize;
+            }
+
+            public void setFetchSize(int fetchSize) {
+                this.fetchSize = fetchSize;
+            }
+        }
+
+        public static class Rollup {
+
+            private boolean enabled = true;
+
+            private long intervalMs = 300000;
+
+            private int graceHours = 2;
+
+            private int maxHoursPerRun = 168;
+
+            public boolean isEnabled() {
+                return enabled;
+            }
+
+            public void setEnabled(boolean enabled) {
+                this.enabled = enabled;
+            }
+
+            public long getIntervalMs() {
+                return intervalMs;
+            }
+
+            public void setIntervalMs(long intervalMs) {
+                this.intervalMs = intervalMs;
+            }
+
+            public int getGraceHours() {
+                return graceHours;
+            }
+
+            public void setGraceHours(int graceHours) {
+                this.graceHours = graceHours;
+            }
+
+            public int getMaxHoursPerRun() {
+                return maxHoursPerRun;
+            }
+
+            public void setMaxHoursPerRun(int maxHoursPerRun) {
+                this.maxHoursPerRun = maxHoursPerRun;
+            }
+        }
+
+        public static class Retention {
+
+            private int defaultDays = 0;
+
+            private Map<String, Integer> typeDays = new LinkedHashMap<>();
+
+            private String purgeCron = "0 45 1 * * ?";
+
+            private int chunkSize = 1000;
+
+            private long pauseMs = 100;
+
+            public int getDefaultDays() {
+                return defaultDays;
+            }
+
+            public void setDefaultDays(int defaultDays) {
+                this.defaultDays = defaultDays;
+            }
+
+            public Map<String, Integer> getTypeDays() {
+                return typeDays;
+            }
+
+            public void setTypeDays(Map<String, Integer> typeDays) {
+                this.typeDays = typeDays;
+            }
+
+            public String getPurgeCron() {
+                return purgeCron;
+            }
+
+            public void setPurgeCron(String purgeCron) {
+                this.purgeCron = purgeCron;
+            }
+
+            public int getChunkSize() {
+                return chunkSize;
+            }
+
+            public void setChunkSize(int chunkSize) {
+                this.chunkSize = chunkSize;
+            }
+
+            public long getPauseMs() {
+                return pauseMs;
+            }
+
+            public void setPauseMs(long pauseMs) {
+                this.pauseMs = pauseMs;
+            }
+        }
+
+        public static class MappedFile {
+
+            private String directory = System.getProperty("java.io.tmpdir") + "/RetroApp-audit/segments";
+
+            private int segmentSizeBytes = 64 * 1024 * 1024;
+
+            private int blockSize = 256;
+
+            private long fsyncIntervalMs = 1000;
+
+            private int maxSegments = 0;
+
+            public String getDirectory() {
+                return directory;
+            }
+
+            public void setDirectory(String directory) {
+                this.directory = directory;
+            }
+
+            public int getSegmentSizeBytes() {
+                return segmentSizeBytes;
+            }
+
+            public void setSegmentSizeBytes(int segmentSizeBytes) {
+                this.segmentSizeBytes = segmentSizeBytes;
+            }
+
+            public int getBlockSize() {
+                return blockSize;
+            }
+
+            public void setBlockSize(int blockSize) {
+                this.blockSize = blockSize;
+            }
+
+            public long getFsyncIntervalMs() {
+                return fsyncIntervalMs;
+            }
+
+            public void setFsyncIntervalMs(long fsyncIntervalMs) {
+                this.fsyncIntervalMs = fsyncIntervalMs;
+            }
+
+            public int getMaxSegments() {
+                return maxSegments;
+            }
+
+            public void setMaxSegments(int maxSegments) {
+                this.maxSegments = maxSegments;
+            }
+        }
+
+        public static class Archive {
+
+            private boolean enabled = false;
+
+            private String directory = System.getProperty("user.home") + "/RetroApp-audit/archive";
+
+            private int afterDays = 365;
+
+            private String cron = "0 15 2 * * ?";
+
+            private int deleteChunkSize = 1000;
+
+            public boolean isEnabled() {
+                return enabled;
+            }
+
+            public void setEnabled(boolean enabled) {
+                this.enabled = enabled;
+            }
+
+            public String getDirectory() {
+                return directory;
+            }
+
+            public void setDirectory(String directory) {
+                this.directory = directory;
+            }
+
+            public int getAfterDays() {
+                return afterDays;
+            }
+
+            public void setAfterDays(int afterDays) {
+                this.afterDays = afterDays;
+            }
+
+            public String getCron() {
+                return cron;
+            }
+
+            public void setCron(String cron) {
+                this.cron = cron;
+            }
+
+            public int getDeleteChunkSize() {
+                return deleteChunkSize;
+            }
+
+            public void setDeleteChunkSize(int deleteChunkSize) {
+                this.deleteChunkSize = deleteChunkSize;
+            }
+        }
+
+        public static class Stream {
+
+            private int bufferSize = 256;
+
+            private int replaySize = 1000;
+
+            private long timeoutMs = 1800000;
+
+            private long heartbeatMs = 15000;
+
+            public int getBufferSize() {
+                return bufferSize;
+            }
+
+            public void setBufferSize(int bufferSize) {
+                this.bufferSize = bufferSize;
+            }
+
+            public int getReplaySize() {
+                return replaySize;
+            }
+
+            public void setReplaySize(int replaySize) {
+                this.replaySize = replaySize;
+            }
+
+            public long getTimeoutMs() {
+                return timeoutMs;
+            }
+
+            public void setTimeoutMs(long timeoutMs) {
+                this.timeoutMs = timeoutMs;
+            }
+
+            public long getHeartbeatMs() {
+                return heartbeatMs;
+            }
+
+            public void setHeartbeatMs(long heartbeatMs) {
+                this.heartbeatMs = heartbeatMs;
+            }
+        }
+
+        public static class Coalescing {
+
+            private long windowMs = 0;
+
+            private List<String> types = new ArrayList<>();
+
+            private int maxKeys = 10000;
+
+            private long flushIntervalMs = 1000;
+
+            public long getWindowMs() {
+                return windowMs;
+            }
+
+            public void setWindowMs(long windowMs) {
+                this.windowMs = windowMs;
+            }
+
+            public List<String> getTypes() {
+                return types;
+            }
+
+            public void setTypes(List<String> types) {
+                this.types = types;
+            }
+
+            public int getMaxKeys() {
+                return maxKeys;
+            }
+
+            public void setMaxKeys(int maxKeys) {
+                this.maxKeys = maxKeys;
+            }
+
+            public long getFlushIntervalMs() {
+                return flushIntervalMs;
+            }
+
+            public void setFlushIntervalMs(long flushIntervalMs) {
+                this.flushIntervalMs = flushIntervalMs;
+            }
+        }
+
+        public static class Index {
+
+            private boolean enabled = false;
+
+            private String file = System.getProperty("user.home") + "/RetroApp-audit/data-index.bin";
+
+            /**
+             * The names whose data is indexed; all of them if empty, which holds every value in memory.
+             */
+            private List<String> names = new ArrayList<>(Arrays.asList("remoteAddress", "sessionId"));
+
+            private long persistIntervalMs = 60000;
+
+            private long rescanIntervalMs = 60000;
+
+            private long rescanOverlapMs = 600000;
+
+            private String rebuildCron = "0 30 3 * * ?";
+
+            public boolean isEnabled() {
+                return enabled;
+            }
+
+            public void setEnabled(boolean enabled) {
+                this.enabled = enabled;
+            }
+
+            public String getFile() {
+                return file;
+            }
+
+            public void setFile(String file) {
+                this.file = file;
+            }
+
+            public List<String> getNames() {
+                return names;
+            }
+
+            public void setNames(List<String> names) {
+                this.names = names;
+            }
+
+            public long getPersistIntervalMs() {
+                return persistIntervalMs;
+            }
+
+            public void setPersistIntervalMs(long persistIntervalMs) {
+                this.persistIntervalMs = persistIntervalMs;
+            }
+
+            public long getRescanIntervalMs() {
+                return rescanIntervalMs;
+            }
+
+            public void setRescanIntervalMs(long rescanIntervalMs) {
+                this.rescanIntervalMs = rescanIntervalMs;
+            }
+
+            public long getRescanOverlapMs() {
+                return rescanOverlapMs;
+            }
+
+            public void setRescanOverlapMs(long rescanOverlapMs) {
+                this.rescanOverlapMs = rescanOverlapMs;
+            }
+
+            public String getRebuildCron() {
+                return rebuildCron;
+            }
+
+            public void setRebuildCron(String rebuildCron) {
+                this.rebuildCron = rebuildCron;
+            }
+        }
+    }
 }
@@ -1,46 +1,152 @@
 package com.feedback.config;
 
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
 import io.github.jhipster.config.JHipsterProperties;
 import org.ehcache.config.builders.CacheConfigurationBuilder;
 import org.ehcache.config.builders.ResourcePoolsBuilder;
+import org.ehcache.config.units.EntryUnit;
+import org.ehcache.config.units.MemoryUnit;
 import org.ehcache.expiry.Duration;
+import org.ehcache.impl.config.copy.DefaultCopierConfiguration;
+import org.ehcache.impl.copy.SerializingCopier;
 import org.ehcache.expiry.Expirations;
+import org.ehcache.expiry.Expiry;
 import org.ehcache.jsr107.Eh107Configuration;
 
+import java.util.Map;
+import java.util.OptionalLong;
 import java.util.concurrent.TimeUnit;
 
+import javax.cache.CacheManager;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.boot.autoconfigure.AutoConfigureAfter;
 import org.springframework.boot.autoconfigure.AutoConfigureBefore;
 import org.springframework.boot.autoconfigure.cache.JCacheManagerCustomizer;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.context.annotation.*;
 
+/**
+ * Each cache region is configured under application.cache.regions, by alias: its heap size in entries, an optional
+ * off-heap tier in megabytes and its expiry. A time to live of 0 means that entries never expire.
+ * <p>
+ * The off-heap tier is allocated from direct memory, so -XX:MaxDirectMemorySize must leave room for it.
+ * <p>
+ * The JCache provider is chosen with spring.cache.jcache.provider: Ehcache, or Caffeine which has no off-heap tier
+ * but a better hit ratio on skewed traffic.
+ * <p>
+ * Statistics are enabled on every region, for the JCache metrics and the /management/caches endpoint.
+ */
 @Configuration
 @EnableCaching
 @AutoConfigureAfter(value = { MetricsConfiguration.class })
 @AutoConfigureBefore(value = { WebConfigurer.class, DatabaseConfiguration.class })
 public class CacheConfiguration {
 
-    private final javax.cache.configuration.Configuration<Object, Object> jcacheConfiguration;
+    /**
+     * The region of the users by login, which gives the cached users to the callers rather than to Hibernate.
+     */
+    private static final String USERS_BY_LOGIN_ALIAS = "users-by-login";
+
+    private final Logger log = LoggerFactory.getLogger(CacheConfiguration.class);
 
-    public CacheConfiguration(JHipsterProperties jHipsterProperties) {
-        JHipsterProperties.Cache.Ehcache ehcache =
-            jHipsterProperties.getCache().getEhcache();
+    private final JHipsterProperties.Cache.Ehcache defaults;
 
-        jcacheConfiguration = Eh107Configuration.fromEhcacheCacheConfiguration(
-            CacheConfigurationBuilder.newCacheConfigurationBuilder(Object.class, Object.class,
-                ResourcePoolsBuilder.heap(ehcache.getMaxEntries()))
-                .withExpiry(Expirations.timeToLiveExpiration(Duration.of(ehcache.getTimeToLiveSeconds(), TimeUnit.SECONDS)))
-                .build());
+    private final Map<String, ApplicationProperties.Cache.Region> regions;
+
+    public CacheConfiguration(JHipsterProperties jHipsterProperties, ApplicationProperties applicationProperties) {
+        this.defaults = jHipsterProperties.getCache().getEhcache();
+        this.regions = applicationProperties.getCache().getRegions();
     }
 
     @Bean
     public JCacheManagerCustomizer cacheManagerCustomizer() {
         return cm -> {
-            cm.createCache(com.feedback.domain.User.class.getName(), jcacheConfiguration);
-            cm.createCache(com.feedback.domain.Authority.class.getName(), jcacheConfiguration);
-            cm.createCache(com.feedback.domain.User.class.getName() + ".authorities", jcacheConfiguration);
+            createCache(cm, com.feedback.domain.User.class.getName(), "user");
+            createCache(cm, com.feedback.domain.Authority.class.getName(), "authority");
+            createCache(cm, com.feedback.domain.User.class.getName() + ".authorities", "user-authorities");
+            createCache(cm, com.feedback.service.ResponseCacheService.RESPONSES_CACHE, "responses");
+            createCache(cm, com.feedback.repository.UserRepository.USERS_BY_LOGIN_CACHE, USERS_BY_LOGIN_ALIAS);
             // jhipster-needle-ehcache-add-entry
         };
     }
+
+    private void createCache(CacheManager cm, String name, String alias) {
+        cm.createCache(name, regionConfiguration(cm, alias));
+        cm.enableStatistics(name, true);
+    }
+
+    /**
+     * @param cm the cache manager the region is created in, which decides of the provider-specific configuration
+     * @param alias the alias of the region under application.cache.regions
+     * @return the JCache configuration of the region
+     */
+    javax.cache.configuration.Configuration<Object, Object> regionConfiguration(CacheManager cm, String alias) {
+        ApplicationProperties.Cache.Region region =
+            regions.getOrDefault(alias, new ApplicationProperties.Cache.Region());
+        long maxEntries = region.getMaxEntries() != null ? region.getMaxEntries() : defaults.getMaxEntries();
+        long timeToLiveSeconds = region.getTimeToLiveSeconds() != null ?
+            region.getTimeToLiveSeconds() : defaults.getTimeToLiveSeconds();
+
+        if (cm.getCachingProvider() instanceof CaffeineCachingProvider) {
+            return caffeineConfiguration(alias, region, maxEntries, timeToLiveSeconds);
+        }
+        return ehcacheConfiguration(region, maxEntries, timeToLiveSeconds, USERS_BY_LOGIN_ALIAS.equals(alias));
+    }
+
+    private javax.cache.configuration.Configuration<Object, Object> ehcacheConfiguration(
+        ApplicationProperties.Cache.Region region, long maxEntries, long timeToLiveSeconds, boolean copyValues) {
+
+        ResourcePoolsBuilder resourcePools = ResourcePoolsBuilder.newResourcePoolsBuilder()
+            .heap(maxEntries, EntryUnit.ENTRIES);
+        if (region.getOffHeapMb() > 0) {
+            resourcePools = resourcePools.offheap(region.getOffHeapMb(), MemoryUnit.MB);
+        }
+
+        Expiry<Object, Object> expiry;
+        if (region.getTimeToIdleSeconds() > 0) {
+            expiry = Expirations.timeToIdleExpiration(Duration.of(region.getTimeToIdleSeconds(), TimeUnit.SECONDS));
+        } else if (timeToLiveSeconds > 0) {
+            expiry = Expirations.timeToLiveExpiration(Duration.of(timeToLiveSeconds, TimeUnit.SECONDS));
+        } else {
+            expiry = Expirations.noExpiration();
+        }
+
+        ClassLoader classLoader = getClass().getClassLoader();
+        CacheConfigurationBuilder<Object, Object> configuration = CacheConfigurationBuilder
+            .newCacheConfigurationBuilder(Object.class, Object.class, resourcePools)
+            .withExpiry(expiry)
+            .withKeySerializer(new CacheEntrySerializer(classLoader))
+            .withValueSerializer(new CacheEntrySerializer(classLoader));
+        if (copyValues) {
+            // The heap tier keeps the values themselves, which are copied by serialization instead
+            configuration = configuration.add(new DefaultCopierConfiguration<>(
+                SerializingCopier.<Object>asCopierClass(), DefaultCopierConfiguration.Type.VALUE));
+        }
+        return Eh107Configuration.fromEhcacheCacheConfiguration(configuration.build());
+    }
+
+    /**
+     * Caffeine keeps the entries on the heap only, and chooses which ones to keep with its W-TinyLFU policy.
+     */
+    private javax.cache.configuration.Configuration<Object, Object> caffeineConfiguration(String alias,
+        ApplicationProperties.Cache.Region region, long maxEntries, long timeToLiveSeconds) {
+
+        if (region.getOffHeapMb() > 0) {
+            log.warn("Caffeine has no off-heap tier, only the heap is used for cache region {}", alias);
+        }
+        CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+        configuration.setMaximumSize(OptionalLong.of(maxEntries));
+        if (region.getTimeToIdleSeconds() > 0) {
+            configuration.setExpireAfterAccess(OptionalLong.of(TimeUnit.SECONDS.toNanos(region.getTimeToIdleSeconds())));
+        } else if (timeToLiveSeconds > 0) {
+            configuration.setExpireAfterWrite(OptionalLong.of(TimeUnit.SECONDS.toNanos(timeToLiveSeconds)));
+        }
+        // Like the Ehcache heap tier, and as Hibernate expects, entries are not copied, except the users by login
+        // which are given to the callers and must not be shared between them
+        configuration.setStoreByValue(USERS_BY_LOGIN_ALIAS.equals(alias));
+        return configuration;
+    }
 }
@@ -0,0 +1,111 @@
+package com.feedback.config;
+
+import org.ehcache.spi.serialization.Serializer;
+import org.ehcache.spi.serialization.SerializerException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+/**
+ * Serializes the keys and values stored outside of the heap.
+ * <p>
+ * Longs, integers and strings, which are what most ids and cache keys are made of, are written with a one byte type
+ * tag and their raw content. Anything else, such as the entries of the Hibernate second-level cache, goes through
+ * Java serialization using the application class loader.
+ * <p>
+ * Caches are still declared with {@code Object} keys and values: Hibernate looks its regions up with
+ * {@code CacheManager.getCache(String)}, which JSR-107 1.0 does not allow on typed caches.
+ */
+public class CacheEntrySerializer implements Serializer<Object> {
+
+    private static final byte LONG = 1;
+
+    private static final byte INTEGER = 2;
+
+    private static final byte STRING = 3;
+
+    private static final byte SERIALIZED = 4;
+
+    private final ClassLoader classLoader;
+
+    public CacheEntrySerializer(ClassLoader classLoader) {
+        this.classLoader = classLoader;
+    }
+
+    @Override
+    public ByteBuffer serialize(Object object) {
+        if (object instanceof Long) {
+            return (ByteBuffer) ByteBuffer.allocate(9).put(LONG).putLong((Long) object).flip();
+        }
+        if (object instanceof Integer) {
+            return (ByteBuffer) ByteBuffer.allocate(5).put(INTEGER).putInt((Integer) object).flip();
+        }
+        if (object instanceof String) {
+            byte[] bytes = ((String) object).getBytes(StandardCharsets.UTF_8);
+            return (ByteBuffer) ByteBuffer.allocate(bytes.length + 1).put(STRING).put(bytes).flip();
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bytes.write(SERIALIZED);
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(object);
+        } catch (IOException e) {
+            throw new SerializerException("Could not serialize " + object.getClass().getName(), e);
+        }
+        return ByteBuffer.wrap(bytes.toByteArray());
+    }
+
+    @Override
+    public Object read(ByteBuffer binary) throws ClassNotFoundException {
+        ByteBuffer buffer = binary.duplicate();
+        byte type = buffer.get();
+        switch (type) {
+            case LONG:
+                return buffer.getLong();
+            case INTEGER:
+                return buffer.getInt();
+            case STRING:
+                byte[] bytes = new byte[buffer.remaining()];
+                buffer.get(bytes);
+                return new String(bytes, StandardCharsets.UTF_8);
+            case SERIALIZED:
+                byte[] serialized = new byte[buffer.remaining()];
+                buffer.get(serialized);
+                try (ObjectInputStream in = new ClassLoaderObjectInputStream(new ByteArrayInputStream(serialized))) {
+                    return in.readObject();
+                } catch (IOException e) {
+                    throw new SerializerException("Could not deserialize a cache entry", e);
+                }
+            default:
+                throw new SerializerException("Unknown cache entry type " + type);
+        }
+    }
+
+    @Override
+    public boolean equals(Object object, ByteBuffer binary) throws ClassNotFoundException {
+        return Objects.equals(object, read(binary));
+    }
+
+    private class ClassLoaderObjectInputStream extends ObjectInputStream {
+
+        ClassLoaderObjectInputStream(InputStream in) throws IOException {
+            super(in);
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            try {
+                return Class.forName(desc.getName(), false, classLoader);
+            } catch (ClassNotFoundException e) {
+                return super.resolveClass(desc);
+            }
+        }
+    }
+}
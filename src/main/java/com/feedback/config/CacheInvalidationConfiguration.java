@@ -0,0 +1,45 @@
+package com.feedback.config;
+
+import com.feedback.config.cache.CacheInvalidationTransport;
+import com.feedback.config.cache.CacheInvalidator;
+import com.feedback.config.cache.LoopbackCacheInvalidationTransport;
+import com.feedback.config.cache.MulticastCacheInvalidationTransport;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.persistence.EntityManagerFactory;
+
+/**
+ * Sends the changes made to cached entities to the other nodes, so that the cache regions can keep long time to
+ * live values in a cluster.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "application.cache.invalidation", name = "enabled", havingValue = "true")
+public class CacheInvalidationConfiguration {
+
+    @Bean(destroyMethod = "stop")
+    public CacheInvalidationTransport cacheInvalidationTransport(ApplicationProperties applicationProperties) {
+        ApplicationProperties.Cache.Invalidation invalidation = applicationProperties.getCache().getInvalidation();
+        switch (invalidation.getTransport()) {
+            case "loopback":
+                return new LoopbackCacheInvalidationTransport(invalidation.getChannel());
+            case "multicast":
+                return new MulticastCacheInvalidationTransport(invalidation.getMulticastGroup(),
+                    invalidation.getMulticastPort(), invalidation.getMulticastTimeToLive());
+            default:
+                throw new IllegalArgumentException("Unknown cache invalidation transport: " +
+                    invalidation.getTransport());
+        }
+    }
+
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    public CacheInvalidator cacheInvalidator(EntityManagerFactory entityManagerFactory,
+        CacheInvalidationTransport cacheInvalidationTransport) {
+
+        return new CacheInvalidator(entityManagerFactory.unwrap(SessionFactoryImplementor.class),
+            cacheInvalidationTransport);
+    }
+}
@@ -3,23 +3,31 @@ package com.feedback.config;
 import io.github.jhipster.config.JHipsterConstants;
 import io.github.jhipster.config.liquibase.AsyncSpringLiquibase;
 
+import com.zaxxer.hikari.HikariDataSource;
 import liquibase.integration.spring.SpringLiquibase;
 import org.h2.tools.Server;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
 import org.springframework.boot.autoconfigure.liquibase.LiquibaseProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
 import org.springframework.context.annotation.Profile;
 import org.springframework.core.env.Environment;
 import org.springframework.core.task.TaskExecutor;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
 import org.springframework.data.jpa.repository.config.EnableJpaAuditing;
 import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
 import org.springframework.transaction.annotation.EnableTransactionManagement;
 
 import javax.sql.DataSource;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
 
 @Configuration
 @EnableJpaRepositories("com.feedback.repository")
@@ -47,6 +55,58 @@ public class DatabaseConfiguration {
         return Server.createTcpServer("-tcp","-tcpAllowOthers");
     }
 
+    /**
+     * The primary pool, configured from the standard "spring.datasource" properties, when read replicas are used.
+     *
+     * @param dataSourceProperties the standard datasource properties
+     * @return the primary pool
+     */
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    @ConditionalOnProperty(prefix = "application.replicas", name = "enabled", havingValue = "true")
+    public HikariDataSource primaryDataSource(DataSourceProperties dataSourceProperties) {
+        return (HikariDataSource) dataSourceProperties.initializeDataSourceBuilder()
+            .type(HikariDataSource.class)
+            .build();
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "application.replicas", name = "enabled", havingValue = "true")
+    public ReplicaRoutingDataSource replicaRoutingDataSource(HikariDataSource primaryDataSource,
+            ApplicationProperties applicationProperties) {
+
+        ApplicationProperties.Replicas replicas = applicationProperties.getReplicas();
+        List<DataSource> replicaPools = new ArrayList<>();
+        for (ApplicationProperties.Replicas.Pool pool : replicas.getPools()) {
+            HikariDataSource replicaPool = new HikariDataSource();
+            replicaPool.setPoolName("replica-" + replicaPools.size());
+            replicaPool.setJdbcUrl(pool.getUrl());
+            replicaPool.setUsername(pool.getUsername());
+            replicaPool.setPassword(pool.getPassword());
+            replicaPool.setMaximumPoolSize(pool.getMaximumPoolSize());
+            replicaPool.setReadOnly(true);
+            // Do not fail at startup when a replica is down, the health check will bring it back
+            replicaPool.setInitializationFailTimeout(-1);
+            replicaPools.add(replicaPool);
+        }
+        log.debug("Configuring {} read replica(s)", replicaPools.size());
+        return new ReplicaRoutingDataSource(primaryDataSource, replicaPools, replicas.isPinAfterWrite(),
+            replicas.getValidationTimeoutSeconds());
+    }
+
+    /**
+     * Read-only transactions only pick their connection once their read-only flag is set, thanks to the lazy proxy.
+     *
+     * @param replicaRoutingDataSource the routing datasource
+     * @return the datasource used by JPA and Liquibase
+     */
+    @Bean
+    @Primary
+    @ConditionalOnProperty(prefix = "application.replicas", name = "enabled", havingValue = "true")
+    public DataSource dataSource(ReplicaRoutingDataSource replicaRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(replicaRoutingDataSource);
+    }
+
     @Bean
     public SpringLiquibase liquibase(@Qualifier("taskExecutor") TaskExecutor taskExecutor,
             DataSource dataSource, LiquibaseProperties liquibaseProperties) {
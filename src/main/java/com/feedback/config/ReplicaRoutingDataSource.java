@@ -0,0 +1,172 @@
+package com.feedback.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * A DataSource sending read-only transactions to replica pools, and everything else to the primary.
+ * <p>
+ * Replicas are used in turn. A replica failing to give a connection, or failing its health check, is left out
+ * until it passes a health check again; when no replica is available, reads go to the primary.
+ * <p>
+ * When pinning is enabled, a request that has opened a read-write transaction sends all its following reads
+ * to the primary too, so that it sees its own writes regardless of replication lag.
+ * <p>
+ * The read-only flag of a transaction is only known once it has started, so this DataSource must be wrapped in a
+ * {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}.
+ */
+public class ReplicaRoutingDataSource extends AbstractDataSource {
+
+    private static final String PINNED_ATTRIBUTE = ReplicaRoutingDataSource.class.getName() + ".PINNED";
+
+    private final Logger log = LoggerFactory.getLogger(ReplicaRoutingDataSource.class);
+
+    private final DataSource primary;
+
+    private final List<DataSource> replicas;
+
+    private final boolean pinAfterWrite;
+
+    private final int validationTimeoutSeconds;
+
+    private final AtomicIntegerArray healthy;
+
+    private final AtomicInteger next = new AtomicInteger();
+
+    public ReplicaRoutingDataSource(DataSource primary, List<DataSource> replicas, boolean pinAfterWrite,
+        int validationTimeoutSeconds) {
+
+        this.primary = primary;
+        this.replicas = new ArrayList<>(replicas);
+        this.pinAfterWrite = pinAfterWrite;
+        this.validationTimeoutSeconds = validationTimeoutSeconds;
+        this.healthy = new AtomicIntegerArray(replicas.size());
+        for (int i = 0; i < replicas.size(); i++) {
+            healthy.set(i, 1);
+        }
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return getConnection(DataSource::getConnection);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return getConnection(dataSource -> dataSource.getConnection(username, password));
+    }
+
+    /**
+     * Check that each replica gives a valid connection, bringing back the ones which have recovered.
+     */
+    @Scheduled(fixedDelayString = "${application.replicas.health-check-interval-ms:10000}")
+    public void checkReplicas() {
+        for (int i = 0; i < replicas.size(); i++) {
+            try (Connection connection = replicas.get(i).getConnection()) {
+                if (connection.isValid(validationTimeoutSeconds)) {
+                    if (healthy.getAndSet(i, 1) == 0) {
+                        log.info("Replica {} is available again", i);
+                    }
+                } else {
+                    markDown(i, null);
+                }
+            } catch (SQLException e) {
+                markDown(i, e);
+            }
+        }
+    }
+
+    /**
+     * @return true if the replica with the given index is currently used for reads
+     */
+    public boolean isReplicaHealthy(int index) {
+        return healthy.get(index) == 1;
+    }
+
+    /**
+     * Close the replica pools, the primary being managed on its own.
+     */
+    public void close() {
+        for (DataSource replica : replicas) {
+            if (replica instanceof Closeable) {
+                try {
+                    ((Closeable) replica).close();
+                } catch (IOException e) {
+                    log.warn("Could not close replica pool: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    private Connection getConnection(ConnectionFactory connectionFactory) throws SQLException {
+        if (TransactionSynchronizationManager.isCurrentTransactionReadOnly() && !isPinned()) {
+            for (int attempt = 0; attempt < replicas.size(); attempt++) {
+                int index = nextHealthyReplica();
+                if (index < 0) {
+                    break;
+                }
+                try {
+                    return connectionFactory.getConnection(replicas.get(index));
+                } catch (SQLException e) {
+                    markDown(index, e);
+                }
+            }
+        } else if (pinAfterWrite && TransactionSynchronizationManager.isActualTransactionActive()) {
+            pin();
+        }
+        return connectionFactory.getConnection(primary);
+    }
+
+    private int nextHealthyReplica() {
+        int size = replicas.size();
+        int start = Math.floorMod(next.getAndIncrement(), Math.max(size, 1));
+        for (int i = 0; i < size; i++) {
+            int index = (start + i) % size;
+            if (healthy.get(index) == 1) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    private void markDown(int index, SQLException e) {
+        if (healthy.getAndSet(index, 0) == 1) {
+            log.warn("Replica {} is unavailable, reads fall back to the other replicas or the primary: {}", index,
+                e == null ? "invalid connection" : e.getMessage());
+        }
+    }
+
+    private boolean isPinned() {
+        RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+        return requestAttributes != null &&
+            requestAttributes.getAttribute(PINNED_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST) != null;
+    }
+
+    private void pin() {
+        RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+        if (requestAttributes != null) {
+            requestAttributes.setAttribute(PINNED_ATTRIBUTE, Boolean.TRUE, RequestAttributes.SCOPE_REQUEST);
+        }
+    }
+
+    @FunctionalInterface
+    private interface ConnectionFactory {
+
+        Connection getConnection(DataSource dataSource) throws SQLException;
+    }
+}
@@ -0,0 +1,175 @@
+package com.feedback.config;
+
+import com.feedback.domain.enumeration.UserTokenPurpose;
+import com.feedback.service.UserTokenService;
+
+import liquibase.change.custom.CustomTaskChange;
+import liquibase.database.Database;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.exception.CustomChangeException;
+import liquibase.exception.ValidationErrors;
+import liquibase.resource.ResourceAccessor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+
+/**
+ * Liquibase change moving the pending activation and password reset keys of jhi_user to jhi_user_token, before
+ * their columns are dropped.
+ * <p>
+ * Only the SHA-256 hash of a key is stored, as done by the UserTokenService. An activation key is kept if its user is
+ * not activated yet, and expires activationValiditySeconds after the migration; a reset key is kept if it has not
+ * expired, and expires resetValiditySeconds after its reset_date. Users are read by chunks of chunkSize, each in its
+ * own transaction.
+ */
+public class UserTokenMigration implements CustomTaskChange {
+
+    private final Logger log = LoggerFactory.getLogger(UserTokenMigration.class);
+
+    private int chunkSize = 1000;
+
+    private long activationValiditySeconds = 259200;
+
+    private long resetValiditySeconds = 86400;
+
+    private int migrated;
+
+    public String getChunkSize() {
+        return String.valueOf(chunkSize);
+    }
+
+    /**
+     * @param chunkSize the number of users read in each transaction, as given by Liquibase
+     */
+    public void setChunkSize(String chunkSize) {
+        this.chunkSize = Integer.parseInt(chunkSize);
+    }
+
+    public String getActivationValiditySeconds() {
+        return String.valueOf(activationValiditySeconds);
+    }
+
+    public void setActivationValiditySeconds(String activationValiditySeconds) {
+        this.activationValiditySeconds = Long.parseLong(activationValiditySeconds);
+    }
+
+    public String getResetValiditySeconds() {
+        return String.valueOf(resetValiditySeconds);
+    }
+
+    public void setResetValiditySeconds(String resetValiditySeconds) {
+        this.resetValiditySeconds = Long.parseLong(resetValiditySeconds);
+    }
+
+    @Override
+    public void execute(Database database) throws CustomChangeException {
+        try {
+            migrate(((JdbcConnection) database.getConnection()).getUnderlyingConnection());
+        } catch (SQLException e) {
+            throw new CustomChangeException("Could not move the activation and reset keys", e);
+        }
+    }
+
+    /**
+     * @return the number of keys moved to jhi_user_token
+     */
+    int migrate(Connection connection) throws SQLException {
+        migrated = 0;
+        Instant now = Instant.now();
+        long lastId = Long.MIN_VALUE;
+        boolean found = true;
+        while (found) {
+            found = false;
+            try (PreparedStatement select = connection.prepareStatement("select id, activated, activation_key, " +
+                    "reset_key, reset_date from jhi_user where id > ? " +
+                    "and (activation_key is not null or reset_key is not null) order by id");
+                 PreparedStatement insert = connection.prepareStatement("insert into jhi_user_token " +
+                     "(id, user_id, token_hash, purpose, created_date, expiry_date) values (?, ?, ?, ?, ?, ?)")) {
+
+                select.setMaxRows(chunkSize);
+                select.setLong(1, lastId);
+                try (ResultSet resultSet = select.executeQuery()) {
+                    while (resultSet.next()) {
+                        found = true;
+                        lastId = resultSet.getLong(1);
+                        String activationKey = resultSet.getString(3);
+                        if (activationKey != null && !resultSet.getBoolean(2)) {
+                            addToken(connection, insert, lastId, activationKey, UserTokenPurpose.ACTIVATION,
+                                now, now.plusSeconds(activationValiditySeconds));
+                        }
+                        String resetKey = resultSet.getString(4);
+                        Timestamp resetDate = resultSet.getTimestamp(5);
+                        if (resetKey != null && resetDate != null) {
+                            Instant expiryDate = resetDate.toInstant().plusSeconds(resetValiditySeconds);
+                            if (expiryDate.isAfter(now)) {
+                                addToken(connection, insert, lastId, resetKey, UserTokenPurpose.PASSWORD_RESET,
+                                    resetDate.toInstant(), expiryDate);
+                            }
+                        }
+                    }
+                }
+                insert.executeBatch();
+            }
+            if (!connection.getAutoCommit()) {
+                connection.commit();
+            }
+            log.debug("Moved the activation and reset keys of the users up to {}", lastId);
+        }
+        return migrated;
+    }
+
+    private void addToken(Connection connection, PreparedStatement insert, long userId, String key,
+                          UserTokenPurpose purpose, Instant createdDate, Instant expiryDate) throws SQLException {
+        insert.setLong(1, nextId(connection));
+        insert.setLong(2, userId);
+        insert.setString(3, UserTokenService.hashKey(key));
+        insert.setString(4, purpose.name());
+        insert.setTimestamp(5, Timestamp.from(createdDate));
+        insert.setTimestamp(6, Timestamp.from(expiryDate));
+        insert.addBatch();
+        migrated++;
+    }
+
+    /**
+     * Hibernate allocates the ids of a whole block from each value of the sequence, which always includes the value
+     * itself: taking one value per token keeps clear of the ids it hands out.
+     */
+    private long nextId(Connection connection) throws SQLException {
+        try (PreparedStatement select = connection.prepareStatement("select nextval('hibernate_sequence')");
+             ResultSet resultSet = select.executeQuery()) {
+            resultSet.next();
+            return resultSet.getLong(1);
+        }
+    }
+
+    @Override
+    public String getConfirmationMessage() {
+        return "Moved " + migrated + " activation and reset keys to jhi_user_token";
+    }
+
+    @Override
+    public void setUp() {
+    }
+
+    @Override
+    public void setFileOpener(ResourceAccessor resourceAccessor) {
+    }
+
+    @Override
+    public ValidationErrors validate(Database database) {
+        ValidationErrors errors = new ValidationErrors();
+        if (chunkSize <= 0) {
+            errors.addError("chunkSize must be positive");
+        }
+        if (activationValiditySeconds <= 0 || resetValiditySeconds <= 0) {
+            errors.addError("activationValiditySeconds and resetValiditySeconds must be positive");
+        }
+        return errors;
+    }
+}
@@ -7,6 +7,8 @@ import io.github.jhipster.web.filter.CachingHttpHeadersFilter;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.servlet.InstrumentedFilter;
 import com.codahale.metrics.servlets.MetricsServlet;
+import com.feedback.service.ResponseCacheService;
+import com.feedback.web.filter.ResponseCacheFilter;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -14,6 +16,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.context.embedded.*;
 import org.springframework.boot.context.embedded.undertow.UndertowEmbeddedServletContainerFactory;
 import io.undertow.UndertowOptions;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.boot.web.servlet.ServletContextInitializer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -168,6 +172,20 @@ public class WebConfigurer implements ServletContextInitializer, EmbeddedServlet
         return new CorsFilter(source);
     }
 
+    /**
+     * Registers the response cache filter right after the Spring Security filters, which authenticate the requests.
+     */
+    @Bean
+    public FilterRegistrationBean responseCacheFilter(ResponseCacheService responseCacheService,
+        ApplicationProperties applicationProperties) {
+
+        FilterRegistrationBean registration = new FilterRegistrationBean(new ResponseCacheFilter(responseCacheService,
+            applicationProperties.getCache().getResponses().isGzip()));
+        registration.setUrlPatterns(ResponseCacheService.CACHED_PATHS);
+        registration.setOrder(SecurityProperties.DEFAULT_FILTER_ORDER + 1);
+        return registration;
+    }
+
     /**
      * Initializes H2 console.
      */
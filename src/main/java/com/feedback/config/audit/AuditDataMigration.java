@@ -0,0 +1,154 @@
+package com.feedback.config.audit;
+
+import com.feedback.domain.PersistentAuditEvent;
+
+import liquibase.change.custom.CustomTaskChange;
+import liquibase.database.Database;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.exception.CustomChangeException;
+import liquibase.exception.ValidationErrors;
+import liquibase.resource.ResourceAccessor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Liquibase change moving the data of the audit events from jhi_persistent_audit_evt_data to the encoded_data column
+ * of jhi_persistent_audit_event.
+ * <p>
+ * Events are moved by chunks of chunkSize, each in its own transaction, so the tables are never locked for long and
+ * an interrupted migration resumes where it stopped. Data too long for the column stays in the collection.
+ */
+public class AuditDataMigration implements CustomTaskChange {
+
+    private final Logger log = LoggerFactory.getLogger(AuditDataMigration.class);
+
+    private int chunkSize = 1000;
+
+    private int migrated;
+
+    public String getChunkSize() {
+        return String.valueOf(chunkSize);
+    }
+
+    /**
+     * @param chunkSize the number of events moved in each transaction, as given by Liquibase
+     */
+    public void setChunkSize(String chunkSize) {
+        this.chunkSize = Integer.parseInt(chunkSize);
+    }
+
+    @Override
+    public void execute(Database database) throws CustomChangeException {
+        try {
+            migrate(((JdbcConnection) database.getConnection()).getUnderlyingConnection());
+        } catch (SQLException e) {
+            throw new CustomChangeException("Could not move the audit event data", e);
+        }
+    }
+
+    /**
+     * @return the number of events whose data was encoded
+     */
+    int migrate(Connection connection) throws SQLException {
+        migrated = 0;
+        long lastId = Long.MIN_VALUE;
+        List<Long> ids;
+        while (!(ids = findUnencodedEvents(connection, lastId)).isEmpty()) {
+            lastId = ids.get(ids.size() - 1);
+            Map<Long, Map<String, String>> data = findData(connection, ids.get(0), lastId);
+            try (PreparedStatement update = connection.prepareStatement(
+                    "update jhi_persistent_audit_event set encoded_data = ? where event_id = ?");
+                 PreparedStatement delete = connection.prepareStatement(
+                     "delete from jhi_persistent_audit_evt_data where event_id = ?")) {
+
+                for (Long id : ids) {
+                    Map<String, String> eventData = data.getOrDefault(id, new HashMap<>());
+                    String encodedData = AuditEventConverter.encodeData(eventData);
+                    if (encodedData.length() > PersistentAuditEvent.ENCODED_DATA_MAX_LENGTH) {
+                        continue;
+                    }
+                    update.setString(1, encodedData);
+                    update.setLong(2, id);
+                    update.addBatch();
+                    if (!eventData.isEmpty()) {
+                        delete.setLong(1, id);
+                        delete.addBatch();
+                    }
+                    migrated++;
+                }
+                update.executeBatch();
+                delete.executeBatch();
+            }
+            if (!connection.getAutoCommit()) {
+                connection.commit();
+            }
+            log.debug("Encoded the data of the audit events up to {}", lastId);
+        }
+        return migrated;
+    }
+
+    private List<Long> findUnencodedEvents(Connection connection, long afterId) throws SQLException {
+        List<Long> ids = new ArrayList<>(chunkSize);
+        try (PreparedStatement select = connection.prepareStatement("select event_id from jhi_persistent_audit_event " +
+            "where encoded_data is null and event_id > ? order by event_id")) {
+
+            select.setMaxRows(chunkSize);
+            select.setLong(1, afterId);
+            try (ResultSet resultSet = select.executeQuery()) {
+                while (resultSet.next()) {
+                    ids.add(resultSet.getLong(1));
+                }
+            }
+        }
+        return ids;
+    }
+
+    private Map<Long, Map<String, String>> findData(Connection connection, long fromId, long toId) throws SQLException {
+        Map<Long, Map<String, String>> data = new LinkedHashMap<>();
+        try (PreparedStatement select = connection.prepareStatement("select event_id, name, value " +
+            "from jhi_persistent_audit_evt_data where event_id between ? and ?")) {
+
+            select.setLong(1, fromId);
+            select.setLong(2, toId);
+            try (ResultSet resultSet = select.executeQuery()) {
+                while (resultSet.next()) {
+                    data.computeIfAbsent(resultSet.getLong(1), id -> new HashMap<>())
+                        .put(resultSet.getString(2), resultSet.getString(3));
+                }
+            }
+        }
+        return data;
+    }
+
+    @Override
+    public String getConfirmationMessage() {
+        return "Encoded the data of " + migrated + " audit events";
+    }
+
+    @Override
+    public void setUp() {
+    }
+
+    @Override
+    public void setFileOpener(ResourceAccessor resourceAccessor) {
+    }
+
+    @Override
+    public ValidationErrors validate(Database database) {
+        ValidationErrors errors = new ValidationErrors();
+        if (chunkSize <= 0) {
+            errors.addError("chunkSize must be positive");
+        }
+        return errors;
+    }
+}
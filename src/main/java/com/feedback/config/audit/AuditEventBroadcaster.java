@@ -0,0 +1,280 @@
+package com.feedback.config.audit;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.feedback.config.ApplicationProperties;
+import com.feedback.domain.PersistentAuditEvent;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.audit.AuditEvent;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Sends the audit events to the subscribers of /management/audits/stream, as Server-Sent Events, once they are
+ * written.
+ * <p>
+ * Each subscriber has a queue of buffer-size events, sent by a thread of its own while it has events, so a slow
+ * subscriber never delays the writes nor the other subscribers: when its queue is full, it is dropped. The last
+ * replay-size events are kept, so that a subscriber reconnecting with the id of the last event it received gets the
+ * events it missed, as long as they are still kept.
+ * <p>
+ * The written events are also given to the listeners, such as the index of the AuditEventSearchService.
+ */
+@Component
+public class AuditEventBroadcaster {
+
+    static final String EVENT_NAME = "audit";
+
+    private final Logger log = LoggerFactory.getLogger(AuditEventBroadcaster.class);
+
+    private final AuditEventConverter auditEventConverter;
+
+    private final ApplicationProperties.Audit.Stream properties;
+
+    private final ExecutorService executor;
+
+    private final Set<Subscriber> subscribers = new CopyOnWriteArraySet<>();
+
+    private final List<Consumer<PersistentAuditEvent>> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * The latest events, from the oldest, guarded by this.
+     */
+    private final Deque<Entry> replay = new ArrayDeque<>();
+
+    private final Counter dropped;
+
+    @Autowired
+    public AuditEventBroadcaster(AuditEventConverter auditEventConverter, ApplicationProperties applicationProperties,
+        MetricRegistry metricRegistry) {
+
+        this(auditEventConverter, applicationProperties, metricRegistry, Executors.newCachedThreadPool(task -> {
+            Thread thread = new Thread(task, "audit-event-stream");
+            thread.setDaemon(true);
+            return thread;
+        }));
+    }
+
+    AuditEventBroadcaster(AuditEventConverter auditEventConverter, ApplicationProperties applicationProperties,
+        MetricRegistry metricRegistry, ExecutorService executor) {
+
+        this.auditEventConverter = auditEventConverter;
+        this.properties = applicationProperties.getAudit().getStream();
+        this.executor = executor;
+        metricRegistry.register(MetricRegistry.name(AuditEventBroadcaster.class, "subscribers"),
+            (Gauge<Integer>) subscribers::size);
+        this.dropped = metricRegistry.counter(MetricRegistry.name(AuditEventBroadcaster.class, "dropped"));
+    }
+
+    /**
+     * @param type the type of the events to send, or null
+     * @param principal the principal of the events to send, or null
+     * @param lastEventId the id of the last event received before reconnecting, or null
+     * @return the emitter of the events, starting with those kept after lastEventId
+     */
+    public SseEmitter subscribe(String type, String principal, Long lastEventId) {
+        Subscriber subscriber;
+        synchronized (this) {
+            List<Entry> missed = lastEventId != null ? eventsAfter(lastEventId) : new ArrayList<>();
+            subscriber = new Subscriber(type, principal, properties.getBufferSize() + missed.size());
+            missed.stream().filter(subscriber::accepts).forEach(subscriber.queue::add);
+            subscribers.add(subscriber);
+        }
+        subscriber.emitter.onCompletion(() -> subscribers.remove(subscriber));
+        subscriber.emitter.onTimeout(() -> subscribers.remove(subscriber));
+        subscriber.schedule();
+        return subscriber.emitter;
+    }
+
+    /**
+     * @return the kept events after the one of lastEventId, or with a greater id if it is no longer kept
+     */
+    private List<Entry> eventsAfter(long lastEventId) {
+        List<Entry> missed = new ArrayList<>();
+        boolean found = false;
+        for (Entry entry : replay) {
+            if (found || entry.id > lastEventId) {
+                missed.add(entry);
+            } else if (entry.id == lastEventId) {
+                // The ids are not in order when transactions commit out of order
+                found = true;
+                missed.clear();
+            }
+        }
+        return missed;
+    }
+
+    /**
+     * Send an event to the subscribers once the current transaction, if any, is committed.
+     *
+     * @param event the written event, with its id
+     */
+    public void publishAfterCommit(PersistentAuditEvent event) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    publish(event);
+                }
+            });
+        } else {
+            publish(event);
+        }
+    }
+
+    /**
+     * @param listener called with each written event, on the thread which wrote it, so it must be quick
+     */
+    public void addListener(Consumer<PersistentAuditEvent> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * @param event the written event, with its id
+     */
+    public void publish(PersistentAuditEvent event) {
+        for (Consumer<PersistentAuditEvent> listener : listeners) {
+            try {
+                listener.accept(event);
+            } catch (RuntimeException e) {
+                log.error("Audit event listener failed on event {}: {}", event.getId(), e.toString());
+            }
+        }
+        Entry entry = new Entry(event.getId(),
+            auditEventConverter.convertToAuditEvent(event, auditEventConverter.getData(event)));
+        synchronized (this) {
+            if (properties.getReplaySize() > 0) {
+                if (replay.size() >= properties.getReplaySize()) {
+                    replay.removeFirst();
+                }
+                replay.addLast(entry);
+            }
+            for (Subscriber subscriber : subscribers) {
+                if (subscriber.accepts(entry)) {
+                    subscriber.offer(entry);
+                }
+            }
+        }
+    }
+
+    /**
+     * Send a comment to the subscribers, so that the proxies keep the connections open, and the closed connections
+     * are noticed.
+     */
+    @Scheduled(fixedDelayString = "${application.audit.stream.heartbeat-ms:15000}")
+    public void heartbeat() {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.offer(Entry.HEARTBEAT);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+        for (Subscriber subscriber : subscribers) {
+            subscriber.emitter.complete();
+        }
+        subscribers.clear();
+    }
+
+    private static final class Entry {
+
+        static final Entry HEARTBEAT = new Entry(0, null);
+
+        private final long id;
+
+        private final AuditEvent event;
+
+        Entry(long id, AuditEvent event) {
+            this.id = id;
+            this.event = event;
+        }
+    }
+
+    private final class Subscriber {
+
+        private final String type;
+
+        private final String principal;
+
+        private final SseEmitter emitter = new SseEmitter(properties.getTimeoutMs());
+
+        private final BlockingQueue<Entry> queue;
+
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        Subscriber(String type, String principal, int capacity) {
+            this.type = type;
+            this.principal = principal;
+            this.queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+        }
+
+        boolean accepts(Entry entry) {
+            return (type == null || type.equals(entry.event.getType())) &&
+                (principal == null || principal.equals(entry.event.getPrincipal()));
+        }
+
+        void offer(Entry entry) {
+            if (queue.offer(entry)) {
+                schedule();
+            } else if (subscribers.remove(this)) {
+                dropped.inc();
+                log.warn("Dropping a slow audit event stream subscriber, with {} events waiting", queue.size());
+                emitter.complete();
+            }
+        }
+
+        void schedule() {
+            if (!queue.isEmpty() && scheduled.compareAndSet(false, true)) {
+                executor.execute(this::send);
+            }
+        }
+
+        private void send() {
+            try {
+                Entry entry;
+                while ((entry = queue.poll()) != null) {
+                    if (entry == Entry.HEARTBEAT) {
+                        emitter.send(SseEmitter.event().comment(""));
+                    } else {
+                        emitter.send(SseEmitter.event().id(String.valueOf(entry.id)).name(EVENT_NAME)
+                            .data(entry.event, MediaType.APPLICATION_JSON));
+                    }
+                }
+            } catch (IOException | IllegalStateException e) {
+                log.debug("Audit event stream closed: {}", e.toString());
+                subscribers.remove(this);
+                emitter.completeWithError(e);
+                return;
+            } finally {
+                scheduled.set(false);
+            }
+            // An event offered while the last one was sent
+            schedule();
+        }
+    }
+}
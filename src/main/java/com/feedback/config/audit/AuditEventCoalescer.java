@@ -0,0 +1,201 @@
+package com.feedback.config.audit;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.feedback.config.ApplicationProperties;
+import com.feedback.domain.PersistentAuditEvent;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Collapses the repeated audit events before they are written by the AuditEventWriter.
+ * <p>
+ * The events of the coalesced types (for instance AUTHENTICATION_FAILURE, which a misbehaving client repeats
+ * thousands of times) with the same principal, type and remote address are held for window-ms from the first one,
+ * and then written as one event, dated from the first one, with the number of events in the "count" data and the date
+ * of the last one in the "lastDate" data. An event not repeated within the window is written unchanged. The events of
+ * the other types are written immediately, as are the coalesced types once max-keys distinct events are held.
+ */
+@Component
+public class AuditEventCoalescer {
+
+    public static final String COUNT = "count";
+
+    static final String LAST_DATE = "lastDate";
+
+    private static final String REMOTE_ADDRESS = "remoteAddress";
+
+    private final AuditEventWriter auditEventWriter;
+
+    private final AuditEventConverter auditEventConverter;
+
+    private final ApplicationProperties.Audit.Coalescing properties;
+
+    private final ConcurrentMap<Key, Window> windows = new ConcurrentHashMap<>();
+
+    private final Counter coalesced;
+
+    public AuditEventCoalescer(AuditEventWriter auditEventWriter, AuditEventConverter auditEventConverter,
+        ApplicationProperties applicationProperties, MetricRegistry metricRegistry) {
+
+        this.auditEventWriter = auditEventWriter;
+        this.auditEventConverter = auditEventConverter;
+        this.properties = applicationProperties.getAudit().getCoalescing();
+        metricRegistry.register(MetricRegistry.name(AuditEventCoalescer.class, "windows"),
+            (Gauge<Integer>) windows::size);
+        this.coalesced = metricRegistry.counter(MetricRegistry.name(AuditEventCoalescer.class, "coalesced"));
+    }
+
+    /**
+     * @param event the event to write, with its data set by the AuditEventConverter, which must not be used by the
+     * caller afterwards
+     */
+    public void write(PersistentAuditEvent event) {
+        if (properties.getWindowMs() <= 0 || event.getAuditEventDate() == null ||
+            !properties.getTypes().contains(event.getAuditEventType())) {
+
+            auditEventWriter.write(event);
+            return;
+        }
+        Key key = new Key(event.getPrincipal(), event.getAuditEventType(),
+            auditEventConverter.getData(event).get(REMOTE_ADDRESS));
+        Window window = windows.get(key);
+        if (window == null && windows.size() >= properties.getMaxKeys()) {
+            auditEventWriter.write(event);
+            return;
+        }
+        boolean[] repeated = new boolean[1];
+        windows.compute(key, (k, current) -> {
+            if (current == null) {
+                return new Window(event);
+            }
+            current.add(event.getAuditEventDate());
+            repeated[0] = true;
+            return current;
+        });
+        if (repeated[0]) {
+            coalesced.inc();
+        }
+    }
+
+    /**
+     * This is scheduled to get fired every second, by default.
+     */
+    @Scheduled(fixedDelayString = "${application.audit.coalescing.flush-interval-ms:1000}")
+    public void flushClosedWindows() {
+        flush(Instant.now());
+    }
+
+    /**
+     * Write the events whose window is over.
+     *
+     * @param now the current time
+     * @return the number of events written
+     */
+    public int flush(Instant now) {
+        Instant opened = now.minusMillis(properties.getWindowMs());
+        int written = 0;
+        for (Map.Entry<Key, Window> entry : windows.entrySet()) {
+            if (!entry.getValue().event.getAuditEventDate().isAfter(opened) &&
+                windows.remove(entry.getKey(), entry.getValue())) {
+
+                write(entry.getValue());
+                written++;
+            }
+        }
+        return written;
+    }
+
+    /**
+     * Write the events held, before the AuditEventWriter stops.
+     */
+    @PreDestroy
+    public void stop() {
+        for (Key key : windows.keySet()) {
+            Window window = windows.remove(key);
+            if (window != null) {
+                write(window);
+            }
+        }
+    }
+
+    private void write(Window window) {
+        PersistentAuditEvent event = window.event;
+        synchronized (window) {
+            if (window.count > 1) {
+                Map<String, String> data = new HashMap<>(auditEventConverter.getData(event));
+                data.put(COUNT, String.valueOf(window.count));
+                data.put(LAST_DATE, window.lastDate.toString());
+                auditEventConverter.setData(event, data);
+            }
+        }
+        auditEventWriter.write(event);
+    }
+
+    private static final class Key {
+
+        private final String principal;
+
+        private final String type;
+
+        private final String remoteAddress;
+
+        Key(String principal, String type, String remoteAddress) {
+            this.principal = principal;
+            this.type = type;
+            this.remoteAddress = remoteAddress;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Key key = (Key) o;
+            return Objects.equals(principal, key.principal) && Objects.equals(type, key.type) &&
+                Objects.equals(remoteAddress, key.remoteAddress);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(principal, type, remoteAddress);
+        }
+    }
+
+    /**
+     * The first event of a window, and the repeats counted since.
+     */
+    private static final class Window {
+
+        private final PersistentAuditEvent event;
+
+        private int count = 1;
+
+        private Instant lastDate;
+
+        Window(PersistentAuditEvent event) {
+            this.event = event;
+            this.lastDate = event.getAuditEventDate();
+        }
+
+        synchronized void add(Instant date) {
+            count++;
+            if (date.isAfter(lastDate)) {
+                lastDate = date;
+            }
+        }
+    }
+}
@@ -1,16 +1,38 @@
 package com.feedback.config.audit;
 
+import com.feedback.config.ApplicationProperties;
 import com.feedback.domain.PersistentAuditEvent;
 
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.boot.actuate.audit.AuditEvent;
 import org.springframework.security.web.authentication.WebAuthenticationDetails;
 import org.springframework.stereotype.Component;
 
+import java.io.IOException;
 import java.util.*;
 
+/**
+ * Converts the audit events, and stores their data according to application.audit.data-storage: "column" encodes it
+ * as a JSON object in the encoded_data column of the event, "collection" stores a row per entry in
+ * jhi_persistent_audit_evt_data. Events stored either way can be read, so the storage can change at any time.
+ */
 @Component
 public class AuditEventConverter {
 
+    public static final String COLUMN_STORAGE = "column";
+
+    private static final ObjectMapper DATA_MAPPER = new ObjectMapper();
+
+    private static final TypeReference<HashMap<String, String>> DATA_TYPE = new TypeReference<HashMap<String, String>>() {
+    };
+
+    private final boolean columnStorage;
+
+    public AuditEventConverter(ApplicationProperties applicationProperties) {
+        this.columnStorage = COLUMN_STORAGE.equals(applicationProperties.getAudit().getDataStorage());
+    }
+
     /**
      * Convert a list of PersistentAuditEvent to a list of AuditEvent
      *
@@ -38,8 +60,65 @@ public class AuditEventConverter {
         if (persistentAuditEvent == null) {
             return null;
         }
+        return convertToAuditEvent(persistentAuditEvent, getData(persistentAuditEvent));
+    }
+
+    /**
+     * Convert a PersistentAuditEvent whose data has already been read to an AuditEvent
+     *
+     * @param persistentAuditEvent the event to convert
+     * @param data the data of the event
+     * @return the converted event
+     */
+    public AuditEvent convertToAuditEvent(PersistentAuditEvent persistentAuditEvent, Map<String, String> data) {
         return new AuditEvent(Date.from(persistentAuditEvent.getAuditEventDate()), persistentAuditEvent.getPrincipal(),
-            persistentAuditEvent.getAuditEventType(), convertDataToObjects(persistentAuditEvent.getData()));
+            persistentAuditEvent.getAuditEventType(), convertDataToObjects(data));
+    }
+
+    /**
+     * Read the data of an event, whichever way it is stored.
+     *
+     * @param persistentAuditEvent the event
+     * @return its data
+     */
+    public Map<String, String> getData(PersistentAuditEvent persistentAuditEvent) {
+        if (persistentAuditEvent.getEncodedData() != null) {
+            return decodeData(persistentAuditEvent.getEncodedData());
+        }
+        return persistentAuditEvent.getData();
+    }
+
+    /**
+     * Store the data of a new event. Data too long for the encoded_data column is stored in the collection.
+     *
+     * @param persistentAuditEvent the event
+     * @param data its data
+     */
+    public void setData(PersistentAuditEvent persistentAuditEvent, Map<String, String> data) {
+        String encodedData = columnStorage ? encodeData(data) : null;
+        if (encodedData != null && encodedData.length() <= PersistentAuditEvent.ENCODED_DATA_MAX_LENGTH) {
+            persistentAuditEvent.setEncodedData(encodedData);
+            persistentAuditEvent.setData(new HashMap<>());
+        } else {
+            persistentAuditEvent.setEncodedData(null);
+            persistentAuditEvent.setData(data);
+        }
+    }
+
+    public static String encodeData(Map<String, String> data) {
+        try {
+            return DATA_MAPPER.writeValueAsString(data);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Audit event data cannot be encoded", e);
+        }
+    }
+
+    public static Map<String, String> decodeData(String encodedData) {
+        try {
+            return DATA_MAPPER.readValue(encodedData, DATA_TYPE);
+        } catch (IOException e) {
+            throw new IllegalStateException("Invalid audit event data: " + encodedData, e);
+        }
     }
 
     /**
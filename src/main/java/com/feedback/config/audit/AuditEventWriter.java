@@ -0,0 +1,340 @@
+package com.feedback.config.audit;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.feedback.config.ApplicationProperties;
+import com.feedback.domain.PersistentAuditEvent;
+import com.feedback.repository.PersistenceAuditEventRepository;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes the audit events.
+ * <p>
+ * By default an event is inserted in the transaction of the caller.
+ * With application.audit.writer.async, events are put on a bounded queue, and a background thread inserts them in
+ * batches of batch-size events, or every flush-interval-ms. When the queue is full, the overflow setting decides
+ * what happens: "block" makes the caller wait, "drop-oldest" discards the oldest queued event, and "spill" appends
+ * the event to a file of the spill-directory, which is inserted once the queue has room again. Each batch is inserted
+ * in its own transaction; batches which cannot be inserted are spilled too. Spill files left by a crash are inserted at startup.
+ * <p>
+ * Queued events are not returned by the queries until they are written. The written events are then sent to the
+ * AuditEventBroadcaster.
+ */
+@Component
+public class AuditEventWriter {
+
+    static final String SPILL_FILE = "audit-events.spill";
+
+    static final String REPLAYED_SPILL_FILE = SPILL_FILE + ".replaying";
+
+    private static final String BLOCK = "block";
+
+    private static final String DROP_OLDEST = "drop-oldest";
+
+    private static final String SPILL = "spill";
+
+    /**
+     * Longest wait of the writer thread, after which it checks whether it has been stopped.
+     */
+    private static final long POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final Logger log = LoggerFactory.getLogger(AuditEventWriter.class);
+
+    private final PersistenceAuditEventRepository persistenceAuditEventRepository;
+
+    private final AuditEventBroadcaster auditEventBroadcaster;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final ApplicationProperties.Audit.Writer properties;
+
+    private final BlockingQueue<PersistentAuditEvent> queue;
+
+    private final File spillDirectory;
+
+    private final Histogram batchSizes;
+
+    private final Timer flushes;
+
+    private final Counter dropped;
+
+    private final Counter spilled;
+
+    private final Counter failed;
+
+    private volatile boolean running;
+
+    private volatile boolean spillPending;
+
+    private Thread writerThread;
+
+    public AuditEventWriter(PersistenceAuditEventRepository persistenceAuditEventRepository,
+        AuditEventBroadcaster auditEventBroadcaster, PlatformTransactionManager transactionManager,
+        ApplicationProperties applicationProperties, MetricRegistry metricRegistry) {
+
+        this.persistenceAuditEventRepository = persistenceAuditEventRepository;
+        this.auditEventBroadcaster = auditEventBroadcaster;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.properties = applicationProperties.getAudit().getWriter();
+        this.queue = new ArrayBlockingQueue<>(properties.getQueueCapacity());
+        this.spillDirectory = new File(properties.getSpillDirectory());
+        metricRegistry.register(MetricRegistry.name(AuditEventWriter.class, "queued"), (Gauge<Integer>) queue::size);
+        this.batchSizes = metricRegistry.histogram(MetricRegistry.name(AuditEventWriter.class, "batch-size"));
+        this.flushes = metricRegistry.timer(MetricRegistry.name(AuditEventWriter.class, "flush"));
+        this.dropped = metricRegistry.counter(MetricRegistry.name(AuditEventWriter.class, "dropped"));
+        this.spilled = metricRegistry.counter(MetricRegistry.name(AuditEventWriter.class, "spilled"));
+        this.failed = metricRegistry.counter(MetricRegistry.name(AuditEventWriter.class, "failed"));
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!properties.isAsync()) {
+            return;
+        }
+        if (!BLOCK.equals(properties.getOverflow()) && !DROP_OLDEST.equals(properties.getOverflow()) &&
+            !SPILL.equals(properties.getOverflow())) {
+            throw new IllegalStateException("Unknown audit event writer overflow: " + properties.getOverflow());
+        }
+        replaySpill();
+        running = true;
+        writerThread = new Thread(this::run, "audit-event-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+        log.info("Audit events are written asynchronously, in batches of {}", properties.getBatchSize());
+    }
+
+    /**
+     * Write the events still queued, within the shutdown timeout.
+     */
+    @PreDestroy
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        try {
+            writerThread.join(properties.getShutdownTimeoutMs());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<PersistentAuditEvent> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        if (!remaining.isEmpty()) {
+            if (SPILL.equals(properties.getOverflow())) {
+                spill(remaining);
+            } else {
+                failed.inc(remaining.size());
+                log.warn("Audit event writer stopped with {} events still queued, they are lost", remaining.size());
+            }
+        }
+    }
+
+    /**
+     * @param event the event to write, which must not be used by the caller afterwards
+     */
+    public void write(PersistentAuditEvent event) {
+        if (!running) {
+            persistenceAuditEventRepository.save(event);
+            auditEventBroadcaster.publishAfterCommit(event);
+            return;
+        }
+        switch (properties.getOverflow()) {
+            case DROP_OLDEST:
+                while (!queue.offer(event)) {
+                    if (queue.poll() != null) {
+                        dropped.inc();
+                    }
+                }
+                break;
+            case SPILL:
+                if (!queue.offer(event)) {
+                    spill(Collections.singletonList(event));
+                }
+                break;
+            default:
+                try {
+                    queue.put(event);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    persistenceAuditEventRepository.save(event);
+                    auditEventBroadcaster.publishAfterCommit(event);
+                }
+        }
+    }
+
+    private void run() {
+        List<PersistentAuditEvent> batch = new ArrayList<>(properties.getBatchSize());
+        long nextFlush = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(properties.getFlushIntervalMs());
+        while (running || !queue.isEmpty()) {
+            try {
+                PersistentAuditEvent event = queue.poll(Math.max(0, Math.min(POLL_NANOS, nextFlush - System.nanoTime())),
+                    TimeUnit.NANOSECONDS);
+                if (event != null) {
+                    batch.add(event);
+                    queue.drainTo(batch, properties.getBatchSize() - batch.size());
+                }
+            } catch (InterruptedException e) {
+                // Only stop() ends the writer, once the queue is empty
+            }
+            if (batch.size() >= properties.getBatchSize() || System.nanoTime() >= nextFlush || !running) {
+                flush(batch);
+                batch.clear();
+                nextFlush = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(properties.getFlushIntervalMs());
+                if (spillPending && running && queue.size() < properties.getQueueCapacity() / 2) {
+                    replaySpill();
+                }
+            }
+        }
+        flush(batch);
+    }
+
+    private void flush(List<PersistentAuditEvent> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try (Timer.Context ignored = flushes.time()) {
+            transactionTemplate.execute(status -> persistenceAuditEventRepository.save(batch));
+            batchSizes.update(batch.size());
+            batch.forEach(auditEventBroadcaster::publish);
+        } catch (RuntimeException e) {
+            if (SPILL.equals(properties.getOverflow())) {
+                log.warn("Could not insert {} audit events, they are spilled: {}", batch.size(), e.toString());
+                batch.forEach(event -> event.setId(null));
+                spill(batch);
+            } else {
+                failed.inc(batch.size());
+                log.error("Could not insert {} audit events, they are lost: {}", batch.size(), e.toString());
+            }
+        }
+    }
+
+    private synchronized void spill(List<PersistentAuditEvent> events) {
+        if (!spillDirectory.isDirectory() && !spillDirectory.mkdirs()) {
+            failed.inc(events.size());
+            log.error("Could not create {}, {} audit events are lost", spillDirectory, events.size());
+            return;
+        }
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+            new FileOutputStream(new File(spillDirectory, SPILL_FILE), true)))) {
+            for (PersistentAuditEvent event : events) {
+                writeEvent(out, event);
+            }
+            spilled.inc(events.size());
+            spillPending = true;
+        } catch (IOException e) {
+            failed.inc(events.size());
+            log.error("Could not spill {} audit events, they are lost: {}", events.size(), e.toString());
+        }
+    }
+
+    /**
+     * Insert the spilled events; those which cannot be inserted are spilled again.
+     */
+    synchronized void replaySpill() {
+        File replayed = new File(spillDirectory, REPLAYED_SPILL_FILE);
+        File spill = new File(spillDirectory, SPILL_FILE);
+        if (!replayed.exists() && (!spill.exists() || !spill.renameTo(replayed))) {
+            spillPending = false;
+            return;
+        }
+        spillPending = spill.exists();
+        int count = 0;
+        List<PersistentAuditEvent> batch = new ArrayList<>(properties.getBatchSize());
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(replayed)))) {
+            while (true) {
+                batch.add(readEvent(in));
+                if (batch.size() >= properties.getBatchSize()) {
+                    count += batch.size();
+                    flush(batch);
+                    batch.clear();
+                }
+            }
+        } catch (EOFException e) {
+            // A record cut by a crash is ignored
+        } catch (IOException e) {
+            log.error("Could not read the spilled audit events of {}: {}", replayed, e.toString());
+        }
+        count += batch.size();
+        flush(batch);
+        if (!replayed.delete()) {
+            log.warn("Could not delete {}, its audit events will be inserted again", replayed);
+        }
+        log.info("Inserted {} spilled audit events", count);
+    }
+
+    private static void writeEvent(DataOutputStream out, PersistentAuditEvent event) throws IOException {
+        writeNullableString(out, event.getPrincipal());
+        writeNullableString(out, event.getAuditEventType());
+        Instant date = event.getAuditEventDate();
+        out.writeBoolean(date != null);
+        if (date != null) {
+            out.writeLong(date.getEpochSecond());
+            out.writeInt(date.getNano());
+        }
+        writeNullableString(out, event.getEncodedData());
+        out.writeInt(event.getData().size());
+        for (Map.Entry<String, String> entry : event.getData().entrySet()) {
+            writeNullableString(out, entry.getKey());
+            writeNullableString(out, entry.getValue());
+        }
+    }
+
+    private static PersistentAuditEvent readEvent(DataInputStream in) throws IOException {
+        PersistentAuditEvent event = new PersistentAuditEvent();
+        event.setPrincipal(readNullableString(in));
+        event.setAuditEventType(readNullableString(in));
+        if (in.readBoolean()) {
+            event.setAuditEventDate(Instant.ofEpochSecond(in.readLong(), in.readInt()));
+        }
+        event.setEncodedData(readNullableString(in));
+        int size = in.readInt();
+        Map<String, String> data = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            data.put(readNullableString(in), readNullableString(in));
+        }
+        event.setData(data);
+        return event;
+    }
+
+    private static void writeNullableString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullableString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
@@ -0,0 +1,31 @@
+package com.feedback.config.cache;
+
+import java.util.function.Consumer;
+
+/**
+ * Carries cache invalidation messages between the nodes of a cluster.
+ * <p>
+ * Messages are small and may be lost: a missed invalidation leaves an entry stale until it expires, as without any
+ * transport. A node may receive its own messages, they are ignored by the {@link CacheInvalidator}.
+ */
+public interface CacheInvalidationTransport {
+
+    /**
+     * Start receiving messages from the other nodes.
+     *
+     * @param receiver called with each message received
+     */
+    void start(Consumer<byte[]> receiver);
+
+    /**
+     * Send a message to the other nodes.
+     *
+     * @param message the encoded message
+     */
+    void send(byte[] message);
+
+    /**
+     * Stop sending and receiving messages.
+     */
+    void stop();
+}
@@ -0,0 +1,199 @@
+package com.feedback.config.cache;
+
+import org.hibernate.Cache;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.*;
+import org.hibernate.persister.entity.EntityPersister;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.util.UUID;
+
+/**
+ * Keeps the Hibernate second-level cache of the other nodes up to date.
+ * <p>
+ * When a transaction updating or deleting cached entities or collections commits, a message is sent for each of
+ * them; a node receiving it evicts the entry from its own cache, so that it is loaded again from the database.
+ * Entities created on a node are not cached elsewhere yet, and need no message.
+ * <p>
+ * Ids are sent as longs, integers or strings; an entity with another kind of id has its whole region evicted.
+ */
+public class CacheInvalidator implements PostUpdateEventListener, PostDeleteEventListener,
+    PostCollectionRecreateEventListener, PostCollectionUpdateEventListener, PostCollectionRemoveEventListener {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final byte VERSION = 1;
+
+    private static final byte ENTITY = 1;
+
+    private static final byte COLLECTION = 2;
+
+    private static final byte NO_ID = 0;
+
+    private static final byte LONG_ID = 1;
+
+    private static final byte INTEGER_ID = 2;
+
+    private static final byte STRING_ID = 3;
+
+    private final transient Logger log = LoggerFactory.getLogger(CacheInvalidator.class);
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private final transient SessionFactoryImplementor sessionFactory;
+
+    private final transient CacheInvalidationTransport transport;
+
+    public CacheInvalidator(SessionFactoryImplementor sessionFactory, CacheInvalidationTransport transport) {
+        this.sessionFactory = sessionFactory;
+        this.transport = transport;
+    }
+
+    /**
+     * Register the Hibernate event listeners and start receiving the messages of the other nodes.
+     */
+    public void start() {
+        EventListenerRegistry registry = sessionFactory.getServiceRegistry().getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_UPDATE, this);
+        registry.appendListeners(EventType.POST_DELETE, this);
+        registry.appendListeners(EventType.POST_COLLECTION_RECREATE, this);
+        registry.appendListeners(EventType.POST_COLLECTION_UPDATE, this);
+        registry.appendListeners(EventType.POST_COLLECTION_REMOVE, this);
+        transport.start(this::receive);
+    }
+
+    public void stop() {
+        transport.stop();
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        entityChanged(event.getPersister(), event.getId(), event.getSession());
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        entityChanged(event.getPersister(), event.getId(), event.getSession());
+    }
+
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return false;
+    }
+
+    @Override
+    public void onPostRecreateCollection(PostCollectionRecreateEvent event) {
+        collectionChanged(event);
+    }
+
+    @Override
+    public void onPostUpdateCollection(PostCollectionUpdateEvent event) {
+        collectionChanged(event);
+    }
+
+    @Override
+    public void onPostRemoveCollection(PostCollectionRemoveEvent event) {
+        collectionChanged(event);
+    }
+
+    private void entityChanged(EntityPersister persister, Serializable id, EventSource session) {
+        if (persister.hasCache()) {
+            afterCommit(session, encode(ENTITY, persister.getEntityName(), id));
+        }
+    }
+
+    private void collectionChanged(AbstractCollectionEvent event) {
+        String role = event.getCollection().getRole();
+        if (role != null && sessionFactory.getMetamodel().collectionPersister(role).hasCache()) {
+            afterCommit(event.getSession(), encode(COLLECTION, role, event.getAffectedOwnerIdOrNull()));
+        }
+    }
+
+    private void afterCommit(EventSource session, byte[] message) {
+        session.getActionQueue().registerProcess((success, completedSession) -> {
+            if (success) {
+                transport.send(message);
+            }
+        });
+    }
+
+    private byte[] encode(byte kind, String role, Serializable id) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(VERSION);
+            out.writeUTF(nodeId);
+            out.writeByte(kind);
+            out.writeUTF(role);
+            if (id instanceof Long) {
+                out.writeByte(LONG_ID);
+                out.writeLong((Long) id);
+            } else if (id instanceof Integer) {
+                out.writeByte(INTEGER_ID);
+                out.writeInt((Integer) id);
+            } else if (id instanceof String) {
+                out.writeByte(STRING_ID);
+                out.writeUTF((String) id);
+            } else {
+                out.writeByte(NO_ID);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Evict the entry named by a message from the local cache.
+     *
+     * @param message the encoded message, sent by another node
+     */
+    void receive(byte[] message) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(message))) {
+            if (in.readByte() != VERSION || nodeId.equals(in.readUTF())) {
+                return;
+            }
+            byte kind = in.readByte();
+            String role = in.readUTF();
+            Serializable id;
+            switch (in.readByte()) {
+                case LONG_ID:
+                    id = in.readLong();
+                    break;
+                case INTEGER_ID:
+                    id = in.readInt();
+                    break;
+                case STRING_ID:
+                    id = in.readUTF();
+                    break;
+                default:
+                    id = null;
+            }
+            Cache cache = sessionFactory.getCache();
+            if (kind == ENTITY) {
+                if (id == null) {
+                    cache.evictEntityRegion(role);
+                } else {
+                    cache.evictEntity(role, id);
+                }
+            } else if (kind == COLLECTION) {
+                if (id == null) {
+                    cache.evictCollectionRegion(role);
+                } else {
+                    cache.evictCollection(role, id);
+                }
+            }
+            log.trace("Evicted {} {} on request of another node", role, id);
+        } catch (IOException e) {
+            log.warn("Ignoring an invalid cache invalidation message: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.feedback.config.cache;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.function.Consumer;
+
+/**
+ * A transport delivering messages to the other transports of the same channel, within the JVM.
+ * <p>
+ * Delivery is synchronous, which makes it suitable for tests running several nodes in one JVM.
+ */
+public class LoopbackCacheInvalidationTransport implements CacheInvalidationTransport {
+
+    private static final Map<String, Set<LoopbackCacheInvalidationTransport>> channels = new ConcurrentHashMap<>();
+
+    private final String channel;
+
+    private volatile Consumer<byte[]> receiver;
+
+    public LoopbackCacheInvalidationTransport(String channel) {
+        this.channel = channel;
+    }
+
+    @Override
+    public void start(Consumer<byte[]> receiver) {
+        this.receiver = receiver;
+        channels.computeIfAbsent(channel, name -> new CopyOnWriteArraySet<>()).add(this);
+    }
+
+    @Override
+    public void send(byte[] message) {
+        for (LoopbackCacheInvalidationTransport member : channels.getOrDefault(channel, Collections.emptySet())) {
+            if (member != this) {
+                member.receiver.accept(message);
+            }
+        }
+    }
+
+    @Override
+    public void stop() {
+        channels.computeIfPresent(channel, (name, members) -> {
+            members.remove(this);
+            return members.isEmpty() ? null : members;
+        });
+    }
+}
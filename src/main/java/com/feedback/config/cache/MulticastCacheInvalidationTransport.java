@@ -0,0 +1,107 @@
+package com.feedback.config.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.InetAddress;
+import java.net.MulticastSocket;
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * A transport sending messages as UDP multicast datagrams, for nodes sharing a network where multicast is allowed.
+ */
+public class MulticastCacheInvalidationTransport implements CacheInvalidationTransport {
+
+    private static final int MAX_MESSAGE_SIZE = 1024;
+
+    private final Logger log = LoggerFactory.getLogger(MulticastCacheInvalidationTransport.class);
+
+    private final String group;
+
+    private final int port;
+
+    private final int timeToLive;
+
+    private InetAddress groupAddress;
+
+    /**
+     * Set by start and cleared by stop, under the lock; send reads it once without the lock, and does nothing when
+     * the transport is stopped.
+     */
+    private volatile MulticastSocket socket;
+
+    private Thread receiverThread;
+
+    public MulticastCacheInvalidationTransport(String group, int port, int timeToLive) {
+        this.group = group;
+        this.port = port;
+        this.timeToLive = timeToLive;
+    }
+
+    @Override
+    public synchronized void start(Consumer<byte[]> receiver) {
+        try {
+            groupAddress = InetAddress.getByName(group);
+            socket = new MulticastSocket(port);
+            socket.setTimeToLive(timeToLive);
+            socket.joinGroup(groupAddress);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not join the cache invalidation group " + group + ":" + port, e);
+        }
+        MulticastSocket receivingSocket = socket;
+        receiverThread = new Thread(() -> {
+            byte[] buffer = new byte[MAX_MESSAGE_SIZE];
+            while (!receivingSocket.isClosed()) {
+                DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+                try {
+                    receivingSocket.receive(packet);
+                    receiver.accept(Arrays.copyOfRange(packet.getData(), packet.getOffset(),
+                        packet.getOffset() + packet.getLength()));
+                } catch (IOException e) {
+                    if (!receivingSocket.isClosed()) {
+                        log.warn("Could not receive a cache invalidation message: {}", e.getMessage());
+                    }
+                } catch (RuntimeException e) {
+                    log.warn("Could not apply a cache invalidation message: {}", e.getMessage());
+                }
+            }
+        }, "cache-invalidation-receiver");
+        receiverThread.setDaemon(true);
+        receiverThread.start();
+        log.info("Cache invalidation messages are exchanged on {}:{}", group, port);
+    }
+
+    @Override
+    public void send(byte[] message) {
+        if (message.length > MAX_MESSAGE_SIZE) {
+            log.warn("Cache invalidation message of {} bytes is too large to be sent", message.length);
+            return;
+        }
+        MulticastSocket sendingSocket = socket;
+        if (sendingSocket == null) {
+            log.debug("Cache invalidation message not sent, the transport is stopped");
+            return;
+        }
+        try {
+            sendingSocket.send(new DatagramPacket(message, message.length, groupAddress, port));
+        } catch (IOException e) {
+            log.warn("Could not send a cache invalidation message: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (socket != null) {
+            try {
+                socket.leaveGroup(groupAddress);
+            } catch (IOException e) {
+                log.debug("Could not leave the cache invalidation group: {}", e.getMessage());
+            }
+            socket.close();
+            socket = null;
+        }
+    }
+}
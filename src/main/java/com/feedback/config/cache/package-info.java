@@ -0,0 +1,4 @@
+/**
+ * Cache invalidation between the nodes of a cluster.
+ */
+package com.feedback.config.cache;
@@ -15,9 +15,11 @@ import java.util.Map;
 @Table(name = "jhi_persistent_audit_event")
 public class PersistentAuditEvent implements Serializable {
 
+    public static final int ENCODED_DATA_MAX_LENGTH = 4000;
+
     @Id
     @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "sequenceGenerator")
-    @SequenceGenerator(name = "sequenceGenerator")
+    @SequenceGenerator(name = "sequenceGenerator", sequenceName = "hibernate_sequence", allocationSize = 50)
     @Column(name = "event_id")
     private Long id;
 
@@ -36,6 +38,13 @@ public class PersistentAuditEvent implements Serializable {
     @CollectionTable(name = "jhi_persistent_audit_evt_data", joinColumns=@JoinColumn(name="event_id"))
     private Map<String, String> data = new HashMap<>();
 
+    /**
+     * The data as a JSON object, for the events whose data is not stored in jhi_persistent_audit_evt_data.
+     * @see com.feedback.config.audit.AuditEventConverter#getData(PersistentAuditEvent)
+     */
+    @Column(name = "encoded_data", length = ENCODED_DATA_MAX_LENGTH)
+    private String encodedData;
+
     public Long getId() {
         return id;
     }
@@ -75,4 +84,12 @@ public class PersistentAuditEvent implements Serializable {
     public void setData(Map<String, String> data) {
         this.data = data;
     }
+
+    public String getEncodedData() {
+        return encodedData;
+    }
+
+    public void setEncodedData(String encodedData) {
+        this.encodedData = encodedData;
+    }
 }
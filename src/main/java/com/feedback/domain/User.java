@@ -18,7 +18,6 @@ import java.util.HashSet;
 import java.util.Locale;
 import java.util.Objects;
 import java.util.Set;
-import java.time.Instant;
 
 /**
  * A user.
@@ -26,13 +25,14 @@ import java.time.Instant;
 @Entity
 @Table(name = "jhi_user")
 @Cache(usage = CacheConcurrencyStrategy.NONSTRICT_READ_WRITE)
+@EntityListeners(UserStatsListener.class)
 public class User extends AbstractAuditingEntity implements Serializable {
 
     private static final long serialVersionUID = 1L;
 
     @Id
     @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "sequenceGenerator")
-    @SequenceGenerator(name = "sequenceGenerator")
+    @SequenceGenerator(name = "sequenceGenerator", sequenceName = "hibernate_sequence", allocationSize = 50)
     private Long id;
 
     @NotNull
@@ -72,19 +72,15 @@ public class User extends AbstractAuditingEntity implements Serializable {
     @Column(name = "image_url", length = 256)
     private String imageUrl;
 
-    @Size(max = 20)
-    @Column(name = "activation_key", length = 20)
+    // Raw keys just issued through the UserTokenService, only kept in memory to be sent by email
+    @Transient
     @JsonIgnore
     private String activationKey;
 
-    @Size(max = 20)
-    @Column(name = "reset_key", length = 20)
+    @Transient
     @JsonIgnore
     private String resetKey;
 
-    @Column(name = "reset_date")
-    private Instant resetDate = null;
-
     @JsonIgnore
     @ManyToMany
     @JoinTable(
@@ -95,6 +91,13 @@ public class User extends AbstractAuditingEntity implements Serializable {
     @BatchSize(size = 20)
     private Set<Authority> authorities = new HashSet<>();
 
+    // Activation state and language last seen by the UserStatsListener
+    @Transient
+    private boolean statsActivated;
+
+    @Transient
+    private String statsLangKey;
+
     public Long getId() {
         return id;
     }
@@ -176,13 +179,6 @@ public class User extends AbstractAuditingEntity implements Serializable {
         this.resetKey = resetKey;
     }
 
-    public Instant getResetDate() {
-       return resetDate;
-    }
-
-    public void setResetDate(Instant resetDate) {
-       this.resetDate = resetDate;
-    }
     public String getLangKey() {
         return langKey;
     }
@@ -199,6 +195,19 @@ public class User extends AbstractAuditingEntity implements Serializable {
         this.authorities = authorities;
     }
 
+    boolean getStatsActivated() {
+        return statsActivated;
+    }
+
+    String getStatsLangKey() {
+        return statsLangKey;
+    }
+
+    void rememberStatsState() {
+        this.statsActivated = activated;
+        this.statsLangKey = langKey;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
@@ -227,7 +236,6 @@ public class User extends AbstractAuditingEntity implements Serializable {
             ", imageUrl='" + imageUrl + '\'' +
             ", activated='" + activated + '\'' +
             ", langKey='" + langKey + '\'' +
-            ", activationKey='" + activationKey + '\'' +
             "}";
     }
 }
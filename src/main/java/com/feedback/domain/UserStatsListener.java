@@ -0,0 +1,68 @@
+package com.feedback.domain;
+
+import com.feedback.service.UserStatsService;
+
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.PostLoad;
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+import java.util.function.Consumer;
+
+/**
+ * Entity listener keeping the {@link UserStatsService} counters up to date.
+ * <p>
+ * The activation state and language of the user are remembered when it is loaded or saved, so that an
+ * update can move it from one counter to another. Counters are only changed once the transaction commits.
+ */
+public class UserStatsListener {
+
+    @PostLoad
+    public void postLoad(User user) {
+        user.rememberStatsState();
+    }
+
+    @PostPersist
+    public void postPersist(User user) {
+        boolean activated = user.getActivated();
+        String langKey = user.getLangKey();
+        user.rememberStatsState();
+        afterCommit(stats -> stats.userCreated(activated, langKey, user.getCreatedDate()));
+    }
+
+    @PostUpdate
+    public void postUpdate(User user) {
+        boolean previousActivated = user.getStatsActivated();
+        String previousLangKey = user.getStatsLangKey();
+        boolean activated = user.getActivated();
+        String langKey = user.getLangKey();
+        user.rememberStatsState();
+        afterCommit(stats -> stats.userUpdated(previousActivated, previousLangKey, activated, langKey));
+    }
+
+    @PostRemove
+    public void postRemove(User user) {
+        boolean activated = user.getStatsActivated();
+        String langKey = user.getStatsLangKey();
+        afterCommit(stats -> stats.userDeleted(activated, langKey, user.getCreatedDate()));
+    }
+
+    private static void afterCommit(Consumer<UserStatsService> change) {
+        UserStatsService userStatsService = UserStatsService.getInstance();
+        if (userStatsService == null) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    change.accept(userStatsService);
+                }
+            });
+        } else {
+            change.accept(userStatsService);
+        }
+    }
+}
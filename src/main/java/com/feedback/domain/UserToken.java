@@ -0,0 +1,126 @@
+package com.feedback.domain;
+
+import com.feedback.domain.enumeration.UserTokenPurpose;
+
+import javax.persistence.*;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.Objects;
+
+/**
+ * A single-use key sent to a user by email, to activate the account or to reset the password.
+ * <p>
+ * Only the hash of the key is stored, so a leaked table cannot be used to take over accounts.
+ */
+@Entity
+@Table(name = "jhi_user_token")
+public class UserToken implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "sequenceGenerator")
+    @SequenceGenerator(name = "sequenceGenerator", sequenceName = "hibernate_sequence", allocationSize = 50)
+    private Long id;
+
+    @NotNull
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "user_id", nullable = false)
+    private User user;
+
+    @NotNull
+    @Size(min = 64, max = 64)
+    @Column(name = "token_hash", length = 64, nullable = false, unique = true)
+    private String tokenHash;
+
+    @NotNull
+    @Enumerated(EnumType.STRING)
+    @Column(name = "purpose", length = 20, nullable = false)
+    private UserTokenPurpose purpose;
+
+    @NotNull
+    @Column(name = "created_date", nullable = false)
+    private Instant createdDate = Instant.now();
+
+    @NotNull
+    @Column(name = "expiry_date", nullable = false)
+    private Instant expiryDate;
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public User getUser() {
+        return user;
+    }
+
+    public void setUser(User user) {
+        this.user = user;
+    }
+
+    public String getTokenHash() {
+        return tokenHash;
+    }
+
+    public void setTokenHash(String tokenHash) {
+        this.tokenHash = tokenHash;
+    }
+
+    public UserTokenPurpose getPurpose() {
+        return purpose;
+    }
+
+    public void setPurpose(UserTokenPurpose purpose) {
+        this.purpose = purpose;
+    }
+
+    public Instant getCreatedDate() {
+        return createdDate;
+    }
+
+    public void setCreatedDate(Instant createdDate) {
+        this.createdDate = createdDate;
+    }
+
+    public Instant getExpiryDate() {
+        return expiryDate;
+    }
+
+    public void setExpiryDate(Instant expiryDate) {
+        this.expiryDate = expiryDate;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+
+        UserToken userToken = (UserToken) o;
+        return !(userToken.getId() == null || getId() == null) && Objects.equals(getId(), userToken.getId());
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(getId());
+    }
+
+    @Override
+    public String toString() {
+        return "UserToken{" +
+            "id=" + id +
+            ", purpose='" + purpose + '\'' +
+            ", createdDate='" + createdDate + '\'' +
+            ", expiryDate='" + expiryDate + '\'' +
+            "}";
+    }
+}
@@ -0,0 +1,8 @@
+package com.feedback.domain.enumeration;
+
+/**
+ * The UserTokenPurpose enumeration.
+ */
+public enum UserTokenPurpose {
+    ACTIVATION, PASSWORD_RESET
+}
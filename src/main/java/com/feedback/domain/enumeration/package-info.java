@@ -0,0 +1,4 @@
+/**
+ * JPA domain enumerations.
+ */
+package com.feedback.domain.enumeration;
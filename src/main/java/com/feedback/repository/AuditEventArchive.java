@@ -0,0 +1,430 @@
+package com.feedback.repository;
+
+import com.feedback.config.ApplicationProperties;
+import com.feedback.domain.PersistentAuditEvent;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Repository;
+
+import javax.annotation.PostConstruct;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Cold storage of the audit events moved out of the database by the AuditArchiveService: compressed, immutable
+ * segment files of the events of a day.
+ * <p>
+ * A segment is its deflated events, then a footer with the number of events, their date range and the dictionary of
+ * their principals, then the length of the footer and a magic number. The footers are read when the archive is
+ * opened, so the reads only decompress the segments overlapping their date range.
+ */
+@Repository
+public class AuditEventArchive {
+
+    static final String SEGMENT_SUFFIX = ".archive";
+
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    private static final int MAGIC = 0x41524331;
+
+    private static final int TRAILER_LENGTH = 8;
+
+    private final Logger log = LoggerFactory.getLogger(AuditEventArchive.class);
+
+    /**
+     * The segments, from the newest. The list is replaced whole rather than changed, so a read always iterates a
+     * complete list.
+     */
+    private volatile List<Segment> segments = Collections.emptyList();
+
+    private final ApplicationProperties.Audit.Archive properties;
+
+    private final Path directory;
+
+    public AuditEventArchive(ApplicationProperties applicationProperties) {
+        this.properties = applicationProperties.getAudit().getArchive();
+        this.directory = Paths.get(properties.getDirectory());
+    }
+
+    /**
+     * Read the footers of the segments, and delete the segments left unfinished by a crash.
+     */
+    @PostConstruct
+    public void open() throws IOException {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        Files.createDirectories(directory);
+        List<Segment> footers = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                if (name.endsWith(TEMPORARY_SUFFIX)) {
+                    Files.delete(path);
+                } else if (name.endsWith(SEGMENT_SUFFIX)) {
+                    footers.add(readFooter(path));
+                }
+            }
+        }
+        footers.sort(Comparator.comparing(Segment::getMaxDate).reversed());
+        segments = Collections.unmodifiableList(footers);
+        log.debug("Opened {} audit archive segments", segments.size());
+    }
+
+    /**
+     * @param day the day of the events of the segment
+     * @return the writer of a new segment, which is only part of the archive once committed
+     * @throws IOException if the segment cannot be created
+     */
+    public SegmentWriter startSegment(LocalDate day) throws IOException {
+        return new SegmentWriter(day);
+    }
+
+    /**
+     * Replace the segments with a list including a new segment; commits are serialized, so none is lost.
+     */
+    private synchronized void addSegment(Segment segment) {
+        List<Segment> sorted = new ArrayList<>(segments);
+        sorted.add(segment);
+        sorted.sort(Comparator.comparing(Segment::getMaxDate).reversed());
+        segments = Collections.unmodifiableList(sorted);
+    }
+
+    /**
+     * @return true if some archived events may be in the date range
+     */
+    public boolean overlaps(Instant fromDate, Instant toDate) {
+        return segments.stream().anyMatch(segment -> segment.overlaps(fromDate, toDate));
+    }
+
+    /**
+     * Count the archived events of a date range, decompressing the segments partly in the range only.
+     *
+     * @param fromDate the start of the date range
+     * @param toDate the end (included) of the date range
+     * @return the number of archived events in the range
+     * @throws IOException if a segment cannot be read
+     */
+    public long countBetween(Instant fromDate, Instant toDate) throws IOException {
+        long count = 0;
+        for (Segment segment : segments) {
+            if (segment.isWithin(fromDate, toDate)) {
+                count += segment.count;
+            } else if (segment.overlaps(fromDate, toDate)) {
+                long[] matched = new long[1];
+                read(segment, event -> {
+                    if (isBetween(event, fromDate, toDate)) {
+                        matched[0]++;
+                    }
+                });
+                count += matched[0];
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Get archived events of a date range, from the newest segment, and from the newest event of each segment.
+     *
+     * @param fromDate the start of the date range
+     * @param toDate the end (included) of the date range
+     * @param offset the number of events of the range to skip
+     * @param limit the maximum number of events to get
+     * @return the events, whose data is in getData()
+     * @throws IOException if a segment cannot be read
+     */
+    public List<PersistentAuditEvent> findBetween(Instant fromDate, Instant toDate, long offset, int limit)
+        throws IOException {
+
+        List<PersistentAuditEvent> events = new ArrayList<>(limit);
+        long skipped = 0;
+        for (Segment segment : segments) {
+            if (events.size() == limit) {
+                break;
+            }
+            if (!segment.overlaps(fromDate, toDate)) {
+                continue;
+            }
+            if (segment.isWithin(fromDate, toDate) && skipped + segment.count <= offset) {
+                skipped += segment.count;
+                continue;
+            }
+            List<PersistentAuditEvent> segmentEvents = new ArrayList<>();
+            read(segment, event -> {
+                if (isBetween(event, fromDate, toDate)) {
+                    segmentEvents.add(event);
+                }
+            });
+            segmentEvents.sort(Comparator.comparing(PersistentAuditEvent::getAuditEventDate)
+                .thenComparing(PersistentAuditEvent::getId).reversed());
+            for (PersistentAuditEvent event : segmentEvents) {
+                if (skipped < offset) {
+                    skipped++;
+                } else if (events.size() < limit) {
+                    events.add(event);
+                }
+            }
+        }
+        return events;
+    }
+
+    private static boolean isBetween(PersistentAuditEvent event, Instant fromDate, Instant toDate) {
+        Instant date = event.getAuditEventDate();
+        return !date.isBefore(fromDate) && !date.isAfter(toDate);
+    }
+
+    private static Segment readFooter(Path path) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "r")) {
+            long length = file.length();
+            if (length < TRAILER_LENGTH) {
+                throw new IOException("Invalid audit archive segment " + path);
+            }
+            file.seek(length - TRAILER_LENGTH);
+            int footerLength = file.readInt();
+            if (file.readInt() != MAGIC || footerLength <= 0 || footerLength > length - TRAILER_LENGTH) {
+                throw new IOException("Invalid audit archive segment " + path);
+            }
+            long bodyLength = length - TRAILER_LENGTH - footerLength;
+            file.seek(bodyLength);
+            int count = file.readInt();
+            Instant minDate = Instant.ofEpochSecond(file.readLong(), file.readInt());
+            Instant maxDate = Instant.ofEpochSecond(file.readLong(), file.readInt());
+            int size = file.readInt();
+            List<String> principals = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                principals.add(file.readUTF());
+            }
+            return new Segment(path, count, minDate, maxDate, Collections.unmodifiableList(principals));
+        }
+    }
+
+    private static void read(Segment segment, Consumer<PersistentAuditEvent> consumer) throws IOException {
+        Inflater inflater = new Inflater();
+        try (InputStream file = Files.newInputStream(segment.path);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(new InflaterInputStream(file, inflater, 65536)))) {
+
+            List<String> principals = segment.getPrincipals();
+            for (int i = 0; i < segment.count; i++) {
+                PersistentAuditEvent event = new PersistentAuditEvent();
+                event.setId(in.readLong());
+                event.setAuditEventDate(Instant.ofEpochSecond(in.readLong(), in.readInt()));
+                event.setPrincipal(principals.get(in.readInt()));
+                event.setAuditEventType(in.readBoolean() ? in.readUTF() : null);
+                int size = in.readInt();
+                for (int j = 0; j < size; j++) {
+                    event.getData().put(in.readUTF(), in.readBoolean() ? in.readUTF() : null);
+                }
+                consumer.accept(event);
+            }
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * The footer of a segment.
+     */
+    private static final class Segment {
+
+        private final Path path;
+
+        private final int count;
+
+        private final Instant minDate;
+
+        private final Instant maxDate;
+
+        private final List<String> principals;
+
+        Segment(Path path, int count, Instant minDate, Instant maxDate, List<String> principals) {
+            this.path = path;
+            this.count = count;
+            this.minDate = minDate;
+            this.maxDate = maxDate;
+            this.principals = principals;
+        }
+
+        Instant getMaxDate() {
+            return maxDate;
+        }
+
+        List<String> getPrincipals() {
+            return principals;
+        }
+
+        boolean overlaps(Instant fromDate, Instant toDate) {
+            return !maxDate.isBefore(fromDate) && !minDate.isAfter(toDate);
+        }
+
+        boolean isWithin(Instant fromDate, Instant toDate) {
+            return !minDate.isBefore(fromDate) && !maxDate.isAfter(toDate);
+        }
+    }
+
+    /**
+     * Writes the events of a new segment, which is added to the archive by commit().
+     */
+    public final class SegmentWriter implements Closeable {
+
+        private final LocalDate day;
+
+        private final Path temporaryPath;
+
+        private final FileOutputStream file;
+
+        private final BufferedOutputStream buffered;
+
+        private final Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+
+        private final DeflaterOutputStream deflated;
+
+        private final DataOutputStream out;
+
+        private final Map<String, Integer> principals = new LinkedHashMap<>();
+
+        private int count;
+
+        private long firstId = Long.MAX_VALUE;
+
+        private long lastId = Long.MIN_VALUE;
+
+        private Instant minDate;
+
+        private Instant maxDate;
+
+        private boolean closed;
+
+        private SegmentWriter(LocalDate day) throws IOException {
+            this.day = day;
+            this.temporaryPath = directory.resolve(day + SEGMENT_SUFFIX + TEMPORARY_SUFFIX);
+            this.file = new FileOutputStream(temporaryPath.toFile());
+            this.buffered = new BufferedOutputStream(file, 65536);
+            this.deflated = new DeflaterOutputStream(buffered, deflater, 65536);
+            this.out = new DataOutputStream(deflated);
+        }
+
+        /**
+         * @param event an event of the day of the segment, with its data in getData()
+         * @throws IOException if the segment cannot be written
+         */
+        public void write(PersistentAuditEvent event) throws IOException {
+            Instant date = event.getAuditEventDate();
+            out.writeLong(event.getId());
+            out.writeLong(date.getEpochSecond());
+            out.writeInt(date.getNano());
+            out.writeInt(principals.computeIfAbsent(event.getPrincipal(), principal -> principals.size()));
+            writeString(event.getAuditEventType());
+            out.writeInt(event.getData().size());
+            for (Map.Entry<String, String> entry : event.getData().entrySet()) {
+                out.writeUTF(entry.getKey());
+                writeString(entry.getValue());
+            }
+            count++;
+            firstId = Math.min(firstId, event.getId());
+            lastId = Math.max(lastId, event.getId());
+            minDate = minDate == null || date.isBefore(minDate) ? date : minDate;
+            maxDate = maxDate == null || date.isAfter(maxDate) ? date : maxDate;
+        }
+
+        private void writeString(String value) throws IOException {
+            out.writeBoolean(value != null);
+            if (value != null) {
+                out.writeUTF(value);
+            }
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        /**
+         * Write the footer, sync the segment to the disk and add it to the archive. A segment of the same day and
+         * ids, written by an interrupted run, is kept instead.
+         *
+         * @throws IOException if the segment cannot be written
+         */
+        public void commit() throws IOException {
+            if (count == 0) {
+                close();
+                return;
+            }
+            deflated.finish();
+            DataOutputStream footer = new DataOutputStream(buffered);
+            footer.writeInt(count);
+            footer.writeLong(minDate.getEpochSecond());
+            footer.writeInt(minDate.getNano());
+            footer.writeLong(maxDate.getEpochSecond());
+            footer.writeInt(maxDate.getNano());
+            footer.writeInt(principals.size());
+            for (String principal : principals.keySet()) {
+                footer.writeUTF(principal);
+            }
+            int footerLength = footer.size();
+            footer.writeInt(footerLength);
+            footer.writeInt(MAGIC);
+            footer.flush();
+            file.getChannel().force(true);
+            closeFile();
+
+            Path path = directory.resolve(day + "_" + firstId + "-" + lastId + SEGMENT_SUFFIX);
+            if (Files.exists(path)) {
+                log.info("The audit archive segment {} was already written", path);
+                Files.delete(temporaryPath);
+                return;
+            }
+            Files.move(temporaryPath, path, StandardCopyOption.ATOMIC_MOVE);
+            path.toFile().setReadOnly();
+            addSegment(readFooter(path));
+        }
+
+        /**
+         * Close the writer, deleting the segment unless it was committed.
+         */
+        @Override
+        public void close() throws IOException {
+            try {
+                closeFile();
+            } finally {
+                Files.deleteIfExists(temporaryPath);
+            }
+        }
+
+        private void closeFile() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                file.close();
+            } finally {
+                deflater.end();
+            }
+        }
+    }
+}
@@ -0,0 +1,345 @@
+package com.feedback.repository;
+
+import com.feedback.domain.PersistentAuditEvent;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * A segment file of the MappedFileAuditEventRepository: events appended one after the other to a memory-mapped file
+ * of fixed size, and an index of blocks of consecutive events kept in memory.
+ * <p>
+ * Each event is stored as the length and the CRC32 of its bytes, then its bytes: id, date, principal, type and data.
+ * The end of the file is zeros, so a zero length ends the events. The length is written last, so an event torn by a
+ * crash has a zero length or a wrong CRC32, and is cut off when the segment is opened again.
+ * <p>
+ * This class is not thread-safe: the repository appends under a write lock and reads under a read lock.
+ */
+class AuditEventSegment {
+
+    private static final int HEADER_LENGTH = 8;
+
+    private static final int ZEROS_LENGTH = 8192;
+
+    private final Logger log = LoggerFactory.getLogger(AuditEventSegment.class);
+
+    private final Path path;
+
+    private final long firstId;
+
+    private final int blockSize;
+
+    private final FileChannel channel;
+
+    private final MappedByteBuffer buffer;
+
+    private final List<Block> blocks = new ArrayList<>();
+
+    private int position;
+
+    private int count;
+
+    private long lastId;
+
+    private boolean dirty;
+
+    private AuditEventSegment(Path path, long firstId, int blockSize, FileChannel channel, MappedByteBuffer buffer) {
+        this.path = path;
+        this.firstId = firstId;
+        this.blockSize = blockSize;
+        this.channel = channel;
+        this.buffer = buffer;
+        this.lastId = firstId - 1;
+    }
+
+    /**
+     * Open a segment, creating it if needed, and index its events.
+     *
+     * @param path the file of the segment
+     * @param firstId the id of the first event of the segment
+     * @param size the size of a new segment, in bytes
+     * @param blockSize the number of events of a block of the index
+     * @return the segment, ready to be appended to
+     * @throws IOException if the file cannot be mapped
+     */
+    static AuditEventSegment open(Path path, long firstId, int size, int blockSize) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+        try {
+            long mappedSize = channel.size() > 0 ? channel.size() : size;
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, mappedSize);
+            AuditEventSegment segment = new AuditEventSegment(path, firstId, blockSize, channel, buffer);
+            segment.recover();
+            return segment;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Index the events of the file, and cut off those torn by a crash.
+     */
+    private void recover() throws IOException {
+        int capacity = buffer.capacity();
+        while (position + HEADER_LENGTH <= capacity) {
+            int length = buffer.getInt(position);
+            if (length == 0) {
+                break;
+            }
+            if (length < 0 || length > capacity - position - HEADER_LENGTH ||
+                checksum(position + HEADER_LENGTH, length) != buffer.getInt(position + 4)) {
+
+                log.warn("Cutting off the audit event segment {} after {} events, at byte {}", path, count, position);
+                clear(position);
+                break;
+            }
+            index(read(position), position);
+            position += HEADER_LENGTH + length;
+        }
+    }
+
+    private void clear(int from) {
+        ByteBuffer zeros = ByteBuffer.allocate(ZEROS_LENGTH);
+        ByteBuffer view = buffer.duplicate();
+        view.position(from);
+        while (view.hasRemaining()) {
+            zeros.clear().limit(Math.min(ZEROS_LENGTH, view.remaining()));
+            view.put(zeros);
+        }
+        dirty = true;
+    }
+
+    /**
+     * @param event the event, whose id is the one after the last event of the segment
+     * @return false if the segment is too full for the event
+     */
+    boolean append(PersistentAuditEvent event) {
+        byte[] bytes = encode(event);
+        if (HEADER_LENGTH + bytes.length > buffer.capacity() - position) {
+            return false;
+        }
+        ByteBuffer view = buffer.duplicate();
+        view.position(position + HEADER_LENGTH);
+        view.put(bytes);
+        buffer.putInt(position + 4, checksum(position + HEADER_LENGTH, bytes.length));
+        buffer.putInt(position, bytes.length);
+        index(event, position);
+        position += HEADER_LENGTH + bytes.length;
+        dirty = true;
+        return true;
+    }
+
+    private void index(PersistentAuditEvent event, int eventPosition) {
+        if (count % blockSize == 0) {
+            blocks.add(new Block(eventPosition, event.getId()));
+        }
+        blocks.get(blocks.size() - 1).add(event);
+        count++;
+        lastId = event.getId();
+    }
+
+    /**
+     * @param block a block of this segment
+     * @param consumer the consumer of the events of the block, from the oldest
+     */
+    void read(Block block, Consumer<PersistentAuditEvent> consumer) {
+        int eventPosition = block.position;
+        for (int i = 0; i < block.count; i++) {
+            consumer.accept(read(eventPosition));
+            eventPosition += HEADER_LENGTH + buffer.getInt(eventPosition);
+        }
+    }
+
+    private PersistentAuditEvent read(int eventPosition) {
+        byte[] bytes = new byte[buffer.getInt(eventPosition)];
+        ByteBuffer view = buffer.duplicate();
+        view.position(eventPosition + HEADER_LENGTH);
+        view.get(bytes);
+        try {
+            return decode(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Invalid audit event at byte " + eventPosition + " of " + path, e);
+        }
+    }
+
+    private int checksum(int from, int length) {
+        ByteBuffer view = buffer.duplicate();
+        view.position(from).limit(from + length);
+        CRC32 crc = new CRC32();
+        crc.update(view);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Write the appended events to the disk.
+     */
+    void force() {
+        if (dirty) {
+            buffer.force();
+            dirty = false;
+        }
+    }
+
+    void close() throws IOException {
+        force();
+        channel.close();
+    }
+
+    /**
+     * Close and delete the segment. The file is unmapped when the buffer is garbage collected.
+     */
+    void delete() throws IOException {
+        channel.close();
+        Files.delete(path);
+    }
+
+    long getFirstId() {
+        return firstId;
+    }
+
+    long getLastId() {
+        return lastId;
+    }
+
+    int getCount() {
+        return count;
+    }
+
+    List<Block> getBlocks() {
+        return blocks;
+    }
+
+    static byte[] encode(PersistentAuditEvent event) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeLong(event.getId());
+            out.writeLong(event.getAuditEventDate().getEpochSecond());
+            out.writeInt(event.getAuditEventDate().getNano());
+            writeString(out, event.getPrincipal());
+            writeString(out, event.getAuditEventType());
+            out.writeInt(event.getData().size());
+            for (Map.Entry<String, String> entry : event.getData().entrySet()) {
+                out.writeUTF(entry.getKey());
+                writeString(out, entry.getValue());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    static PersistentAuditEvent decode(byte[] bytes) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        PersistentAuditEvent event = new PersistentAuditEvent();
+        event.setId(in.readLong());
+        event.setAuditEventDate(Instant.ofEpochSecond(in.readLong(), in.readInt()));
+        event.setPrincipal(readString(in));
+        event.setAuditEventType(readString(in));
+        int size = in.readInt();
+        for (int i = 0; i < size; i++) {
+            event.getData().put(in.readUTF(), readString(in));
+        }
+        return event;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    /**
+     * Consecutive events of a segment, with their dates and principals, so that the reads skip the blocks without
+     * any wanted event.
+     */
+    static class Block {
+
+        private final int position;
+
+        private final long firstId;
+
+        private final Set<String> principals = new HashSet<>();
+
+        private int count;
+
+        private Instant minDate;
+
+        private Instant maxDate;
+
+        Block(int position, long firstId) {
+            this.position = position;
+            this.firstId = firstId;
+        }
+
+        private void add(PersistentAuditEvent event) {
+            Instant date = event.getAuditEventDate();
+            if (minDate == null || date.isBefore(minDate)) {
+                minDate = date;
+            }
+            if (maxDate == null || date.isAfter(maxDate)) {
+                maxDate = date;
+            }
+            principals.add(event.getPrincipal());
+            count++;
+        }
+
+        long getFirstId() {
+            return firstId;
+        }
+
+        int getCount() {
+            return count;
+        }
+
+        boolean hasPrincipal(String principal) {
+            return principals.contains(principal);
+        }
+
+        boolean hasEventAfter(Instant date) {
+            return maxDate.isAfter(date);
+        }
+
+        /**
+         * @param from the start of the date range, or null
+         * @param to the end (included) of the date range, or null
+         * @return true if some events of the block may be in the date range
+         */
+        boolean overlaps(Instant from, Instant to) {
+            return (from == null || !maxDate.isBefore(from)) && (to == null || !minDate.isAfter(to));
+        }
+
+        /**
+         * @return true if all the events of the block are in the date range
+         */
+        boolean isWithin(Instant from, Instant to) {
+            return (from == null || !minDate.isBefore(from)) && (to == null || !maxDate.isAfter(to));
+        }
+    }
+}
@@ -2,10 +2,12 @@ package com.feedback.repository;
 
 import com.feedback.config.Constants;
 import com.feedback.config.audit.AuditEventConverter;
+import com.feedback.config.audit.AuditEventCoalescer;
 import com.feedback.domain.PersistentAuditEvent;
 
 import org.springframework.boot.actuate.audit.AuditEvent;
 import org.springframework.boot.actuate.audit.AuditEventRepository;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
@@ -14,9 +16,12 @@ import java.util.Date;
 import java.util.List;
 
 /**
- * An implementation of Spring Boot's AuditEventRepository.
+ * An implementation of Spring Boot's AuditEventRepository, storing the events in the database.
+ *
+ * @see MappedFileAuditEventRepository
  */
 @Repository
+@ConditionalOnProperty(prefix = "application.audit", name = "backend", havingValue = "database", matchIfMissing = true)
 public class CustomAuditEventRepository implements AuditEventRepository {
 
     private static final String AUTHORIZATION_FAILURE = "AUTHORIZATION_FAILURE";
@@ -25,11 +30,14 @@ public class CustomAuditEventRepository implements AuditEventRepository {
 
     private final AuditEventConverter auditEventConverter;
 
+    private final AuditEventCoalescer auditEventCoalescer;
+
     public CustomAuditEventRepository(PersistenceAuditEventRepository persistenceAuditEventRepository,
-            AuditEventConverter auditEventConverter) {
+            AuditEventConverter auditEventConverter, AuditEventCoalescer auditEventCoalescer) {
 
         this.persistenceAuditEventRepository = persistenceAuditEventRepository;
         this.auditEventConverter = auditEventConverter;
+        this.auditEventCoalescer = auditEventCoalescer;
     }
 
     @Override
@@ -70,8 +78,8 @@ public class CustomAuditEventRepository implements AuditEventRepository {
             persistentAuditEvent.setPrincipal(event.getPrincipal());
             persistentAuditEvent.setAuditEventType(event.getType());
             persistentAuditEvent.setAuditEventDate(event.getTimestamp().toInstant());
-            persistentAuditEvent.setData(auditEventConverter.convertDataToStrings(event.getData()));
-            persistenceAuditEventRepository.save(persistentAuditEvent);
+            auditEventConverter.setData(persistentAuditEvent, auditEventConverter.convertDataToStrings(event.getData()));
+            auditEventCoalescer.write(persistentAuditEvent);
         }
     }
 }
@@ -0,0 +1,397 @@
+package com.feedback.repository;
+
+import com.feedback.config.ApplicationProperties;
+import com.feedback.config.Constants;
+import com.feedback.config.audit.AuditEventBroadcaster;
+import com.feedback.config.audit.AuditEventConverter;
+import com.feedback.domain.PersistentAuditEvent;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.actuate.audit.AuditEvent;
+import org.springframework.boot.actuate.audit.AuditEventRepository;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Repository;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * An implementation of Spring Boot's AuditEventRepository appending the events to memory-mapped segment files,
+ * instead of inserting them in the database, for the nodes writing many audit events.
+ * <p>
+ * A new segment is started when the current one is full, and the oldest are deleted beyond max-segments. The
+ * appended events are written to the disk every fsync-interval-ms, and the events torn by a crash are cut off when the
+ * segments are opened. The dates and principals of each block of block-size events are kept in memory, so the reads
+ * only decode the blocks which may have wanted events.
+ * <p>
+ * The ids are given in order of writing, and the pages are ordered by id, from the newest.
+ */
+@Repository
+@ConditionalOnProperty(prefix = "application.audit", name = "backend", havingValue = "mapped-file")
+public class MappedFileAuditEventRepository implements AuditEventRepository {
+
+    static final String SEGMENT_SUFFIX = ".segment";
+
+    private static final String AUTHORIZATION_FAILURE = "AUTHORIZATION_FAILURE";
+
+    private final Logger log = LoggerFactory.getLogger(MappedFileAuditEventRepository.class);
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * The segments, by the id of their first event.
+     */
+    private final NavigableMap<Long, AuditEventSegment> segments = new TreeMap<>();
+
+    private final AuditEventConverter auditEventConverter;
+
+    private final AuditEventBroadcaster auditEventBroadcaster;
+
+    private final ApplicationProperties.Audit.MappedFile properties;
+
+    private final Path directory;
+
+    private long nextId = 1;
+
+    public MappedFileAuditEventRepository(AuditEventConverter auditEventConverter,
+        AuditEventBroadcaster auditEventBroadcaster, ApplicationProperties applicationProperties) {
+
+        this.auditEventConverter = auditEventConverter;
+        this.auditEventBroadcaster = auditEventBroadcaster;
+        this.properties = applicationProperties.getAudit().getMappedFile();
+        this.directory = Paths.get(properties.getDirectory());
+    }
+
+    /**
+     * Open the segments, cutting off the events torn by a crash.
+     */
+    @PostConstruct
+    public void open() throws IOException {
+        Files.createDirectories(directory);
+        List<Path> paths = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SEGMENT_SUFFIX)) {
+            stream.forEach(paths::add);
+        }
+        lock.writeLock().lock();
+        try {
+            for (Path path : paths) {
+                String name = path.getFileName().toString();
+                long firstId = Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+                segments.put(firstId, AuditEventSegment.open(path, firstId, properties.getSegmentSizeBytes(),
+                    properties.getBlockSize()));
+            }
+            if (segments.isEmpty()) {
+                startSegment();
+            } else {
+                nextId = segments.lastEntry().getValue().getLastId() + 1;
+            }
+            log.debug("Opened {} audit event segments, up to id {}", segments.size(), nextId - 1);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            for (AuditEventSegment segment : segments.values()) {
+                segment.close();
+            }
+            segments.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Write the appended events to the disk.
+     */
+    @Scheduled(fixedDelayString = "${application.audit.mapped-file.fsync-interval-ms:1000}")
+    public void force() {
+        lock.readLock().lock();
+        try {
+            if (!segments.isEmpty()) {
+                segments.lastEntry().getValue().force();
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void add(AuditEvent event) {
+        if (AUTHORIZATION_FAILURE.equals(event.getType()) || Constants.ANONYMOUS_USER.equals(event.getPrincipal())) {
+            return;
+        }
+        PersistentAuditEvent persistentAuditEvent = new PersistentAuditEvent();
+        persistentAuditEvent.setPrincipal(event.getPrincipal());
+        persistentAuditEvent.setAuditEventType(event.getType());
+        persistentAuditEvent.setAuditEventDate(event.getTimestamp().toInstant());
+        persistentAuditEvent.setData(auditEventConverter.convertDataToStrings(event.getData()));
+        lock.writeLock().lock();
+        try {
+            persistentAuditEvent.setId(nextId);
+            if (!segments.lastEntry().getValue().append(persistentAuditEvent)) {
+                startSegment();
+                if (!segments.lastEntry().getValue().append(persistentAuditEvent)) {
+                    throw new IllegalArgumentException("Audit event larger than a segment: " + event);
+                }
+            }
+            nextId++;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        auditEventBroadcaster.publish(persistentAuditEvent);
+    }
+
+    private void startSegment() throws IOException {
+        if (!segments.isEmpty()) {
+            segments.lastEntry().getValue().force();
+        }
+        Path path = directory.resolve(String.format("%020d", nextId) + SEGMENT_SUFFIX);
+        segments.put(nextId, AuditEventSegment.open(path, nextId, properties.getSegmentSizeBytes(),
+            properties.getBlockSize()));
+        while (properties.getMaxSegments() > 0 && segments.size() > properties.getMaxSegments()) {
+            segments.pollFirstEntry().getValue().delete();
+        }
+    }
+
+    @Override
+    public List<AuditEvent> find(Date after) {
+        Instant from = after.toInstant();
+        return convertToAuditEvents(select(block -> block.hasEventAfter(from),
+            event -> event.getAuditEventDate().isAfter(from)));
+    }
+
+    @Override
+    public List<AuditEvent> find(String principal, Date after) {
+        Instant from = after != null ? after.toInstant() : null;
+        return convertToAuditEvents(select(
+            block -> (principal == null || block.hasPrincipal(principal)) && (from == null || block.hasEventAfter(from)),
+            event -> (principal == null || principal.equals(event.getPrincipal())) &&
+                (from == null || event.getAuditEventDate().isAfter(from))));
+    }
+
+    @Override
+    public List<AuditEvent> find(String principal, Date after, String type) {
+        Instant from = after.toInstant();
+        return convertToAuditEvents(select(block -> block.hasPrincipal(principal) && block.hasEventAfter(from),
+            event -> principal.equals(event.getPrincipal()) && event.getAuditEventDate().isAfter(from) &&
+                type.equals(event.getAuditEventType())));
+    }
+
+    private List<AuditEvent> convertToAuditEvents(List<PersistentAuditEvent> events) {
+        return events.stream()
+            .map(event -> auditEventConverter.convertToAuditEvent(event, event.getData()))
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * @return the wanted events of the wanted blocks, from the oldest
+     */
+    private List<PersistentAuditEvent> select(Predicate<AuditEventSegment.Block> blockFilter,
+        Predicate<PersistentAuditEvent> eventFilter) {
+
+        List<PersistentAuditEvent> events = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (AuditEventSegment segment : segments.values()) {
+                for (AuditEventSegment.Block block : segment.getBlocks()) {
+                    if (blockFilter.test(block)) {
+                        segment.read(block, event -> {
+                            if (eventFilter.test(event)) {
+                                events.add(event);
+                            }
+                        });
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return events;
+    }
+
+    /**
+     * @return the event with the id, whose data is in getData()
+     */
+    public Optional<PersistentAuditEvent> findOne(long id) {
+        lock.readLock().lock();
+        try {
+            Map.Entry<Long, AuditEventSegment> entry = segments.floorEntry(id);
+            if (entry == null || id > entry.getValue().getLastId()) {
+                return Optional.empty();
+            }
+            AuditEventSegment segment = entry.getValue();
+            List<AuditEventSegment.Block> blocks = segment.getBlocks();
+            AuditEventSegment.Block block = blocks.get((int) ((id - segment.getFirstId()) / properties.getBlockSize()));
+            List<PersistentAuditEvent> found = new ArrayList<>(1);
+            segment.read(block, event -> {
+                if (event.getId() == id) {
+                    found.add(event);
+                }
+            });
+            return found.stream().findFirst();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get a page of the events of a date range, counting the events of the blocks within the range without decoding
+     * them.
+     *
+     * @param fromDate the start of the date range, or null
+     * @param toDate the end (included) of the date range, or null
+     * @param pageable the pagination information, whose sort is ignored
+     * @return the events, from the newest, whose data is in getData()
+     */
+    public Page<PersistentAuditEvent> findAllByAuditEventDateBetween(Instant fromDate, Instant toDate,
+        Pageable pageable) {
+
+        List<PersistentAuditEvent> content = new ArrayList<>(pageable.getPageSize());
+        long offset = pageable.getOffset();
+        long end = offset + pageable.getPageSize();
+        long matched = 0;
+        lock.readLock().lock();
+        try {
+            for (AuditEventSegment segment : segments.descendingMap().values()) {
+                List<AuditEventSegment.Block> blocks = segment.getBlocks();
+                for (int i = blocks.size() - 1; i >= 0; i--) {
+                    AuditEventSegment.Block block = blocks.get(i);
+                    if (!block.overlaps(fromDate, toDate)) {
+                        continue;
+                    }
+                    if (block.isWithin(fromDate, toDate) && (matched + block.getCount() <= offset || matched >= end)) {
+                        matched += block.getCount();
+                        continue;
+                    }
+                    for (PersistentAuditEvent event : readNewestFirst(segment, block)) {
+                        if (isBetween(event, fromDate, toDate)) {
+                            if (matched >= offset && matched < end) {
+                                content.add(event);
+                            }
+                            matched++;
+                        }
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return new PageImpl<>(content, pageable, matched);
+    }
+
+    /**
+     * @param fromDate the start of the date range, or null
+     * @param toDate the end (excluded) of the date range, or null
+     * @param id the id after which the events are read
+     * @param limit the maximum number of events read
+     * @return the events of the date range with a lower id, from the newest
+     */
+    public List<PersistentAuditEvent> findOlderThan(Instant fromDate, Instant toDate, long id, int limit) {
+        List<PersistentAuditEvent> events = new ArrayList<>(limit);
+        lock.readLock().lock();
+        try {
+            for (AuditEventSegment segment : segments.headMap(id, false).descendingMap().values()) {
+                List<AuditEventSegment.Block> blocks = segment.getBlocks();
+                for (int i = blocks.size() - 1; i >= 0 && events.size() < limit; i--) {
+                    AuditEventSegment.Block block = blocks.get(i);
+                    if (block.getFirstId() >= id || !block.overlaps(fromDate, toDate)) {
+                        continue;
+                    }
+                    for (PersistentAuditEvent event : readNewestFirst(segment, block)) {
+                        if (event.getId() < id && isInRange(event, fromDate, toDate) && events.size() < limit) {
+                            events.add(event);
+                        }
+                    }
+                }
+                if (events.size() == limit) {
+                    break;
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return events;
+    }
+
+    /**
+     * @param fromDate the start of the date range, or null
+     * @param toDate the end (excluded) of the date range, or null
+     * @param id the id after which the events are read
+     * @param limit the maximum number of events read
+     * @return the events of the date range with a higher id, from the oldest
+     */
+    public List<PersistentAuditEvent> findNewerThan(Instant fromDate, Instant toDate, long id, int limit) {
+        List<PersistentAuditEvent> events = new ArrayList<>(limit);
+        lock.readLock().lock();
+        try {
+            Long firstSegment = segments.floorKey(id);
+            for (AuditEventSegment segment : segments.tailMap(firstSegment != null ? firstSegment : id, true).values()) {
+                for (AuditEventSegment.Block block : segment.getBlocks()) {
+                    if (events.size() == limit) {
+                        return events;
+                    }
+                    if (block.getFirstId() + block.getCount() <= id + 1 || !block.overlaps(fromDate, toDate)) {
+                        continue;
+                    }
+                    segment.read(block, event -> {
+                        if (event.getId() > id && isInRange(event, fromDate, toDate) && events.size() < limit) {
+                            events.add(event);
+                        }
+                    });
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return events;
+    }
+
+    private static List<PersistentAuditEvent> readNewestFirst(AuditEventSegment segment,
+        AuditEventSegment.Block block) {
+
+        List<PersistentAuditEvent> events = new ArrayList<>(block.getCount());
+        segment.read(block, events::add);
+        Collections.reverse(events);
+        return events;
+    }
+
+    private static boolean isBetween(PersistentAuditEvent event, Instant fromDate, Instant toDate) {
+        Instant date = event.getAuditEventDate();
+        return (fromDate == null || !date.isBefore(fromDate)) && (toDate == null || !date.isAfter(toDate));
+    }
+
+    private static boolean isInRange(PersistentAuditEvent event, Instant fromDate, Instant toDate) {
+        Instant date = event.getAuditEventDate();
+        return (fromDate == null || !date.isBefore(fromDate)) && (toDate == null || date.isBefore(toDate));
+    }
+}
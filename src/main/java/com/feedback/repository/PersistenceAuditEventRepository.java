@@ -4,8 +4,10 @@ import com.feedback.domain.PersistentAuditEvent;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
 import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -22,4 +24,33 @@ public interface PersistenceAuditEventRepository extends JpaRepository<Persisten
     List<PersistentAuditEvent> findByPrincipalAndAuditEventDateAfterAndAuditEventType(String principle, Instant after, String type);
 
     Page<PersistentAuditEvent> findAllByAuditEventDateBetween(Instant fromDate, Instant toDate, Pageable pageable);
+
+    /**
+     * Find the events of a date range which are older than a key, from the newest.
+     */
+    @Query("select e from PersistentAuditEvent e where e.auditEventDate >= ?1 and e.auditEventDate < ?2 and " +
+        "(e.auditEventDate < ?3 or (e.auditEventDate = ?3 and e.id < ?4)) order by e.auditEventDate desc, e.id desc")
+    List<PersistentAuditEvent> findOlderThan(Instant fromDate, Instant toDate, Instant date, Long id, Pageable pageable);
+
+    /**
+     * Find the events of a date range which are newer than a key, from the oldest.
+     */
+    @Query("select e from PersistentAuditEvent e where e.auditEventDate >= ?1 and e.auditEventDate < ?2 and " +
+        "(e.auditEventDate > ?3 or (e.auditEventDate = ?3 and e.id > ?4)) order by e.auditEventDate asc, e.id asc")
+    List<PersistentAuditEvent> findNewerThan(Instant fromDate, Instant toDate, Instant date, Long id, Pageable pageable);
+
+    /**
+     * Find the principals of the events of a type, the one with the latest event first.
+     */
+    @Query("select e.principal from PersistentAuditEvent e where e.auditEventType = ?1 and e.auditEventDate > ?2 " +
+        "group by e.principal order by max(e.auditEventDate) desc")
+    List<String> findPrincipalsByAuditEventTypeAndAuditEventDateAfter(String type, Instant after, Pageable pageable);
+
+    /**
+     * Find the data stored in jhi_persistent_audit_evt_data for several events.
+     *
+     * @return rows of event id, name and value
+     */
+    @Query("select e.id, key(d), value(d) from PersistentAuditEvent e join e.data d where e.id in ?1")
+    List<Object[]> findDataByIdIn(Collection<Long> ids);
 }
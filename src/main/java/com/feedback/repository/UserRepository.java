@@ -5,6 +5,7 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 import java.util.List;
 import java.util.Optional;
@@ -16,12 +17,15 @@ import java.time.Instant;
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
 
-    Optional<User> findOneByActivationKey(String activationKey);
+    /**
+     * The users with their authorities, by login, for the account requests only, see
+     * {@link com.feedback.service.UserLookupService#findAccountByLogin(String)}. The users are evicted by
+     * {@link com.feedback.service.UserService} when they change, on its node only.
+     */
+    String USERS_BY_LOGIN_CACHE = "usersByLogin";
 
     List<User> findAllByActivatedIsFalseAndCreatedDateBefore(Instant dateTime);
 
-    Optional<User> findOneByResetKey(String resetKey);
-
     Optional<User> findOneByEmail(String email);
 
     Optional<User> findOneByLogin(String login);
@@ -33,4 +37,13 @@ public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findOneWithAuthoritiesByLogin(String login);
 
     Page<User> findAllByLoginNot(Pageable pageable, String login);
+
+    /**
+     * Count users grouped by activation state, language and creation day.
+     * <p>
+     * Each row holds the activated flag, the language key, the year, month and day of creation, and the count.
+     */
+    @Query("select u.activated, u.langKey, year(u.createdDate), month(u.createdDate), day(u.createdDate), count(u) " +
+        "from User u group by u.activated, u.langKey, year(u.createdDate), month(u.createdDate), day(u.createdDate)")
+    List<Object[]> countByActivatedAndLangKeyAndCreationDay();
 }
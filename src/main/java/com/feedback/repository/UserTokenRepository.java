@@ -0,0 +1,42 @@
+package com.feedback.repository;
+
+import com.feedback.domain.User;
+import com.feedback.domain.UserToken;
+import com.feedback.domain.enumeration.UserTokenPurpose;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Spring Data JPA repository for the UserToken entity.
+ */
+public interface UserTokenRepository extends JpaRepository<UserToken, Long> {
+
+    @EntityGraph(attributePaths = "user")
+    Optional<UserToken> findOneByTokenHashAndPurposeAndExpiryDateAfter(String tokenHash, UserTokenPurpose purpose,
+        Instant now);
+
+    Optional<UserToken> findOneByTokenHash(String tokenHash);
+
+    @Query("select t.id from UserToken t where t.expiryDate < :now order by t.id")
+    List<Long> findIdsByExpiryDateBefore(@Param("now") Instant now, Pageable pageable);
+
+    @Transactional
+    @Modifying
+    @Query("delete from UserToken t where t.user = :user and t.purpose = :purpose")
+    int deleteByUserAndPurpose(@Param("user") User user, @Param("purpose") UserTokenPurpose purpose);
+
+    @Transactional
+    @Modifying
+    @Query("delete from UserToken t where t.id in :ids")
+    int deleteByIdIn(@Param("ids") List<Long> ids);
+}
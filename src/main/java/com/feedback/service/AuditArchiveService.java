@@ -0,0 +1,130 @@
+package com.feedback.service;
+
+import com.feedback.config.ApplicationProperties;
+import com.feedback.repository.AuditEventArchive;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Service moving the audit events older than after-days out of the database, into the segments of the
+ * AuditEventArchive: one segment per day, written and synced before the events of the day are deleted by chunks of
+ * delete-chunk-size ids, each in its own transaction.
+ * <p>
+ * If the job stops between the writing of a segment and the deletion of its events, the next run writes the same
+ * segment again, which is kept only once, and deletes the events.
+ */
+@Service
+public class AuditArchiveService {
+
+    private static final String DAY_QUERY = AuditEventRowHandler.SELECT +
+        "where e.event_date >= ? and e.event_date < ? order by e.event_id";
+
+    private final Logger log = LoggerFactory.getLogger(AuditArchiveService.class);
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final AuditEventArchive auditEventArchive;
+
+    private final ApplicationProperties.Audit.Archive properties;
+
+    public AuditArchiveService(DataSource dataSource, PlatformTransactionManager transactionManager,
+        AuditEventArchive auditEventArchive, ApplicationProperties applicationProperties) {
+
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(applicationProperties.getAudit().getExport().getFetchSize());
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.auditEventArchive = auditEventArchive;
+        this.properties = applicationProperties.getAudit().getArchive();
+    }
+
+    /**
+     * This is scheduled to get fired everyday, at 02:15 (am), by default.
+     */
+    @Scheduled(cron = "${application.audit.archive.cron:0 15 2 * * ?}")
+    public void archiveOldEvents() throws IOException {
+        if (properties.isEnabled()) {
+            long archived = archive(Instant.now());
+            log.debug("Archived {} audit events", archived);
+        }
+    }
+
+    /**
+     * Archive the events of the days ending before after-days ago.
+     *
+     * @param now the current time
+     * @return the number of events archived
+     * @throws IOException if a segment cannot be written
+     */
+    public long archive(Instant now) throws IOException {
+        ZoneId zone = ZoneId.systemDefault();
+        LocalDate lastDay = now.minus(properties.getAfterDays(), ChronoUnit.DAYS).atZone(zone).toLocalDate();
+        Instant limit = lastDay.atStartOfDay(zone).toInstant();
+
+        long archived = 0;
+        Timestamp oldest;
+        while ((oldest = jdbcTemplate.queryForObject("select min(event_date) from jhi_persistent_audit_event " +
+            "where event_date < ?", Timestamp.class, Timestamp.from(limit))) != null) {
+
+            archived += archiveDay(oldest.toInstant().atZone(zone).toLocalDate(), zone);
+        }
+        return archived;
+    }
+
+    private long archiveDay(LocalDate day, ZoneId zone) throws IOException {
+        List<Long> ids = new ArrayList<>();
+        try (AuditEventArchive.SegmentWriter writer = auditEventArchive.startSegment(day)) {
+            AuditEventRowHandler handler = new AuditEventRowHandler(event -> {
+                try {
+                    writer.write(event);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                ids.add(event.getId());
+            });
+            try {
+                transactionTemplate.execute(status -> {
+                    jdbcTemplate.query(DAY_QUERY, handler, Timestamp.from(day.atStartOfDay(zone).toInstant()),
+                        Timestamp.from(day.plusDays(1).atStartOfDay(zone).toInstant()));
+                    handler.finish();
+                    return null;
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            writer.commit();
+        }
+        for (int from = 0; from < ids.size(); from += properties.getDeleteChunkSize()) {
+            List<Long> chunk = ids.subList(from, Math.min(ids.size(), from + properties.getDeleteChunkSize()));
+            String placeholders = String.join(", ", Collections.nCopies(chunk.size(), "?"));
+            Object[] arguments = chunk.toArray();
+            transactionTemplate.execute(status -> {
+                jdbcTemplate.update("delete from jhi_persistent_audit_evt_data where event_id in (" + placeholders +
+                    ")", arguments);
+                return jdbcTemplate.update("delete from jhi_persistent_audit_event where event_id in (" +
+                    placeholders + ")", arguments);
+            });
+        }
+        log.debug("Archived {} audit events of {}", ids.size(), day);
+        return ids.size();
+    }
+}
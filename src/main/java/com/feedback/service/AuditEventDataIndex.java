@@ -0,0 +1,281 @@
+package com.feedback.service;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * An inverted index of the data of the audit events: for each (name, value), the ids of the events with this data,
+ * and their dates, so that the date filters are applied without reading the events.
+ * <p>
+ * The ids of each (name, value) are kept sorted in arrays, with the dates in epoch milliseconds in parallel arrays.
+ * They are written delta-encoded, as variable-length integers.
+ */
+class AuditEventDataIndex {
+
+    private static final int MAGIC = 0x41444932;
+
+    private static final int INITIAL_CAPACITY = 4;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<String, Map<String, Postings>> postings = new HashMap<>();
+
+    private long lastId;
+
+    private long lastDate = Long.MIN_VALUE;
+
+    private int size;
+
+    /**
+     * Index the data of an event; indexing it again has no effect.
+     *
+     * @param id the id of the event
+     * @param date the date of the event
+     * @param name the name of the data
+     * @param value the value of the data
+     */
+    void add(long id, Instant date, String name, String value) {
+        lock.writeLock().lock();
+        try {
+            if (postings.computeIfAbsent(name, n -> new HashMap<>())
+                .computeIfAbsent(value, v -> new Postings()).add(id, date.toEpochMilli())) {
+                size++;
+            }
+            lastId = Math.max(lastId, id);
+            lastDate = Math.max(lastDate, date.toEpochMilli());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Get a page of the ids of the events with a data, from the newest.
+     *
+     * @param name the name of the data
+     * @param value the value of the data
+     * @param fromDate the start of the date range, or null
+     * @param toDate the end (included) of the date range, or null
+     * @param offset the number of ids to skip
+     * @param limit the maximum number of ids to get
+     * @return the ids, and the number of events with the data in the date range
+     */
+    Result find(String name, String value, Instant fromDate, Instant toDate, long offset, int limit) {
+        long from = fromDate != null ? fromDate.toEpochMilli() : Long.MIN_VALUE;
+        long to = toDate != null ? toDate.toEpochMilli() : Long.MAX_VALUE;
+        lock.readLock().lock();
+        try {
+            Postings found = postings.getOrDefault(name, new HashMap<>()).get(value);
+            if (found == null) {
+                return new Result(new long[0], 0);
+            }
+            long[] ids = new long[limit];
+            int count = 0;
+            long total = 0;
+            for (int i = found.size - 1; i >= 0; i--) {
+                if (found.dates[i] >= from && found.dates[i] <= to) {
+                    if (total >= offset && count < limit) {
+                        ids[count++] = found.ids[i];
+                    }
+                    total++;
+                }
+            }
+            return new Result(Arrays.copyOf(ids, count), total);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the greatest id indexed, or 0
+     */
+    long getLastId() {
+        lock.readLock().lock();
+        try {
+            return lastId;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the latest date indexed, or null
+     */
+    Instant getLastDate() {
+        lock.readLock().lock();
+        try {
+            return lastDate != Long.MIN_VALUE ? Instant.ofEpochMilli(lastDate) : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the number of (name, value, id) indexed
+     */
+    int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    void write(DataOutputStream out) throws IOException {
+        lock.readLock().lock();
+        try {
+            out.writeInt(MAGIC);
+            out.writeLong(lastId);
+            out.writeLong(lastDate);
+            out.writeInt(postings.size());
+            for (Map.Entry<String, Map<String, Postings>> name : postings.entrySet()) {
+                out.writeUTF(name.getKey());
+                out.writeInt(name.getValue().size());
+                for (Map.Entry<String, Postings> value : name.getValue().entrySet()) {
+                    out.writeUTF(value.getKey());
+                    value.getValue().write(out);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    static AuditEventDataIndex read(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Invalid audit event data index");
+        }
+        AuditEventDataIndex index = new AuditEventDataIndex();
+        index.lastId = in.readLong();
+        index.lastDate = in.readLong();
+        int names = in.readInt();
+        for (int i = 0; i < names; i++) {
+            Map<String, Postings> values = new HashMap<>();
+            index.postings.put(in.readUTF(), values);
+            int valueCount = in.readInt();
+            for (int j = 0; j < valueCount; j++) {
+                String value = in.readUTF();
+                Postings read = Postings.read(in);
+                values.put(value, read);
+                index.size += read.size;
+            }
+        }
+        return index;
+    }
+
+    static final class Result {
+
+        private final long[] ids;
+
+        private final long total;
+
+        Result(long[] ids, long total) {
+            this.ids = ids;
+            this.total = total;
+        }
+
+        long[] getIds() {
+            return ids;
+        }
+
+        long getTotal() {
+            return total;
+        }
+    }
+
+    /**
+     * The ids of the events of a (name, value), sorted, and their dates.
+     */
+    private static final class Postings {
+
+        private long[] ids = new long[INITIAL_CAPACITY];
+
+        private long[] dates = new long[INITIAL_CAPACITY];
+
+        private int size;
+
+        /**
+         * @return false if the id is already there
+         */
+        boolean add(long id, long date) {
+            int position = size;
+            // The ids are mostly added in order
+            if (size > 0 && ids[size - 1] >= id) {
+                position = Arrays.binarySearch(ids, 0, size, id);
+                if (position >= 0) {
+                    return false;
+                }
+                position = -position - 1;
+            }
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                dates = Arrays.copyOf(dates, size * 2);
+            }
+            System.arraycopy(ids, position, ids, position + 1, size - position);
+            System.arraycopy(dates, position, dates, position + 1, size - position);
+            ids[position] = id;
+            dates[position] = date;
+            size++;
+            return true;
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            writeVarLong(out, size);
+            long previousId = 0;
+            long previousDate = 0;
+            for (int i = 0; i < size; i++) {
+                writeVarLong(out, ids[i] - previousId);
+                // The dates are not sorted, so their deltas are zigzag encoded
+                long delta = dates[i] - previousDate;
+                writeVarLong(out, (delta << 1) ^ (delta >> 63));
+                previousId = ids[i];
+                previousDate = dates[i];
+            }
+        }
+
+        static Postings read(DataInputStream in) throws IOException {
+            Postings postings = new Postings();
+            int size = (int) readVarLong(in);
+            postings.ids = new long[Math.max(INITIAL_CAPACITY, size)];
+            postings.dates = new long[Math.max(INITIAL_CAPACITY, size)];
+            long id = 0;
+            long date = 0;
+            for (int i = 0; i < size; i++) {
+                id += readVarLong(in);
+                long zigzag = readVarLong(in);
+                date += (zigzag >>> 1) ^ -(zigzag & 1);
+                postings.ids[i] = id;
+                postings.dates[i] = date;
+            }
+            postings.size = size;
+            return postings;
+        }
+
+        private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+            while ((value & ~0x7FL) != 0) {
+                out.writeByte((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            out.writeByte((int) value);
+        }
+
+        private static long readVarLong(DataInputStream in) throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = in.readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Invalid variable-length integer");
+        }
+    }
+}
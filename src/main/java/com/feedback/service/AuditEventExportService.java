@@ -0,0 +1,173 @@
+package com.feedback.service;
+
+import com.feedback.config.ApplicationProperties;
+import com.feedback.config.audit.AuditEventConverter;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Service for exporting the audit events of a date range, whatever its size.
+ * <p>
+ * The events and their data are read in one pass, by a single query joining jhi_persistent_audit_evt_data, whose
+ * rows are fetched application.audit.export.fetch-size at a time. Each event is written as soon as its rows are read,
+ * so the memory used does not depend on the range.
+ */
+@Service
+public class AuditEventExportService {
+
+    public enum Format {
+        NDJSON, CSV
+    }
+
+    private static final String EXPORT_QUERY = AuditEventRowHandler.SELECT +
+        "where e.event_date >= ? and e.event_date < ? order by e.event_date, e.event_id";
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public AuditEventExportService(DataSource dataSource, ApplicationProperties applicationProperties) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(applicationProperties.getAudit().getExport().getFetchSize());
+    }
+
+    /**
+     * Write the events of a date range, from the oldest. The read-only transaction lets the JDBC driver use a cursor,
+     * and routes the query to a replica if there is one.
+     *
+     * @param fromDate the start of the date range
+     * @param toDate the end (excluded) of the date range
+     * @param format the format of the export
+     * @param out the stream to write to, which is not closed
+     * @return the number of events written
+     * @throws IOException if the stream cannot be written to
+     */
+    @Transactional(readOnly = true)
+    public long export(Instant fromDate, Instant toDate, Format format, OutputStream out) throws IOException {
+        EventWriter writer = format == Format.CSV ? new CsvEventWriter(out) : new NdjsonEventWriter(out);
+        AuditEventRowHandler handler = new AuditEventRowHandler(event -> {
+            try {
+                writer.write(event.getId(), event.getAuditEventDate(), event.getPrincipal(),
+                    event.getAuditEventType(), event.getData());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        try {
+            jdbcTemplate.query(EXPORT_QUERY, handler, Timestamp.from(fromDate), Timestamp.from(toDate));
+            handler.finish();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.flush();
+        return handler.getCount();
+    }
+
+    private interface EventWriter {
+
+        void write(long id, Instant date, String principal, String type, Map<String, String> data) throws IOException;
+
+        void flush() throws IOException;
+    }
+
+    /**
+     * Writes a JSON object per line, with the fields of an AuditEvent and its id.
+     */
+    private static class NdjsonEventWriter implements EventWriter {
+
+        private final JsonGenerator generator;
+
+        NdjsonEventWriter(OutputStream out) throws IOException {
+            generator = JSON_FACTORY.createGenerator(out, JsonEncoding.UTF8);
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        }
+
+        @Override
+        public void write(long id, Instant date, String principal, String type, Map<String, String> data)
+            throws IOException {
+
+            generator.writeStartObject();
+            generator.writeNumberField("id", id);
+            generator.writeStringField("timestamp", date != null ? date.toString() : null);
+            generator.writeStringField("principal", principal);
+            generator.writeStringField("type", type);
+            generator.writeObjectFieldStart("data");
+            for (Map.Entry<String, String> entry : data.entrySet()) {
+                generator.writeStringField(entry.getKey(), entry.getValue());
+            }
+            generator.writeEndObject();
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+
+        @Override
+        public void flush() throws IOException {
+            generator.flush();
+        }
+    }
+
+    /**
+     * Writes RFC 4180 CSV, with the data as a JSON object in the last column.
+     */
+    private static class CsvEventWriter implements EventWriter {
+
+        private final Writer writer;
+
+        CsvEventWriter(OutputStream out) throws IOException {
+            writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            writer.write("id,timestamp,principal,type,data\r\n");
+        }
+
+        @Override
+        public void write(long id, Instant date, String principal, String type, Map<String, String> data)
+            throws IOException {
+
+            writer.write(Long.toString(id));
+            writer.write(',');
+            writeField(date != null ? date.toString() : null);
+            writer.write(',');
+            writeField(principal);
+            writer.write(',');
+            writeField(type);
+            writer.write(',');
+            writeField(AuditEventConverter.encodeData(data));
+            writer.write("\r\n");
+        }
+
+        private void writeField(String value) throws IOException {
+            if (value == null) {
+                return;
+            }
+            if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 &&
+                value.indexOf('\r') < 0) {
+                writer.write(value);
+                return;
+            }
+            writer.write('"');
+            writer.write(value.replace("\"", "\"\""));
+            writer.write('"');
+        }
+
+        @Override
+        public void flush() throws IOException {
+            writer.flush();
+        }
+    }
+}
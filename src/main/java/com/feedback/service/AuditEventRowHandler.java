@@ -0,0 +1,75 @@
+package com.feedback.service;
+
+import com.feedback.config.audit.AuditEventConverter;
+import com.feedback.domain.PersistentAuditEvent;
+
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.function.Consumer;
+
+/**
+ * Reads the events of a query joining jhi_persistent_audit_evt_data, whose rows of each event are consecutive, and
+ * gives each event to a consumer with its data in getData().
+ */
+class AuditEventRowHandler implements RowCallbackHandler {
+
+    /**
+     * The columns read by the handler, to be followed by the where and order by clauses of the query.
+     */
+    static final String SELECT = "select e.event_id, e.event_date, e.principal, e.event_type, e.encoded_data, " +
+        "d.name, d.value from jhi_persistent_audit_event e " +
+        "left join jhi_persistent_audit_evt_data d on d.event_id = e.event_id ";
+
+    private final Consumer<PersistentAuditEvent> consumer;
+
+    private PersistentAuditEvent event;
+
+    private long count;
+
+    AuditEventRowHandler(Consumer<PersistentAuditEvent> consumer) {
+        this.consumer = consumer;
+    }
+
+    @Override
+    public void processRow(ResultSet resultSet) throws SQLException {
+        long id = resultSet.getLong(1);
+        if (event == null || event.getId() != id) {
+            finish();
+            event = new PersistentAuditEvent();
+            event.setId(id);
+            Timestamp timestamp = resultSet.getTimestamp(2);
+            event.setAuditEventDate(timestamp != null ? timestamp.toInstant() : null);
+            event.setPrincipal(resultSet.getString(3));
+            event.setAuditEventType(resultSet.getString(4));
+            String encodedData = resultSet.getString(5);
+            if (encodedData != null) {
+                event.getData().putAll(AuditEventConverter.decodeData(encodedData));
+            }
+        }
+        String name = resultSet.getString(6);
+        if (name != null) {
+            event.getData().put(name, resultSet.getString(7));
+        }
+    }
+
+    /**
+     * Give the last event to the consumer, once the query is over.
+     */
+    void finish() {
+        if (event != null) {
+            consumer.accept(event);
+            count++;
+            event = null;
+        }
+    }
+
+    /**
+     * @return the number of events given to the consumer
+     */
+    long getCount() {
+        return count;
+    }
+}
@@ -0,0 +1,273 @@
+package com.feedback.service;
+
+import com.feedback.config.ApplicationProperties;
+import com.feedback.config.audit.AuditEventBroadcaster;
+import com.feedback.config.audit.AuditEventConverter;
+import com.feedback.domain.PersistentAuditEvent;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Service searching the audit events by their data, with an in-memory AuditEventDataIndex of the names listed in
+ * application.audit.index.names, or of all the names if none is listed.
+ * <p>
+ * The index gets the events written by this node from the AuditEventBroadcaster, and is written to its file every
+ * persist-interval-ms. The events written by the other nodes, and those committed after events with greater ids, are
+ * indexed by a rescan every rescan-interval-ms of the events with a greater id than the last indexed, or dated
+ * within rescan-overlap-ms; indexing an event again has no effect. At startup, the file is read and the events
+ * written since are indexed the same way, from rescan-overlap-ms before the last date indexed. An event written
+ * later than rescan-overlap-ms after its date, such as a spilled one, is only found once the index is rebuilt.
+ * <p>
+ * The index is rebuilt from the database every night, to forget the events deleted by the retention and the archive;
+ * until then, their ids are still found, and skipped when the events are read.
+ */
+@Service
+public class AuditEventSearchService {
+
+    private static final String INDEX_QUERY = AuditEventRowHandler.SELECT +
+        "where e.event_id > ? or e.event_date >= ? order by e.event_id";
+
+    /**
+     * The date from which a scan of the whole table reads no event by date.
+     */
+    private static final Instant NO_DATE = Instant.parse("9999-12-31T00:00:00Z");
+
+    private static final String MAPPED_FILE_BACKEND = "mapped-file";
+
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    private final Logger log = LoggerFactory.getLogger(AuditEventSearchService.class);
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final AuditEventBroadcaster auditEventBroadcaster;
+
+    private final AuditEventConverter auditEventConverter;
+
+    private final ApplicationProperties.Audit.Index properties;
+
+    private final boolean databaseBackend;
+
+    private final Path file;
+
+    private volatile AuditEventDataIndex index = new AuditEventDataIndex();
+
+    /**
+     * The index being rebuilt, which gets the written events too.
+     */
+    private volatile AuditEventDataIndex rebuilt;
+
+    /**
+     * Guards the swap of the rebuilt index against the events being indexed.
+     */
+    private final Object swap = new Object();
+
+    private volatile boolean dirty;
+
+    public AuditEventSearchService(DataSource dataSource, PlatformTransactionManager transactionManager,
+        AuditEventBroadcaster auditEventBroadcaster, AuditEventConverter auditEventConverter,
+        ApplicationProperties applicationProperties) {
+
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(applicationProperties.getAudit().getExport().getFetchSize());
+        // Not read-only, so the events are read from the primary database, without the lag of a replica
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.auditEventBroadcaster = auditEventBroadcaster;
+        this.auditEventConverter = auditEventConverter;
+        this.properties = applicationProperties.getAudit().getIndex();
+        this.databaseBackend = !MAPPED_FILE_BACKEND.equals(applicationProperties.getAudit().getBackend());
+        this.file = Paths.get(properties.getFile());
+    }
+
+    /**
+     * Read the index file, and index the events written since.
+     */
+    @PostConstruct
+    public void open() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        if (Files.exists(file)) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+                index = AuditEventDataIndex.read(in);
+            } catch (IOException e) {
+                log.warn("Could not read the audit event data index {}, it is rebuilt: {}", file, e.toString());
+                index = new AuditEventDataIndex();
+            }
+        }
+        auditEventBroadcaster.addListener(this::index);
+        if (databaseBackend) {
+            Instant lastDate = index.getLastDate();
+            long indexed = scan(index, index.getLastId(),
+                lastDate != null ? lastDate.minusMillis(properties.getRescanOverlapMs()) : NO_DATE);
+            dirty = indexed > 0;
+            log.info("Indexed the data of {} audit events, {} since the last start", index.size(), indexed);
+        }
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * @return true if the data of this name is indexed
+     */
+    public boolean isIndexed(String name) {
+        return properties.getNames().isEmpty() || properties.getNames().contains(name);
+    }
+
+    /**
+     * Get a page of the ids of the events with a data, from the newest.
+     *
+     * @param name the name of the data
+     * @param value the value of the data
+     * @param fromDate the start of the date range, or null
+     * @param toDate the end (included) of the date range, or null
+     * @param pageable the pagination information
+     * @return the ids of the events
+     */
+    public Page<Long> findIds(String name, String value, Instant fromDate, Instant toDate, Pageable pageable) {
+        AuditEventDataIndex.Result result = index.find(name, value, fromDate, toDate, pageable.getOffset(),
+            pageable.getPageSize());
+        List<Long> ids = new ArrayList<>(result.getIds().length);
+        for (long id : result.getIds()) {
+            ids.add(id);
+        }
+        return new PageImpl<>(ids, pageable, result.getTotal());
+    }
+
+    /**
+     * This is scheduled to get fired every minute, by default.
+     */
+    @Scheduled(fixedDelayString = "${application.audit.index.persist-interval-ms:60000}")
+    public synchronized void persist() throws IOException {
+        if (!properties.isEnabled() || !dirty) {
+            return;
+        }
+        dirty = false;
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Path temporary = file.resolveSibling(file.getFileName() + TEMPORARY_SUFFIX);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            index.write(out);
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Index the events written since the last scan by the other nodes, or committed late. This is scheduled to get
+     * fired every minute, by default.
+     */
+    @Scheduled(fixedDelayString = "${application.audit.index.rescan-interval-ms:60000}")
+    public synchronized void rescan() {
+        if (!properties.isEnabled() || !databaseBackend) {
+            return;
+        }
+        int size = index.size();
+        scan(index, index.getLastId(), Instant.now().minusMillis(properties.getRescanOverlapMs()));
+        if (index.size() != size) {
+            dirty = true;
+            log.debug("Indexed {} audit event data by the rescan", index.size() - size);
+        }
+    }
+
+    /**
+     * This is scheduled to get fired everyday, at 03:30 (am), by default, after the retention and the archive.
+     */
+    @Scheduled(cron = "${application.audit.index.rebuild-cron:0 30 3 * * ?}")
+    public void rebuildIndex() throws IOException {
+        if (properties.isEnabled() && databaseBackend) {
+            rebuild();
+            persist();
+        }
+    }
+
+    /**
+     * Index again all the events of the database.
+     */
+    public synchronized void rebuild() {
+        AuditEventDataIndex rebuilding = new AuditEventDataIndex();
+        rebuilt = rebuilding;
+        try {
+            scan(rebuilding, 0, NO_DATE);
+            synchronized (swap) {
+                index = rebuilding;
+            }
+            dirty = true;
+        } finally {
+            rebuilt = null;
+        }
+        log.debug("Rebuilt the audit event data index, with {} entries", rebuilding.size());
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        persist();
+    }
+
+    /**
+     * @param afterId the id after which the events are read
+     * @param sinceDate the date from which the events are read too
+     * @return the number of events read
+     */
+    private long scan(AuditEventDataIndex target, long afterId, Instant sinceDate) {
+        AuditEventRowHandler handler = new AuditEventRowHandler(event -> add(target, event, event.getData()));
+        transactionTemplate.execute(status -> {
+            jdbcTemplate.query(INDEX_QUERY, handler, afterId, Timestamp.from(sinceDate));
+            handler.finish();
+            return null;
+        });
+        return handler.getCount();
+    }
+
+    private void index(PersistentAuditEvent event) {
+        Map<String, String> data = auditEventConverter.getData(event);
+        synchronized (swap) {
+            add(index, event, data);
+            AuditEventDataIndex rebuilding = rebuilt;
+            if (rebuilding != null && rebuilding != index) {
+                add(rebuilding, event, data);
+            }
+        }
+        dirty = true;
+    }
+
+    private void add(AuditEventDataIndex target, PersistentAuditEvent event, Map<String, String> data) {
+        if (event.getAuditEventDate() == null) {
+            return;
+        }
+        for (Map.Entry<String, String> entry : data.entrySet()) {
+            if (entry.getValue() != null && isIndexed(entry.getKey())) {
+                target.add(event.getId(), event.getAuditEventDate(), entry.getKey(), entry.getValue());
+            }
+        }
+    }
+}
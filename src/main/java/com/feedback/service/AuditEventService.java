@@ -1,49 +1,289 @@
 package com.feedback.service;
 
 import com.feedback.config.audit.AuditEventConverter;
+import com.feedback.domain.PersistentAuditEvent;
+import com.feedback.repository.AuditEventArchive;
+import com.feedback.repository.MappedFileAuditEventRepository;
 import com.feedback.repository.PersistenceAuditEventRepository;
+import com.feedback.service.dto.AuditEventCursor;
+import com.feedback.service.dto.AuditEventCursorPage;
 import org.springframework.boot.actuate.audit.AuditEvent;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 /**
  * Service for managing audit events.
  * <p>
- * This is the default implementation to support SpringBoot Actuator AuditEventRepository
+ * This is the default implementation to support SpringBoot Actuator AuditEventRepository. The events are read from
+ * the MappedFileAuditEventRepository when it is the audit backend. The date range reads of the database backend
+ * go on in the AuditEventArchive, for the events archived by the AuditArchiveService.
  */
 @Service
 @Transactional
 public class AuditEventService {
 
+    /**
+     * Bounds of the cursor reads without a date range.
+     */
+    private static final Instant MIN_DATE = Instant.EPOCH;
+
+    private static final Instant MAX_DATE = Instant.parse("9999-12-31T00:00:00Z");
+
+    /**
+     * The only order of the events of a date range partly archived, as the archive is only read from the newest.
+     */
+    private static final Sort NEWEST_FIRST = new Sort(Sort.Direction.DESC, "auditEventDate", "id");
+
     private final PersistenceAuditEventRepository persistenceAuditEventRepository;
 
     private final AuditEventConverter auditEventConverter;
 
+    private final MappedFileAuditEventRepository mappedFileAuditEventRepository;
+
+    private final AuditEventArchive auditEventArchive;
+
+    private final AuditEventSearchService auditEventSearchService;
+
     public AuditEventService(
         PersistenceAuditEventRepository persistenceAuditEventRepository,
-        AuditEventConverter auditEventConverter) {
+        AuditEventConverter auditEventConverter,
+        Optional<MappedFileAuditEventRepository> mappedFileAuditEventRepository,
+        AuditEventArchive auditEventArchive,
+        AuditEventSearchService auditEventSearchService) {
 
         this.persistenceAuditEventRepository = persistenceAuditEventRepository;
         this.auditEventConverter = auditEventConverter;
+        this.mappedFileAuditEventRepository = mappedFileAuditEventRepository.orElse(null);
+        this.auditEventArchive = auditEventArchive;
+        this.auditEventSearchService = auditEventSearchService;
     }
 
+    @Transactional(readOnly = true)
     public Page<AuditEvent> findAll(Pageable pageable) {
-        return persistenceAuditEventRepository.findAll(pageable)
-            .map(auditEventConverter::convertToAuditEvent);
+        if (mappedFileAuditEventRepository != null) {
+            return convertToAuditEvents(
+                mappedFileAuditEventRepository.findAllByAuditEventDateBetween(null, null, pageable));
+        }
+        return convertToAuditEvents(persistenceAuditEventRepository.findAll(pageable));
     }
 
+    /**
+     * Get a page of the events of a date range.
+     *
+     * @param fromDate the start of the date range
+     * @param toDate the end of the date range
+     * @param pageable the pagination information; when some events of the range are archived, unsorted or sorted by
+     * auditEventDate DESC (then id DESC)
+     * @return the events
+     * @throws IllegalArgumentException if the page is sorted otherwise, see
+     * {@link #canSortByDates(Instant, Instant, Sort)}
+     */
+    @Transactional(readOnly = true)
     public Page<AuditEvent> findByDates(Instant fromDate, Instant toDate, Pageable pageable) {
-        return persistenceAuditEventRepository.findAllByAuditEventDateBetween(fromDate, toDate, pageable)
-            .map(auditEventConverter::convertToAuditEvent);
+        if (mappedFileAuditEventRepository != null) {
+            return convertToAuditEvents(
+                mappedFileAuditEventRepository.findAllByAuditEventDateBetween(fromDate, toDate, pageable));
+        }
+        if (auditEventArchive.overlaps(fromDate, toDate)) {
+            if (!isNewestFirst(pageable.getSort())) {
+                throw new IllegalArgumentException("The archived events are only sorted from the newest, not by " +
+                    pageable.getSort());
+            }
+            return findByDatesWithArchive(fromDate, toDate,
+                new PageRequest(pageable.getPageNumber(), pageable.getPageSize(), NEWEST_FIRST));
+        }
+        return convertToAuditEvents(
+            persistenceAuditEventRepository.findAllByAuditEventDateBetween(fromDate, toDate, pageable));
+    }
+
+    /**
+     * @return false if some events of the date range are archived, and the sort is not unset or by auditEventDate
+     * DESC optionally followed by id DESC, as the archive is only read from the newest
+     */
+    public boolean canSortByDates(Instant fromDate, Instant toDate, Sort sort) {
+        return mappedFileAuditEventRepository != null || !auditEventArchive.overlaps(fromDate, toDate) ||
+            isNewestFirst(sort);
+    }
+
+    private static boolean isNewestFirst(Sort sort) {
+        if (sort == null) {
+            return true;
+        }
+        List<Sort.Order> orders = new ArrayList<>();
+        sort.forEach(orders::add);
+        List<Sort.Order> newestFirst = new ArrayList<>();
+        NEWEST_FIRST.forEach(newestFirst::add);
+        return !orders.isEmpty() && orders.size() <= newestFirst.size() &&
+            orders.equals(newestFirst.subList(0, orders.size()));
+    }
+
+    /**
+     * Get a page of the events of a date range partly archived: the events of the database, then the archived ones,
+     * which are older, both from the newest. Only the archive segments overlapping the range are decompressed.
+     */
+    private Page<AuditEvent> findByDatesWithArchive(Instant fromDate, Instant toDate, Pageable newestFirst) {
+        Page<PersistentAuditEvent> page = persistenceAuditEventRepository.findAllByAuditEventDateBetween(fromDate,
+            toDate, newestFirst);
+        List<AuditEvent> content = new ArrayList<>(convertToAuditEvents(page.getContent()));
+        try {
+            if (content.size() < newestFirst.getPageSize()) {
+                long archiveOffset = Math.max(0, newestFirst.getOffset() - page.getTotalElements());
+                for (PersistentAuditEvent event : auditEventArchive.findBetween(fromDate, toDate, archiveOffset,
+                    newestFirst.getPageSize() - content.size())) {
+
+                    content.add(auditEventConverter.convertToAuditEvent(event, event.getData()));
+                }
+            }
+            return new PageImpl<>(content, newestFirst,
+                page.getTotalElements() + auditEventArchive.countBetween(fromDate, toDate));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
+    /**
+     * Get a page of the events with a data, from the newest, with the ids found by the AuditEventSearchService. The
+     * events deleted since they were indexed are skipped.
+     *
+     * @param name the name of the data
+     * @param value the value of the data
+     * @param fromDate the start of the date range, or null
+     * @param toDate the end (included) of the date range, or null
+     * @param pageable the pagination information
+     * @return the events
+     */
+    @Transactional(readOnly = true)
+    public Page<AuditEvent> search(String name, String value, Instant fromDate, Instant toDate, Pageable pageable) {
+        Page<Long> ids = auditEventSearchService.findIds(name, value, fromDate, toDate, pageable);
+        List<PersistentAuditEvent> events = new ArrayList<>(ids.getNumberOfElements());
+        if (mappedFileAuditEventRepository != null) {
+            for (Long id : ids) {
+                mappedFileAuditEventRepository.findOne(id).ifPresent(events::add);
+            }
+        } else if (ids.hasContent()) {
+            Map<Long, PersistentAuditEvent> found = persistenceAuditEventRepository.findAll(ids.getContent()).stream()
+                .collect(Collectors.toMap(PersistentAuditEvent::getId, event -> event));
+            for (Long id : ids) {
+                if (found.containsKey(id)) {
+                    events.add(found.get(id));
+                }
+            }
+        }
+        return new PageImpl<>(convertToAuditEvents(events), pageable, ids.getTotalElements());
+    }
+
+    @Transactional(readOnly = true)
     public Optional<AuditEvent> find(Long id) {
+        if (mappedFileAuditEventRepository != null) {
+            return mappedFileAuditEventRepository.findOne(id)
+                .map(event -> auditEventConverter.convertToAuditEvent(event, event.getData()));
+        }
         return Optional.ofNullable(persistenceAuditEventRepository.findOne(id)).map
             (auditEventConverter::convertToAuditEvent);
     }
+
+    /**
+     * Get a page of events from a cursor, in constant time whatever the position of the page: the events are read
+     * from the (event_date, event_id) index, without an offset or a count. The events of the
+     * MappedFileAuditEventRepository are ordered by id only.
+     *
+     * @param fromDate the start of the date range, or null
+     * @param toDate the end (excluded) of the date range, or null
+     * @param cursor the position of the page, or null for the newest events
+     * @param size the number of events of the page
+     * @return the events, from the newest, with the cursors of the pages around them
+     */
+    @Transactional(readOnly = true)
+    public AuditEventCursorPage findByCursor(Instant fromDate, Instant toDate, AuditEventCursor cursor, int size) {
+        Instant from = fromDate != null ? fromDate : MIN_DATE;
+        Instant to = toDate != null ? toDate : MAX_DATE;
+        Pageable limit = new PageRequest(0, size + 1);
+        List<PersistentAuditEvent> events;
+        if (mappedFileAuditEventRepository != null) {
+            events = cursor == null || !cursor.isBefore() ?
+                mappedFileAuditEventRepository.findOlderThan(from, to, cursor != null ? cursor.getId() : Long.MAX_VALUE,
+                    size + 1) :
+                mappedFileAuditEventRepository.findNewerThan(from, to, cursor.getId(), size + 1);
+        } else if (cursor == null) {
+            events = persistenceAuditEventRepository.findOlderThan(from, to, to, Long.MAX_VALUE, limit);
+        } else if (cursor.isBefore()) {
+            events = persistenceAuditEventRepository.findNewerThan(from, to, cursor.getDate(), cursor.getId(), limit);
+        } else {
+            events = persistenceAuditEventRepository.findOlderThan(from, to, cursor.getDate(), cursor.getId(), limit);
+        }
+        boolean more = events.size() > size;
+        boolean backward = cursor != null && cursor.isBefore();
+        // The event of the cursor is on the side the page comes from
+        boolean older = backward || more;
+        boolean newer = backward ? more : cursor != null;
+        events = new ArrayList<>(events.subList(0, Math.min(size, events.size())));
+        if (backward) {
+            Collections.reverse(events);
+        }
+        if (events.isEmpty()) {
+            return new AuditEventCursorPage(Collections.emptyList(), null, null);
+        }
+        return new AuditEventCursorPage(convertToAuditEvents(events),
+            older ? AuditEventCursor.after(events.get(events.size() - 1)) : null,
+            newer ? AuditEventCursor.before(events.get(0)) : null);
+    }
+
+    /**
+     * Convert a page of events, reading the data stored in jhi_persistent_audit_evt_data with one query for the whole
+     * page, instead of loading the data collection of each event.
+     */
+    private Page<AuditEvent> convertToAuditEvents(Page<PersistentAuditEvent> page) {
+        Map<Long, Map<String, String>> data = readCollectionData(page.getContent());
+        return page.map(event -> convertToAuditEvent(event, data));
+    }
+
+    private List<AuditEvent> convertToAuditEvents(List<PersistentAuditEvent> events) {
+        Map<Long, Map<String, String>> data = readCollectionData(events);
+        return events.stream()
+            .map(event -> convertToAuditEvent(event, data))
+            .collect(Collectors.toList());
+    }
+
+    private Map<Long, Map<String, String>> readCollectionData(List<PersistentAuditEvent> events) {
+        if (mappedFileAuditEventRepository != null) {
+            return Collections.emptyMap();
+        }
+        List<Long> ids = events.stream()
+            .filter(event -> event.getEncodedData() == null)
+            .map(PersistentAuditEvent::getId)
+            .collect(Collectors.toList());
+        Map<Long, Map<String, String>> data = new HashMap<>();
+        if (!ids.isEmpty()) {
+            for (Object[] row : persistenceAuditEventRepository.findDataByIdIn(ids)) {
+                data.computeIfAbsent((Long) row[0], id -> new HashMap<>()).put((String) row[1], (String) row[2]);
+            }
+        }
+        return data;
+    }
+
+    private AuditEvent convertToAuditEvent(PersistentAuditEvent event, Map<Long, Map<String, String>> collectionData) {
+        if (mappedFileAuditEventRepository != null) {
+            // The events of the files are read with their data
+            return auditEventConverter.convertToAuditEvent(event, event.getData());
+        }
+        return auditEventConverter.convertToAuditEvent(event, event.getEncodedData() != null ?
+            AuditEventConverter.decodeData(event.getEncodedData()) :
+            collectionData.getOrDefault(event.getId(), Collections.emptyMap()));
+    }
 }
@@ -0,0 +1,283 @@
+package com.feedback.service;
+
+import com.feedback.config.ApplicationProperties;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Service deleting the audit events older than their retention period, which is set by event type.
+ * <p>
+ * Events are deleted by chunks of chunk-size ids, each in its own transaction, with a pause of pause-ms between
+ * chunks, so the purge never holds locks for long nor saturates the database.
+ * <p>
+ * When jhi_persistent_audit_event is partitioned by month (see the audit-partitioning Liquibase context), the
+ * partitions of the coming months are created, and the months whose events have all expired are dropped whole, once
+ * the data of their events has been deleted by chunks.
+ */
+@Service
+public class AuditRetentionService {
+
+    static final int PARTITION_MONTHS_AHEAD = 2;
+
+    private static final String PARTITION_PREFIX = "jhi_persistent_audit_event_y";
+
+    private static final DateTimeFormatter PARTITION_MONTH = DateTimeFormatter.ofPattern("yyyy'm'MM");
+
+    private final Logger log = LoggerFactory.getLogger(AuditRetentionService.class);
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final ApplicationProperties.Audit.Retention properties;
+
+    private final ApplicationProperties.Audit.Archive archiveProperties;
+
+    public AuditRetentionService(DataSource dataSource, PlatformTransactionManager transactionManager,
+        ApplicationProperties applicationProperties) {
+
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.properties = applicationProperties.getAudit().getRetention();
+        this.archiveProperties = applicationProperties.getAudit().getArchive();
+    }
+
+    /**
+     * Check that the events are archived before they are purged, when the archive is enabled.
+     *
+     * @throws IllegalStateException if a retention period is not longer than the archive after-days
+     */
+    @PostConstruct
+    public void validate() {
+        if (!archiveProperties.isEnabled()) {
+            return;
+        }
+        Map<String, Integer> retentions = new LinkedHashMap<>(properties.getTypeDays());
+        retentions.put("default-days", properties.getDefaultDays());
+        for (Map.Entry<String, Integer> retention : retentions.entrySet()) {
+            if (retention.getValue() > 0 && retention.getValue() <= archiveProperties.getAfterDays()) {
+                throw new IllegalStateException("The audit retention of " + retention.getKey() + " (" +
+                    retention.getValue() + " days) must be longer than the archive after-days (" +
+                    archiveProperties.getAfterDays() + " days), or the events are purged before being archived");
+            }
+        }
+    }
+
+    /**
+     * This is scheduled to get fired everyday, at 01:45 (am), by default.
+     */
+    @Scheduled(cron = "${application.audit.retention.purge-cron:0 45 1 * * ?}")
+    public void removeExpiredEvents() {
+        Instant now = Instant.now();
+        if (isPartitioned()) {
+            createPartitions(now);
+            dropExpiredPartitions(now);
+        }
+        long removed = purge(now);
+        log.debug("Deleted {} expired audit events", removed);
+    }
+
+    /**
+     * Delete the events older than their retention period.
+     *
+     * @param now the current time
+     * @return the number of events deleted
+     */
+    public long purge(Instant now) {
+        List<Object> parameters = new ArrayList<>();
+        String expired = expiredCondition(now, parameters);
+        if (expired == null) {
+            return 0;
+        }
+        Map<String, Object> range = jdbcTemplate.queryForMap("select min(event_id) as first_id, " +
+            "max(event_id) as last_id from jhi_persistent_audit_event where " + expired, parameters.toArray());
+        if (range.get("first_id") == null) {
+            return 0;
+        }
+        long firstId = ((Number) range.get("first_id")).longValue();
+        long lastId = ((Number) range.get("last_id")).longValue();
+
+        long removed = 0;
+        for (long fromId = firstId; fromId <= lastId; fromId += properties.getChunkSize()) {
+            List<Object> chunkParameters = new ArrayList<>();
+            chunkParameters.add(fromId);
+            chunkParameters.add(fromId + properties.getChunkSize());
+            chunkParameters.addAll(parameters);
+            Object[] arguments = chunkParameters.toArray();
+            removed += transactionTemplate.execute(status -> {
+                jdbcTemplate.update("delete from jhi_persistent_audit_evt_data where event_id in " +
+                    "(select event_id from jhi_persistent_audit_event " +
+                    "where event_id >= ? and event_id < ? and (" + expired + "))", arguments);
+                return jdbcTemplate.update("delete from jhi_persistent_audit_event " +
+                    "where event_id >= ? and event_id < ? and (" + expired + ")", arguments);
+            });
+            if (fromId + properties.getChunkSize() <= lastId && !pause()) {
+                break;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * @param parameters the list the parameters of the condition are added to
+     * @return the condition on jhi_persistent_audit_event matching the expired events, or null if none expires. It
+     * bounds event_date by the latest expiry date first, so idx_persistent_audit_evt_date is used.
+     */
+    private String expiredCondition(Instant now, List<Object> parameters) {
+        List<String> conditions = new ArrayList<>();
+        List<Object> conditionParameters = new ArrayList<>();
+        Instant latestExpiry = Instant.MIN;
+        for (Map.Entry<String, Integer> typeDays : properties.getTypeDays().entrySet()) {
+            if (typeDays.getValue() > 0) {
+                Instant expiry = now.minus(typeDays.getValue(), ChronoUnit.DAYS);
+                conditions.add("(event_type = ? and event_date < ?)");
+                conditionParameters.add(typeDays.getKey());
+                conditionParameters.add(Timestamp.from(expiry));
+                latestExpiry = expiry.isAfter(latestExpiry) ? expiry : latestExpiry;
+            }
+        }
+        if (properties.getDefaultDays() > 0) {
+            Instant expiry = now.minus(properties.getDefaultDays(), ChronoUnit.DAYS);
+            StringBuilder condition = new StringBuilder("(");
+            if (!properties.getTypeDays().isEmpty()) {
+                condition.append("(event_type is null or event_type not in (")
+                    .append(String.join(", ", Collections.nCopies(properties.getTypeDays().size(), "?")))
+                    .append(")) and ");
+                conditionParameters.addAll(properties.getTypeDays().keySet());
+            }
+            condition.append("event_date < ?)");
+            conditionParameters.add(Timestamp.from(expiry));
+            conditions.add(condition.toString());
+            latestExpiry = expiry.isAfter(latestExpiry) ? expiry : latestExpiry;
+        }
+        if (conditions.isEmpty()) {
+            return null;
+        }
+        parameters.add(Timestamp.from(latestExpiry));
+        parameters.addAll(conditionParameters);
+        return "event_date < ? and (" + String.join(" or ", conditions) + ")";
+    }
+
+    /**
+     * @return false if the thread was interrupted
+     */
+    private boolean pause() {
+        if (properties.getPauseMs() <= 0) {
+            return true;
+        }
+        try {
+            Thread.sleep(properties.getPauseMs());
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private boolean isPartitioned() {
+        String database = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+            connection.getMetaData().getDatabaseProductName());
+        return "PostgreSQL".equals(database) && jdbcTemplate.queryForObject("select exists(select 1 " +
+            "from pg_partitioned_table where partrelid = to_regclass('jhi_persistent_audit_event'))", Boolean.class);
+    }
+
+    /**
+     * Create the partitions of the current and coming months, unless the default partition has events of their month.
+     */
+    private void createPartitions(Instant now) {
+        ZoneId zone = ZoneId.systemDefault();
+        YearMonth currentMonth = YearMonth.from(now.atZone(zone));
+        for (int i = 0; i <= PARTITION_MONTHS_AHEAD; i++) {
+            YearMonth month = currentMonth.plusMonths(i);
+            String partition = PARTITION_PREFIX + month.format(PARTITION_MONTH);
+            LocalDate start = month.atDay(1);
+            LocalDate end = month.plusMonths(1).atDay(1);
+            boolean exists = jdbcTemplate.queryForObject("select to_regclass(?) is not null", Boolean.class, partition);
+            if (exists || jdbcTemplate.queryForObject("select exists(select 1 from jhi_persistent_audit_event_default " +
+                "where event_date >= ? and event_date < ?)", Boolean.class,
+                Timestamp.valueOf(start.atStartOfDay()), Timestamp.valueOf(end.atStartOfDay()))) {
+                continue;
+            }
+            jdbcTemplate.execute("create table " + partition + " partition of jhi_persistent_audit_event " +
+                "for values from ('" + start + "') to ('" + end + "')");
+            log.info("Created the audit event partition {}", partition);
+        }
+    }
+
+    /**
+     * Drop the partitions of the months older than the longest retention period, if every event type has one.
+     */
+    private void dropExpiredPartitions(Instant now) {
+        if (properties.getDefaultDays() <= 0 ||
+            properties.getTypeDays().values().stream().anyMatch(days -> days <= 0)) {
+            return;
+        }
+        int longestDays = properties.getTypeDays().values().stream()
+            .reduce(properties.getDefaultDays(), Math::max);
+        LocalDate expiredBefore = now.minus(longestDays, ChronoUnit.DAYS).atZone(ZoneId.systemDefault()).toLocalDate();
+        List<String> partitions = jdbcTemplate.queryForList("select c.relname from pg_inherits i " +
+            "join pg_class c on c.oid = i.inhrelid where i.inhparent = to_regclass('jhi_persistent_audit_event') " +
+            "and c.relname like '" + PARTITION_PREFIX + "%'", String.class);
+        for (String partition : partitions) {
+            YearMonth month = YearMonth.parse(partition.substring(PARTITION_PREFIX.length()), PARTITION_MONTH);
+            if (month.plusMonths(1).atDay(1).isAfter(expiredBefore)) {
+                continue;
+            }
+            if (!deletePartitionData(partition)) {
+                return;
+            }
+            transactionTemplate.execute(status -> {
+                jdbcTemplate.execute("drop table " + partition);
+                return null;
+            });
+            log.info("Dropped the audit event partition {}", partition);
+        }
+    }
+
+    /**
+     * Delete the jhi_persistent_audit_evt_data rows of the events of a partition, by chunks like the purge.
+     *
+     * @return false if the thread was interrupted
+     */
+    private boolean deletePartitionData(String partition) {
+        Map<String, Object> range = jdbcTemplate.queryForMap("select min(event_id) as first_id, " +
+            "max(event_id) as last_id from " + partition);
+        if (range.get("first_id") == null) {
+            return true;
+        }
+        long firstId = ((Number) range.get("first_id")).longValue();
+        long lastId = ((Number) range.get("last_id")).longValue();
+        for (long fromId = firstId; fromId <= lastId; fromId += properties.getChunkSize()) {
+            Object[] arguments = {fromId, fromId + properties.getChunkSize(), fromId, fromId + properties.getChunkSize()};
+            transactionTemplate.execute(status -> jdbcTemplate.update("delete from jhi_persistent_audit_evt_data " +
+                "where event_id >= ? and event_id < ? and event_id in " +
+                "(select event_id from " + partition + " where event_id >= ? and event_id < ?)", arguments));
+            if (fromId + properties.getChunkSize() <= lastId && !pause()) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
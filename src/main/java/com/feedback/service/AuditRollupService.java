@@ -0,0 +1,266 @@
+package com.feedback.service;
+
+import com.feedback.config.ApplicationProperties;
+import com.feedback.config.audit.AuditEventCoalescer;
+import com.feedback.config.audit.AuditEventConverter;
+import com.feedback.service.dto.AuditStatsDTO;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Service maintaining the counts of audit events by hour and by day, event type and principal, in the
+ * jhi_audit_rollup_hourly and jhi_audit_rollup_daily tables, and reading them for charts.
+ * <p>
+ * A periodic compaction counts again the hours since its last run, plus grace-hours for the events written late,
+ * such as those queued by the AuditEventWriter; each hour is replaced as a whole, so counting it twice is harmless.
+ * The days of those hours are then summed from the hourly counts. The counts are at most interval-ms behind the
+ * events. Events dated before the grace period when they are written are not counted.
+ * <p>
+ * An event coalesced by the AuditEventCoalescer counts as the number of events in its "count" data, all in the hour
+ * of its date, which is the date of the first one.
+ * <p>
+ * On the first run, the hours are counted from the oldest event, max-hours-per-run at a time.
+ */
+@Service
+public class AuditRollupService {
+
+    public enum Granularity {
+        HOUR, DAY
+    }
+
+    public enum GroupBy {
+        TYPE, PRINCIPAL
+    }
+
+    static final int MAX_BUCKETS = 5000;
+
+    private final Logger log = LoggerFactory.getLogger(AuditRollupService.class);
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final ApplicationProperties.Audit.Rollup properties;
+
+    private Instant compactedUntil;
+
+    public AuditRollupService(DataSource dataSource, PlatformTransactionManager transactionManager,
+        ApplicationProperties applicationProperties) {
+
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(applicationProperties.getAudit().getExport().getFetchSize());
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.properties = applicationProperties.getAudit().getRollup();
+    }
+
+    @Scheduled(fixedDelayString = "${application.audit.rollup.interval-ms:300000}")
+    public void compact() {
+        if (properties.isEnabled()) {
+            compact(Instant.now());
+        }
+    }
+
+    /**
+     * Count the hours since the last run, and their days.
+     *
+     * @param now the current time
+     * @return the end of the hours counted
+     */
+    public synchronized Instant compact(Instant now) {
+        Instant currentHour = now.truncatedTo(ChronoUnit.HOURS);
+        if (compactedUntil == null) {
+            compactedUntil = findStart(currentHour);
+        }
+        Instant from = compactedUntil.minus(Math.min(properties.getGraceHours(), properties.getMaxHoursPerRun() - 1),
+            ChronoUnit.HOURS);
+        Instant end = from.plus(properties.getMaxHoursPerRun(), ChronoUnit.HOURS);
+        Instant to = end.isBefore(currentHour.plus(1, ChronoUnit.HOURS)) ? end : currentHour.plus(1, ChronoUnit.HOURS);
+        transactionTemplate.execute(status -> {
+            countHours(from, to);
+            countDays(from, to);
+            return null;
+        });
+        // The current hour is not over, so it is counted again by the next run
+        compactedUntil = to.isAfter(currentHour) ? currentHour : to;
+        log.debug("Counted the audit events from {} to {}", from, to);
+        return to;
+    }
+
+    /**
+     * @return the hour from which the first run counts the events
+     */
+    private Instant findStart(Instant currentHour) {
+        Timestamp lastHour = jdbcTemplate.queryForObject("select max(bucket) from jhi_audit_rollup_hourly",
+            Timestamp.class);
+        if (lastHour != null) {
+            return lastHour.toInstant();
+        }
+        Timestamp oldestEvent = jdbcTemplate.queryForObject("select min(event_date) from jhi_persistent_audit_event",
+            Timestamp.class);
+        return oldestEvent != null ? oldestEvent.toInstant().truncatedTo(ChronoUnit.HOURS) : currentHour;
+    }
+
+    private void countHours(Instant from, Instant to) {
+        Map<RollupKey, Long> counts = new HashMap<>();
+        jdbcTemplate.query("select e.event_date, e.event_type, e.principal, e.encoded_data, d.value " +
+            "from jhi_persistent_audit_event e left join jhi_persistent_audit_evt_data d " +
+            "on d.event_id = e.event_id and d.name = ? where e.event_date >= ? and e.event_date < ?", resultSet -> {
+            RollupKey key = new RollupKey(resultSet.getTimestamp(1).toInstant().truncatedTo(ChronoUnit.HOURS),
+                Objects.toString(resultSet.getString(2), ""), resultSet.getString(3));
+            counts.merge(key, eventCount(resultSet.getString(4), resultSet.getString(5)), Long::sum);
+        }, AuditEventCoalescer.COUNT, Timestamp.from(from), Timestamp.from(to));
+
+        jdbcTemplate.update("delete from jhi_audit_rollup_hourly where bucket >= ? and bucket < ?",
+            Timestamp.from(from), Timestamp.from(to));
+        List<Object[]> rows = new ArrayList<>(counts.size());
+        counts.forEach((key, count) -> rows.add(new Object[]{Timestamp.from(key.bucket), key.type, key.principal, count}));
+        jdbcTemplate.batchUpdate("insert into jhi_audit_rollup_hourly (bucket, event_type, principal, event_count) " +
+            "values (?, ?, ?, ?)", rows);
+    }
+
+    /**
+     * @param encodedData the data of the event in the encoded_data column, or null
+     * @param count the "count" data of the event in jhi_persistent_audit_evt_data, or null
+     * @return the number of events an event stands for: its "count" data if it was coalesced, else 1
+     */
+    private static long eventCount(String encodedData, String count) {
+        if (count == null && encodedData != null && encodedData.contains("\"" + AuditEventCoalescer.COUNT + "\"")) {
+            count = AuditEventConverter.decodeData(encodedData).get(AuditEventCoalescer.COUNT);
+        }
+        if (count == null) {
+            return 1;
+        }
+        try {
+            return Math.max(1, Long.parseLong(count));
+        } catch (NumberFormatException e) {
+            return 1;
+        }
+    }
+
+    private void countDays(Instant from, Instant to) {
+        ZoneId zone = ZoneId.systemDefault();
+        LocalDate firstDay = from.atZone(zone).toLocalDate();
+        LocalDate lastDay = to.minusNanos(1).atZone(zone).toLocalDate();
+        jdbcTemplate.update("delete from jhi_audit_rollup_daily where bucket >= ? and bucket < ?",
+            Timestamp.from(firstDay.atStartOfDay(zone).toInstant()),
+            Timestamp.from(lastDay.plusDays(1).atStartOfDay(zone).toInstant()));
+        for (LocalDate day = firstDay; !day.isAfter(lastDay); day = day.plusDays(1)) {
+            Instant dayStart = day.atStartOfDay(zone).toInstant();
+            jdbcTemplate.update("insert into jhi_audit_rollup_daily (bucket, event_type, principal, event_count) " +
+                "select ?, event_type, principal, sum(event_count) from jhi_audit_rollup_hourly " +
+                "where bucket >= ? and bucket < ? group by event_type, principal", Timestamp.from(dayStart),
+                Timestamp.from(dayStart), Timestamp.from(day.plusDays(1).atStartOfDay(zone).toInstant()));
+        }
+    }
+
+    /**
+     * Get the counts of the buckets of a period.
+     *
+     * @param granularity the size of the buckets
+     * @param from the start of the period, rounded down to a bucket
+     * @param to the end (excluded) of the period
+     * @param type the event type to count, or null for all of them
+     * @param principal the principal to count, or null for all of them
+     * @param groupBy the keys of the counts of each bucket
+     * @return the counts of every bucket of the period
+     * @throws IllegalArgumentException if the period has more than MAX_BUCKETS buckets
+     */
+    public AuditStatsDTO getStats(Granularity granularity, Instant from, Instant to, String type, String principal,
+        GroupBy groupBy) {
+
+        ZoneId zone = ZoneId.systemDefault();
+        Map<Instant, Map<String, Long>> buckets = new LinkedHashMap<>();
+        Instant start = granularity == Granularity.HOUR ? from.truncatedTo(ChronoUnit.HOURS) :
+            from.atZone(zone).toLocalDate().atStartOfDay(zone).toInstant();
+        for (Instant bucket = start; bucket.isBefore(to); bucket = next(bucket, granularity, zone)) {
+            if (buckets.size() == MAX_BUCKETS) {
+                throw new IllegalArgumentException("More than " + MAX_BUCKETS + " buckets between " + from + " and " + to);
+            }
+            buckets.put(bucket, new HashMap<>());
+        }
+
+        StringBuilder query = new StringBuilder("select bucket, event_type, principal, event_count from ")
+            .append(granularity == Granularity.HOUR ? "jhi_audit_rollup_hourly" : "jhi_audit_rollup_daily")
+            .append(" where bucket >= ? and bucket < ?");
+        List<Object> parameters = new ArrayList<>();
+        parameters.add(Timestamp.from(start));
+        parameters.add(Timestamp.from(to));
+        if (type != null) {
+            query.append(" and event_type = ?");
+            parameters.add(type);
+        }
+        if (principal != null) {
+            query.append(" and principal = ?");
+            parameters.add(principal);
+        }
+        jdbcTemplate.query(query.toString(), resultSet -> {
+            Map<String, Long> counts = buckets.get(resultSet.getTimestamp(1).toInstant());
+            if (counts != null) {
+                counts.merge(resultSet.getString(groupBy == GroupBy.TYPE ? 2 : 3), resultSet.getLong(4), Long::sum);
+            }
+        }, parameters.toArray());
+
+        List<AuditStatsDTO.Bucket> result = new ArrayList<>(buckets.size());
+        buckets.forEach((bucket, counts) -> result.add(new AuditStatsDTO.Bucket(bucket,
+            counts.values().stream().mapToLong(Long::longValue).sum(), counts)));
+        return new AuditStatsDTO(granularity.name().toLowerCase(), groupBy.name().toLowerCase(), result);
+    }
+
+    private static Instant next(Instant bucket, Granularity granularity, ZoneId zone) {
+        if (granularity == Granularity.HOUR) {
+            return bucket.plus(1, ChronoUnit.HOURS);
+        }
+        return bucket.atZone(zone).toLocalDate().plusDays(1).atStartOfDay(zone).toInstant();
+    }
+
+    private static final class RollupKey {
+
+        private final Instant bucket;
+
+        private final String type;
+
+        private final String principal;
+
+        RollupKey(Instant bucket, String type, String principal) {
+            this.bucket = bucket;
+            this.type = type;
+            this.principal = principal;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof RollupKey)) {
+                return false;
+            }
+            RollupKey key = (RollupKey) o;
+            return bucket.equals(key.bucket) && type.equals(key.type) && principal.equals(key.principal);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(bucket, type, principal);
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package com.feedback.service;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.feedback.config.ApplicationProperties;
+import com.feedback.service.dto.CacheStatsDTO;
+
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import org.ehcache.config.ResourceType;
+import org.ehcache.config.builders.ResourcePoolsBuilder;
+import org.ehcache.config.units.EntryUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalDouble;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resizes the heap tier of the cache regions, within the bounds of application.cache.autotune.
+ * <p>
+ * At each interval, the heap occupancy after the last GC decides of the direction: over shrink-above-heap-ratio,
+ * every region shrinks, before the GC has to work harder; under grow-below-heap-ratio, the regions which evicted
+ * entries grow, as long as the estimated size of the added entries fits in the headroom. A region whose last growth
+ * did not improve its hit ratio by min-marginal-hit-ratio stops growing for marginal-hit-ratio-periods intervals.
+ * <p>
+ * The size of an entry is estimated from its serialized size, see {@link CacheStatsService}; it is lower than the
+ * actual footprint on the heap, which the margin between the two ratios has to absorb.
+ */
+@Service
+public class CacheAutotuneService {
+
+    static final int GROW = 1;
+
+    static final int HOLD = 0;
+
+    static final int SHRINK = -1;
+
+    private final Logger log = LoggerFactory.getLogger(CacheAutotuneService.class);
+
+    private final CacheManager cacheManager;
+
+    private final CacheStatsService cacheStatsService;
+
+    private final ApplicationProperties.Cache.Autotune properties;
+
+    private final MetricRegistry metricRegistry;
+
+    private final Map<String, RegionState> states = new ConcurrentHashMap<>();
+
+    public CacheAutotuneService(Optional<CacheManager> cacheManager, CacheStatsService cacheStatsService,
+        ApplicationProperties applicationProperties, MetricRegistry metricRegistry) {
+
+        this.cacheManager = cacheManager.orElse(null);
+        this.cacheStatsService = cacheStatsService;
+        this.properties = applicationProperties.getCache().getAutotune();
+        this.metricRegistry = metricRegistry;
+    }
+
+    @Scheduled(fixedDelayString = "${application.cache.autotune.interval-ms:60000}")
+    public void tune() {
+        if (!properties.isEnabled() || cacheManager == null) {
+            return;
+        }
+        MemoryPoolMXBean tenuredPool = null;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            MemoryUsage usage = pool.getCollectionUsage();
+            if (pool.getType() == MemoryType.HEAP && usage != null && usage.getMax() > 0 &&
+                (tenuredPool == null || usage.getMax() > tenuredPool.getCollectionUsage().getMax())) {
+                tenuredPool = pool;
+            }
+        }
+        if (tenuredPool == null) {
+            log.debug("No heap occupancy after GC is available, cache regions are not resized");
+            return;
+        }
+        MemoryUsage usage = tenuredPool.getCollectionUsage();
+        tune((double) usage.getUsed() / usage.getMax(), usage.getMax());
+    }
+
+    /**
+     * Take a resizing decision for every region.
+     *
+     * @param heapRatio the heap occupancy after the last GC, between 0 and 1
+     * @param maxHeapBytes the size of the heap the ratio applies to
+     */
+    void tune(double heapRatio, long maxHeapBytes) {
+        long headroomBytes = (long) ((properties.getGrowBelowHeapRatio() - heapRatio) * maxHeapBytes);
+        for (String name : cacheManager.getCacheNames()) {
+            Cache<Object, Object> cache = cacheManager.getCache(name);
+            Optional<CacheStatsDTO> stats = cacheStatsService.getStats(name);
+            long maxEntries = getMaxEntries(cache);
+            if (!stats.isPresent() || maxEntries < 0) {
+                continue;
+            }
+            RegionState state = states.computeIfAbsent(name, this::createState);
+            headroomBytes -= tune(name, cache, stats.get(), state, maxEntries, heapRatio, headroomBytes);
+        }
+    }
+
+    /**
+     * @return the estimated number of bytes added to the heap
+     */
+    private long tune(String name, Cache<Object, Object> cache, CacheStatsDTO stats, RegionState state,
+        long maxEntries, double heapRatio, long headroomBytes) {
+
+        OptionalDouble hitRatio = state.update(stats);
+        if (state.grewLastPeriod && hitRatio.isPresent() && state.hitRatioBeforeGrowth.isPresent()) {
+            state.marginalHitRatio = OptionalDouble.of(hitRatio.getAsDouble() - state.hitRatioBeforeGrowth.getAsDouble());
+            state.marginalHitRatioAge = 0;
+        } else if (++state.marginalHitRatioAge > properties.getMarginalHitRatioPeriods()) {
+            state.marginalHitRatio = OptionalDouble.empty();
+        }
+        state.grewLastPeriod = false;
+        state.maxEntries = maxEntries;
+
+        long bytesPerEntry = stats.getSize() > 0 ? stats.getEstimatedMemoryBytes() / stats.getSize() : 0;
+        long step = Math.max(1, (long) Math.ceil(maxEntries * properties.getStepRatio()));
+        long target = Math.min(properties.getMaxEntries(), Math.max(properties.getMinEntries(), maxEntries));
+        int decision = HOLD;
+        if (heapRatio > properties.getShrinkAboveHeapRatio()) {
+            target = Math.min(maxEntries, Math.max(properties.getMinEntries(), maxEntries - step));
+            state.marginalHitRatio = OptionalDouble.empty();
+        } else if (heapRatio < properties.getGrowBelowHeapRatio() && state.evictions > 0 &&
+            (!state.marginalHitRatio.isPresent() ||
+                state.marginalHitRatio.getAsDouble() >= properties.getMinMarginalHitRatio())) {
+
+            long affordable = bytesPerEntry > 0 ? Math.max(0, headroomBytes) / bytesPerEntry : step;
+            target = Math.min(properties.getMaxEntries(), maxEntries + Math.min(step, affordable));
+        }
+        if (target > maxEntries) {
+            decision = GROW;
+            state.grewLastPeriod = true;
+            state.hitRatioBeforeGrowth = hitRatio;
+        } else if (target < maxEntries) {
+            decision = SHRINK;
+        }
+        state.decision = decision;
+        if (decision == HOLD) {
+            return 0;
+        }
+
+        setMaxEntries(cache, target);
+        state.maxEntries = target;
+        log.info("Cache region {} {} from {} to {} entries: heap after GC {}%, hit ratio {}, {} bytes per entry", name,
+            decision == GROW ? "grows" : "shrinks", maxEntries, target, Math.round(heapRatio * 100),
+            hitRatio.isPresent() ? String.format("%.3f", hitRatio.getAsDouble()) : "unknown", bytesPerEntry);
+        return (target - maxEntries) * bytesPerEntry;
+    }
+
+    private RegionState createState(String name) {
+        RegionState state = new RegionState();
+        metricRegistry.register(MetricRegistry.name(CacheAutotuneService.class, name, "max-entries"),
+            (Gauge<Long>) () -> state.maxEntries);
+        metricRegistry.register(MetricRegistry.name(CacheAutotuneService.class, name, "decision"),
+            (Gauge<Integer>) () -> state.decision);
+        return state;
+    }
+
+    /**
+     * @return the size of the heap tier of the region, or -1 if its provider cannot resize it
+     */
+    static long getMaxEntries(Cache<Object, Object> cache) {
+        if (cache.getCacheManager().getCachingProvider() instanceof CaffeineCachingProvider) {
+            return caffeineCache(cache).policy().eviction().map(eviction -> eviction.getMaximum()).orElse(-1L);
+        }
+        try {
+            return cache.unwrap(org.ehcache.Cache.class).getRuntimeConfiguration().getResourcePools()
+                .getPoolForResource(ResourceType.Core.HEAP).getSize();
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+
+    private static void setMaxEntries(Cache<Object, Object> cache, long maxEntries) {
+        if (cache.getCacheManager().getCachingProvider() instanceof CaffeineCachingProvider) {
+            caffeineCache(cache).policy().eviction().ifPresent(eviction -> eviction.setMaximum(maxEntries));
+        } else {
+            cache.unwrap(org.ehcache.Cache.class).getRuntimeConfiguration().updateResourcePools(
+                ResourcePoolsBuilder.newResourcePoolsBuilder().heap(maxEntries, EntryUnit.ENTRIES).build());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static com.github.benmanes.caffeine.cache.Cache<Object, Object> caffeineCache(Cache<Object, Object> cache) {
+        return cache.unwrap(com.github.benmanes.caffeine.cache.Cache.class);
+    }
+
+    private static class RegionState {
+
+        private long hits = -1;
+
+        private long misses;
+
+        private long evictions;
+
+        private long evictionsTotal;
+
+        private volatile long maxEntries;
+
+        private volatile int decision = HOLD;
+
+        private boolean grewLastPeriod;
+
+        private OptionalDouble hitRatioBeforeGrowth = OptionalDouble.empty();
+
+        private OptionalDouble marginalHitRatio = OptionalDouble.empty();
+
+        private int marginalHitRatioAge;
+
+        /**
+         * Account for the statistics of the last period.
+         *
+         * @return the hit ratio of the period, if there were requests
+         */
+        OptionalDouble update(CacheStatsDTO stats) {
+            boolean first = hits < 0 || stats.getHits() < hits || stats.getMisses() < misses;
+            long periodHits = stats.getHits() - hits;
+            long periodMisses = stats.getMisses() - misses;
+            evictions = first ? 0 : stats.getEvictions() - evictionsTotal;
+            hits = stats.getHits();
+            misses = stats.getMisses();
+            evictionsTotal = stats.getEvictions();
+            if (first || periodHits + periodMisses <= 0) {
+                return OptionalDouble.empty();
+            }
+            return OptionalDouble.of((double) periodHits / (periodHits + periodMisses));
+        }
+    }
+}
@@ -0,0 +1,346 @@
+package com.feedback.service;
+
+import com.feedback.service.dto.CacheStatsDTO;
+
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import org.ehcache.jsr107.EhcacheCachingProvider;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.persister.collection.CollectionPersister;
+import org.hibernate.persister.entity.EntityPersister;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.terracotta.context.ContextManager;
+import org.terracotta.context.TreeNode;
+import org.terracotta.context.query.Query;
+import org.terracotta.context.query.QueryBuilder;
+import org.terracotta.statistics.ValueStatistic;
+
+import javax.annotation.PostConstruct;
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import javax.cache.configuration.Configuration;
+import javax.cache.configuration.FactoryBuilder;
+import javax.cache.configuration.MutableCacheEntryListenerConfiguration;
+import javax.cache.event.CacheEntryEvent;
+import javax.cache.event.CacheEntryExpiredListener;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.persistence.EntityManagerFactory;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.terracotta.context.query.Matchers.attributes;
+import static org.terracotta.context.query.Matchers.context;
+import static org.terracotta.context.query.Matchers.hasAttribute;
+
+/**
+ * Service class giving the content and the statistics of the cache regions, and evicting their entries.
+ * <p>
+ * Hits, misses, evictions and latencies come from the JCache statistics MBeans. The JCache MBeans have no size, so
+ * the sizes come from the statistics of the Ehcache tiers, which the Ehcache MBeans are built on, or from the
+ * estimated size of the Caffeine caches: the entries of the regions are never all read. The memory is the memory
+ * occupied by the off-heap tier when there is one, and otherwise is estimated from the serialized size of a sample
+ * of the entries.
+ */
+@Service
+public class CacheStatsService {
+
+    private static final int MEMORY_SAMPLE_SIZE = 50;
+
+    private static final String MAPPINGS_STATISTIC = "mappings";
+
+    private static final String OCCUPIED_MEMORY_STATISTIC = "occupiedMemory";
+
+    private final Logger log = LoggerFactory.getLogger(CacheStatsService.class);
+
+    private final CacheManager cacheManager;
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    private final Map<String, ExpiryCounter> expiryCounters = new ConcurrentHashMap<>();
+
+    /**
+     * The iterators of Ehcache count each entry they return as a hit: the hits of the iterations made here, by
+     * region, are taken out of the statistics.
+     */
+    private final Map<String, LongAdder> iterationHits = new ConcurrentHashMap<>();
+
+    private final boolean iterationsCountHits;
+
+    public CacheStatsService(Optional<CacheManager> cacheManager, EntityManagerFactory entityManagerFactory) {
+        this.cacheManager = cacheManager.orElse(null);
+        this.entityManagerFactory = entityManagerFactory;
+        this.iterationsCountHits = this.cacheManager != null &&
+            this.cacheManager.getCachingProvider() instanceof EhcacheCachingProvider;
+    }
+
+    @PostConstruct
+    public void registerExpiryCounters() {
+        if (cacheManager == null) {
+            return;
+        }
+        for (String name : cacheManager.getCacheNames()) {
+            ExpiryCounter counter = new ExpiryCounter();
+            cacheManager.getCache(name).registerCacheEntryListener(new MutableCacheEntryListenerConfiguration<>(
+                FactoryBuilder.factoryOf(counter), null, false, false));
+            expiryCounters.put(name, counter);
+        }
+    }
+
+    /**
+     * @return the statistics of every cache region, by name
+     */
+    public List<CacheStatsDTO> getAllStats() {
+        List<CacheStatsDTO> stats = new ArrayList<>();
+        if (cacheManager != null) {
+            for (String name : cacheManager.getCacheNames()) {
+                getStats(name).ifPresent(stats::add);
+            }
+            stats.sort((a, b) -> a.getName().compareTo(b.getName()));
+        }
+        return stats;
+    }
+
+    /**
+     * @param name the name of the cache region
+     * @return the statistics of the region, if it exists
+     */
+    public Optional<CacheStatsDTO> getStats(String name) {
+        return getCache(name).map(cache -> {
+            CacheStatsDTO stats = new CacheStatsDTO();
+            stats.setName(name);
+            readStatistics(name, stats);
+            ExpiryCounter expiryCounter = expiryCounters.get(name);
+            stats.setExpiries(expiryCounter == null ? 0 : expiryCounter.count.sum());
+
+            long size = size(cache);
+            stats.setSize(size);
+            long occupiedBytes = ehcacheTierStatistics(cache, OCCUPIED_MEMORY_STATISTIC).stream()
+                .mapToLong(Long::longValue).filter(bytes -> bytes > 0).sum();
+            stats.setEstimatedMemoryBytes(occupiedBytes > 0 ? occupiedBytes : sampleMemory(name, cache, size));
+            return stats;
+        });
+    }
+
+    /**
+     * Remove every entry of a cache region.
+     *
+     * @param name the name of the cache region
+     * @return true if the region exists
+     */
+    public boolean evict(String name) {
+        return getCache(name).map(cache -> {
+            cache.clear();
+            log.info("Evicted cache region {}", name);
+            return true;
+        }).orElse(false);
+    }
+
+    /**
+     * Remove one entry of a cache region.
+     * <p>
+     * For the Hibernate regions, the key is the id of the entity, or of the owner of the collection. For other
+     * regions, it is removed as a string key; if there is none and the region may hold keys of other types, it is
+     * compared to the string value of every key.
+     *
+     * @param name the name of the cache region
+     * @param key the key of the entry
+     * @return true if the region exists
+     * @throws IllegalArgumentException if the key cannot be converted to the id type of a Hibernate region
+     */
+    public boolean evict(String name, String key) {
+        Optional<Cache<Object, Object>> region = getCache(name);
+        if (!region.isPresent()) {
+            return false;
+        }
+        SessionFactoryImplementor sessionFactory = entityManagerFactory.unwrap(SessionFactoryImplementor.class);
+        EntityPersister entityPersister = sessionFactory.getMetamodel().entityPersisters().get(name);
+        CollectionPersister collectionPersister = sessionFactory.getMetamodel().collectionPersisters().get(name);
+        if (entityPersister != null) {
+            sessionFactory.getCache().evictEntity(name,
+                toId(key, entityPersister.getIdentifierType().getReturnedClass()));
+        } else if (collectionPersister != null) {
+            sessionFactory.getCache().evictCollection(name,
+                toId(key, collectionPersister.getKeyType().getReturnedClass()));
+        } else {
+            Cache<Object, Object> cache = region.get();
+            Class<?> keyType = cache.getConfiguration(Configuration.class).getKeyType();
+            boolean removed = keyType.isAssignableFrom(String.class) && cache.remove(key);
+            if (!removed && !String.class.equals(keyType)) {
+                for (Cache.Entry<Object, Object> entry : cache) {
+                    if (entry != null) {
+                        countIterated(name, 1);
+                        if (key.equals(String.valueOf(entry.getKey()))) {
+                            cache.remove(entry.getKey());
+                        }
+                    }
+                }
+            }
+        }
+        log.info("Evicted key {} from cache region {}", key, name);
+        return true;
+    }
+
+    private Optional<Cache<Object, Object>> getCache(String name) {
+        if (cacheManager == null) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(cacheManager.getCache(name));
+    }
+
+    /**
+     * @return the number of entries of the region: the entries of the lowest Ehcache tier, which holds all of
+     * them, or the estimated size of a Caffeine cache
+     */
+    private long size(Cache<Object, Object> cache) {
+        if (cacheManager.getCachingProvider() instanceof CaffeineCachingProvider) {
+            return cache.unwrap(com.github.benmanes.caffeine.cache.Cache.class).estimatedSize();
+        }
+        return ehcacheTierStatistics(cache, MAPPINGS_STATISTIC).stream().mapToLong(Long::longValue).max().orElse(0);
+    }
+
+    /**
+     * @return the values of a statistic of every tier of an Ehcache region, or none for another provider
+     */
+    private List<Long> ehcacheTierStatistics(Cache<Object, Object> cache, String statistic) {
+        List<Long> values = new ArrayList<>();
+        if (!iterationsCountHits) {
+            return values;
+        }
+        Query query = QueryBuilder.queryBuilder().descendants()
+            .filter(context(attributes(hasAttribute("name", statistic)))).build();
+        for (TreeNode node : query.execute(Collections.singleton(
+            ContextManager.nodeFor(cache.unwrap(org.ehcache.Cache.class))))) {
+
+            Object value = node.getContext().attributes().get("this");
+            if (value instanceof ValueStatistic) {
+                values.add(((ValueStatistic<?>) value).value().longValue());
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Estimate the memory of a region from the serialized size of its first entries.
+     */
+    private long sampleMemory(String name, Cache<Object, Object> cache, long size) {
+        long sampledBytes = 0;
+        int sampled = 0;
+        int iterated = 0;
+        Iterator<Cache.Entry<Object, Object>> it = cache.iterator();
+        while (it.hasNext() && sampled < MEMORY_SAMPLE_SIZE) {
+            Cache.Entry<Object, Object> entry = it.next();
+            if (entry == null) {
+                continue;
+            }
+            iterated++;
+            long entryBytes = serializedSize(entry.getKey()) + serializedSize(entry.getValue());
+            if (entryBytes > 0) {
+                sampledBytes += entryBytes;
+                sampled++;
+            }
+        }
+        countIterated(name, iterated);
+        return sampled == 0 ? 0 : sampledBytes * size / sampled;
+    }
+
+    private void readStatistics(String name, CacheStatsDTO stats) {
+        MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName objectName = new ObjectName("javax.cache:type=CacheStatistics" +
+                ",CacheManager=" + sanitize(cacheManager.getURI().toString()) + ",Cache=" + sanitize(name));
+            if (!mBeanServer.isRegistered(objectName)) {
+                return;
+            }
+            long hits = Math.max(0, (Long) mBeanServer.getAttribute(objectName, "CacheHits") - iterationHits(name).sum());
+            long misses = (Long) mBeanServer.getAttribute(objectName, "CacheMisses");
+            stats.setHits(hits);
+            stats.setMisses(misses);
+            stats.setHitRatio(hits + misses == 0 ? 0 : (double) hits / (hits + misses));
+            stats.setEvictions((Long) mBeanServer.getAttribute(objectName, "CacheEvictions"));
+            stats.setAverageGetTimeMicros((Float) mBeanServer.getAttribute(objectName, "AverageGetTime"));
+        } catch (JMException e) {
+            log.warn("Could not read the statistics of cache region {}: {}", name, e.getMessage());
+        }
+    }
+
+    private LongAdder iterationHits(String name) {
+        return iterationHits.computeIfAbsent(name, n -> new LongAdder());
+    }
+
+    private void countIterated(String name, long entries) {
+        if (iterationsCountHits) {
+            iterationHits(name).add(entries);
+        }
+    }
+
+    /**
+     * The JCache naming convention for the statistics MBeans.
+     */
+    private static String sanitize(String string) {
+        return string == null ? "" : string.replaceAll("[,:=\n]", ".");
+    }
+
+    private static Serializable toId(String key, Class<?> idType) {
+        if (Long.class.equals(idType) || long.class.equals(idType)) {
+            return Long.valueOf(key);
+        }
+        if (Integer.class.equals(idType) || int.class.equals(idType)) {
+            return Integer.valueOf(key);
+        }
+        if (String.class.equals(idType)) {
+            return key;
+        }
+        throw new IllegalArgumentException("Keys of type " + idType.getName() + " cannot be evicted one by one");
+    }
+
+    private static long serializedSize(Object object) {
+        CountingOutputStream counter = new CountingOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(counter)) {
+            out.writeObject(object);
+        } catch (IOException e) {
+            return 0;
+        }
+        return counter.count;
+    }
+
+    private static class CountingOutputStream extends OutputStream {
+
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+
+    private static class ExpiryCounter implements CacheEntryExpiredListener<Object, Object>, Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final LongAdder count = new LongAdder();
+
+        @Override
+        public void onExpired(Iterable<CacheEntryEvent<? extends Object, ? extends Object>> events) {
+            events.forEach(event -> count.increment());
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package com.feedback.service;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.feedback.config.ApplicationProperties;
+import com.feedback.domain.Authority;
+import com.feedback.repository.AuthorityRepository;
+import com.feedback.repository.PersistenceAuditEventRepository;
+import com.feedback.repository.UserRepository;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.actuate.security.AuthenticationAuditListener;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.support.NoOpCacheManager;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManagerFactory;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Loads the authorities into the second-level cache, and the users who logged in most recently into the cache of the
+ * users by login read by the account requests, so that the first requests after a deploy do not
+ * all go to the database.
+ * <p>
+ * It runs when the application context is refreshed, before the embedded server accepts requests. Users are loaded
+ * in parallel, and the loads still running when the time budget is spent are cancelled, so that a slow database
+ * delays the startup by the budget at most.
+ */
+@Service
+public class CacheWarmupService {
+
+    private final Logger log = LoggerFactory.getLogger(CacheWarmupService.class);
+
+    private final UserLookupService userLookupService;
+
+    private final AuthorityRepository authorityRepository;
+
+    private final PersistenceAuditEventRepository persistenceAuditEventRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    private final CacheManager cacheManager;
+
+    private final ApplicationProperties.Cache.Warmup properties;
+
+    private final Timer durationTimer;
+
+    private final Counter cachedCounter;
+
+    private final AtomicBoolean warmedUp = new AtomicBoolean();
+
+    public CacheWarmupService(UserLookupService userLookupService, AuthorityRepository authorityRepository,
+        PersistenceAuditEventRepository persistenceAuditEventRepository, PlatformTransactionManager transactionManager,
+        EntityManagerFactory entityManagerFactory, CacheManager cacheManager,
+        ApplicationProperties applicationProperties, MetricRegistry metricRegistry) {
+
+        this.userLookupService = userLookupService;
+        this.authorityRepository = authorityRepository;
+        this.persistenceAuditEventRepository = persistenceAuditEventRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.entityManagerFactory = entityManagerFactory;
+        this.cacheManager = cacheManager;
+        this.properties = applicationProperties.getCache().getWarmup();
+        this.durationTimer = metricRegistry.timer(MetricRegistry.name(CacheWarmupService.class, "duration"));
+        this.cachedCounter = metricRegistry.counter(MetricRegistry.name(CacheWarmupService.class, "cached"));
+    }
+
+    @EventListener
+    public void onContextRefreshed(ContextRefreshedEvent event) {
+        boolean secondLevelCacheEnabled = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+            .getSessionFactoryOptions().isSecondLevelCacheEnabled();
+        boolean cacheEnabled = secondLevelCacheEnabled || !(cacheManager instanceof NoOpCacheManager);
+        if (properties.isEnabled() && cacheEnabled && warmedUp.compareAndSet(false, true)) {
+            try {
+                warmUp();
+            } catch (RuntimeException e) {
+                // With the dev profile, Liquibase may still be creating the tables
+                log.warn("Could not warm up the cache: {}", e.toString());
+            }
+        }
+    }
+
+    /**
+     * Load the authorities and the recently active users, within the time budget.
+     *
+     * @return the number of entries put in the caches
+     */
+    public int warmUp() {
+        long start = System.nanoTime();
+        List<Callable<Integer>> loads = new ArrayList<>();
+        loads.add(this::cacheAuthorities);
+        List<String> logins = transactionTemplate.execute(status ->
+            persistenceAuditEventRepository.findPrincipalsByAuditEventTypeAndAuditEventDateAfter(
+                AuthenticationAuditListener.AUTHENTICATION_SUCCESS,
+                Instant.now().minus(properties.getLookbackDays(), ChronoUnit.DAYS),
+                new PageRequest(0, Math.max(1, properties.getUsers()))));
+        Cache usersByLogin = cacheManager.getCache(UserRepository.USERS_BY_LOGIN_CACHE);
+        if (usersByLogin != null) {
+            for (String login : logins) {
+                loads.add(() -> cacheUser(usersByLogin, login));
+            }
+        }
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, properties.getThreads()), runnable -> {
+            Thread thread = new Thread(runnable, "cache-warmup-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        int cached = 0;
+        int cancelled = 0;
+        try {
+            long remainingNanos = TimeUnit.MILLISECONDS.toNanos(properties.getBudgetMs()) - (System.nanoTime() - start);
+            for (Future<Integer> result : executor.invokeAll(loads, Math.max(0, remainingNanos), TimeUnit.NANOSECONDS)) {
+                try {
+                    cached += result.get();
+                } catch (CancellationException e) {
+                    cancelled++;
+                } catch (ExecutionException e) {
+                    log.warn("Could not warm up the cache: {}", e.getCause().toString());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdownNow();
+        }
+
+        long elapsedNanos = System.nanoTime() - start;
+        durationTimer.update(elapsedNanos, TimeUnit.NANOSECONDS);
+        cachedCounter.inc(cached);
+        if (cancelled > 0) {
+            log.warn("Cache warm-up cached {} entries in {} ms, {} loads did not finish within the budget", cached,
+                TimeUnit.NANOSECONDS.toMillis(elapsedNanos), cancelled);
+        } else {
+            log.info("Cache warm-up cached {} entries in {} ms", cached, TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+        }
+        return cached;
+    }
+
+    /**
+     * @return the number of authorities in the second-level cache once they are loaded
+     */
+    private int cacheAuthorities() {
+        org.hibernate.Cache secondLevelCache = entityManagerFactory.unwrap(SessionFactoryImplementor.class).getCache();
+        return transactionTemplate.execute(status -> (int) authorityRepository.findAll().stream()
+            .filter(authority -> secondLevelCache.containsEntity(Authority.class, authority.getName()))
+            .count());
+    }
+
+    /**
+     * Look a user up through the cache of the users by login, as the account requests do.
+     *
+     * @return 1 if the user was put in the cache, 0 if it was already there or does not exist
+     */
+    private int cacheUser(Cache usersByLogin, String login) {
+        if (usersByLogin.get(login) != null) {
+            return 0;
+        }
+        boolean found = transactionTemplate.execute(status ->
+            userLookupService.findAccountByLogin(login).isPresent());
+        return found && usersByLogin.get(login) != null ? 1 : 0;
+    }
+}
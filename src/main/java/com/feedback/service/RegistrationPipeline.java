@@ -0,0 +1,235 @@
+package com.feedback.service;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.feedback.config.ApplicationProperties;
+import com.feedback.domain.User;
+import com.feedback.repository.UserRepository;
+import com.feedback.service.dto.RegistrationStatusDTO;
+import com.feedback.service.dto.RegistrationStatusDTO.State;
+import com.feedback.service.dto.UserDTO;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registers users in the background, so that a burst of sign-ups does not hold request threads.
+ * <p>
+ * A registration goes through three stages, each with its own workers and bounded queue: the password is hashed,
+ * the user is saved, then the activation email is sent. A full stage makes the previous one wait, so the only place
+ * where registrations are refused is the entry queue, in {@link #submit(UserDTO, String)}.
+ * <p>
+ * Registrations still queued when the application stops are lost; the users simply have to register again.
+ */
+@Service
+public class RegistrationPipeline {
+
+    private final Logger log = LoggerFactory.getLogger(RegistrationPipeline.class);
+
+    private final UserRepository userRepository;
+
+    private final UserService userService;
+
+    private final MailService mailService;
+
+    private final PasswordEncoder passwordEncoder;
+
+    private final ApplicationProperties.Registration properties;
+
+    private final BlockingQueue<Registration> hashQueue;
+
+    private final BlockingQueue<Registration> persistQueue;
+
+    private final BlockingQueue<Registration> mailQueue;
+
+    private final Map<String, RegistrationStatusDTO> statuses = new ConcurrentHashMap<>();
+
+    private final List<Thread> workers = new ArrayList<>();
+
+    private volatile boolean running;
+
+    public RegistrationPipeline(UserRepository userRepository, UserService userService, MailService mailService,
+        PasswordEncoder passwordEncoder, ApplicationProperties applicationProperties, MetricRegistry metricRegistry) {
+
+        this.userRepository = userRepository;
+        this.userService = userService;
+        this.mailService = mailService;
+        this.passwordEncoder = passwordEncoder;
+        this.properties = applicationProperties.getRegistration();
+        this.hashQueue = new ArrayBlockingQueue<>(properties.getQueueCapacity());
+        this.persistQueue = new ArrayBlockingQueue<>(properties.getQueueCapacity());
+        this.mailQueue = new ArrayBlockingQueue<>(properties.getQueueCapacity());
+        metricRegistry.register(MetricRegistry.name(RegistrationPipeline.class, "hash", "queued"),
+            (Gauge<Integer>) hashQueue::size);
+        metricRegistry.register(MetricRegistry.name(RegistrationPipeline.class, "persist", "queued"),
+            (Gauge<Integer>) persistQueue::size);
+        metricRegistry.register(MetricRegistry.name(RegistrationPipeline.class, "mail", "queued"),
+            (Gauge<Integer>) mailQueue::size);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!properties.isAsync()) {
+            return;
+        }
+        running = true;
+        startWorkers("hash", properties.getHashThreads(), hashQueue, this::hash);
+        startWorkers("persist", properties.getPersistThreads(), persistQueue, this::persist);
+        startWorkers("mail", properties.getMailThreads(), mailQueue, this::mail);
+        log.info("Registration pipeline started");
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        workers.forEach(Thread::interrupt);
+        workers.clear();
+        int pending = hashQueue.size() + persistQueue.size() + mailQueue.size();
+        if (pending > 0) {
+            log.warn("Registration pipeline stopped with {} registrations still queued", pending);
+        }
+    }
+
+    /**
+     * @return true if registrations go through this pipeline instead of being handled in the request
+     */
+    public boolean isEnabled() {
+        return properties.isAsync();
+    }
+
+    /**
+     * Queue a registration whose payload has already been validated.
+     *
+     * @param userDTO the user to register
+     * @param password the raw password
+     * @return the status of the queued registration, or an empty Optional if the pipeline is full
+     */
+    public Optional<RegistrationStatusDTO> submit(UserDTO userDTO, String password) {
+        Registration registration = new Registration(UUID.randomUUID().toString(), userDTO, password);
+        RegistrationStatusDTO status = update(registration, State.PENDING, null);
+        if (!hashQueue.offer(registration)) {
+            statuses.remove(registration.id);
+            log.debug("Registration pipeline is full, refusing registration of {}", userDTO.getLogin());
+            return Optional.empty();
+        }
+        return Optional.of(status);
+    }
+
+    /**
+     * @param id the id returned when the registration was queued
+     * @return the status of the registration, if it is still remembered
+     */
+    public Optional<RegistrationStatusDTO> getStatus(String id) {
+        return Optional.ofNullable(statuses.get(id));
+    }
+
+    /**
+     * Forget the status of the registrations which have not changed for longer than the retention period.
+     */
+    @Scheduled(fixedDelay = 60000)
+    public void removeExpiredStatuses() {
+        Instant limit = Instant.now().minusSeconds(properties.getStatusRetentionSeconds());
+        statuses.values().removeIf(status -> status.getLastModifiedDate().isBefore(limit));
+    }
+
+    private void hash(Registration registration) throws InterruptedException {
+        registration.encryptedPassword = passwordEncoder.encode(registration.password);
+        registration.password = null;
+        update(registration, State.HASHED, null);
+        persistQueue.put(registration);
+    }
+
+    private void persist(Registration registration) throws InterruptedException {
+        UserDTO userDTO = registration.userDTO;
+        if (userRepository.findOneByLogin(userDTO.getLogin().toLowerCase()).isPresent()) {
+            update(registration, State.FAILED, "login already in use");
+        } else if (userRepository.findOneByEmail(userDTO.getEmail()).isPresent()) {
+            update(registration, State.FAILED, "email address already in use");
+        } else {
+            registration.user = userService.createUserWithEncryptedPassword(userDTO.getLogin(),
+                registration.encryptedPassword, userDTO.getFirstName(), userDTO.getLastName(),
+                userDTO.getEmail().toLowerCase(), userDTO.getImageUrl(), userDTO.getLangKey());
+            update(registration, State.PERSISTED, null);
+            mailQueue.put(registration);
+        }
+    }
+
+    private void mail(Registration registration) {
+        mailService.sendActivationEmail(registration.user);
+        update(registration, State.COMPLETED, null);
+    }
+
+    private RegistrationStatusDTO update(Registration registration, State state, String message) {
+        RegistrationStatusDTO status = new RegistrationStatusDTO(registration.id, state, message);
+        statuses.put(registration.id, status);
+        return status;
+    }
+
+    private void startWorkers(String stageName, int threads, BlockingQueue<Registration> queue, Stage stage) {
+        for (int i = 0; i < threads; i++) {
+            Thread worker = new Thread(() -> {
+                while (running) {
+                    Registration registration;
+                    try {
+                        registration = queue.take();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    try {
+                        stage.process(registration);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    } catch (Exception e) {
+                        log.warn("Registration of {} failed at the {} stage: {}", registration.userDTO.getLogin(),
+                            stageName, e.getMessage());
+                        update(registration, State.FAILED, "registration failed");
+                    }
+                }
+            }, "registration-" + stageName + "-" + i);
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+    }
+
+    @FunctionalInterface
+    private interface Stage {
+        void process(Registration registration) throws InterruptedException;
+    }
+
+    private static class Registration {
+
+        private final String id;
+
+        private final UserDTO userDTO;
+
+        private String password;
+
+        private String encryptedPassword;
+
+        private User user;
+
+        Registration(String id, UserDTO userDTO, String password) {
+            this.id = id;
+            this.userDTO = userDTO;
+            this.password = password;
+        }
+    }
+}
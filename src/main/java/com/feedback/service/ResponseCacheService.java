@@ -0,0 +1,183 @@
+package com.feedback.service;
+
+import com.feedback.config.ApplicationProperties;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Service class keeping the encoded bodies of the responses which only change with the data of a user, in the
+ * "responses" cache region.
+ * <p>
+ * The data of a user is changed in {@link UserService}, which evicts the responses of the user. A response computed
+ * while an eviction happens could hold the old data, so it is only stored if no eviction happened meanwhile, see
+ * {@link #getGeneration()}.
+ */
+@Service
+public class ResponseCacheService {
+
+    public static final String RESPONSES_CACHE = "responses";
+
+    /**
+     * The paths of the cached responses.
+     */
+    public static final Set<String> CACHED_PATHS = Collections.unmodifiableSet(
+        new HashSet<>(Arrays.asList("/api/account", "/api/users/authorities", "/api/profile-info")));
+
+    private final Logger log = LoggerFactory.getLogger(ResponseCacheService.class);
+
+    private final Cache<Object, Object> cache;
+
+    private final boolean enabled;
+
+    private final AtomicLong generation = new AtomicLong();
+
+    public ResponseCacheService(Optional<CacheManager> cacheManager, ApplicationProperties applicationProperties) {
+        this.cache = cacheManager.map(cm -> cm.getCache(RESPONSES_CACHE)).orElse(null);
+        this.enabled = cache != null && applicationProperties.getCache().getResponses().isEnabled();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return a number changing with each eviction, to be read before computing a response and given to
+     * {@link #put(Key, CachedResponse, long)}
+     */
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    public Optional<CachedResponse> get(Key key) {
+        return enabled ? Optional.ofNullable((CachedResponse) cache.get(key)) : Optional.empty();
+    }
+
+    /**
+     * Store an encoded response, unless it was computed before an eviction.
+     *
+     * @param key the key of the response
+     * @param response the encoded response
+     * @param generation the generation read before computing the response
+     */
+    public void put(Key key, CachedResponse response, long generation) {
+        if (enabled && generation == this.generation.get()) {
+            cache.put(key, response);
+        }
+    }
+
+    /**
+     * Evict the responses of a user, now and once the current transaction has committed.
+     *
+     * @param login the login of the user
+     */
+    public void evict(String login) {
+        if (!enabled || login == null) {
+            return;
+        }
+        evictNow(login);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    evictNow(login);
+                }
+            });
+        }
+    }
+
+    private void evictNow(String login) {
+        generation.incrementAndGet();
+        Set<Key> keys = new HashSet<>();
+        for (String path : CACHED_PATHS) {
+            keys.add(new Key(path, login, false));
+            keys.add(new Key(path, login, true));
+        }
+        cache.removeAll(keys);
+        log.debug("Evicted the cached responses of user {}", login);
+    }
+
+    /**
+     * A cached response: the headers added while computing it, and its encoded body.
+     */
+    public static final class CachedResponse implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final LinkedHashMap<String, List<String>> headers;
+
+        private final byte[] body;
+
+        public CachedResponse(Map<String, List<String>> headers, byte[] body) {
+            this.headers = new LinkedHashMap<>(headers);
+            this.body = body;
+        }
+
+        public Map<String, List<String>> getHeaders() {
+            return Collections.unmodifiableMap(headers);
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+    }
+
+    /**
+     * The key of a cached response: the path of the request, the login of the user and whether the body is gzipped.
+     */
+    public static final class Key implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String path;
+
+        private final String login;
+
+        private final boolean gzip;
+
+        public Key(String path, String login, boolean gzip) {
+            this.path = path;
+            this.login = login;
+            this.gzip = gzip;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Key key = (Key) o;
+            return gzip == key.gzip && path.equals(key.path) && Objects.equals(login, key.login);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(path, login, gzip);
+        }
+
+        @Override
+        public String toString() {
+            return path + " " + login + (gzip ? " gzip" : "");
+        }
+    }
+}
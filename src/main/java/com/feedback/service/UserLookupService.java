@@ -0,0 +1,81 @@
+package com.feedback.service;
+
+import com.codahale.metrics.MetricRegistry;
+import com.feedback.domain.User;
+import com.feedback.repository.UserRepository;
+import com.feedback.service.util.SingleFlight;
+
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.core.ConfigurableObjectInputStream;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.SerializationUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.util.Optional;
+
+/**
+ * Service class looking users up by login, for the account, user and authentication requests.
+ * <p>
+ * Only the account requests read the cache of the users by login, which is evicted on the node changing a user only:
+ * the authentication reads the database, so that a password changed or a user deactivated on another node is seen at
+ * once. The concurrent lookups of a login share a single query. The caller which ran it gets the user of its own session, the others get a detached copy. A caller inside a
+ * writing transaction always runs its own query, as the query in flight may have read the user before its changes.
+ */
+@Service
+@Transactional(readOnly = true)
+public class UserLookupService {
+
+    private final UserRepository userRepository;
+
+    private final SingleFlight<String, Optional<User>> usersWithAuthorities;
+
+    public UserLookupService(UserRepository userRepository, MetricRegistry metricRegistry) {
+        this.userRepository = userRepository;
+        this.usersWithAuthorities = new SingleFlight<>(
+            metricRegistry.counter(MetricRegistry.name(UserLookupService.class, "suppressed-loads")),
+            user -> user.map(UserLookupService::detachedCopy));
+    }
+
+    public Optional<User> findOneWithAuthoritiesByLogin(String login) {
+        if (TransactionSynchronizationManager.isActualTransactionActive() &&
+            !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return userRepository.findOneWithAuthoritiesByLogin(login);
+        }
+        return usersWithAuthorities.load(login, () -> userRepository.findOneWithAuthoritiesByLogin(login));
+    }
+
+    /**
+     * Look the current user up for /api/account, through the cache of the users by login, which may be up to its
+     * time to live behind the changes made on the other nodes. Not to be used to authenticate or authorize.
+     */
+    @Cacheable(cacheNames = UserRepository.USERS_BY_LOGIN_CACHE)
+    public Optional<User> findAccountByLogin(String login) {
+        return findOneWithAuthoritiesByLogin(login);
+    }
+
+    /**
+     * Make the lookups of a user which has changed run a new query, rather than wait for the query in flight.
+     *
+     * @param login the login of the user
+     */
+    public void forget(String login) {
+        usersWithAuthorities.forget(login);
+    }
+
+    /**
+     * @return a copy of the user and its authorities, bound to no session
+     */
+    private static User detachedCopy(User user) {
+        byte[] serialized = SerializationUtils.serialize(user);
+        try (ObjectInputStream in = new ConfigurableObjectInputStream(new ByteArrayInputStream(serialized),
+            User.class.getClassLoader())) {
+            return (User) in.readObject();
+        } catch (IOException | ClassNotFoundException e) {
+            throw new IllegalStateException("Could not copy user " + user.getLogin(), e);
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.feedback.service;
 
 import com.feedback.domain.Authority;
 import com.feedback.domain.User;
+import com.feedback.domain.enumeration.UserTokenPurpose;
 import com.feedback.repository.AuthorityRepository;
 import com.feedback.config.Constants;
 import com.feedback.repository.UserRepository;
@@ -12,12 +13,16 @@ import com.feedback.service.dto.UserDTO;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
@@ -39,33 +44,45 @@ public class UserService {
 
     private final AuthorityRepository authorityRepository;
 
-    public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder, AuthorityRepository authorityRepository) {
+    private final UserTokenService userTokenService;
+
+    private final UserLookupService userLookupService;
+
+    private final ResponseCacheService responseCacheService;
+
+    private final CacheManager cacheManager;
+
+    public UserService(UserRepository userRepository, PasswordEncoder passwordEncoder, AuthorityRepository authorityRepository,
+            UserTokenService userTokenService, UserLookupService userLookupService,
+            ResponseCacheService responseCacheService, CacheManager cacheManager) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
         this.authorityRepository = authorityRepository;
+        this.userTokenService = userTokenService;
+        this.userLookupService = userLookupService;
+        this.responseCacheService = responseCacheService;
+        this.cacheManager = cacheManager;
     }
 
     public Optional<User> activateRegistration(String key) {
-        log.debug("Activating user for activation key {}", key);
-        return userRepository.findOneByActivationKey(key)
+        log.debug("Activating user for activation key");
+        return userTokenService.consumeToken(key, UserTokenPurpose.ACTIVATION)
             .map(user -> {
                 // activate given user for the registration key.
                 user.setActivated(true);
-                user.setActivationKey(null);
+                clearUserCaches(user.getLogin());
                 log.debug("Activated user: {}", user);
                 return user;
             });
     }
 
     public Optional<User> completePasswordReset(String newPassword, String key) {
-       log.debug("Reset user password for reset key {}", key);
+       log.debug("Reset user password for reset key");
 
-       return userRepository.findOneByResetKey(key)
-           .filter(user -> user.getResetDate().isAfter(Instant.now().minusSeconds(86400)))
+       return userTokenService.consumeToken(key, UserTokenPurpose.PASSWORD_RESET)
            .map(user -> {
                 user.setPassword(passwordEncoder.encode(newPassword));
-                user.setResetKey(null);
-                user.setResetDate(null);
+                clearUserCaches(user.getLogin());
                 return user;
            });
     }
@@ -74,8 +91,8 @@ public class UserService {
         return userRepository.findOneByEmail(mail)
             .filter(User::getActivated)
             .map(user -> {
-                user.setResetKey(RandomUtil.generateResetKey());
-                user.setResetDate(Instant.now());
+                user.setResetKey(userTokenService.createToken(user, UserTokenPurpose.PASSWORD_RESET));
+                clearUserCaches(user.getLogin());
                 return user;
             });
     }
@@ -83,10 +100,22 @@ public class UserService {
     public User createUser(String login, String password, String firstName, String lastName, String email,
         String imageUrl, String langKey) {
 
+        return createUserWithEncryptedPassword(login, passwordEncoder.encode(password), firstName, lastName, email,
+            imageUrl, langKey);
+    }
+
+    /**
+     * Register a user whose password has already been hashed, as done by the registration pipeline.
+     *
+     * @param encryptedPassword the password, hashed with the application's password encoder
+     * @return the new user, not yet activated, with its activation key
+     */
+    public User createUserWithEncryptedPassword(String login, String encryptedPassword, String firstName,
+        String lastName, String email, String imageUrl, String langKey) {
+
         User newUser = new User();
         Authority authority = authorityRepository.findOne(AuthoritiesConstants.USER);
         Set<Authority> authorities = new HashSet<>();
-        String encryptedPassword = passwordEncoder.encode(password);
         newUser.setLogin(login);
         // new user gets initially a generated password
         newUser.setPassword(encryptedPassword);
@@ -97,11 +126,13 @@ public class UserService {
         newUser.setLangKey(langKey);
         // new user is not active
         newUser.setActivated(false);
-        // new user gets registration key
-        newUser.setActivationKey(RandomUtil.generateActivationKey());
         authorities.add(authority);
         newUser.setAuthorities(authorities);
         userRepository.save(newUser);
+        // The login may be cached as not found
+        clearUserCaches(login);
+        // new user gets registration key
+        newUser.setActivationKey(userTokenService.createToken(newUser, UserTokenPurpose.ACTIVATION));
         log.debug("Created Information for User: {}", newUser);
         return newUser;
     }
@@ -127,10 +158,10 @@ public class UserService {
         }
         String encryptedPassword = passwordEncoder.encode(RandomUtil.generatePassword());
         user.setPassword(encryptedPassword);
-        user.setResetKey(RandomUtil.generateResetKey());
-        user.setResetDate(Instant.now());
         user.setActivated(true);
         userRepository.save(user);
+        clearUserCaches(user.getLogin());
+        user.setResetKey(userTokenService.createToken(user, UserTokenPurpose.PASSWORD_RESET));
         log.debug("Created Information for User: {}", user);
         return user;
     }
@@ -151,6 +182,7 @@ public class UserService {
             user.setEmail(email);
             user.setLangKey(langKey);
             user.setImageUrl(imageUrl);
+            clearUserCaches(user.getLogin());
             log.debug("Changed Information for User: {}", user);
         });
     }
@@ -165,6 +197,7 @@ public class UserService {
         return Optional.of(userRepository
             .findOne(userDTO.getId()))
             .map(user -> {
+                clearUserCaches(user.getLogin());
                 user.setLogin(userDTO.getLogin());
                 user.setFirstName(userDTO.getFirstName());
                 user.setLastName(userDTO.getLastName());
@@ -177,6 +210,7 @@ public class UserService {
                 userDTO.getAuthorities().stream()
                     .map(authorityRepository::findOne)
                     .forEach(managedAuthorities::add);
+                clearUserCaches(user.getLogin());
                 log.debug("Changed Information for User: {}", user);
                 return user;
             })
@@ -186,6 +220,7 @@ public class UserService {
     public void deleteUser(String login) {
         userRepository.findOneByLogin(login).ifPresent(user -> {
             userRepository.delete(user);
+            clearUserCaches(user.getLogin());
             log.debug("Deleted User: {}", user);
         });
     }
@@ -194,6 +229,7 @@ public class UserService {
         userRepository.findOneByLogin(SecurityUtils.getCurrentUserLogin()).ifPresent(user -> {
             String encryptedPassword = passwordEncoder.encode(password);
             user.setPassword(encryptedPassword);
+            clearUserCaches(user.getLogin());
             log.debug("Changed password for User: {}", user);
         });
     }
@@ -205,7 +241,7 @@ public class UserService {
 
     @Transactional(readOnly = true)
     public Optional<User> getUserWithAuthoritiesByLogin(String login) {
-        return userRepository.findOneWithAuthoritiesByLogin(login);
+        return userLookupService.findOneWithAuthoritiesByLogin(login);
     }
 
     @Transactional(readOnly = true)
@@ -215,7 +251,7 @@ public class UserService {
 
     @Transactional(readOnly = true)
     public User getUserWithAuthorities() {
-        return userRepository.findOneWithAuthoritiesByLogin(SecurityUtils.getCurrentUserLogin()).orElse(null);
+        return userLookupService.findAccountByLogin(SecurityUtils.getCurrentUserLogin()).orElse(null);
     }
 
 
@@ -230,6 +266,7 @@ public class UserService {
         for (User user : users) {
             log.debug("Deleting not activated user {}", user.getLogin());
             userRepository.delete(user);
+            clearUserCaches(user.getLogin());
         }
     }
 
@@ -239,4 +276,33 @@ public class UserService {
     public List<String> getAuthorities() {
         return authorityRepository.findAll().stream().map(Authority::getName).collect(Collectors.toList());
     }
+
+    /**
+     * Evict a user from the cache by login and its cached responses, now and once the current transaction has
+     * committed, so that a lookup made meanwhile does not cache the old user again. The lookups of the user in
+     * flight are not joined by the next callers either.
+     */
+    private void clearUserCaches(String login) {
+        responseCacheService.evict(login);
+        if (login == null) {
+            return;
+        }
+        Cache usersByLogin = cacheManager.getCache(UserRepository.USERS_BY_LOGIN_CACHE);
+        forgetUser(usersByLogin, login);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    forgetUser(usersByLogin, login);
+                }
+            });
+        }
+    }
+
+    private void forgetUser(Cache usersByLogin, String login) {
+        if (usersByLogin != null) {
+            usersByLogin.evict(login);
+        }
+        userLookupService.forget(login);
+    }
 }
@@ -0,0 +1,252 @@
+package com.feedback.service;
+
+import com.feedback.repository.UserRepository;
+import com.feedback.service.dto.UserStatsDTO;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Service keeping in-memory user counts by activation state, language and creation day.
+ * <p>
+ * The counters are seeded from the database once the application is ready, then kept up to date
+ * by the {@link com.feedback.domain.UserStatsListener} as users are created, updated and deleted.
+ * A scheduled reconciliation recomputes them from the database to correct any drift.
+ */
+@Service
+public class UserStatsService {
+
+    private static final String UNKNOWN_LANG_KEY = "unknown";
+
+    private static final int RECONCILIATION_ATTEMPTS = 3;
+
+    private static volatile UserStatsService instance;
+
+    private final Logger log = LoggerFactory.getLogger(UserStatsService.class);
+
+    private final UserRepository userRepository;
+
+    private volatile Counters counters = new Counters();
+
+    /**
+     * The changes applied since the running reconciliation started counting, or null if none is running. Guarded by
+     * itself, like the replacement of the counters, so that no change is applied to counters about to be replaced.
+     */
+    private List<Consumer<Counters>> pendingChanges;
+
+    private final Object changesLock = new Object();
+
+    private final AtomicLong version = new AtomicLong();
+
+    private volatile Snapshot snapshot = new Snapshot(-1, null);
+
+    public UserStatsService(UserRepository userRepository) {
+        this.userRepository = userRepository;
+    }
+
+    /**
+     * @return the running instance, used by the JPA entity listener which is not managed by Spring
+     */
+    public static UserStatsService getInstance() {
+        return instance;
+    }
+
+    @PostConstruct
+    public void register() {
+        instance = this;
+    }
+
+    @PreDestroy
+    public void unregister() {
+        if (instance == this) {
+            instance = null;
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void seed() {
+        log.debug("Seeding user statistics");
+        reconcile();
+    }
+
+    /**
+     * Recompute the counters from the database, replacing the incrementally maintained ones.
+     * <p>
+     * A user change committed while the database is read may or may not be counted, so the counters are only
+     * replaced if none happened. Otherwise the reconciliation starts again, and the last attempt replays the
+     * changes it saw on the recomputed counters.
+     * <p>
+     * This is scheduled to get fired every hour, at half past, by default.
+     */
+    @Scheduled(cron = "${application.user-stats.reconciliation-cron:0 30 * * * ?}")
+    public synchronized void reconcile() {
+        try {
+            for (int attempt = 1; attempt <= RECONCILIATION_ATTEMPTS; attempt++) {
+                synchronized (changesLock) {
+                    pendingChanges = new ArrayList<>();
+                }
+                Counters fresh = countUsers();
+                synchronized (changesLock) {
+                    if (!pendingChanges.isEmpty() && attempt < RECONCILIATION_ATTEMPTS) {
+                        log.debug("Users changed while their statistics were reconciled, trying again");
+                        continue;
+                    }
+                    pendingChanges.forEach(change -> change.accept(fresh));
+                    replaceCounters(fresh);
+                    return;
+                }
+            }
+        } finally {
+            synchronized (changesLock) {
+                pendingChanges = null;
+            }
+        }
+    }
+
+    private Counters countUsers() {
+        Counters fresh = new Counters();
+        for (Object[] row : userRepository.countByActivatedAndLangKeyAndCreationDay()) {
+            LocalDate creationDay = LocalDate.of(((Number) row[2]).intValue(), ((Number) row[3]).intValue(),
+                ((Number) row[4]).intValue());
+            fresh.add((Boolean) row[0], (String) row[1], creationDay, ((Number) row[5]).longValue());
+        }
+        return fresh;
+    }
+
+    private void replaceCounters(Counters fresh) {
+        Counters previous = counters;
+        counters = fresh;
+        version.incrementAndGet();
+        long previousTotal = previous.total.sum();
+        long freshTotal = fresh.total.sum();
+        if (previousTotal != freshTotal || previous.activated.sum() != fresh.activated.sum()) {
+            log.info("Reconciled user statistics: {} users counted, {} in database", previousTotal, freshTotal);
+        }
+    }
+
+    public void userCreated(boolean activated, String langKey, Instant createdDate) {
+        LocalDate creationDay = toCreationDay(createdDate);
+        apply(current -> current.add(activated, langKey, creationDay, 1));
+    }
+
+    public void userDeleted(boolean activated, String langKey, Instant createdDate) {
+        LocalDate creationDay = toCreationDay(createdDate);
+        apply(current -> current.add(activated, langKey, creationDay, -1));
+    }
+
+    public void userUpdated(boolean previousActivated, String previousLangKey, boolean activated, String langKey) {
+        apply(current -> current.update(previousActivated, previousLangKey, activated, langKey));
+    }
+
+    private void apply(Consumer<Counters> change) {
+        synchronized (changesLock) {
+            change.accept(counters);
+            if (pendingChanges != null) {
+                pendingChanges.add(change);
+            }
+        }
+        version.incrementAndGet();
+    }
+
+    /**
+     * @return the current user counts, rebuilt only when they have changed since the last call
+     */
+    public UserStatsDTO getStats() {
+        Snapshot current = snapshot;
+        long currentVersion = version.get();
+        if (current.version != currentVersion) {
+            current = new Snapshot(currentVersion, counters.toDTO());
+            snapshot = current;
+        }
+        return current.stats;
+    }
+
+    private static LocalDate toCreationDay(Instant createdDate) {
+        return (createdDate == null ? Instant.now() : createdDate).atZone(ZoneId.systemDefault()).toLocalDate();
+    }
+
+    private static String langKeyOf(String langKey) {
+        return langKey == null ? UNKNOWN_LANG_KEY : langKey;
+    }
+
+    private static final class Snapshot {
+
+        private final long version;
+
+        private final UserStatsDTO stats;
+
+        Snapshot(long version, UserStatsDTO stats) {
+            this.version = version;
+            this.stats = stats;
+        }
+    }
+
+    private static final class Counters {
+
+        private final LongAdder total = new LongAdder();
+
+        private final LongAdder activated = new LongAdder();
+
+        private final ConcurrentMap<String, LongAdder> byLangKey = new ConcurrentHashMap<>();
+
+        private final ConcurrentMap<LocalDate, LongAdder> byCreationDay = new ConcurrentHashMap<>();
+
+        void add(boolean isActivated, String langKey, LocalDate creationDay, long delta) {
+            total.add(delta);
+            if (isActivated) {
+                activated.add(delta);
+            }
+            increment(byLangKey, langKeyOf(langKey), delta);
+            increment(byCreationDay, creationDay, delta);
+        }
+
+        void update(boolean previousActivated, String previousLangKey, boolean isActivated, String langKey) {
+            if (previousActivated != isActivated) {
+                activated.add(isActivated ? 1 : -1);
+            }
+            if (!langKeyOf(previousLangKey).equals(langKeyOf(langKey))) {
+                increment(byLangKey, langKeyOf(previousLangKey), -1);
+                increment(byLangKey, langKeyOf(langKey), 1);
+            }
+        }
+
+        UserStatsDTO toDTO() {
+            Map<String, Long> usersByLangKey = new HashMap<>();
+            byLangKey.forEach((langKey, count) -> putIfPositive(usersByLangKey, langKey, count.sum()));
+            SortedMap<LocalDate, Long> usersByCreationDay = new TreeMap<>();
+            byCreationDay.forEach((day, count) -> putIfPositive(usersByCreationDay, day, count.sum()));
+            return new UserStatsDTO(total.sum(), activated.sum(), usersByLangKey, usersByCreationDay);
+        }
+
+        static <K> void increment(ConcurrentMap<K, LongAdder> counts, K key, long delta) {
+            counts.computeIfAbsent(key, k -> new LongAdder()).add(delta);
+        }
+
+        private static <K> void putIfPositive(Map<K, Long> counts, K key, long count) {
+            if (count > 0) {
+                counts.put(key, count);
+            }
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.feedback.service;
+
+import com.feedback.config.ApplicationProperties;
+import com.feedback.domain.User;
+import com.feedback.domain.UserToken;
+import com.feedback.domain.enumeration.UserTokenPurpose;
+import com.feedback.repository.UserTokenRepository;
+import com.feedback.service.util.RandomUtil;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.crypto.codec.Hex;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Service class for managing the activation and password reset keys sent to users.
+ */
+@Service
+public class UserTokenService {
+
+    private final Logger log = LoggerFactory.getLogger(UserTokenService.class);
+
+    private final UserTokenRepository userTokenRepository;
+
+    private final ApplicationProperties.UserTokens properties;
+
+    public UserTokenService(UserTokenRepository userTokenRepository, ApplicationProperties applicationProperties) {
+        this.userTokenRepository = userTokenRepository;
+        this.properties = applicationProperties.getUserTokens();
+    }
+
+    /**
+     * Issue a new key for the given user, replacing any previous key with the same purpose.
+     *
+     * @param user the user the key is sent to
+     * @param purpose what the key can be used for
+     * @return the raw key, which is not stored and must be sent to the user
+     */
+    @Transactional
+    public String createToken(User user, UserTokenPurpose purpose) {
+        String key = purpose == UserTokenPurpose.ACTIVATION ?
+            RandomUtil.generateActivationKey() : RandomUtil.generateResetKey();
+        long validitySeconds = purpose == UserTokenPurpose.ACTIVATION ?
+            properties.getActivationValiditySeconds() : properties.getResetValiditySeconds();
+        userTokenRepository.deleteByUserAndPurpose(user, purpose);
+        UserToken userToken = new UserToken();
+        userToken.setUser(user);
+        userToken.setPurpose(purpose);
+        userToken.setTokenHash(hashKey(key));
+        userToken.setExpiryDate(userToken.getCreatedDate().plusSeconds(validitySeconds));
+        userTokenRepository.save(userToken);
+        log.debug("Created {} token for User: {}", purpose, user.getLogin());
+        return key;
+    }
+
+    /**
+     * Use a key: if it exists, has the right purpose and has not expired, it is deleted and its user returned.
+     *
+     * @param key the raw key received from the user
+     * @param purpose what the key is being used for
+     * @return the user the key was issued to, if the key is valid
+     */
+    @Transactional
+    public Optional<User> consumeToken(String key, UserTokenPurpose purpose) {
+        if (key == null) {
+            return Optional.empty();
+        }
+        return userTokenRepository.findOneByTokenHashAndPurposeAndExpiryDateAfter(hashKey(key), purpose, Instant.now())
+            .map(userToken -> {
+                userTokenRepository.delete(userToken);
+                return userToken.getUser();
+            });
+    }
+
+    /**
+     * Expired keys are deleted in chunks, each one in its own transaction, so that the table is never locked for long.
+     * <p>
+     * This is scheduled to get fired everyday, at 01:15 (am), by default.
+     */
+    @Scheduled(cron = "${application.user-tokens.purge-cron:0 15 1 * * ?}")
+    public void removeExpiredTokens() {
+        Instant now = Instant.now();
+        PageRequest chunk = new PageRequest(0, properties.getPurgeChunkSize());
+        long removed = 0;
+        List<Long> ids;
+        while (!(ids = userTokenRepository.findIdsByExpiryDateBefore(now, chunk)).isEmpty()) {
+            removed += userTokenRepository.deleteByIdIn(ids);
+        }
+        log.debug("Deleted {} expired user tokens", removed);
+    }
+
+    /**
+     * @param key the raw key
+     * @return the hex-encoded SHA-256 hash of the key, as stored in the database
+     */
+    public static String hashKey(String key) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return new String(Hex.encode(digest.digest(key.getBytes(StandardCharsets.UTF_8))));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
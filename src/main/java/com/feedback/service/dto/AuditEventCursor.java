@@ -0,0 +1,92 @@
+package com.feedback.service.dto;
+
+import com.feedback.domain.PersistentAuditEvent;
+
+import java.time.Instant;
+import java.util.Objects;
+
+/**
+ * A position in the audit events, ordered from the newest: the key of an event, and whether the events after it
+ * (older ones) or before it (newer ones) are wanted.
+ * <p>
+ * Its text form is "after.epochSecond.nano.id" or "before.epochSecond.nano.id".
+ */
+public final class AuditEventCursor {
+
+    private static final String AFTER = "after";
+
+    private static final String BEFORE = "before";
+
+    private final boolean before;
+
+    private final Instant date;
+
+    private final long id;
+
+    private AuditEventCursor(boolean before, Instant date, long id) {
+        this.before = before;
+        this.date = date;
+        this.id = id;
+    }
+
+    public static AuditEventCursor after(PersistentAuditEvent event) {
+        return new AuditEventCursor(false, event.getAuditEventDate(), event.getId());
+    }
+
+    public static AuditEventCursor before(PersistentAuditEvent event) {
+        return new AuditEventCursor(true, event.getAuditEventDate(), event.getId());
+    }
+
+    /**
+     * @throws IllegalArgumentException if the text is not a cursor
+     */
+    public static AuditEventCursor parse(String text) {
+        String[] parts = text.split("\\.");
+        if (parts.length != 4 || !(AFTER.equals(parts[0]) || BEFORE.equals(parts[0]))) {
+            throw new IllegalArgumentException("Invalid audit event cursor: " + text);
+        }
+        try {
+            return new AuditEventCursor(BEFORE.equals(parts[0]),
+                Instant.ofEpochSecond(Long.parseLong(parts[1]), Long.parseLong(parts[2])), Long.parseLong(parts[3]));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid audit event cursor: " + text, e);
+        }
+    }
+
+    /**
+     * @return true for the events newer than the key, false for the older ones
+     */
+    public boolean isBefore() {
+        return before;
+    }
+
+    public Instant getDate() {
+        return date;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        AuditEventCursor cursor = (AuditEventCursor) o;
+        return before == cursor.before && id == cursor.id && Objects.equals(date, cursor.date);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(before, date, id);
+    }
+
+    @Override
+    public String toString() {
+        return (before ? BEFORE : AFTER) + "." + date.getEpochSecond() + "." + date.getNano() + "." + id;
+    }
+}
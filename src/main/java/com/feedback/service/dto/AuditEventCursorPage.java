@@ -0,0 +1,45 @@
+package com.feedback.service.dto;
+
+import org.springframework.boot.actuate.audit.AuditEvent;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * A page of audit events read from a cursor, with the cursors of the pages around it.
+ */
+public class AuditEventCursorPage {
+
+    private final List<AuditEvent> content;
+
+    private final AuditEventCursor next;
+
+    private final AuditEventCursor previous;
+
+    public AuditEventCursorPage(List<AuditEvent> content, AuditEventCursor next, AuditEventCursor previous) {
+        this.content = content;
+        this.next = next;
+        this.previous = previous;
+    }
+
+    /**
+     * @return the events, from the newest
+     */
+    public List<AuditEvent> getContent() {
+        return content;
+    }
+
+    /**
+     * @return the cursor of the page of older events, if there are any
+     */
+    public Optional<AuditEventCursor> getNext() {
+        return Optional.ofNullable(next);
+    }
+
+    /**
+     * @return the cursor of the page of newer events, if there may be any
+     */
+    public Optional<AuditEventCursor> getPrevious() {
+        return Optional.ofNullable(previous);
+    }
+}
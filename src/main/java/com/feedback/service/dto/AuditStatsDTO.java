@@ -0,0 +1,71 @@
+package com.feedback.service.dto;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A DTO representing the audit event counts of consecutive time buckets, by event type or by principal.
+ */
+public class AuditStatsDTO {
+
+    private final String granularity;
+
+    private final String groupBy;
+
+    private final List<Bucket> buckets;
+
+    public AuditStatsDTO(String granularity, String groupBy, List<Bucket> buckets) {
+        this.granularity = granularity;
+        this.groupBy = groupBy;
+        this.buckets = buckets;
+    }
+
+    /**
+     * @return "hour" or "day"
+     */
+    public String getGranularity() {
+        return granularity;
+    }
+
+    /**
+     * @return "type" or "principal", the keys of the counts of each bucket
+     */
+    public String getGroupBy() {
+        return groupBy;
+    }
+
+    /**
+     * @return every bucket of the period, from the oldest, including the empty ones
+     */
+    public List<Bucket> getBuckets() {
+        return buckets;
+    }
+
+    public static class Bucket {
+
+        private final Instant start;
+
+        private final long total;
+
+        private final Map<String, Long> counts;
+
+        public Bucket(Instant start, long total, Map<String, Long> counts) {
+            this.start = start;
+            this.total = total;
+            this.counts = counts;
+        }
+
+        public Instant getStart() {
+            return start;
+        }
+
+        public long getTotal() {
+            return total;
+        }
+
+        public Map<String, Long> getCounts() {
+            return counts;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.feedback.service.dto;
+
+/**
+ * A DTO representing the content and the statistics of a cache region.
+ */
+public class CacheStatsDTO {
+
+    private String name;
+
+    private long size;
+
+    private long hits;
+
+    private long misses;
+
+    private double hitRatio;
+
+    private long evictions;
+
+    private long expiries;
+
+    private double averageGetTimeMicros;
+
+    private long estimatedMemoryBytes;
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public void setSize(long size) {
+        this.size = size;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public void setHits(long hits) {
+        this.hits = hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public void setMisses(long misses) {
+        this.misses = misses;
+    }
+
+    public double getHitRatio() {
+        return hitRatio;
+    }
+
+    public void setHitRatio(double hitRatio) {
+        this.hitRatio = hitRatio;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    public void setEvictions(long evictions) {
+        this.evictions = evictions;
+    }
+
+    public long getExpiries() {
+        return expiries;
+    }
+
+    public void setExpiries(long expiries) {
+        this.expiries = expiries;
+    }
+
+    public double getAverageGetTimeMicros() {
+        return averageGetTimeMicros;
+    }
+
+    public void setAverageGetTimeMicros(double averageGetTimeMicros) {
+        this.averageGetTimeMicros = averageGetTimeMicros;
+    }
+
+    public long getEstimatedMemoryBytes() {
+        return estimatedMemoryBytes;
+    }
+
+    public void setEstimatedMemoryBytes(long estimatedMemoryBytes) {
+        this.estimatedMemoryBytes = estimatedMemoryBytes;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStatsDTO{" +
+            "name='" + name + '\'' +
+            ", size=" + size +
+            ", hits=" + hits +
+            ", misses=" + misses +
+            ", hitRatio=" + hitRatio +
+            ", evictions=" + evictions +
+            ", expiries=" + expiries +
+            ", averageGetTimeMicros=" + averageGetTimeMicros +
+            ", estimatedMemoryBytes=" + estimatedMemoryBytes +
+            "}";
+    }
+}
@@ -0,0 +1,54 @@
+package com.feedback.service.dto;
+
+import java.time.Instant;
+
+/**
+ * A DTO representing the progress of a registration handled in the background.
+ */
+public class RegistrationStatusDTO {
+
+    public enum State {
+        PENDING, HASHED, PERSISTED, COMPLETED, FAILED
+    }
+
+    private final String id;
+
+    private final State state;
+
+    private final String message;
+
+    private final Instant lastModifiedDate;
+
+    public RegistrationStatusDTO(String id, State state, String message) {
+        this.id = id;
+        this.state = state;
+        this.message = message;
+        this.lastModifiedDate = Instant.now();
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public Instant getLastModifiedDate() {
+        return lastModifiedDate;
+    }
+
+    @Override
+    public String toString() {
+        return "RegistrationStatusDTO{" +
+            "id='" + id + '\'' +
+            ", state=" + state +
+            ", message='" + message + '\'' +
+            ", lastModifiedDate=" + lastModifiedDate +
+            "}";
+    }
+}
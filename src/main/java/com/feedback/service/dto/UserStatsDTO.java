@@ -0,0 +1,58 @@
+package com.feedback.service.dto;
+
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.SortedMap;
+
+/**
+ * A DTO representing the user counts by activation state, language and creation day.
+ */
+public class UserStatsDTO {
+
+    private final long totalUsers;
+
+    private final long activatedUsers;
+
+    private final Map<String, Long> usersByLangKey;
+
+    private final SortedMap<LocalDate, Long> usersByCreationDay;
+
+    public UserStatsDTO(long totalUsers, long activatedUsers, Map<String, Long> usersByLangKey,
+        SortedMap<LocalDate, Long> usersByCreationDay) {
+
+        this.totalUsers = totalUsers;
+        this.activatedUsers = activatedUsers;
+        this.usersByLangKey = usersByLangKey;
+        this.usersByCreationDay = usersByCreationDay;
+    }
+
+    public long getTotalUsers() {
+        return totalUsers;
+    }
+
+    public long getActivatedUsers() {
+        return activatedUsers;
+    }
+
+    public long getNotActivatedUsers() {
+        return totalUsers - activatedUsers;
+    }
+
+    public Map<String, Long> getUsersByLangKey() {
+        return usersByLangKey;
+    }
+
+    public SortedMap<LocalDate, Long> getUsersByCreationDay() {
+        return usersByCreationDay;
+    }
+
+    @Override
+    public String toString() {
+        return "UserStatsDTO{" +
+            "totalUsers=" + totalUsers +
+            ", activatedUsers=" + activatedUsers +
+            ", usersByLangKey=" + usersByLangKey +
+            ", usersByCreationDay=" + usersByCreationDay +
+            "}";
+    }
+}
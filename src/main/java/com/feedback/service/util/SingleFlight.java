@@ -0,0 +1,96 @@
+package com.feedback.service.util;
+
+import com.codahale.metrics.Counter;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * Coalesces concurrent loads of the same key: the first caller runs the load, and the callers arriving while it is
+ * in flight wait for its result instead of running their own.
+ * <p>
+ * Nothing is kept once the load is over, so a failed load is not remembered: its exception is thrown to every
+ * waiting caller, and the next caller loads again.
+ * <p>
+ * The waiting callers get the value through a copier, so that a value bound to the thread which loaded it, such as
+ * a managed entity, is not shared.
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the loaded values
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    private final Counter suppressedLoads;
+
+    private final UnaryOperator<V> copier;
+
+    /**
+     * @param suppressedLoads incremented for each caller who waited for the load of another
+     */
+    public SingleFlight(Counter suppressedLoads) {
+        this(suppressedLoads, UnaryOperator.identity());
+    }
+
+    /**
+     * @param suppressedLoads incremented for each caller who waited for the load of another
+     * @param copier gives each waiting caller its own copy of the loaded value
+     */
+    public SingleFlight(Counter suppressedLoads, UnaryOperator<V> copier) {
+        this.suppressedLoads = suppressedLoads;
+        this.copier = copier;
+    }
+
+    /**
+     * @param key the key to load
+     * @param loader the load, run by the calling thread unless a load of the key is already in flight
+     * @return the loaded value
+     */
+    public V load(K key, Supplier<V> loader) {
+        CompletableFuture<V> result = new CompletableFuture<>();
+        CompletableFuture<V> running = inFlight.putIfAbsent(key, result);
+        if (running != null) {
+            suppressedLoads.inc();
+            return copier.apply(await(running));
+        }
+        try {
+            V value = loader.get();
+            result.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            result.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, result);
+        }
+    }
+
+    /**
+     * Make the callers arriving from now on run a new load of a key rather than wait for the load in flight, which
+     * may have read the value before it changed.
+     *
+     * @param key the key whose value has changed
+     */
+    public void forget(K key) {
+        inFlight.remove(key);
+    }
+
+    private V await(CompletableFuture<V> running) {
+        try {
+            return running.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.feedback.web.filter;
+
+import com.feedback.config.Constants;
+import com.feedback.security.SecurityUtils;
+import com.feedback.service.ResponseCacheService;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Serves the JSON responses of a few hot GET endpoints from the {@link ResponseCacheService}, writing the cached
+ * bytes straight to the response instead of serializing the DTOs again.
+ * <p>
+ * It runs after the Spring Security filters, so the request has been authenticated, and responses are cached per
+ * user: a user is only ever served a response that was computed for them. Only 200 responses are cached, with the
+ * headers added while computing them; when served from the cache, these headers are merged with the headers already
+ * set by the filters before this one, which are kept.
+ */
+public class ResponseCacheFilter extends OncePerRequestFilter {
+
+    /**
+     * The headers written with the body, which are not cached.
+     */
+    private static final Set<String> BODY_HEADERS = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+
+    static {
+        BODY_HEADERS.addAll(Arrays.asList(HttpHeaders.CONTENT_TYPE, HttpHeaders.CONTENT_LENGTH,
+            HttpHeaders.CONTENT_ENCODING));
+    }
+
+    private final ResponseCacheService responseCacheService;
+
+    private final boolean gzipEnabled;
+
+    public ResponseCacheFilter(ResponseCacheService responseCacheService, boolean gzipEnabled) {
+        this.responseCacheService = responseCacheService;
+        this.gzipEnabled = gzipEnabled;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !responseCacheService.isEnabled() ||
+            !HttpMethod.GET.matches(request.getMethod()) ||
+            request.getQueryString() != null ||
+            !ResponseCacheService.CACHED_PATHS.contains(request.getRequestURI().substring(request.getContextPath().length()));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+        throws ServletException, IOException {
+
+        String login = Optional.ofNullable(SecurityUtils.getCurrentUserLogin()).orElse(Constants.ANONYMOUS_USER);
+        String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        boolean gzip = gzipEnabled && acceptEncoding != null && acceptEncoding.contains("gzip");
+        ResponseCacheService.Key key = new ResponseCacheService.Key(
+            request.getRequestURI().substring(request.getContextPath().length()), login, gzip);
+        response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+
+        Optional<ResponseCacheService.CachedResponse> cached = responseCacheService.get(key);
+        if (cached.isPresent()) {
+            mergeHeaders(response, cached.get().getHeaders());
+            write(response, cached.get().getBody(), gzip);
+            return;
+        }
+
+        long generation = responseCacheService.getGeneration();
+        Set<String> previousHeaders = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+        previousHeaders.addAll(response.getHeaderNames());
+        ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(response);
+        filterChain.doFilter(request, wrapper);
+        String contentType = wrapper.getContentType();
+        if (wrapper.getStatus() != HttpServletResponse.SC_OK || contentType == null ||
+            !MediaType.APPLICATION_JSON.isCompatibleWith(MediaType.parseMediaType(contentType))) {
+            wrapper.copyBodyToResponse();
+            return;
+        }
+        byte[] body = gzip ? gzip(wrapper.getContentAsByteArray()) : wrapper.getContentAsByteArray();
+        responseCacheService.put(key, new ResponseCacheService.CachedResponse(addedHeaders(response, previousHeaders),
+            body), generation);
+        write(response, body, gzip);
+    }
+
+    /**
+     * @return the headers set on the response, but not in the previous headers
+     */
+    private static Map<String, List<String>> addedHeaders(HttpServletResponse response, Set<String> previousHeaders) {
+        Map<String, List<String>> headers = new LinkedHashMap<>();
+        for (String name : new LinkedHashSet<>(response.getHeaderNames())) {
+            if (!previousHeaders.contains(name) && !BODY_HEADERS.contains(name)) {
+                headers.put(name, new ArrayList<>(response.getHeaders(name)));
+            }
+        }
+        return headers;
+    }
+
+    /**
+     * Add the cached headers which the response does not have yet.
+     */
+    private static void mergeHeaders(HttpServletResponse response, Map<String, List<String>> headers) {
+        for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+            if (!response.containsHeader(header.getKey())) {
+                for (String value : header.getValue()) {
+                    response.addHeader(header.getKey(), value);
+                }
+            }
+        }
+    }
+
+    private static void write(HttpServletResponse response, byte[] body, boolean gzip) throws IOException {
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType(MediaType.APPLICATION_JSON_UTF8_VALUE);
+        if (gzip) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+        response.flushBuffer();
+    }
+
+    private static byte[] gzip(byte[] body) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(body.length / 2 + 32);
+        try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(body);
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,4 @@
+/**
+ * Servlet filters.
+ */
+package com.feedback.web.filter;
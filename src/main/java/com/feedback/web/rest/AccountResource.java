@@ -6,12 +6,15 @@ import com.feedback.domain.User;
 import com.feedback.repository.UserRepository;
 import com.feedback.security.SecurityUtils;
 import com.feedback.service.MailService;
+import com.feedback.service.RegistrationPipeline;
 import com.feedback.service.UserService;
+import com.feedback.service.dto.RegistrationStatusDTO;
 import com.feedback.service.dto.UserDTO;
 import com.feedback.web.rest.vm.KeyAndPasswordVM;
 import com.feedback.web.rest.vm.ManagedUserVM;
 import com.feedback.web.rest.util.HeaderUtil;
 
+import io.github.jhipster.web.util.ResponseUtil;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -23,6 +26,7 @@ import org.springframework.web.bind.annotation.*;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.validation.Valid;
+import java.net.URI;
 import java.util.*;
 
 /**
@@ -40,21 +44,26 @@ public class AccountResource {
 
     private final MailService mailService;
 
+    private final RegistrationPipeline registrationPipeline;
+
     private static final String CHECK_ERROR_MESSAGE = "Incorrect password";
 
     public AccountResource(UserRepository userRepository, UserService userService,
-            MailService mailService) {
+            MailService mailService, RegistrationPipeline registrationPipeline) {
 
         this.userRepository = userRepository;
         this.userService = userService;
         this.mailService = mailService;
+        this.registrationPipeline = registrationPipeline;
     }
 
     /**
      * POST  /register : register the user.
      *
      * @param managedUserVM the managed user View Model
-     * @return the ResponseEntity with status 201 (Created) if the user is registered or 400 (Bad Request) if the login or email is already in use
+     * @return the ResponseEntity with status 201 (Created) if the user is registered or 400 (Bad Request) if the login or email is already in use;
+     * when registrations are asynchronous, status 202 (Accepted) with the status URL in the Location header,
+     * or 503 (Service Unavailable) if too many registrations are waiting
      */
     @PostMapping(path = "/register",
         produces={MediaType.APPLICATION_JSON_VALUE, MediaType.TEXT_PLAIN_VALUE})
@@ -66,6 +75,17 @@ public class AccountResource {
         if (!checkPasswordLength(managedUserVM.getPassword())) {
             return new ResponseEntity<>(CHECK_ERROR_MESSAGE, HttpStatus.BAD_REQUEST);
         }
+        if (registrationPipeline.isEnabled()) {
+            return registrationPipeline.submit(managedUserVM, managedUserVM.getPassword())
+                .<ResponseEntity>map(status -> ResponseEntity.accepted()
+                    .location(URI.create("/api/register/status/" + status.getId()))
+                    .body(status))
+                .orElseGet(() -> {
+                    textPlainHeaders.set(HttpHeaders.RETRY_AFTER, "1");
+                    return new ResponseEntity<>("too many pending registrations", textPlainHeaders,
+                        HttpStatus.SERVICE_UNAVAILABLE);
+                });
+        }
         return userRepository.findOneByLogin(managedUserVM.getLogin().toLowerCase())
             .map(user -> new ResponseEntity<>("login already in use", textPlainHeaders, HttpStatus.BAD_REQUEST))
             .orElseGet(() -> userRepository.findOneByEmail(managedUserVM.getEmail())
@@ -83,6 +103,18 @@ public class AccountResource {
         );
     }
 
+    /**
+     * GET  /register/status/:id : get the progress of an asynchronous registration.
+     *
+     * @param id the id of the registration, as returned by POST /register
+     * @return the ResponseEntity with status 200 (OK) and the registration status in body, or status 404 (Not Found)
+     */
+    @GetMapping("/register/status/{id}")
+    @Timed
+    public ResponseEntity<RegistrationStatusDTO> getRegistrationStatus(@PathVariable String id) {
+        return ResponseUtil.wrapOrNotFound(registrationPipeline.getStatus(id));
+    }
+
     /**
      * GET  /activate : activate the registered user.
      *
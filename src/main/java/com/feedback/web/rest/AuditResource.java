@@ -1,6 +1,11 @@
 package com.feedback.web.rest;
 
+import com.feedback.service.AuditEventExportService;
 import com.feedback.service.AuditEventService;
+import com.feedback.service.dto.AuditEventCursor;
+import com.feedback.service.dto.AuditEventCursorPage;
+import com.feedback.web.rest.errors.CustomParameterizedException;
+import com.feedback.web.rest.util.HeaderUtil;
 import com.feedback.web.rest.util.PaginationUtil;
 
 import io.github.jhipster.web.util.ResponseUtil;
@@ -12,10 +17,17 @@ import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.util.UriComponentsBuilder;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.time.ZoneId;
 import java.util.List;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * REST controller for getting the audit events.
@@ -24,10 +36,15 @@ import java.util.List;
 @RequestMapping("/management/audits")
 public class AuditResource {
 
+    private static final int MAX_CURSOR_PAGE_SIZE = 2000;
+
     private final AuditEventService auditEventService;
 
-    public AuditResource(AuditEventService auditEventService) {
+    private final AuditEventExportService auditEventExportService;
+
+    public AuditResource(AuditEventService auditEventService, AuditEventExportService auditEventExportService) {
         this.auditEventService = auditEventService;
+        this.auditEventExportService = auditEventExportService;
     }
 
     /**
@@ -48,23 +65,120 @@ public class AuditResource {
      *
      * @param fromDate the start of the time period of AuditEvents to get
      * @param toDate the end of the time period of AuditEvents to get
-     * @param pageable the pagination information
-     * @return the ResponseEntity with status 200 (OK) and the list of AuditEvents in body
+     * @param pageable the pagination information; when some AuditEvents of the period are archived, unsorted or sorted
+     * from the newest (auditEventDate,desc)
+     * @return the ResponseEntity with status 200 (OK) and the list of AuditEvents in body, or status 400 (Bad Request)
+     * if the page is sorted otherwise while some AuditEvents of the period are archived
      */
-    @GetMapping(params = {"fromDate", "toDate"})
+    @GetMapping(params = {"fromDate", "toDate", "!cursor"})
     public ResponseEntity<List<AuditEvent>> getByDates(
         @RequestParam(value = "fromDate") LocalDate fromDate,
         @RequestParam(value = "toDate") LocalDate toDate,
         @ApiParam Pageable pageable) {
 
-        Page<AuditEvent> page = auditEventService.findByDates(
-            fromDate.atStartOfDay(ZoneId.systemDefault()).toInstant(),
-            toDate.atStartOfDay(ZoneId.systemDefault()).plusDays(1).toInstant(),
-            pageable);
+        Instant from = fromDate.atStartOfDay(ZoneId.systemDefault()).toInstant();
+        Instant to = toDate.atStartOfDay(ZoneId.systemDefault()).plusDays(1).toInstant();
+        if (!auditEventService.canSortByDates(from, to, pageable.getSort())) {
+            throw new CustomParameterizedException("auditsort", String.valueOf(pageable.getSort()));
+        }
+        Page<AuditEvent> page = auditEventService.findByDates(from, to, pageable);
         HttpHeaders headers = PaginationUtil.generatePaginationHttpHeaders(page, "/management/audits");
         return new ResponseEntity<>(page.getContent(), headers, HttpStatus.OK);
     }
 
+    /**
+     * GET  /audits?cursor : get a page of AuditEvents from a cursor, optionally between the fromDate and toDate.
+     * <p>
+     * An empty cursor gets the newest events; the cursors of the pages of older and newer events are given by the
+     * "next" and "prev" links of the Link header. Each page costs the same, however far it is in the audit trail.
+     *
+     * @param cursor the cursor of the page, or empty for the first page
+     * @param fromDate the start of the time period of AuditEvents to get, or null
+     * @param toDate the end of the time period of AuditEvents to get, or null
+     * @param size the number of AuditEvents of the page
+     * @return the ResponseEntity with status 200 (OK) and the list of AuditEvents in body, or status 400 (Bad Request)
+     * if the cursor is invalid
+     */
+    @GetMapping(params = "cursor")
+    public ResponseEntity<List<AuditEvent>> getByCursor(
+        @RequestParam(value = "cursor") String cursor,
+        @RequestParam(value = "fromDate", required = false) LocalDate fromDate,
+        @RequestParam(value = "toDate", required = false) LocalDate toDate,
+        @RequestParam(value = "size", defaultValue = "20") int size) {
+
+        AuditEventCursor auditEventCursor;
+        try {
+            auditEventCursor = cursor.isEmpty() ? null : AuditEventCursor.parse(cursor);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                .headers(HeaderUtil.createFailureAlert("audit", "invalidcursor", e.getMessage()))
+                .body(null);
+        }
+        Instant from = fromDate != null ? fromDate.atStartOfDay(ZoneId.systemDefault()).toInstant() : null;
+        Instant to = toDate != null ? toDate.atStartOfDay(ZoneId.systemDefault()).plusDays(1).toInstant() : null;
+        int pageSize = Math.max(1, Math.min(MAX_CURSOR_PAGE_SIZE, size));
+        AuditEventCursorPage page = auditEventService.findByCursor(from, to, auditEventCursor, pageSize);
+
+        UriComponentsBuilder baseUrl = UriComponentsBuilder.fromPath("/management/audits");
+        if (fromDate != null) {
+            baseUrl.queryParam("fromDate", fromDate);
+        }
+        if (toDate != null) {
+            baseUrl.queryParam("toDate", toDate);
+        }
+        HttpHeaders headers = PaginationUtil.generateCursorPaginationHttpHeaders(baseUrl.toUriString(),
+            page.getNext().map(AuditEventCursor::toString).orElse(null),
+            page.getPrevious().map(AuditEventCursor::toString).orElse(null), pageSize);
+        return new ResponseEntity<>(page.getContent(), headers, HttpStatus.OK);
+    }
+
+    /**
+     * GET  /audits/export : export the AuditEvents between the fromDate and toDate, from the oldest.
+     * <p>
+     * The events are written as they are read, in a single response whatever the number of events. The "ndjson" format
+     * has a JSON object per line, the "csv" format has a header line and the data as a JSON object in its last column.
+     * The response is gzipped if the client accepts it.
+     *
+     * @param fromDate the start of the time period of AuditEvents to export
+     * @param toDate the end of the time period of AuditEvents to export
+     * @param format "ndjson" or "csv"
+     * @param acceptEncoding the Accept-Encoding header of the request
+     * @param response the response the events are written to, with status 200 (OK), or status 400 (Bad Request) if
+     * the format is unknown
+     * @throws IOException if the response cannot be written
+     */
+    @GetMapping("/export")
+    public void export(
+        @RequestParam(value = "fromDate") LocalDate fromDate,
+        @RequestParam(value = "toDate") LocalDate toDate,
+        @RequestParam(value = "format", defaultValue = "ndjson") String format,
+        @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+        HttpServletResponse response) throws IOException {
+
+        AuditEventExportService.Format exportFormat;
+        try {
+            exportFormat = AuditEventExportService.Format.valueOf(format.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new CustomParameterizedException("auditexportformat", format);
+        }
+        response.setContentType(exportFormat == AuditEventExportService.Format.CSV ?
+            "text/csv;charset=UTF-8" : "application/x-ndjson;charset=UTF-8");
+        response.setHeader("Content-Disposition", "attachment; filename=\"audits-" + fromDate + "-" + toDate + "." +
+            exportFormat.name().toLowerCase(Locale.ROOT) + "\"");
+        response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        boolean gzip = acceptEncoding != null && acceptEncoding.contains("gzip");
+        if (gzip) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        OutputStream out = gzip ? new GZIPOutputStream(response.getOutputStream(), 8192) : response.getOutputStream();
+        auditEventExportService.export(fromDate.atStartOfDay(ZoneId.systemDefault()).toInstant(),
+            toDate.atStartOfDay(ZoneId.systemDefault()).plusDays(1).toInstant(), exportFormat, out);
+        if (gzip) {
+            ((GZIPOutputStream) out).finish();
+        }
+        out.flush();
+    }
+
     /**
      * GET  /audits/:id : get an AuditEvent by id.
      *
@@ -0,0 +1,86 @@
+package com.feedback.web.rest;
+
+import com.feedback.service.AuditEventSearchService;
+import com.feedback.service.AuditEventService;
+import com.feedback.web.rest.errors.CustomParameterizedException;
+import com.feedback.web.rest.util.PaginationUtil;
+
+import com.codahale.metrics.annotation.Timed;
+import io.swagger.annotations.ApiParam;
+import org.springframework.boot.actuate.audit.AuditEvent;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.List;
+
+/**
+ * Controller for searching the audit events by their data, from the index of the AuditEventSearchService.
+ */
+@RestController
+@RequestMapping("/management/audits")
+public class AuditSearchResource {
+
+    private final AuditEventService auditEventService;
+
+    private final AuditEventSearchService auditEventSearchService;
+
+    public AuditSearchResource(AuditEventService auditEventService, AuditEventSearchService auditEventSearchService) {
+        this.auditEventService = auditEventService;
+        this.auditEventSearchService = auditEventSearchService;
+    }
+
+    /**
+     * GET  /audits/search : get a page of the AuditEvents with a data, for instance remoteAddress, optionally between
+     * the fromDate and toDate.
+     *
+     * @param name the name of the data
+     * @param value the value of the data
+     * @param fromDate the start of the time period of AuditEvents to get, or null
+     * @param toDate the end of the time period of AuditEvents to get, or null
+     * @param pageable the pagination information
+     * @return the ResponseEntity with status 200 (OK) and the list of AuditEvents in body, or status 400 (Bad Request)
+     * if the search is disabled or the data name is not indexed
+     */
+    @GetMapping("/search")
+    @Timed
+    public ResponseEntity<List<AuditEvent>> search(
+        @RequestParam(value = "name") String name,
+        @RequestParam(value = "value") String value,
+        @RequestParam(value = "fromDate", required = false) LocalDate fromDate,
+        @RequestParam(value = "toDate", required = false) LocalDate toDate,
+        @ApiParam Pageable pageable) {
+
+        if (!auditEventSearchService.isEnabled()) {
+            throw new CustomParameterizedException("auditsearchdisabled");
+        }
+        if (!auditEventSearchService.isIndexed(name)) {
+            throw new CustomParameterizedException("auditsearchname", name);
+        }
+        Instant from = fromDate != null ? fromDate.atStartOfDay(ZoneId.systemDefault()).toInstant() : null;
+        Instant to = toDate != null ? toDate.atStartOfDay(ZoneId.systemDefault()).plusDays(1).toInstant() : null;
+        Page<AuditEvent> page = auditEventService.search(name, value, from, to, pageable);
+
+        UriComponentsBuilder baseUrl = UriComponentsBuilder.fromPath("/management/audits/search")
+            .queryParam("name", name)
+            .queryParam("value", value);
+        if (fromDate != null) {
+            baseUrl.queryParam("fromDate", fromDate);
+        }
+        if (toDate != null) {
+            baseUrl.queryParam("toDate", toDate);
+        }
+        HttpHeaders headers = PaginationUtil.generatePaginationHttpHeaders(page, baseUrl.toUriString());
+        return new ResponseEntity<>(page.getContent(), headers, HttpStatus.OK);
+    }
+}
@@ -0,0 +1,75 @@
+package com.feedback.web.rest;
+
+import com.feedback.service.AuditRollupService;
+import com.feedback.service.dto.AuditStatsDTO;
+import com.feedback.web.rest.errors.CustomParameterizedException;
+
+import com.codahale.metrics.annotation.Timed;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Locale;
+
+/**
+ * Controller for viewing the audit event statistics, served from the rollup tables.
+ */
+@RestController
+@RequestMapping("/management/audits")
+public class AuditStatsResource {
+
+    private final AuditRollupService auditRollupService;
+
+    public AuditStatsResource(AuditRollupService auditRollupService) {
+        this.auditRollupService = auditRollupService;
+    }
+
+    /**
+     * GET  /audits/stats : get the AuditEvent counts of each hour or day between the fromDate and toDate.
+     * <p>
+     * The counts are those of the last compaction of the rollup tables, so the latest events may be missing.
+     *
+     * @param granularity "hour" or "day"
+     * @param fromDate the start of the time period to count, or 30 days ago
+     * @param toDate the end of the time period to count, or today
+     * @param type the AuditEvent type to count, or null for all of them
+     * @param principal the principal to count, or null for all of them
+     * @param groupBy "type" or "principal", the keys of the counts of each bucket
+     * @return the audit event statistics, or status 400 (Bad Request) if a parameter is invalid
+     */
+    @GetMapping("/stats")
+    @Timed
+    public AuditStatsDTO getStats(
+        @RequestParam(value = "granularity", defaultValue = "hour") String granularity,
+        @RequestParam(value = "fromDate", required = false) LocalDate fromDate,
+        @RequestParam(value = "toDate", required = false) LocalDate toDate,
+        @RequestParam(value = "type", required = false) String type,
+        @RequestParam(value = "principal", required = false) String principal,
+        @RequestParam(value = "groupBy", defaultValue = "type") String groupBy) {
+
+        AuditRollupService.Granularity statsGranularity = parse(AuditRollupService.Granularity.class, granularity,
+            "auditstatsgranularity");
+        AuditRollupService.GroupBy statsGroupBy = parse(AuditRollupService.GroupBy.class, groupBy,
+            "auditstatsgroupby");
+        LocalDate to = toDate != null ? toDate : LocalDate.now();
+        LocalDate from = fromDate != null ? fromDate : to.minusDays(30);
+        try {
+            return auditRollupService.getStats(statsGranularity,
+                from.atStartOfDay(ZoneId.systemDefault()).toInstant(),
+                to.atStartOfDay(ZoneId.systemDefault()).plusDays(1).toInstant(), type, principal, statsGroupBy);
+        } catch (IllegalArgumentException e) {
+            throw new CustomParameterizedException("auditstatsperiod", from.toString(), to.toString());
+        }
+    }
+
+    private static <E extends Enum<E>> E parse(Class<E> type, String value, String message) {
+        try {
+            return Enum.valueOf(type, value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new CustomParameterizedException(message, value);
+        }
+    }
+}
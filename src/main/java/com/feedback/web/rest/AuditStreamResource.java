@@ -0,0 +1,54 @@
+package com.feedback.web.rest;
+
+import com.feedback.config.audit.AuditEventBroadcaster;
+import com.feedback.web.rest.errors.CustomParameterizedException;
+
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * Controller for following the audit events as they are written, without querying the database.
+ */
+@RestController
+@RequestMapping("/management/audits")
+public class AuditStreamResource {
+
+    private final AuditEventBroadcaster auditEventBroadcaster;
+
+    public AuditStreamResource(AuditEventBroadcaster auditEventBroadcaster) {
+        this.auditEventBroadcaster = auditEventBroadcaster;
+    }
+
+    /**
+     * GET  /audits/stream : get the AuditEvents as they are written, as Server-Sent Events named "audit", whose id is
+     * the id of the AuditEvent.
+     * <p>
+     * A stream too slow to keep up with the events is closed; the browser then reconnects with the Last-Event-ID
+     * header, and gets the events it missed if they are among the latest ones.
+     *
+     * @param type the AuditEvent type to send, or null for all of them
+     * @param principal the principal whose AuditEvents to send, or null for all of them
+     * @param lastEventId the id of the last AuditEvent received, to resume a stream
+     * @return the stream of AuditEvents, or status 400 (Bad Request) if the Last-Event-ID is invalid
+     */
+    @GetMapping("/stream")
+    public SseEmitter stream(
+        @RequestParam(value = "type", required = false) String type,
+        @RequestParam(value = "principal", required = false) String principal,
+        @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+
+        Long lastId = null;
+        if (lastEventId != null && !lastEventId.isEmpty()) {
+            try {
+                lastId = Long.valueOf(lastEventId);
+            } catch (NumberFormatException e) {
+                throw new CustomParameterizedException("auditstreamlasteventid", lastEventId);
+            }
+        }
+        return auditEventBroadcaster.subscribe(type, principal, lastId);
+    }
+}
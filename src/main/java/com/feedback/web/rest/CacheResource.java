@@ -0,0 +1,72 @@
+package com.feedback.web.rest;
+
+import com.feedback.service.CacheStatsService;
+import com.feedback.service.dto.CacheStatsDTO;
+
+import com.codahale.metrics.annotation.Timed;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+/**
+ * Controller for viewing the content of the cache regions and evicting their entries.
+ */
+@RestController
+@RequestMapping("/management")
+public class CacheResource {
+
+    private final Logger log = LoggerFactory.getLogger(CacheResource.class);
+
+    private final CacheStatsService cacheStatsService;
+
+    public CacheResource(CacheStatsService cacheStatsService) {
+        this.cacheStatsService = cacheStatsService;
+    }
+
+    /**
+     * GET  /caches : get the statistics of all the cache regions.
+     *
+     * @return the list of region statistics
+     */
+    @GetMapping("/caches")
+    @Timed
+    public List<CacheStatsDTO> getAllCaches() {
+        return cacheStatsService.getAllStats();
+    }
+
+    /**
+     * DELETE  /caches/:name : evict every entry of a cache region.
+     *
+     * @param name the name of the region
+     * @return the ResponseEntity with status 200 (OK), or with status 404 (Not Found) if the region does not exist
+     */
+    @DeleteMapping("/caches/{name:.+}")
+    @Timed
+    public ResponseEntity<Void> evictCache(@PathVariable String name) {
+        log.debug("REST request to evict cache region : {}", name);
+        return new ResponseEntity<>(cacheStatsService.evict(name) ? HttpStatus.OK : HttpStatus.NOT_FOUND);
+    }
+
+    /**
+     * DELETE  /caches/:name/entries/:key : evict one entry of a cache region.
+     *
+     * @param name the name of the region
+     * @param key the key of the entry; the id of the entity, or of the collection owner, for Hibernate regions
+     * @return the ResponseEntity with status 200 (OK), with status 400 (Bad Request) if the key is not a valid id
+     * for the region, or with status 404 (Not Found) if the region does not exist
+     */
+    @DeleteMapping("/caches/{name:.+}/entries/{key:.+}")
+    @Timed
+    public ResponseEntity<Void> evictCacheEntry(@PathVariable String name, @PathVariable String key) {
+        log.debug("REST request to evict key {} from cache region : {}", key, name);
+        try {
+            return new ResponseEntity<>(cacheStatsService.evict(name, key) ? HttpStatus.OK : HttpStatus.NOT_FOUND);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.feedback.web.rest;
+
+import com.feedback.service.UserStatsService;
+import com.feedback.service.dto.UserStatsDTO;
+
+import com.codahale.metrics.annotation.Timed;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Controller for viewing the user statistics, served from in-memory counters.
+ */
+@RestController
+@RequestMapping("/management")
+public class UserStatsResource {
+
+    private final UserStatsService userStatsService;
+
+    public UserStatsResource(UserStatsService userStatsService) {
+        this.userStatsService = userStatsService;
+    }
+
+    /**
+     * GET  /user-stats : get the user counts by activation state, language and creation day.
+     *
+     * @return the user statistics
+     */
+    @GetMapping("/user-stats")
+    @Timed
+    public UserStatsDTO getUserStats() {
+        return userStatsService.getStats();
+    }
+}
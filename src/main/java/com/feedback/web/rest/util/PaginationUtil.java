@@ -39,6 +39,32 @@ public final class PaginationUtil {
         return headers;
     }
 
+    /**
+     * Generate the Link header of a page read from a cursor: there is no total count, and no last page.
+     *
+     * @param baseUrl the URL of the first page, with the other query parameters of the request
+     * @param next the cursor of the next page, or null
+     * @param prev the cursor of the previous page, or null
+     * @param size the size of the pages
+     */
+    public static HttpHeaders generateCursorPaginationHttpHeaders(String baseUrl, String next, String prev, int size) {
+        HttpHeaders headers = new HttpHeaders();
+        String link = "";
+        if (next != null) {
+            link = "<" + generateCursorUri(baseUrl, next, size) + ">; rel=\"next\",";
+        }
+        if (prev != null) {
+            link += "<" + generateCursorUri(baseUrl, prev, size) + ">; rel=\"prev\",";
+        }
+        link += "<" + generateCursorUri(baseUrl, "", size) + ">; rel=\"first\"";
+        headers.add(HttpHeaders.LINK, link);
+        return headers;
+    }
+
+    private static String generateCursorUri(String baseUrl, String cursor, int size) {
+        return UriComponentsBuilder.fromUriString(baseUrl).queryParam("cursor", cursor).queryParam("size", size).toUriString();
+    }
+
     private static String generateUri(String baseUrl, int page, int size) {
         return UriComponentsBuilder.fromUriString(baseUrl).queryParam("page", page).queryParam("size", size).toUriString();
     }
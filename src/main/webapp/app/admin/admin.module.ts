@@ -7,6 +7,7 @@ import { RetroAppSharedModule } from '../shared';
 import {
     adminState,
     AuditsComponent,
+    CachesComponent,
     UserMgmtComponent,
     UserDialogComponent,
     UserDeleteDialogComponent,
@@ -21,6 +22,7 @@ import {
     JhiConfigurationComponent,
     JhiDocsComponent,
     AuditsService,
+    CachesService,
     JhiConfigurationService,
     JhiHealthService,
     JhiMetricsService,
@@ -38,6 +40,7 @@ import {
     ],
     declarations: [
         AuditsComponent,
+        CachesComponent,
         UserMgmtComponent,
         UserDialogComponent,
         UserDeleteDialogComponent,
@@ -60,6 +63,7 @@ import {
     ],
     providers: [
         AuditsService,
+        CachesService,
         JhiConfigurationService,
         JhiHealthService,
         JhiMetricsService,
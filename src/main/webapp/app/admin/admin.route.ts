@@ -2,6 +2,7 @@ import { Routes } from '@angular/router';
 
 import {
     auditsRoute,
+    cachesRoute,
     configurationRoute,
     docsRoute,
     healthRoute,
@@ -15,6 +16,7 @@ import { UserRouteAccessService } from '../shared';
 
 const ADMIN_ROUTES = [
     auditsRoute,
+    cachesRoute,
     configurationRoute,
     docsRoute,
     healthRoute,
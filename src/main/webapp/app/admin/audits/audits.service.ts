@@ -12,7 +12,9 @@ export class AuditsService  {
         params.set('toDate', req.toDate);
         params.set('page', req.page);
         params.set('size', req.size);
-        params.set('sort', req.sort);
+        if (req.sort) {
+            params.set('sort', req.sort);
+        }
 
         const options = {
             search: params
@@ -0,0 +1,13 @@
+export class CacheStats {
+    constructor(
+        public name: string,
+        public size: number,
+        public hits: number,
+        public misses: number,
+        public hitRatio: number,
+        public evictions: number,
+        public expiries: number,
+        public averageGetTimeMicros: number,
+        public estimatedMemoryBytes: number
+    ) { }
+}
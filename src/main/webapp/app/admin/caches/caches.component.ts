@@ -0,0 +1,46 @@
+import { Component, OnInit } from '@angular/core';
+
+import { CacheStats } from './cache-stats.model';
+import { CachesService } from './caches.service';
+
+@Component({
+    selector: 'jhi-caches',
+    templateUrl: './caches.component.html',
+})
+export class CachesComponent implements OnInit {
+
+    caches: CacheStats[];
+    keys: { [name: string]: string };
+    orderProp: string;
+    reverse: boolean;
+
+    constructor(
+        private cachesService: CachesService
+    ) {
+        this.keys = {};
+        this.orderProp = 'name';
+        this.reverse = false;
+    }
+
+    ngOnInit() {
+        this.refresh();
+    }
+
+    refresh() {
+        this.cachesService.findAll().subscribe((caches) => this.caches = caches);
+    }
+
+    evict(name: string) {
+        this.cachesService.evict(name).subscribe(() => this.refresh());
+    }
+
+    evictKey(name: string) {
+        const key = this.keys[name];
+        if (key) {
+            this.cachesService.evictKey(name, key).subscribe(() => {
+                this.keys[name] = '';
+                this.refresh();
+            });
+        }
+    }
+}
@@ -0,0 +1,11 @@
+import { Route } from '@angular/router';
+
+import { CachesComponent } from './caches.component';
+
+export const cachesRoute: Route = {
+    path: 'caches',
+    component: CachesComponent,
+    data: {
+        pageTitle: 'caches.title'
+    }
+};
@@ -0,0 +1,22 @@
+import { Injectable } from '@angular/core';
+import { Http, Response } from '@angular/http';
+import { Observable } from 'rxjs/Rx';
+
+import { CacheStats } from './cache-stats.model';
+
+@Injectable()
+export class CachesService {
+    constructor(private http: Http) { }
+
+    findAll(): Observable<CacheStats[]> {
+        return this.http.get('management/caches').map((res: Response) => res.json());
+    }
+
+    evict(name: string): Observable<Response> {
+        return this.http.delete(`management/caches/${encodeURIComponent(name)}`);
+    }
+
+    evictKey(name: string, key: string): Observable<Response> {
+        return this.http.delete(`management/caches/${encodeURIComponent(name)}/entries/${encodeURIComponent(key)}`);
+    }
+}
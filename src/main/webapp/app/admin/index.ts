@@ -3,6 +3,10 @@ export * from './audits/audits.service';
 export * from './audits/audits.route';
 export * from './audits/audit.model';
 export * from './audits/audit-data.model';
+export * from './caches/caches.component';
+export * from './caches/caches.service';
+export * from './caches/caches.route';
+export * from './caches/cache-stats.model';
 export * from './configuration/configuration.component';
 export * from './configuration/configuration.service';
 export * from './configuration/configuration.route';
@@ -0,0 +1,126 @@
+package com.feedback.config;
+
+import com.feedback.domain.Authority;
+import com.feedback.domain.User;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import io.github.jhipster.config.JHipsterProperties;
+import org.ehcache.config.ResourceType;
+import org.ehcache.expiry.Duration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.spi.CachingProvider;
+import java.util.HashSet;
+import java.util.OptionalLong;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the per-region cache configuration.
+ *
+ * @see CacheConfiguration
+ */
+public class CacheConfigurationTest {
+
+    private ApplicationProperties applicationProperties;
+
+    private JHipsterProperties jHipsterProperties;
+
+    private CacheManager cacheManager;
+
+    @Before
+    public void setup() {
+        jHipsterProperties = new JHipsterProperties();
+        jHipsterProperties.getCache().getEhcache().setMaxEntries(10);
+        jHipsterProperties.getCache().getEhcache().setTimeToLiveSeconds(60);
+        applicationProperties = new ApplicationProperties();
+        ApplicationProperties.Cache.Region authority = new ApplicationProperties.Cache.Region();
+        authority.setTimeToLiveSeconds(0L);
+        applicationProperties.getCache().getRegions().put("authority", authority);
+        ApplicationProperties.Cache.Region user = new ApplicationProperties.Cache.Region();
+        user.setMaxEntries(2L);
+        user.setOffHeapMb(1);
+        applicationProperties.getCache().getRegions().put("user", user);
+
+        CachingProvider cachingProvider = Caching.getCachingProvider("org.ehcache.jsr107.EhcacheCachingProvider");
+        cacheManager = cachingProvider.getCacheManager(cachingProvider.getDefaultURI(), getClass().getClassLoader());
+        new CacheConfiguration(jHipsterProperties, applicationProperties).cacheManagerCustomizer().customize(cacheManager);
+    }
+
+    @After
+    public void destroy() {
+        cacheManager.close();
+    }
+
+    @Test
+    public void testRegionsAreConfiguredSeparately() {
+        org.ehcache.config.CacheRuntimeConfiguration<Object, Object> userConfiguration =
+            ehcache(User.class.getName()).getRuntimeConfiguration();
+        assertThat(userConfiguration.getResourcePools().getPoolForResource(ResourceType.Core.HEAP).getSize())
+            .isEqualTo(2);
+        assertThat(userConfiguration.getResourcePools().getPoolForResource(ResourceType.Core.OFFHEAP).getSize())
+            .isEqualTo(1);
+        assertThat(userConfiguration.getExpiry().getExpiryForCreation(1L, "user"))
+            .isEqualTo(Duration.of(60, TimeUnit.SECONDS));
+
+        org.ehcache.config.CacheRuntimeConfiguration<Object, Object> authorityConfiguration =
+            ehcache(Authority.class.getName()).getRuntimeConfiguration();
+        assertThat(authorityConfiguration.getResourcePools().getPoolForResource(ResourceType.Core.HEAP).getSize())
+            .isEqualTo(10);
+        assertThat(authorityConfiguration.getResourcePools().getPoolForResource(ResourceType.Core.OFFHEAP)).isNull();
+        assertThat(authorityConfiguration.getExpiry().getExpiryForCreation("ROLE_USER", "authority"))
+            .isEqualTo(Duration.INFINITE);
+    }
+
+    @Test
+    public void testOffHeapTierKeepsEvictedHeapEntries() {
+        Cache<Object, Object> cache = cacheManager.getCache(User.class.getName());
+        for (long id = 0; id < 100; id++) {
+            HashSet<String> value = new HashSet<>();
+            value.add("user-" + id);
+            cache.put(id, value);
+        }
+        // only 2 entries fit on the heap, the others are read back from the off-heap tier
+        for (long id = 0; id < 100; id++) {
+            assertThat((HashSet<?>) cache.get(id)).containsExactly("user-" + id);
+        }
+        cache.put("login", 42);
+        assertThat(cache.get("login")).isEqualTo(42);
+    }
+
+    @Test
+    public void testCaffeineRegionsAreConfiguredSeparately() {
+        CachingProvider cachingProvider = Caching.getCachingProvider(CaffeineCachingProvider.class.getName());
+        CacheManager caffeineCacheManager =
+            cachingProvider.getCacheManager(cachingProvider.getDefaultURI(), getClass().getClassLoader());
+        try {
+            new CacheConfiguration(jHipsterProperties, applicationProperties).cacheManagerCustomizer()
+                .customize(caffeineCacheManager);
+
+            CaffeineConfiguration<?, ?> userConfiguration = caffeineCacheManager.getCache(User.class.getName())
+                .getConfiguration(CaffeineConfiguration.class);
+            assertThat(userConfiguration.getMaximumSize()).isEqualTo(OptionalLong.of(2));
+            assertThat(userConfiguration.getExpireAfterWrite())
+                .isEqualTo(OptionalLong.of(TimeUnit.SECONDS.toNanos(60)));
+            assertThat(userConfiguration.isStoreByValue()).isFalse();
+
+            CaffeineConfiguration<?, ?> authorityConfiguration = caffeineCacheManager
+                .getCache(Authority.class.getName()).getConfiguration(CaffeineConfiguration.class);
+            assertThat(authorityConfiguration.getMaximumSize()).isEqualTo(OptionalLong.of(10));
+            assertThat(authorityConfiguration.getExpireAfterWrite()).isEqualTo(OptionalLong.empty());
+        } finally {
+            caffeineCacheManager.close();
+        }
+    }
+
+    private org.ehcache.Cache<Object, Object> ehcache(String name) {
+        return cacheManager.getCache(name).unwrap(org.ehcache.Cache.class);
+    }
+}
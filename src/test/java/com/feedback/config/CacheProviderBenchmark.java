@@ -0,0 +1,143 @@
+package com.feedback.config;
+
+import com.feedback.domain.User;
+
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import io.github.jhipster.config.JHipsterProperties;
+import org.ehcache.jsr107.EhcacheCachingProvider;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.spi.CachingProvider;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Benchmark of the hit ratio and throughput of the JCache providers, with the regions of {@link CacheConfiguration}.
+ * <p>
+ * A skewed trace is replayed on the user region, the value being loaded on each miss: first keys following a Zipf
+ * distribution, then the same keys interleaved with keys read once only, as when crawling the users.
+ * <p>
+ * It is not run by the build, use "./mvnw test -Dtest=CacheProviderBenchmark".
+ */
+public class CacheProviderBenchmark {
+
+    private static final long MAX_ENTRIES = 1000;
+
+    private static final int KEYS = 20_000;
+
+    private static final double ZIPF_EXPONENT = 0.9;
+
+    private static final int ACCESSES = 1_000_000;
+
+    private static final int SCAN_PERIOD = 5;
+
+    private static final int THREADS = 4;
+
+    private static long[] zipfTrace;
+
+    private static long[] scanTrace;
+
+    private final Logger log = LoggerFactory.getLogger(CacheProviderBenchmark.class);
+
+    @BeforeClass
+    public static void createTraces() {
+        double[] cumulative = new double[KEYS];
+        double sum = 0;
+        for (int rank = 0; rank < KEYS; rank++) {
+            sum += 1 / Math.pow(rank + 1, ZIPF_EXPONENT);
+            cumulative[rank] = sum;
+        }
+        Random random = new Random(42);
+        zipfTrace = new long[ACCESSES];
+        scanTrace = new long[ACCESSES];
+        long nextScannedKey = KEYS;
+        for (int i = 0; i < ACCESSES; i++) {
+            int rank = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+            zipfTrace[i] = rank < 0 ? -rank - 1 : rank;
+            scanTrace[i] = i % SCAN_PERIOD == 0 ? nextScannedKey++ : zipfTrace[i];
+        }
+    }
+
+    @Test
+    public void ehcache() throws Exception {
+        run(EhcacheCachingProvider.class.getName());
+    }
+
+    @Test
+    public void caffeine() throws Exception {
+        run(CaffeineCachingProvider.class.getName());
+    }
+
+    private void run(String provider) throws Exception {
+        replay(provider, "zipf", zipfTrace, 1);
+        replay(provider, "zipf", zipfTrace, THREADS);
+        replay(provider, "zipf with scans", scanTrace, 1);
+        replay(provider, "zipf with scans", scanTrace, THREADS);
+    }
+
+    private void replay(String provider, String traceName, long[] trace, int threads) throws Exception {
+        CachingProvider cachingProvider = Caching.getCachingProvider(provider);
+        CacheManager cacheManager = cachingProvider.getCacheManager(
+            cachingProvider.getDefaultURI(), getClass().getClassLoader());
+        try {
+            JHipsterProperties jHipsterProperties = new JHipsterProperties();
+            jHipsterProperties.getCache().getEhcache().setTimeToLiveSeconds(3600);
+            ApplicationProperties applicationProperties = new ApplicationProperties();
+            ApplicationProperties.Cache.Region region = new ApplicationProperties.Cache.Region();
+            region.setMaxEntries(MAX_ENTRIES);
+            applicationProperties.getCache().getRegions().put("user", region);
+            new CacheConfiguration(jHipsterProperties, applicationProperties).cacheManagerCustomizer()
+                .customize(cacheManager);
+            Cache<Object, Object> cache = cacheManager.getCache(User.class.getName());
+
+            // Warm up with the first half of the trace, then measure the whole trace
+            LongAdder hits = new LongAdder();
+            replay(cache, trace, 0, trace.length / 2, hits);
+            hits.reset();
+
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            List<Future<?>> results = new ArrayList<>();
+            int slice = trace.length / threads;
+            long start = System.nanoTime();
+            for (int thread = 0; thread < threads; thread++) {
+                int from = thread * slice;
+                results.add(executor.submit(() -> replay(cache, trace, from, from + slice, hits)));
+            }
+            for (Future<?> result : results) {
+                result.get();
+            }
+            long elapsedNanos = Math.max(1, System.nanoTime() - start);
+            executor.shutdown();
+
+            long accesses = (long) slice * threads;
+            log.info("{} on {}, {} thread(s): hit ratio {}%, {} ops/s", provider.substring(provider.lastIndexOf('.') + 1),
+                traceName, threads, String.format("%.1f", hits.sum() * 100.0 / accesses),
+                accesses * 1_000_000_000L / elapsedNanos);
+        } finally {
+            cacheManager.close();
+        }
+    }
+
+    private static void replay(Cache<Object, Object> cache, long[] trace, int from, int to, LongAdder hits) {
+        for (int i = from; i < to; i++) {
+            Long key = trace[i];
+            if (cache.get(key) != null) {
+                hits.increment();
+            } else {
+                cache.put(key, "user-" + key);
+            }
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.feedback.config;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Unit tests for the ReplicaRoutingDataSource class, using two local H2 databases.
+ *
+ * @see ReplicaRoutingDataSource
+ */
+public class ReplicaRoutingDataSourceTest {
+
+    private DataSource primary;
+
+    private DataSource replica;
+
+    @Before
+    public void setup() {
+        primary = h2DataSource("jdbc:h2:mem:routing-primary;DB_CLOSE_DELAY=-1");
+        replica = h2DataSource("jdbc:h2:mem:routing-replica;DB_CLOSE_DELAY=-1");
+        new JdbcTemplate(primary).execute("create table node (name varchar(20)); insert into node values ('primary')");
+        new JdbcTemplate(replica).execute("create table node (name varchar(20)); insert into node values ('replica')");
+    }
+
+    @After
+    public void teardown() {
+        new JdbcTemplate(primary).execute("drop table node");
+        new JdbcTemplate(replica).execute("drop table node");
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    public void testReadOnlyTransactionsGoToTheReplica() {
+        ReplicaRoutingDataSource routingDataSource =
+            new ReplicaRoutingDataSource(primary, Collections.singletonList(replica), false, 1);
+
+        assertThat(currentNode(routingDataSource, true)).isEqualTo("replica");
+        assertThat(currentNode(routingDataSource, false)).isEqualTo("primary");
+    }
+
+    @Test
+    public void testFallbackToThePrimaryWhenTheReplicaIsDown() {
+        DataSource missingReplica = h2DataSource("jdbc:h2:mem:routing-missing;IFEXISTS=TRUE");
+        ReplicaRoutingDataSource routingDataSource =
+            new ReplicaRoutingDataSource(primary, Arrays.asList(missingReplica, replica), false, 1);
+
+        routingDataSource.checkReplicas();
+
+        assertThat(routingDataSource.isReplicaHealthy(0)).isFalse();
+        assertThat(routingDataSource.isReplicaHealthy(1)).isTrue();
+        assertThat(currentNode(routingDataSource, true)).isEqualTo("replica");
+        assertThat(currentNode(routingDataSource, true)).isEqualTo("replica");
+
+        routingDataSource = new ReplicaRoutingDataSource(primary, Collections.singletonList(missingReplica), false, 1);
+        assertThat(currentNode(routingDataSource, true)).isEqualTo("primary");
+        assertThat(routingDataSource.isReplicaHealthy(0)).isFalse();
+    }
+
+    @Test
+    public void testReadsArePinnedToThePrimaryAfterAWrite() {
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+        ReplicaRoutingDataSource routingDataSource =
+            new ReplicaRoutingDataSource(primary, Collections.singletonList(replica), true, 1);
+
+        assertThat(currentNode(routingDataSource, true)).isEqualTo("replica");
+        assertThat(currentNode(routingDataSource, false)).isEqualTo("primary");
+        assertThat(currentNode(routingDataSource, true)).isEqualTo("primary");
+
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+        assertThat(currentNode(routingDataSource, true)).isEqualTo("replica");
+    }
+
+    @Test
+    public void testConnectionsWithCredentialsAreRoutedToo() {
+        ReplicaRoutingDataSource routingDataSource =
+            new ReplicaRoutingDataSource(primary, Collections.singletonList(replica), false, 1);
+        TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(primary));
+        transactionTemplate.setReadOnly(true);
+
+        String node = transactionTemplate.execute(status -> nodeWithCredentials(routingDataSource));
+
+        assertThat(node).isEqualTo("replica");
+        assertThat(nodeWithCredentials(routingDataSource)).isEqualTo("primary");
+    }
+
+    private String nodeWithCredentials(ReplicaRoutingDataSource routingDataSource) {
+        try (Connection connection = routingDataSource.getConnection("sa", "")) {
+            return new JdbcTemplate(new SingleConnectionDataSource(connection, true))
+                .queryForObject("select name from node", String.class);
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private String currentNode(ReplicaRoutingDataSource routingDataSource, boolean readOnly) {
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(routingDataSource);
+        TransactionTemplate transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        transactionTemplate.setReadOnly(readOnly);
+        return transactionTemplate.execute(status ->
+            new JdbcTemplate(dataSource).queryForObject("select name from node", String.class));
+    }
+
+    private static DataSource h2DataSource(String url) {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL(url);
+        dataSource.setUser("sa");
+        return dataSource;
+    }
+}
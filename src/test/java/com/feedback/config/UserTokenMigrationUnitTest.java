@@ -0,0 +1,116 @@
+package com.feedback.config;
+
+import com.feedback.service.UserTokenService;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the UserTokenMigration, on a database of its own as the shared one has already dropped the keys of
+ * jhi_user.
+ *
+ * @see UserTokenMigration
+ */
+public class UserTokenMigrationUnitTest {
+
+    private Connection connection;
+
+    private UserTokenMigration migration;
+
+    @Before
+    public void setup() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:h2:mem:user-token-migration");
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("create sequence hibernate_sequence start with 1000 increment by 50");
+            statement.execute("create table jhi_user (id bigint primary key, activated boolean not null, " +
+                "activation_key varchar(20), reset_key varchar(20), reset_date timestamp)");
+            statement.execute("create table jhi_user_token (id bigint primary key, user_id bigint not null, " +
+                "token_hash varchar(64) not null unique, purpose varchar(20) not null, " +
+                "created_date timestamp not null, expiry_date timestamp not null)");
+        }
+        migration = new UserTokenMigration();
+        migration.setChunkSize("2");
+    }
+
+    @After
+    public void destroy() throws SQLException {
+        connection.close();
+    }
+
+    @Test
+    public void testPendingKeysAreMovedAsHashes() throws SQLException {
+        Instant resetDate = Instant.now().minus(1, ChronoUnit.HOURS);
+        insertUser(1, false, "activation1", null, null);
+        insertUser(2, true, null, "reset2", resetDate);
+        insertUser(3, false, "activation3", "reset3", resetDate);
+        insertUser(4, true, null, null, null);
+
+        assertThat(migration.migrate(connection)).isEqualTo(4);
+
+        assertToken("activation1", 1, "ACTIVATION");
+        assertToken("reset2", 2, "PASSWORD_RESET");
+        assertToken("activation3", 3, "ACTIVATION");
+        assertToken("reset3", 3, "PASSWORD_RESET");
+        try (PreparedStatement select = connection.prepareStatement(
+                "select created_date, expiry_date from jhi_user_token where token_hash = ?")) {
+            select.setString(1, UserTokenService.hashKey("reset2"));
+            try (ResultSet resultSet = select.executeQuery()) {
+                assertThat(resultSet.next()).isTrue();
+                assertThat(resultSet.getTimestamp(1).toInstant()).isEqualTo(resetDate);
+                assertThat(resultSet.getTimestamp(2).toInstant()).isEqualTo(resetDate.plusSeconds(86400));
+            }
+        }
+    }
+
+    @Test
+    public void testUsedAndExpiredKeysAreNotMoved() throws SQLException {
+        insertUser(1, true, "activation1", null, null);
+        insertUser(2, true, null, "reset2", Instant.now().minus(2, ChronoUnit.DAYS));
+        insertUser(3, true, null, "reset3", null);
+
+        assertThat(migration.migrate(connection)).isEqualTo(0);
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("select count(*) from jhi_user_token")) {
+            resultSet.next();
+            assertThat(resultSet.getLong(1)).isEqualTo(0);
+        }
+    }
+
+    private void insertUser(long id, boolean activated, String activationKey, String resetKey, Instant resetDate)
+        throws SQLException {
+        try (PreparedStatement insert = connection.prepareStatement(
+                "insert into jhi_user (id, activated, activation_key, reset_key, reset_date) values (?, ?, ?, ?, ?)")) {
+            insert.setLong(1, id);
+            insert.setBoolean(2, activated);
+            insert.setString(3, activationKey);
+            insert.setString(4, resetKey);
+            insert.setTimestamp(5, resetDate == null ? null : Timestamp.from(resetDate));
+            insert.executeUpdate();
+        }
+    }
+
+    private void assertToken(String key, long userId, String purpose) throws SQLException {
+        try (PreparedStatement select = connection.prepareStatement(
+                "select user_id, purpose from jhi_user_token where token_hash = ?")) {
+            select.setString(1, UserTokenService.hashKey(key));
+            try (ResultSet resultSet = select.executeQuery()) {
+                assertThat(resultSet.next()).isTrue();
+                assertThat(resultSet.getLong(1)).isEqualTo(userId);
+                assertThat(resultSet.getString(2)).isEqualTo(purpose);
+            }
+        }
+    }
+}
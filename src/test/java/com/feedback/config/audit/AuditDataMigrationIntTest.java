@@ -0,0 +1,145 @@
+package com.feedback.config.audit;
+
+import com.feedback.RetroApp;
+import com.feedback.config.ApplicationProperties;
+import com.feedback.domain.PersistentAuditEvent;
+import com.feedback.repository.PersistenceAuditEventRepository;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the AuditDataMigration, and the reading of both storages by the AuditEventConverter.
+ *
+ * @see AuditDataMigration
+ * @see AuditEventConverter
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = RetroApp.class)
+public class AuditDataMigrationIntTest {
+
+    private static final long FIRST_ID = 1_000_000;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private PersistenceAuditEventRepository persistenceAuditEventRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private JdbcTemplate jdbcTemplate;
+
+    @Before
+    public void setup() {
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        persistenceAuditEventRepository.deleteAll();
+    }
+
+    @After
+    public void destroy() {
+        persistenceAuditEventRepository.deleteAll();
+    }
+
+    @Test
+    public void testDataIsMovedByChunks() throws SQLException {
+        for (long id = FIRST_ID; id < FIRST_ID + 5; id++) {
+            insertLegacyEvent(id, "remoteAddress", "10.0.0." + id % 256, "sessionId", null);
+        }
+        insertLegacyEvent(FIRST_ID + 5);
+
+        assertThat(migrate(2)).isEqualTo(6);
+
+        assertThat(jdbcTemplate.queryForObject("select count(*) from jhi_persistent_audit_evt_data", Long.class))
+            .isEqualTo(0);
+        assertThat(jdbcTemplate.queryForObject("select encoded_data from jhi_persistent_audit_event where event_id = ?",
+            String.class, FIRST_ID + 5)).isEqualTo("{}");
+        Map<String, String> data = readData(FIRST_ID + 1);
+        assertThat(data).containsEntry("remoteAddress", "10.0.0." + (FIRST_ID + 1) % 256).containsEntry("sessionId", null);
+        assertThat(migrate(2)).isEqualTo(0);
+    }
+
+    @Test
+    public void testDataTooLongForTheColumnStaysInTheCollection() throws SQLException {
+        Object[] entries = new Object[40];
+        for (int i = 0; i < entries.length; i += 2) {
+            entries[i] = "key-" + i;
+            entries[i + 1] = new String(new char[200]).replace('\0', 'x');
+        }
+        insertLegacyEvent(FIRST_ID, entries);
+
+        assertThat(migrate(10)).isEqualTo(0);
+
+        assertThat(jdbcTemplate.queryForObject("select encoded_data from jhi_persistent_audit_event where event_id = ?",
+            String.class, FIRST_ID)).isNull();
+        assertThat(readData(FIRST_ID)).hasSize(20);
+    }
+
+    @Test
+    public void testBothStoragesAreRead() {
+        insertLegacyEvent(FIRST_ID, "remoteAddress", "10.0.0.1");
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getAudit().setDataStorage(AuditEventConverter.COLUMN_STORAGE);
+        AuditEventConverter converter = new AuditEventConverter(applicationProperties);
+        PersistentAuditEvent event = new PersistentAuditEvent();
+        event.setPrincipal("test-user");
+        event.setAuditEventType("test-type");
+        event.setAuditEventDate(Instant.now());
+        Map<String, String> data = new HashMap<>();
+        data.put("remoteAddress", "10.0.0.2");
+        converter.setData(event, data);
+        persistenceAuditEventRepository.save(event);
+
+        assertThat(event.getEncodedData()).isEqualTo("{\"remoteAddress\":\"10.0.0.2\"}");
+        assertThat(jdbcTemplate.queryForObject("select count(*) from jhi_persistent_audit_evt_data where event_id = ?",
+            Long.class, event.getId())).isEqualTo(0);
+        Map<String, Object> readData = transactionTemplate.execute(status ->
+            converter.convertToAuditEvent(persistenceAuditEventRepository.findOne(event.getId())).getData());
+        assertThat(readData).containsEntry("remoteAddress", "10.0.0.2");
+        assertThat(readData(FIRST_ID)).containsEntry("remoteAddress", "10.0.0.1");
+    }
+
+    private int migrate(int chunkSize) throws SQLException {
+        AuditDataMigration migration = new AuditDataMigration();
+        migration.setChunkSize(String.valueOf(chunkSize));
+        try (Connection connection = dataSource.getConnection()) {
+            return migration.migrate(connection);
+        }
+    }
+
+    private Map<String, String> readData(long id) {
+        AuditEventConverter converter = new AuditEventConverter(new ApplicationProperties());
+        return transactionTemplate.execute(status ->
+            new HashMap<>(converter.getData(persistenceAuditEventRepository.findOne(id))));
+    }
+
+    /**
+     * Insert an event the way it was stored before the encoded_data column.
+     */
+    private void insertLegacyEvent(long id, Object... entries) {
+        jdbcTemplate.update("insert into jhi_persistent_audit_event (event_id, principal, event_date, event_type) " +
+            "values (?, 'test-user', ?, 'test-type')", id, Timestamp.from(Instant.now()));
+        for (int i = 0; i < entries.length; i += 2) {
+            jdbcTemplate.update("insert into jhi_persistent_audit_evt_data (event_id, name, value) values (?, ?, ?)",
+                id, entries[i], entries[i + 1]);
+        }
+    }
+}
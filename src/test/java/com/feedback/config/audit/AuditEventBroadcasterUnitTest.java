@@ -0,0 +1,122 @@
+package com.feedback.config.audit;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.feedback.config.ApplicationProperties;
+import com.feedback.domain.PersistentAuditEvent;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tests AuditEventBroadcaster, with an executor which never sends the events, as if the subscribers were stalled.
+ *
+ * @see AuditEventBroadcaster
+ */
+public class AuditEventBroadcasterUnitTest {
+
+    private final List<Runnable> sends = new ArrayList<>();
+
+    private ApplicationProperties applicationProperties;
+
+    private MetricRegistry metricRegistry;
+
+    private AuditEventBroadcaster broadcaster;
+
+    @Before
+    public void setup() {
+        applicationProperties = new ApplicationProperties();
+        applicationProperties.getAudit().getStream().setBufferSize(3);
+        metricRegistry = new MetricRegistry();
+        broadcaster = new AuditEventBroadcaster(new AuditEventConverter(applicationProperties), applicationProperties,
+            metricRegistry, new StalledExecutor());
+    }
+
+    @Test
+    public void testSlowSubscriberIsDropped() {
+        broadcaster.subscribe(null, null, null);
+        broadcaster.subscribe("AUTHENTICATION_FAILURE", null, null);
+
+        for (long id = 1; id <= 4; id++) {
+            broadcaster.publish(createEvent(id, "AUTHENTICATION_SUCCESS"));
+        }
+
+        assertThat(subscribers()).isEqualTo(1);
+        assertThat(metricRegistry.counter(MetricRegistry.name(AuditEventBroadcaster.class, "dropped")).getCount())
+            .isEqualTo(1);
+        assertThat(sends).hasSize(1);
+    }
+
+    @Test
+    public void testOnlyTheLatestEventsAreReplayed() {
+        applicationProperties.getAudit().getStream().setReplaySize(2);
+        for (long id = 1; id <= 3; id++) {
+            broadcaster.publish(createEvent(id, "AUTHENTICATION_SUCCESS"));
+        }
+
+        // The replayed events do not count against the buffer
+        broadcaster.subscribe(null, null, 0L);
+        for (long id = 4; id <= 6; id++) {
+            broadcaster.publish(createEvent(id, "AUTHENTICATION_SUCCESS"));
+        }
+
+        assertThat(subscribers()).isEqualTo(1);
+    }
+
+    private int subscribers() {
+        Gauge<?> gauge = metricRegistry.getGauges().get(MetricRegistry.name(AuditEventBroadcaster.class, "subscribers"));
+        return (Integer) gauge.getValue();
+    }
+
+    private static PersistentAuditEvent createEvent(long id, String type) {
+        PersistentAuditEvent event = new PersistentAuditEvent();
+        event.setId(id);
+        event.setPrincipal("admin");
+        event.setAuditEventType(type);
+        event.setAuditEventDate(Instant.parse("2017-10-01T12:00:00Z").plusSeconds(id));
+        return event;
+    }
+
+    /**
+     * Keeps the sends of the subscribers without running them.
+     */
+    private class StalledExecutor extends AbstractExecutorService {
+
+        @Override
+        public void execute(Runnable command) {
+            sends.add(command);
+        }
+
+        @Override
+        public void shutdown() {
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return new ArrayList<>();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return false;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return false;
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return false;
+        }
+    }
+}
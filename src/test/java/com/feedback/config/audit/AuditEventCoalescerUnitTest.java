@@ -0,0 +1,109 @@
+package com.feedback.config.audit;
+
+import com.codahale.metrics.MetricRegistry;
+import com.feedback.config.ApplicationProperties;
+import com.feedback.domain.PersistentAuditEvent;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Tests AuditEventCoalescer, with a mocked AuditEventWriter.
+ *
+ * @see AuditEventCoalescer
+ */
+public class AuditEventCoalescerUnitTest {
+
+    private static final Instant NOW = Instant.parse("2017-10-01T12:00:00Z");
+
+    private static final String FAILURE = "AUTHENTICATION_FAILURE";
+
+    private AuditEventWriter writer;
+
+    private AuditEventConverter converter;
+
+    private ApplicationProperties applicationProperties;
+
+    private AuditEventCoalescer coalescer;
+
+    @Before
+    public void setup() {
+        writer = mock(AuditEventWriter.class);
+        applicationProperties = new ApplicationProperties();
+        applicationProperties.getAudit().getCoalescing().setWindowMs(60000);
+        applicationProperties.getAudit().getCoalescing().setTypes(Collections.singletonList(FAILURE));
+        converter = new AuditEventConverter(applicationProperties);
+        coalescer = new AuditEventCoalescer(writer, converter, applicationProperties, new MetricRegistry());
+    }
+
+    @Test
+    public void testRepeatedEventsAreWrittenOnceTheWindowIsOver() {
+        for (int i = 0; i < 5; i++) {
+            coalescer.write(createEvent("user", FAILURE, "10.0.0.1", i));
+        }
+        coalescer.write(createEvent("user", FAILURE, "10.0.0.2", 10));
+
+        assertThat(coalescer.flush(NOW.plusSeconds(59))).isEqualTo(0);
+        verify(writer, never()).write(any());
+
+        assertThat(coalescer.flush(NOW.plusSeconds(60))).isEqualTo(1);
+        Map<String, String> data = converter.getData(written(1).get(0));
+        assertThat(written(1).get(0).getAuditEventDate()).isEqualTo(NOW);
+        assertThat(data).containsEntry("remoteAddress", "10.0.0.1")
+            .containsEntry(AuditEventCoalescer.COUNT, "5")
+            .containsEntry(AuditEventCoalescer.LAST_DATE, NOW.plusSeconds(4).toString());
+
+        coalescer.stop();
+        PersistentAuditEvent single = written(2).get(1);
+        assertThat(converter.getData(single)).containsOnlyKeys("remoteAddress");
+    }
+
+    @Test
+    public void testOtherTypesAreWrittenImmediately() {
+        PersistentAuditEvent event = createEvent("user", "AUTHENTICATION_SUCCESS", "10.0.0.1", 0);
+
+        coalescer.write(event);
+
+        verify(writer).write(event);
+    }
+
+    @Test
+    public void testEventsAreWrittenImmediatelyBeyondMaxKeys() {
+        applicationProperties.getAudit().getCoalescing().setMaxKeys(1);
+        coalescer.write(createEvent("user", FAILURE, "10.0.0.1", 0));
+        coalescer.write(createEvent("user", FAILURE, "10.0.0.1", 1));
+        PersistentAuditEvent other = createEvent("other", FAILURE, "10.0.0.1", 2);
+
+        coalescer.write(other);
+
+        verify(writer).write(other);
+    }
+
+    private List<PersistentAuditEvent> written(int count) {
+        ArgumentCaptor<PersistentAuditEvent> captor = ArgumentCaptor.forClass(PersistentAuditEvent.class);
+        verify(writer, times(count)).write(captor.capture());
+        return captor.getAllValues();
+    }
+
+    private PersistentAuditEvent createEvent(String principal, String type, String remoteAddress, int seconds) {
+        PersistentAuditEvent event = new PersistentAuditEvent();
+        event.setPrincipal(principal);
+        event.setAuditEventType(type);
+        event.setAuditEventDate(NOW.plusSeconds(seconds));
+        converter.setData(event, Collections.singletonMap("remoteAddress", remoteAddress));
+        return event;
+    }
+}
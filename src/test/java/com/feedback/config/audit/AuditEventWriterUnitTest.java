@@ -0,0 +1,259 @@
+package com.feedback.config.audit;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.feedback.config.ApplicationProperties;
+import com.feedback.domain.PersistentAuditEvent;
+import com.feedback.repository.PersistenceAuditEventRepository;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Tests AuditEventWriter, with a repository which records the inserted batches.
+ *
+ * @see AuditEventWriter
+ */
+public class AuditEventWriterUnitTest {
+
+    @Rule
+    public TemporaryFolder spillDirectory = new TemporaryFolder();
+
+    private final List<PersistentAuditEvent> saved = Collections.synchronizedList(new ArrayList<>());
+
+    private final CountDownLatch gate = new CountDownLatch(1);
+
+    private PersistenceAuditEventRepository repository;
+
+    private AuditEventBroadcaster broadcaster;
+
+    private ApplicationProperties applicationProperties;
+
+    private MetricRegistry metricRegistry;
+
+    private AuditEventWriter writer;
+
+    @Before
+    public void setup() {
+        repository = mock(PersistenceAuditEventRepository.class);
+        broadcaster = mock(AuditEventBroadcaster.class);
+        applicationProperties = new ApplicationProperties();
+        applicationProperties.getAudit().getWriter().setAsync(true);
+        applicationProperties.getAudit().getWriter().setFlushIntervalMs(60000);
+        applicationProperties.getAudit().getWriter().setSpillDirectory(spillDirectory.getRoot().getPath());
+    }
+
+    @After
+    public void destroy() {
+        gate.countDown();
+        if (writer != null) {
+            writer.stop();
+        }
+    }
+
+    @Test
+    public void testEventsAreInsertedInBatches() {
+        recordBatches(false);
+        applicationProperties.getAudit().getWriter().setBatchSize(10);
+        start();
+
+        for (int i = 0; i < 25; i++) {
+            writer.write(createEvent(i));
+        }
+        await().atMost(5, TimeUnit.SECONDS).until(() -> saved.size() == 20);
+        writer.stop();
+
+        assertThat(principals()).isEqualTo(range(0, 25));
+        assertThat(metricRegistry.histogram(MetricRegistry.name(AuditEventWriter.class, "batch-size")).getCount())
+            .isEqualTo(3);
+    }
+
+    @Test
+    public void testPartialBatchIsInsertedAfterTheFlushInterval() {
+        recordBatches(false);
+        applicationProperties.getAudit().getWriter().setFlushIntervalMs(50);
+        start();
+
+        for (int i = 0; i < 3; i++) {
+            writer.write(createEvent(i));
+        }
+
+        await().atMost(5, TimeUnit.SECONDS).until(() -> saved.size() == 3);
+    }
+
+    @Test
+    public void testDropOldestKeepsTheLatestEvents() {
+        recordBatches(true);
+        applicationProperties.getAudit().getWriter().setOverflow("drop-oldest");
+        applicationProperties.getAudit().getWriter().setQueueCapacity(5);
+        applicationProperties.getAudit().getWriter().setBatchSize(1);
+        start();
+        blockWriterThread();
+
+        for (int i = 1; i <= 10; i++) {
+            writer.write(createEvent(i));
+        }
+        gate.countDown();
+        writer.stop();
+
+        assertThat(principals()).containsExactly("user-0", "user-6", "user-7", "user-8", "user-9", "user-10");
+        assertThat(metricRegistry.counter(MetricRegistry.name(AuditEventWriter.class, "dropped")).getCount())
+            .isEqualTo(5);
+    }
+
+    @Test
+    public void testSpilledEventsAreInsertedOnceTheQueueHasRoom() {
+        recordBatches(true);
+        applicationProperties.getAudit().getWriter().setOverflow("spill");
+        applicationProperties.getAudit().getWriter().setQueueCapacity(2);
+        applicationProperties.getAudit().getWriter().setBatchSize(1);
+        start();
+        blockWriterThread();
+
+        for (int i = 1; i <= 5; i++) {
+            writer.write(createEvent(i));
+        }
+        assertThat(metricRegistry.counter(MetricRegistry.name(AuditEventWriter.class, "spilled")).getCount())
+            .isEqualTo(3);
+        gate.countDown();
+
+        await().atMost(5, TimeUnit.SECONDS).until(() -> saved.size() == 6);
+        assertThat(principals()).containsExactlyInAnyOrder(range(0, 6).toArray(new String[0]));
+        PersistentAuditEvent replayed = saved.stream().filter(event -> event.getPrincipal().equals("user-5"))
+            .findFirst().get();
+        assertThat(replayed.getAuditEventType()).isEqualTo("test-type");
+        assertThat(replayed.getAuditEventDate()).isEqualTo(Instant.ofEpochSecond(5, 123456789));
+        assertThat(replayed.getData()).containsEntry("remoteAddress", "127.0.0.1");
+    }
+
+    @Test
+    public void testSpillLeftByACrashIsInsertedAtStartup() throws IOException {
+        doThrow(new IllegalStateException("database is down")).when(repository).save(any(Iterable.class));
+        applicationProperties.getAudit().getWriter().setOverflow("spill");
+        start();
+        writer.write(createEvent(0));
+        writer.write(createEvent(1));
+        writer.stop();
+        // The last record was cut by the crash
+        try (FileOutputStream out = new FileOutputStream(
+            new File(spillDirectory.getRoot(), AuditEventWriter.SPILL_FILE), true)) {
+            out.write(1);
+        }
+
+        repository = mock(PersistenceAuditEventRepository.class);
+        recordBatches(false);
+        start();
+
+        assertThat(principals()).containsExactly("user-0", "user-1");
+        assertThat(spillDirectory.getRoot().list()).isEmpty();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testFailedBatchIsSpilledAndInsertedAgainByDefault() {
+        doThrow(new IllegalStateException("database is down")).doAnswer(invocation -> {
+            ((Iterable<PersistentAuditEvent>) invocation.getArguments()[0]).forEach(saved::add);
+            return null;
+        }).when(repository).save(any(Iterable.class));
+        applicationProperties.getAudit().getWriter().setFlushIntervalMs(50);
+        start();
+
+        writer.write(createEvent(0));
+
+        await().atMost(5, TimeUnit.SECONDS).until(() -> saved.size() == 1);
+        assertThat(principals()).containsExactly("user-0");
+        assertThat(metricRegistry.counter(MetricRegistry.name(AuditEventWriter.class, "spilled")).getCount())
+            .isEqualTo(1);
+        assertThat(metricRegistry.counter(MetricRegistry.name(AuditEventWriter.class, "failed")).getCount())
+            .isEqualTo(0);
+    }
+
+    @Test
+    public void testEventsAreInsertedByTheCallerWhenNotAsync() {
+        applicationProperties.getAudit().getWriter().setAsync(false);
+        start();
+        PersistentAuditEvent event = createEvent(0);
+
+        writer.write(event);
+
+        verify(repository).save(event);
+        verify(broadcaster).publishAfterCommit(event);
+    }
+
+    private void start() {
+        metricRegistry = new MetricRegistry();
+        writer = new AuditEventWriter(repository, broadcaster, mock(PlatformTransactionManager.class),
+            applicationProperties, metricRegistry);
+        writer.start();
+    }
+
+    /**
+     * Record the inserted events, optionally waiting for the gate to open.
+     */
+    @SuppressWarnings("unchecked")
+    private void recordBatches(boolean gated) {
+        doAnswer(invocation -> {
+            if (gated) {
+                gate.await(10, TimeUnit.SECONDS);
+            }
+            Iterable<PersistentAuditEvent> batch = (Iterable<PersistentAuditEvent>) invocation.getArguments()[0];
+            batch.forEach(saved::add);
+            return null;
+        }).when(repository).save(any(Iterable.class));
+    }
+
+    /**
+     * Have the writer thread wait on the gate with a first event, so the next events stay queued.
+     */
+    private void blockWriterThread() {
+        writer.write(createEvent(0));
+        Gauge<?> queued = metricRegistry.getGauges().get(MetricRegistry.name(AuditEventWriter.class, "queued"));
+        await().atMost(5, TimeUnit.SECONDS).until(() -> queued.getValue().equals(0));
+    }
+
+    private List<String> principals() {
+        synchronized (saved) {
+            return saved.stream().map(PersistentAuditEvent::getPrincipal).collect(Collectors.toList());
+        }
+    }
+
+    private static List<String> range(int from, int to) {
+        List<String> principals = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            principals.add("user-" + i);
+        }
+        return principals;
+    }
+
+    private static PersistentAuditEvent createEvent(int i) {
+        PersistentAuditEvent event = new PersistentAuditEvent();
+        event.setPrincipal("user-" + i);
+        event.setAuditEventType("test-type");
+        event.setAuditEventDate(Instant.ofEpochSecond(i, 123456789));
+        event.getData().put("remoteAddress", "127.0.0.1");
+        return event;
+    }
+}
@@ -0,0 +1,197 @@
+package com.feedback.config.cache;
+
+import com.feedback.domain.Authority;
+import com.feedback.domain.User;
+
+import org.ehcache.core.config.DefaultConfiguration;
+import org.ehcache.jsr107.EhcacheCachingProvider;
+import org.hibernate.Hibernate;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.boot.MetadataSources;
+import org.hibernate.boot.registry.StandardServiceRegistry;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.cache.jcache.JCacheRegionFactory;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.dialect.H2Dialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.net.URI;
+import java.time.Instant;
+import java.util.Properties;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the cache invalidation between two nodes, each with its own session factory and cache, sharing
+ * one database.
+ *
+ * @see CacheInvalidator
+ */
+public class CacheInvalidatorTest {
+
+    private static final String AUTHORITIES_ROLE = User.class.getName() + ".authorities";
+
+    private SessionFactoryImplementor nodeA;
+
+    private SessionFactoryImplementor nodeB;
+
+    private CacheInvalidator invalidatorA;
+
+    private CacheInvalidator invalidatorB;
+
+    private Long userId;
+
+    @Before
+    public void setup() {
+        nodeA = buildNode("a", true);
+        nodeB = buildNode("b", false);
+        invalidatorA = new CacheInvalidator(nodeA, new LoopbackCacheInvalidationTransport("test"));
+        invalidatorB = new CacheInvalidator(nodeB, new LoopbackCacheInvalidationTransport("test"));
+        invalidatorA.start();
+        invalidatorB.start();
+
+        userId = inTransaction(nodeA, session -> {
+            Authority authority = new Authority();
+            authority.setName("ROLE_USER");
+            session.persist(authority);
+            User user = new User();
+            user.setLogin("cache-user");
+            user.setPassword("$2a$10$mE.qmcV0mFU5NcKh73TZx.z4ueI/.bDWbj0T1BYyqP481kGGarKLG");
+            user.setFirstName("John");
+            user.setActivated(true);
+            user.setCreatedBy("system");
+            user.setCreatedDate(Instant.now());
+            session.persist(user);
+            return user.getId();
+        });
+    }
+
+    @After
+    public void destroy() {
+        invalidatorA.stop();
+        invalidatorB.stop();
+        nodeB.close();
+        nodeA.close();
+    }
+
+    @Test
+    public void testUpdateEvictsTheOtherNode() {
+        assertThat(firstNameOn(nodeB)).isEqualTo("John");
+        assertThat(nodeB.getCache().containsEntity(User.class, userId)).isTrue();
+
+        inTransaction(nodeA, session -> {
+            session.get(User.class, userId).setFirstName("Jane");
+            return null;
+        });
+
+        assertThat(nodeB.getCache().containsEntity(User.class, userId)).isFalse();
+        assertThat(firstNameOn(nodeB)).isEqualTo("Jane");
+    }
+
+    @Test
+    public void testCollectionUpdateEvictsTheOtherNode() {
+        assertThat(authoritiesOn(nodeB)).isEqualTo(0);
+        assertThat(nodeB.getCache().containsCollection(AUTHORITIES_ROLE, userId)).isTrue();
+
+        inTransaction(nodeA, session -> {
+            session.get(User.class, userId).getAuthorities().add(session.get(Authority.class, "ROLE_USER"));
+            return null;
+        });
+
+        assertThat(nodeB.getCache().containsCollection(AUTHORITIES_ROLE, userId)).isFalse();
+        assertThat(authoritiesOn(nodeB)).isEqualTo(1);
+    }
+
+    @Test
+    public void testDeleteEvictsTheOtherNode() {
+        firstNameOn(nodeB);
+        assertThat(nodeB.getCache().containsEntity(User.class, userId)).isTrue();
+
+        inTransaction(nodeA, session -> {
+            session.delete(session.get(User.class, userId));
+            return null;
+        });
+
+        assertThat(nodeB.getCache().containsEntity(User.class, userId)).isFalse();
+    }
+
+    @Test
+    public void testRollbackSendsNothing() {
+        firstNameOn(nodeB);
+
+        try (Session session = nodeA.openSession()) {
+            session.beginTransaction();
+            session.get(User.class, userId).setFirstName("Jane");
+            session.flush();
+            session.getTransaction().rollback();
+        }
+
+        assertThat(nodeB.getCache().containsEntity(User.class, userId)).isTrue();
+        assertThat(firstNameOn(nodeB)).isEqualTo("John");
+    }
+
+    private String firstNameOn(SessionFactory node) {
+        return inTransaction(node, session -> session.get(User.class, userId).getFirstName());
+    }
+
+    private int authoritiesOn(SessionFactory node) {
+        return inTransaction(node, session -> {
+            User user = session.get(User.class, userId);
+            Hibernate.initialize(user.getAuthorities());
+            return user.getAuthorities().size();
+        });
+    }
+
+    private static <T> T inTransaction(SessionFactory node, Function<Session, T> work) {
+        try (Session session = node.openSession()) {
+            session.beginTransaction();
+            T result = work.apply(session);
+            session.getTransaction().commit();
+            return result;
+        }
+    }
+
+    private static SessionFactoryImplementor buildNode(String name, boolean createSchema) {
+        StandardServiceRegistry registry = new StandardServiceRegistryBuilder()
+            .applySetting(AvailableSettings.URL, "jdbc:h2:mem:cache-invalidation;DB_CLOSE_DELAY=-1")
+            .applySetting(AvailableSettings.DIALECT, H2Dialect.class.getName())
+            .applySetting(AvailableSettings.HBM2DDL_AUTO, createSchema ? "create-drop" : "none")
+            .applySetting(AvailableSettings.USE_SECOND_LEVEL_CACHE, true)
+            .applySetting(AvailableSettings.CACHE_REGION_FACTORY, new NodeRegionFactory(name))
+            .applySetting(AvailableSettings.JPA_VALIDATION_MODE, "none")
+            .applySetting("hibernate.integration.envers.enabled", false)
+            .build();
+        return (SessionFactoryImplementor) new MetadataSources(registry)
+            .addAnnotatedClass(User.class)
+            .addAnnotatedClass(Authority.class)
+            .buildMetadata()
+            .buildSessionFactory();
+    }
+
+    /**
+     * Gives each node its own cache manager, as if it ran in its own JVM.
+     */
+    private static class NodeRegionFactory extends JCacheRegionFactory {
+
+        private final String name;
+
+        NodeRegionFactory(String name) {
+            this.name = name;
+        }
+
+        @Override
+        protected CacheManager getCacheManager(Properties properties) {
+            EhcacheCachingProvider provider =
+                (EhcacheCachingProvider) Caching.getCachingProvider(EhcacheCachingProvider.class.getName());
+            return provider.getCacheManager(URI.create("urn:cache-invalidation:" + name),
+                new DefaultConfiguration(getClass().getClassLoader()));
+        }
+    }
+}
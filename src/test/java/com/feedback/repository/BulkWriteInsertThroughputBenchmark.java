@@ -0,0 +1,12 @@
+package com.feedback.repository;
+
+import org.springframework.test.context.ActiveProfiles;
+
+/**
+ * Benchmark of the insert throughput of users and audit events, with the "bulk-write" profile.
+ *
+ * @see InsertThroughputBenchmark
+ */
+@ActiveProfiles("bulk-write")
+public class BulkWriteInsertThroughputBenchmark extends InsertThroughputBenchmark {
+}
@@ -3,6 +3,7 @@ package com.feedback.repository;
 import com.feedback.RetroApp;
 import com.feedback.config.Constants;
 import com.feedback.config.audit.AuditEventConverter;
+import com.feedback.config.audit.AuditEventCoalescer;
 import com.feedback.domain.PersistentAuditEvent;
 import org.junit.Before;
 import org.junit.Test;
@@ -41,6 +42,9 @@ public class CustomAuditEventRepositoryIntTest {
     @Autowired
     private AuditEventConverter auditEventConverter;
 
+    @Autowired
+    private AuditEventCoalescer auditEventCoalescer;
+
     private CustomAuditEventRepository customAuditEventRepository;
 
     private PersistentAuditEvent testUserEvent;
@@ -51,7 +55,8 @@ public class CustomAuditEventRepositoryIntTest {
 
     @Before
     public void setup() {
-        customAuditEventRepository = new CustomAuditEventRepository(persistenceAuditEventRepository, auditEventConverter);
+        customAuditEventRepository = new CustomAuditEventRepository(persistenceAuditEventRepository, auditEventConverter,
+            auditEventCoalescer);
         persistenceAuditEventRepository.deleteAll();
         Instant oneHourAgo = Instant.now().minusSeconds(3600);
 
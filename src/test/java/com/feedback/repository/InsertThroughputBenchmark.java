@@ -0,0 +1,128 @@
+package com.feedback.repository;
+
+import com.feedback.RetroApp;
+import com.feedback.domain.PersistentAuditEvent;
+import com.feedback.domain.User;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Benchmark of the insert throughput of users and audit events, with the default settings.
+ * <p>
+ * It is not run by the build, use "./mvnw test -Dtest=*InsertThroughputBenchmark" to compare it with
+ * {@link BulkWriteInsertThroughputBenchmark}.
+ * <p>
+ * On the in-memory H2 database of the tests, there is no network round trip to save, and the "bulk-write" profile
+ * is slower: about 950 instead of 1450 users per second, and 1800 instead of 3000 audit events per second. Only the
+ * number of JDBC statements is meaningful there. Whether batching pays off has not been measured yet: it must be run
+ * against a remote database before the profile is used.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = RetroApp.class)
+public class InsertThroughputBenchmark {
+
+    private static final int ROWS = 5000;
+
+    private static final int ROWS_PER_TRANSACTION = 500;
+
+    private static final String PASSWORD_HASH = "$2a$10$gSAhZrxMllrbgj/kkK9UceBPpChGWJA7SYIb1Mqo.n5aNLq1/oRrC";
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private PersistenceAuditEventRepository persistenceAuditEventRepository;
+
+    @After
+    public void cleanup() {
+        new TransactionTemplate(transactionManager).execute(status -> {
+            entityManager.createNativeQuery("delete from jhi_persistent_audit_evt_data").executeUpdate();
+            entityManager.createQuery("delete from PersistentAuditEvent").executeUpdate();
+            return entityManager.createQuery("delete from User u where u.login like 'bench-%'").executeUpdate();
+        });
+    }
+
+    @Test
+    public void insertUsers() {
+        run("users", i -> {
+            User user = new User();
+            user.setLogin("bench-" + i);
+            user.setPassword(PASSWORD_HASH);
+            user.setEmail("bench-" + i + "@localhost");
+            user.setLangKey("en");
+            user.setActivated(true);
+            entityManager.persist(user);
+        });
+    }
+
+    @Test
+    public void insertAuditEvents() {
+        run("audit events", i -> {
+            PersistentAuditEvent event = new PersistentAuditEvent();
+            event.setPrincipal("bench-" + (i % 100));
+            event.setAuditEventType("AUTHENTICATION_SUCCESS");
+            event.setAuditEventDate(Instant.now());
+            Map<String, String> data = new HashMap<>();
+            data.put("remoteAddress", "127.0.0.1");
+            data.put("sessionId", "session-" + i);
+            event.setData(data);
+            entityManager.persist(event);
+        });
+        assertThat(persistenceAuditEventRepository.count()).isEqualTo(2 * ROWS);
+    }
+
+    private void run(String name, IntConsumer insert) {
+        // Warm up with a first untimed round, using other rows
+        insertRows(ROWS, insert);
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        long start = System.nanoTime();
+        insertRows(0, insert);
+        long elapsedMillis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+        log.info("{}: inserted {} {} in {} ms ({} rows/s), {} JDBC statements prepared", getClass().getSimpleName(),
+            ROWS, name, elapsedMillis, ROWS * 1000 / elapsedMillis, statistics.getPrepareStatementCount());
+    }
+
+    private void insertRows(int offset, IntConsumer insert) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        for (int chunk = offset; chunk < offset + ROWS; chunk += ROWS_PER_TRANSACTION) {
+            int first = chunk;
+            transactionTemplate.execute(status -> {
+                for (int i = first; i < first + ROWS_PER_TRANSACTION; i++) {
+                    insert.accept(i);
+                }
+                entityManager.flush();
+                entityManager.clear();
+                return null;
+            });
+        }
+    }
+}
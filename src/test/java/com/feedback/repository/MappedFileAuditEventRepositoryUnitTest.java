@@ -0,0 +1,176 @@
+package com.feedback.repository;
+
+import com.feedback.config.ApplicationProperties;
+import com.feedback.config.audit.AuditEventBroadcaster;
+import com.feedback.config.audit.AuditEventConverter;
+import com.feedback.domain.PersistentAuditEvent;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.boot.actuate.audit.AuditEvent;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Tests MappedFileAuditEventRepository, with segments in a temporary folder.
+ *
+ * @see MappedFileAuditEventRepository
+ */
+public class MappedFileAuditEventRepositoryUnitTest {
+
+    private static final Instant START = Instant.parse("2017-10-01T12:00:00Z");
+
+    @Rule
+    public TemporaryFolder segmentDirectory = new TemporaryFolder();
+
+    private ApplicationProperties applicationProperties;
+
+    private MappedFileAuditEventRepository repository;
+
+    @Before
+    public void setup() {
+        applicationProperties = new ApplicationProperties();
+        applicationProperties.getAudit().getMappedFile().setDirectory(segmentDirectory.getRoot().getPath());
+        applicationProperties.getAudit().getMappedFile().setSegmentSizeBytes(64 * 1024);
+        applicationProperties.getAudit().getMappedFile().setBlockSize(4);
+    }
+
+    @After
+    public void destroy() throws IOException {
+        if (repository != null) {
+            repository.close();
+        }
+    }
+
+    @Test
+    public void testEventsAreFoundByPrincipalDateAndType() throws IOException {
+        open();
+        add("admin", "AUTHENTICATION_SUCCESS", 0);
+        add("user", "AUTHENTICATION_FAILURE", 10);
+        add("user", "AUTHENTICATION_SUCCESS", 20);
+        repository.add(new AuditEvent(Date.from(START), "anonymoususer", "AUTHENTICATION_FAILURE",
+            Collections.emptyMap()));
+
+        assertThat(repository.find(Date.from(START.plusSeconds(5)))).hasSize(2);
+        assertThat(repository.find("user", null)).extracting(AuditEvent::getType)
+            .containsExactly("AUTHENTICATION_FAILURE", "AUTHENTICATION_SUCCESS");
+        assertThat(repository.find(null, null)).hasSize(3);
+        List<AuditEvent> events = repository.find("user", Date.from(START), "AUTHENTICATION_SUCCESS");
+        assertThat(events).hasSize(1);
+        assertThat(events.get(0).getTimestamp()).isEqualTo(Date.from(START.plusSeconds(20)));
+        assertThat(events.get(0).getData()).containsEntry("remoteAddress", "10.0.0.20");
+    }
+
+    @Test
+    public void testEventsArePagedFromTheNewest() throws IOException {
+        open();
+        for (int i = 0; i < 10; i++) {
+            add("user", "AUTHENTICATION_SUCCESS", i);
+        }
+
+        Page<PersistentAuditEvent> page = repository.findAllByAuditEventDateBetween(null, null, new PageRequest(1, 3));
+        assertThat(page.getContent()).extracting(PersistentAuditEvent::getId).containsExactly(7L, 6L, 5L);
+        assertThat(page.getTotalElements()).isEqualTo(10);
+
+        page = repository.findAllByAuditEventDateBetween(START.plusSeconds(2), START.plusSeconds(8),
+            new PageRequest(1, 5));
+        assertThat(page.getContent()).extracting(PersistentAuditEvent::getId).containsExactly(4L, 3L);
+        assertThat(page.getTotalElements()).isEqualTo(7);
+
+        assertThat(repository.findOlderThan(null, null, 6, 3)).extracting(PersistentAuditEvent::getId)
+            .containsExactly(5L, 4L, 3L);
+        assertThat(repository.findNewerThan(null, START.plusSeconds(8), 6, 3)).extracting(PersistentAuditEvent::getId)
+            .containsExactly(7L, 8L);
+        assertThat(repository.findOne(9).map(PersistentAuditEvent::getAuditEventDate)).contains(START.plusSeconds(8));
+        assertThat(repository.findOne(11)).isEmpty();
+    }
+
+    @Test
+    public void testSegmentsAreRotatedAndTheOldestDeleted() throws IOException {
+        applicationProperties.getAudit().getMappedFile().setSegmentSizeBytes(1024);
+        applicationProperties.getAudit().getMappedFile().setMaxSegments(3);
+        open();
+        for (int i = 0; i < 100; i++) {
+            add("user", "AUTHENTICATION_SUCCESS", i);
+        }
+
+        assertThat(segmentDirectory.getRoot().list()).hasSize(3);
+        assertThat(repository.findOne(100)).isPresent();
+        assertThat(repository.findOne(1)).isEmpty();
+        Page<PersistentAuditEvent> page = repository.findAllByAuditEventDateBetween(null, null, new PageRequest(0, 1));
+        assertThat(page.getContent()).extracting(PersistentAuditEvent::getId).containsExactly(100L);
+
+        repository.close();
+        open();
+        add("user", "AUTHENTICATION_SUCCESS", 100);
+        assertThat(repository.findOne(101)).isPresent();
+    }
+
+    @Test
+    public void testTornEventIsCutOffWhenOpening() throws IOException {
+        open();
+        for (int i = 0; i < 5; i++) {
+            add("user", "AUTHENTICATION_SUCCESS", i);
+        }
+        repository.close();
+        tearEventAfterTheLast();
+
+        open();
+        assertThat(repository.find(null, null)).hasSize(5);
+        add("user", "AUTHENTICATION_SUCCESS", 5);
+        repository.close();
+
+        open();
+        assertThat(repository.find(null, null)).hasSize(6);
+        assertThat(repository.findOne(6)).isPresent();
+    }
+
+    /**
+     * Write the length and part of the bytes of an event after the last one, as a crash while appending would.
+     */
+    private void tearEventAfterTheLast() throws IOException {
+        File[] segments = segmentDirectory.getRoot().listFiles();
+        assertThat(segments).hasSize(1);
+        try (RandomAccessFile file = new RandomAccessFile(segments[0], "rw")) {
+            long position = 0;
+            int length;
+            while ((length = readInt(file, position)) != 0) {
+                position += 8 + length;
+            }
+            file.seek(position);
+            file.writeInt(40);
+            file.writeInt(12345);
+            file.writeLong(6);
+        }
+    }
+
+    private static int readInt(RandomAccessFile file, long position) throws IOException {
+        file.seek(position);
+        return file.readInt();
+    }
+
+    private void open() throws IOException {
+        repository = new MappedFileAuditEventRepository(new AuditEventConverter(applicationProperties),
+            mock(AuditEventBroadcaster.class), applicationProperties);
+        repository.open();
+    }
+
+    private void add(String principal, String type, int seconds) {
+        repository.add(new AuditEvent(Date.from(START.plusSeconds(seconds)), principal, type,
+            Collections.singletonMap("remoteAddress", "10.0.0." + seconds)));
+    }
+}
@@ -0,0 +1,158 @@
+package com.feedback.service;
+
+import com.feedback.RetroApp;
+import com.feedback.config.ApplicationProperties;
+import com.feedback.config.audit.AuditEventConverter;
+import com.feedback.domain.PersistentAuditEvent;
+import com.feedback.repository.AuditEventArchive;
+import com.feedback.repository.PersistenceAuditEventRepository;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.audit.AuditEvent;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the AuditArchiveService, and the reads of the archived events by the AuditEventService.
+ *
+ * @see AuditArchiveService
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = RetroApp.class)
+@Transactional
+public class AuditArchiveServiceIntTest {
+
+    private static final Instant NOW = Instant.parse("2017-10-01T12:00:00Z");
+
+    @Rule
+    public TemporaryFolder archiveDirectory = new TemporaryFolder();
+
+    @Autowired
+    private PersistenceAuditEventRepository persistenceAuditEventRepository;
+
+    @Autowired
+    private AuditEventConverter auditEventConverter;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private AuditEventSearchService auditEventSearchService;
+
+    private ApplicationProperties applicationProperties;
+
+    private AuditEventArchive auditEventArchive;
+
+    private AuditArchiveService auditArchiveService;
+
+    private AuditEventService auditEventService;
+
+    @Before
+    public void setup() throws IOException {
+        persistenceAuditEventRepository.deleteAll();
+        applicationProperties = new ApplicationProperties();
+        ApplicationProperties.Audit.Archive archive = applicationProperties.getAudit().getArchive();
+        archive.setEnabled(true);
+        archive.setDirectory(archiveDirectory.getRoot().getPath());
+        archive.setAfterDays(30);
+        archive.setDeleteChunkSize(2);
+        openArchive();
+    }
+
+    @Test
+    public void testOldEventsAreMovedToTheArchive() throws IOException {
+        Long recentId = saveEvent("admin", 10, 0);
+        saveEvent("user", 100, 0);
+        saveEvent("admin", 100, 60);
+        saveEvent("user", 101, 0);
+
+        assertThat(auditArchiveService.archive(NOW)).isEqualTo(3);
+
+        assertThat(new JdbcTemplate(dataSource).queryForList("select event_id from jhi_persistent_audit_event",
+            Long.class)).containsExactly(recentId);
+        assertThat(new JdbcTemplate(dataSource).queryForObject("select count(*) from jhi_persistent_audit_evt_data",
+            Long.class)).isEqualTo(1);
+        assertThat(archiveDirectory.getRoot().list()).hasSize(2);
+        assertThat(auditArchiveService.archive(NOW)).isEqualTo(0);
+    }
+
+    @Test
+    public void testArchivedEventsAreFoundByDates() throws IOException {
+        saveEvent("admin", 10, 0);
+        saveEvent("user", 100, 0);
+        saveEvent("admin", 100, 60);
+        saveEvent("user", 101, 0);
+        auditArchiveService.archive(NOW);
+        // The footers are read again when the application starts
+        openArchive();
+
+        Instant fromDate = NOW.minus(200, ChronoUnit.DAYS);
+        Page<AuditEvent> page = auditEventService.findByDates(fromDate, NOW, new PageRequest(0, 2));
+        assertThat(page.getTotalElements()).isEqualTo(4);
+        assertThat(page.getContent()).extracting(AuditEvent::getPrincipal).containsExactly("admin", "user");
+        assertThat(page.getContent().get(1).getData()).containsEntry("remoteAddress", "10.0.0.100");
+
+        page = auditEventService.findByDates(fromDate, NOW, new PageRequest(1, 2));
+        assertThat(page.getContent()).extracting(event -> event.getTimestamp().toInstant())
+            .containsExactly(NOW.minus(100, ChronoUnit.DAYS).minusSeconds(60), NOW.minus(101, ChronoUnit.DAYS));
+
+        page = auditEventService.findByDates(fromDate, NOW.minus(100, ChronoUnit.DAYS).minusSeconds(30),
+            new PageRequest(0, 10));
+        assertThat(page.getTotalElements()).isEqualTo(2);
+        assertThat(page.getContent()).extracting(AuditEvent::getPrincipal).containsExactly("admin", "user");
+
+        page = auditEventService.findByDates(NOW.minus(20, ChronoUnit.DAYS), NOW, new PageRequest(0, 10));
+        assertThat(page.getTotalElements()).isEqualTo(1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testArchivedEventsAreOnlySortedFromTheNewest() throws IOException {
+        saveEvent("user", 100, 0);
+        auditArchiveService.archive(NOW);
+        Sort byPrincipal = new Sort(Sort.Direction.ASC, "principal");
+        assertThat(auditEventService.canSortByDates(NOW.minus(20, ChronoUnit.DAYS), NOW, byPrincipal)).isTrue();
+        assertThat(auditEventService.canSortByDates(NOW.minus(200, ChronoUnit.DAYS), NOW, byPrincipal)).isFalse();
+
+        auditEventService.findByDates(NOW.minus(200, ChronoUnit.DAYS), NOW, new PageRequest(0, 10, byPrincipal));
+    }
+
+    private void openArchive() throws IOException {
+        auditEventArchive = new AuditEventArchive(applicationProperties);
+        auditEventArchive.open();
+        auditArchiveService = new AuditArchiveService(dataSource, transactionManager, auditEventArchive,
+            applicationProperties);
+        auditEventService = new AuditEventService(persistenceAuditEventRepository, auditEventConverter,
+            Optional.empty(), auditEventArchive, auditEventSearchService);
+    }
+
+    private Long saveEvent(String principal, int daysAgo, int secondsEarlier) {
+        PersistentAuditEvent event = new PersistentAuditEvent();
+        event.setPrincipal(principal);
+        event.setAuditEventType("AUTHENTICATION_SUCCESS");
+        event.setAuditEventDate(NOW.minus(daysAgo, ChronoUnit.DAYS).minusSeconds(secondsEarlier));
+        event.getData().put("remoteAddress", "10.0.0." + daysAgo);
+        return persistenceAuditEventRepository.saveAndFlush(event).getId();
+    }
+}
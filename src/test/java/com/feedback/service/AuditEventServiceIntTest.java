@@ -0,0 +1,110 @@
+package com.feedback.service;
+
+import com.feedback.RetroApp;
+import com.feedback.config.audit.AuditEventConverter;
+import com.feedback.domain.PersistentAuditEvent;
+import com.feedback.repository.PersistenceAuditEventRepository;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.audit.AuditEvent;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.time.Instant;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the AuditEventService, and the number of queries of its paged reads.
+ *
+ * @see AuditEventService
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = RetroApp.class)
+@Transactional
+public class AuditEventServiceIntTest {
+
+    private static final int PAGE_SIZE = 50;
+
+    private static final Instant NOW = Instant.parse("2017-10-01T12:00:00Z");
+
+    @Autowired
+    private PersistenceAuditEventRepository persistenceAuditEventRepository;
+
+    @Autowired
+    private AuditEventService auditEventService;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @Before
+    public void setup() {
+        persistenceAuditEventRepository.deleteAll();
+        for (int i = 0; i < PAGE_SIZE * 2; i++) {
+            PersistentAuditEvent event = new PersistentAuditEvent();
+            event.setPrincipal("user-" + i);
+            event.setAuditEventType("AUTHENTICATION_SUCCESS");
+            event.setAuditEventDate(NOW.minusSeconds(i));
+            event.getData().put("remoteAddress", "10.0.0." + i);
+            // Half of the events have their data in the collection, as before the encoded_data column
+            if (i % 2 == 0) {
+                event.setEncodedData(AuditEventConverter.encodeData(event.getData()));
+                event.getData().clear();
+            }
+            persistenceAuditEventRepository.save(event);
+        }
+        entityManager.flush();
+        entityManager.clear();
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        statistics.clear();
+    }
+
+    @After
+    public void destroy() {
+        statistics.setStatisticsEnabled(false);
+    }
+
+    @Test
+    public void testFindAllReadsThePageAndItsDataInTwoQueries() {
+        Page<AuditEvent> page = auditEventService.findAll(new PageRequest(0, PAGE_SIZE));
+
+        assertDataOfEachEvent(page);
+        // The count of the page, and two queries for the page and its data
+        assertThat(statistics.getPrepareStatementCount()).isLessThanOrEqualTo(3);
+    }
+
+    @Test
+    public void testFindByDatesReadsThePageAndItsDataInTwoQueries() {
+        Page<AuditEvent> page = auditEventService.findByDates(NOW.minusSeconds(PAGE_SIZE * 2), NOW,
+            new PageRequest(1, PAGE_SIZE));
+
+        assertDataOfEachEvent(page);
+        assertThat(statistics.getPrepareStatementCount()).isLessThanOrEqualTo(3);
+    }
+
+    private static void assertDataOfEachEvent(Page<AuditEvent> page) {
+        assertThat(page.getContent()).hasSize(PAGE_SIZE);
+        for (AuditEvent event : page.getContent()) {
+            Map<String, Object> data = event.getData();
+            assertThat(data).containsEntry("remoteAddress", "10.0.0." + event.getPrincipal().substring(5));
+        }
+    }
+}
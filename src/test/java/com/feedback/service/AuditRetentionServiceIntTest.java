@@ -0,0 +1,143 @@
+package com.feedback.service;
+
+import com.feedback.RetroApp;
+import com.feedback.config.ApplicationProperties;
+import com.feedback.domain.PersistentAuditEvent;
+import com.feedback.repository.PersistenceAuditEventRepository;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.sql.DataSource;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+
+/**
+ * Test class for the AuditRetentionService.
+ *
+ * @see AuditRetentionService
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = RetroApp.class)
+@Transactional
+public class AuditRetentionServiceIntTest {
+
+    private static final Instant NOW = Instant.parse("2017-10-01T12:00:00Z");
+
+    @Autowired
+    private PersistenceAuditEventRepository persistenceAuditEventRepository;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private ApplicationProperties applicationProperties;
+
+    private ApplicationProperties.Audit.Retention retention;
+
+    private AuditRetentionService auditRetentionService;
+
+    private JdbcTemplate jdbcTemplate;
+
+    @Before
+    public void setup() {
+        persistenceAuditEventRepository.deleteAll();
+        applicationProperties = new ApplicationProperties();
+        retention = applicationProperties.getAudit().getRetention();
+        retention.setPauseMs(0);
+        auditRetentionService = new AuditRetentionService(dataSource, transactionManager, applicationProperties);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    @Test
+    public void testNothingIsDeletedWithoutRetention() {
+        saveEvent("AUTHENTICATION_SUCCESS", 1000);
+
+        assertThat(auditRetentionService.purge(NOW)).isEqualTo(0);
+        assertThat(persistenceAuditEventRepository.count()).isEqualTo(1);
+    }
+
+    @Test
+    public void testEventsAreDeletedByType() {
+        retention.setDefaultDays(90);
+        retention.getTypeDays().put("AUTHENTICATION_SUCCESS", 30);
+        retention.getTypeDays().put("PASSWORD_CHANGED", 0);
+        saveEvent("AUTHENTICATION_SUCCESS", 20);
+        saveEvent("AUTHENTICATION_SUCCESS", 40);
+        saveEvent("AUTHENTICATION_FAILURE", 40);
+        saveEvent("AUTHENTICATION_FAILURE", 100);
+        saveEvent(null, 100);
+        saveEvent("PASSWORD_CHANGED", 1000);
+
+        assertThat(auditRetentionService.purge(NOW)).isEqualTo(3);
+
+        entityManager.clear();
+        assertThat(persistenceAuditEventRepository.findAll())
+            .extracting(PersistentAuditEvent::getAuditEventType, event -> daysAgo(event.getAuditEventDate()))
+            .containsExactlyInAnyOrder(
+                tuple("AUTHENTICATION_SUCCESS", 20L),
+                tuple("AUTHENTICATION_FAILURE", 40L),
+                tuple("PASSWORD_CHANGED", 1000L));
+    }
+
+    @Test
+    public void testEventsAndTheirDataAreDeletedByChunks() {
+        retention.setDefaultDays(90);
+        retention.setChunkSize(2);
+        for (int i = 0; i < 5; i++) {
+            saveEvent("AUTHENTICATION_FAILURE", 100 + i);
+        }
+        Long keptId = saveEvent("AUTHENTICATION_FAILURE", 10);
+
+        assertThat(auditRetentionService.purge(NOW)).isEqualTo(5);
+
+        assertThat(jdbcTemplate.queryForList("select event_id from jhi_persistent_audit_event", Long.class))
+            .containsExactly(keptId);
+        assertThat(jdbcTemplate.queryForList("select distinct event_id from jhi_persistent_audit_evt_data", Long.class))
+            .containsExactly(keptId);
+        assertThat(auditRetentionService.purge(NOW)).isEqualTo(0);
+    }
+
+    @Test
+    public void testRetentionShorterThanTheArchiveDelayIsRejected() {
+        applicationProperties.getAudit().getArchive().setEnabled(true);
+        applicationProperties.getAudit().getArchive().setAfterDays(180);
+        retention.setDefaultDays(365);
+        auditRetentionService.validate();
+
+        retention.getTypeDays().put("AUTHENTICATION_SUCCESS", 90);
+        assertThatThrownBy(() -> auditRetentionService.validate())
+            .isInstanceOf(IllegalStateException.class)
+            .hasMessageContaining("AUTHENTICATION_SUCCESS");
+    }
+
+    private Long saveEvent(String type, int daysAgo) {
+        PersistentAuditEvent event = new PersistentAuditEvent();
+        event.setPrincipal("test-user");
+        event.setAuditEventType(type);
+        event.setAuditEventDate(NOW.minus(daysAgo, ChronoUnit.DAYS));
+        event.getData().put("remoteAddress", "10.0.0.1");
+        return persistenceAuditEventRepository.saveAndFlush(event).getId();
+    }
+
+    private static long daysAgo(Instant date) {
+        return ChronoUnit.DAYS.between(date, NOW);
+    }
+}
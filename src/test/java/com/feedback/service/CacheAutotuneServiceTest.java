@@ -0,0 +1,163 @@
+package com.feedback.service;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.feedback.config.ApplicationProperties;
+import com.feedback.config.CacheConfiguration;
+import com.feedback.domain.User;
+
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import io.github.jhipster.config.JHipsterProperties;
+import org.ehcache.core.config.DefaultConfiguration;
+import org.ehcache.jsr107.EhcacheCachingProvider;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.spi.CachingProvider;
+import java.net.URI;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the CacheAutotuneService, with the heap occupancy given by the tests.
+ *
+ * @see CacheAutotuneService
+ */
+public class CacheAutotuneServiceTest {
+
+    private static final String USER_REGION = User.class.getName();
+
+    private static final long MAX_HEAP_BYTES = 1024 * 1024 * 1024;
+
+    private CacheManager cacheManager;
+
+    private ApplicationProperties applicationProperties;
+
+    private MetricRegistry metricRegistry;
+
+    private CacheAutotuneService cacheAutotuneService;
+
+    @Before
+    public void setup() {
+        EhcacheCachingProvider provider =
+            (EhcacheCachingProvider) Caching.getCachingProvider(EhcacheCachingProvider.class.getName());
+        cacheManager = provider.getCacheManager(URI.create("urn:cache-autotune-test"),
+            new DefaultConfiguration(getClass().getClassLoader()));
+        createService();
+    }
+
+    @After
+    public void destroy() {
+        cacheManager.close();
+    }
+
+    @Test
+    public void testRegionWithEvictionsGrowsWhenThereIsHeadroom() {
+        cacheAutotuneService.tune(0.2, MAX_HEAP_BYTES);
+        assertThat(maxEntries()).isEqualTo(100);
+
+        replay(0, 200);
+        cacheAutotuneService.tune(0.2, MAX_HEAP_BYTES);
+
+        assertThat(maxEntries()).isEqualTo(125);
+        assertThat(CacheAutotuneService.getMaxEntries(cacheManager.getCache(USER_REGION))).isEqualTo(125);
+        assertThat(gauge("decision")).isEqualTo(CacheAutotuneService.GROW);
+    }
+
+    @Test
+    public void testRegionWithoutEvictionsDoesNotGrow() {
+        cacheAutotuneService.tune(0.2, MAX_HEAP_BYTES);
+        replay(0, 50);
+        cacheAutotuneService.tune(0.2, MAX_HEAP_BYTES);
+
+        assertThat(maxEntries()).isEqualTo(100);
+        assertThat(gauge("decision")).isEqualTo(CacheAutotuneService.HOLD);
+    }
+
+    @Test
+    public void testRegionsShrinkUnderHeapPressureWithinBounds() {
+        applicationProperties.getCache().getAutotune().setMinEntries(80);
+        cacheAutotuneService.tune(0.9, MAX_HEAP_BYTES);
+        assertThat(maxEntries()).isEqualTo(80);
+
+        cacheAutotuneService.tune(0.9, MAX_HEAP_BYTES);
+        assertThat(maxEntries()).isEqualTo(80);
+        assertThat(gauge("decision")).isEqualTo(CacheAutotuneService.HOLD);
+    }
+
+    @Test
+    public void testRegionStopsGrowingWhenTheHitRatioDoesNotImprove() {
+        cacheAutotuneService.tune(0.2, MAX_HEAP_BYTES);
+        // Every key is read once, so no size gives any hit
+        replay(0, 200);
+        cacheAutotuneService.tune(0.2, MAX_HEAP_BYTES);
+        assertThat(maxEntries()).isEqualTo(125);
+
+        replay(200, 400);
+        cacheAutotuneService.tune(0.2, MAX_HEAP_BYTES);
+        assertThat(maxEntries()).isEqualTo(125);
+        assertThat(gauge("decision")).isEqualTo(CacheAutotuneService.HOLD);
+    }
+
+    @Test
+    public void testGrowthIsLimitedByTheHeadroom() {
+        cacheAutotuneService.tune(0.2, MAX_HEAP_BYTES);
+        replay(0, 200);
+        // Only a kilobyte is left under grow-below-heap-ratio, about 10 entries
+        cacheAutotuneService.tune(0.5 - 1024.0 / MAX_HEAP_BYTES, MAX_HEAP_BYTES);
+
+        assertThat(maxEntries()).isGreaterThan(100).isLessThan(125);
+    }
+
+    @Test
+    public void testCaffeineRegionsAreResized() {
+        CachingProvider provider = Caching.getCachingProvider(CaffeineCachingProvider.class.getName());
+        cacheManager.close();
+        cacheManager = provider.getCacheManager(provider.getDefaultURI(), getClass().getClassLoader());
+        createService();
+
+        cacheAutotuneService.tune(0.9, MAX_HEAP_BYTES);
+
+        assertThat(CacheAutotuneService.getMaxEntries(cacheManager.getCache(USER_REGION))).isEqualTo(75);
+    }
+
+    private void createService() {
+        JHipsterProperties jHipsterProperties = new JHipsterProperties();
+        jHipsterProperties.getCache().getEhcache().setMaxEntries(100);
+        new CacheConfiguration(jHipsterProperties, new ApplicationProperties()).cacheManagerCustomizer()
+            .customize(cacheManager);
+        applicationProperties = new ApplicationProperties();
+        applicationProperties.getCache().getAutotune().setMinEntries(10);
+        metricRegistry = new MetricRegistry();
+        CacheStatsService cacheStatsService = new CacheStatsService(Optional.of(cacheManager), null);
+        cacheAutotuneService = new CacheAutotuneService(Optional.of(cacheManager), cacheStatsService,
+            applicationProperties, metricRegistry);
+    }
+
+    /**
+     * Read then load each key of a range, as Hibernate does.
+     */
+    private void replay(long from, long to) {
+        Cache<Object, Object> cache = cacheManager.getCache(USER_REGION);
+        for (long key = from; key < to; key++) {
+            if (cache.get(key) == null) {
+                cache.put(key, "user-" + key);
+            }
+        }
+    }
+
+    private long maxEntries() {
+        return (Long) gauge("max-entries");
+    }
+
+    private Object gauge(String name) {
+        Gauge<?> gauge = metricRegistry.getGauges().get(MetricRegistry.name(CacheAutotuneService.class, USER_REGION,
+            name));
+        return gauge.getValue();
+    }
+}
@@ -0,0 +1,179 @@
+package com.feedback.service;
+
+import com.codahale.metrics.MetricRegistry;
+import com.feedback.RetroApp;
+import com.feedback.config.ApplicationProperties;
+import com.feedback.domain.Authority;
+import com.feedback.domain.PersistentAuditEvent;
+import com.feedback.domain.User;
+import com.feedback.repository.AuthorityRepository;
+import com.feedback.repository.PersistenceAuditEventRepository;
+import com.feedback.repository.UserRepository;
+import com.feedback.security.AuthoritiesConstants;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.persistence.EntityManagerFactory;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test class for the CacheWarmupService, with the JCache caches and the second-level cache enabled.
+ * <p>
+ * The loads run in their own transactions, so the audit events are committed and this test is not transactional.
+ * Its application context replaces the UserStatsService instance of the other contexts, which is given back after.
+ *
+ * @see CacheWarmupService
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = RetroApp.class, properties = {
+    "spring.cache.type=jcache",
+    "spring.cache.jcache.provider=org.ehcache.jsr107.EhcacheCachingProvider",
+    "spring.jpa.properties.hibernate.cache.use_second_level_cache=true",
+    "spring.jpa.properties.hibernate.cache.region.factory_class=io.github.jhipster.config.jcache.NoDefaultJCacheRegionFactory",
+    "spring.jpa.properties.hibernate.javax.cache.provider=${spring.cache.jcache.provider}"
+})
+public class CacheWarmupServiceIntTest {
+
+    private static UserStatsService userStatsServiceOfOtherContexts;
+
+    @Autowired
+    private UserLookupService userLookupService;
+
+    @Autowired
+    private AuthorityRepository authorityRepository;
+
+    @Autowired
+    private PersistenceAuditEventRepository persistenceAuditEventRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    private Cache usersByLogin;
+
+    private ApplicationProperties applicationProperties;
+
+    private MetricRegistry metricRegistry;
+
+    @BeforeClass
+    public static void rememberUserStatsService() {
+        userStatsServiceOfOtherContexts = UserStatsService.getInstance();
+    }
+
+    @AfterClass
+    public static void restoreUserStatsService() {
+        if (userStatsServiceOfOtherContexts != null) {
+            userStatsServiceOfOtherContexts.register();
+        }
+    }
+
+    @Before
+    public void setup() {
+        persistenceAuditEventRepository.deleteAll();
+        Instant now = Instant.now();
+        saveEvent("user", "AUTHENTICATION_SUCCESS", now.minus(2, ChronoUnit.HOURS));
+        saveEvent("admin", "AUTHENTICATION_SUCCESS", now.minus(1, ChronoUnit.HOURS));
+        saveEvent("unknown", "AUTHENTICATION_SUCCESS", now.minus(3, ChronoUnit.HOURS));
+        saveEvent("system", "AUTHENTICATION_FAILURE", now);
+        saveEvent("anonymoususer", "AUTHENTICATION_SUCCESS", now.minus(60, ChronoUnit.DAYS));
+
+        applicationProperties = new ApplicationProperties();
+        metricRegistry = new MetricRegistry();
+        usersByLogin = cacheManager.getCache(UserRepository.USERS_BY_LOGIN_CACHE);
+        usersByLogin.clear();
+        entityManagerFactory.unwrap(SessionFactoryImplementor.class).getCache().evictEntityRegion(Authority.class);
+    }
+
+    @After
+    public void cleanup() {
+        persistenceAuditEventRepository.deleteAll();
+    }
+
+    @Test
+    public void testWarmUpCachesAuthoritiesAndRecentlyActiveUsers() {
+        // 2 authorities, admin and user
+        assertThat(createService().warmUp()).isEqualTo(4);
+        assertThat(metricRegistry.counter(MetricRegistry.name(CacheWarmupService.class, "cached")).getCount())
+            .isEqualTo(4);
+        assertThat(metricRegistry.timer(MetricRegistry.name(CacheWarmupService.class, "duration")).getCount())
+            .isEqualTo(1);
+
+        assertThat(entityManagerFactory.unwrap(SessionFactoryImplementor.class).getCache()
+            .containsEntity(Authority.class, AuthoritiesConstants.ADMIN)).isTrue();
+        User admin = usersByLogin.get("admin", User.class);
+        assertThat(admin.getLogin()).isEqualTo("admin");
+        assertThat(admin.getAuthorities()).extracting(Authority::getName).contains(AuthoritiesConstants.ADMIN);
+        assertThat(usersByLogin.get("user")).isNotNull();
+    }
+
+    @Test
+    public void testOnlyTheAccountIsReadFromTheCache() {
+        User stale = new User();
+        stale.setLogin("admin");
+        stale.setPassword("changed on another node");
+        usersByLogin.put("admin", stale);
+
+        assertThat(userLookupService.findAccountByLogin("admin").get().getPassword())
+            .isEqualTo("changed on another node");
+        assertThat(userLookupService.findOneWithAuthoritiesByLogin("admin").get().getPassword())
+            .isNotEqualTo("changed on another node");
+    }
+
+    @Test
+    public void testWarmUpCountsTheUsersPutInTheCache() {
+        createService().warmUp();
+
+        // The authorities are still counted, the users are already cached
+        assertThat(createService().warmUp()).isEqualTo(2);
+    }
+
+    @Test
+    public void testWarmUpCachesTheLatestUsersOnly() {
+        applicationProperties.getCache().getWarmup().setUsers(1);
+        // 2 authorities and admin
+        assertThat(createService().warmUp()).isEqualTo(3);
+        assertThat(usersByLogin.get("admin")).isNotNull();
+        assertThat(usersByLogin.get("user")).isNull();
+    }
+
+    @Test
+    public void testWarmUpStopsWhenTheBudgetIsSpent() {
+        applicationProperties.getCache().getWarmup().setBudgetMs(0);
+        assertThat(createService().warmUp()).isEqualTo(0);
+        assertThat(metricRegistry.timer(MetricRegistry.name(CacheWarmupService.class, "duration")).getCount())
+            .isEqualTo(1);
+    }
+
+    private CacheWarmupService createService() {
+        return new CacheWarmupService(userLookupService, authorityRepository, persistenceAuditEventRepository,
+            transactionManager, entityManagerFactory, cacheManager, applicationProperties, metricRegistry);
+    }
+
+    private void saveEvent(String principal, String type, Instant date) {
+        PersistentAuditEvent event = new PersistentAuditEvent();
+        event.setPrincipal(principal);
+        event.setAuditEventType(type);
+        event.setAuditEventDate(date);
+        persistenceAuditEventRepository.save(event);
+    }
+}
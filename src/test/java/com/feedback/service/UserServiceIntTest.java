@@ -2,10 +2,12 @@ package com.feedback.service;
 
 import com.feedback.RetroApp;
 import com.feedback.domain.User;
+import com.feedback.domain.UserToken;
+import com.feedback.domain.enumeration.UserTokenPurpose;
 import com.feedback.config.Constants;
 import com.feedback.repository.UserRepository;
+import com.feedback.repository.UserTokenRepository;
 import com.feedback.service.dto.UserDTO;
-import com.feedback.service.util.RandomUtil;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -39,6 +41,12 @@ public class UserServiceIntTest {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private UserTokenService userTokenService;
+
+    @Autowired
+    private UserTokenRepository userTokenRepository;
+
     @Test
     public void assertThatUserMustExistToResetPassword() {
         Optional<User> maybeUser = userService.requestPasswordReset("john.doe@localhost");
@@ -48,8 +56,9 @@ public class UserServiceIntTest {
         assertThat(maybeUser.isPresent()).isTrue();
 
         assertThat(maybeUser.get().getEmail()).isEqualTo("admin@localhost");
-        assertThat(maybeUser.get().getResetDate()).isNotNull();
         assertThat(maybeUser.get().getResetKey()).isNotNull();
+        assertThat(userTokenRepository.findOneByTokenHash(UserTokenService.hashKey(maybeUser.get().getResetKey())))
+            .isPresent();
     }
 
     @Test
@@ -65,14 +74,14 @@ public class UserServiceIntTest {
         User user = userService.createUser("johndoe", "johndoe", "John", "Doe", "john.doe@localhost", "http://placehold.it/50x50", "en-US");
 
         Instant daysAgo = Instant.now().minus(25, ChronoUnit.HOURS);
-        String resetKey = RandomUtil.generateResetKey();
         user.setActivated(true);
-        user.setResetDate(daysAgo);
-        user.setResetKey(resetKey);
-
         userRepository.save(user);
+        String resetKey = userTokenService.createToken(user, UserTokenPurpose.PASSWORD_RESET);
+        UserToken userToken = userTokenRepository.findOneByTokenHash(UserTokenService.hashKey(resetKey)).get();
+        userToken.setExpiryDate(daysAgo.plus(24, ChronoUnit.HOURS));
+        userTokenRepository.save(userToken);
 
-        Optional<User> maybeUser = userService.completePasswordReset("johndoe2", user.getResetKey());
+        Optional<User> maybeUser = userService.completePasswordReset("johndoe2", resetKey);
 
         assertThat(maybeUser.isPresent()).isFalse();
 
@@ -83,12 +92,10 @@ public class UserServiceIntTest {
     public void assertThatResetKeyMustBeValid() {
         User user = userService.createUser("johndoe", "johndoe", "John", "Doe", "john.doe@localhost", "http://placehold.it/50x50", "en-US");
 
-        Instant daysAgo = Instant.now().minus(25, ChronoUnit.HOURS);
         user.setActivated(true);
-        user.setResetDate(daysAgo);
-        user.setResetKey("1234");
         userRepository.save(user);
-        Optional<User> maybeUser = userService.completePasswordReset("johndoe2", user.getResetKey());
+        userTokenService.createToken(user, UserTokenPurpose.PASSWORD_RESET);
+        Optional<User> maybeUser = userService.completePasswordReset("johndoe2", "1234");
         assertThat(maybeUser.isPresent()).isFalse();
         userRepository.delete(user);
     }
@@ -97,18 +104,17 @@ public class UserServiceIntTest {
     public void assertThatUserCanResetPassword() {
         User user = userService.createUser("johndoe", "johndoe", "John", "Doe", "john.doe@localhost", "http://placehold.it/50x50", "en-US");
         String oldPassword = user.getPassword();
-        Instant daysAgo = Instant.now().minus(2, ChronoUnit.HOURS);
-        String resetKey = RandomUtil.generateResetKey();
         user.setActivated(true);
-        user.setResetDate(daysAgo);
-        user.setResetKey(resetKey);
         userRepository.save(user);
-        Optional<User> maybeUser = userService.completePasswordReset("johndoe2", user.getResetKey());
+        String resetKey = userTokenService.createToken(user, UserTokenPurpose.PASSWORD_RESET);
+        Optional<User> maybeUser = userService.completePasswordReset("johndoe2", resetKey);
         assertThat(maybeUser.isPresent()).isTrue();
-        assertThat(maybeUser.get().getResetDate()).isNull();
-        assertThat(maybeUser.get().getResetKey()).isNull();
+        assertThat(userTokenRepository.findOneByTokenHash(UserTokenService.hashKey(resetKey))).isNotPresent();
         assertThat(maybeUser.get().getPassword()).isNotEqualTo(oldPassword);
 
+        maybeUser = userService.completePasswordReset("johndoe3", resetKey);
+        assertThat(maybeUser.isPresent()).isFalse();
+
         userRepository.delete(user);
     }
 
@@ -139,4 +145,17 @@ public class UserServiceIntTest {
         userService.removeNotActivatedUsers();
         assertThat(userRepository.findOneByLogin("johndoe")).isNotPresent();
     }
+
+    @Test
+    public void testRemoveExpiredTokens() {
+        User user = userService.createUser("johndoe", "johndoe", "John", "Doe", "john.doe@localhost", "http://placehold.it/50x50", "en-US");
+        UserToken userToken = userTokenRepository.findOneByTokenHash(UserTokenService.hashKey(user.getActivationKey())).get();
+        userToken.setExpiryDate(Instant.now().minus(1, ChronoUnit.HOURS));
+        userTokenRepository.saveAndFlush(userToken);
+
+        userTokenService.removeExpiredTokens();
+
+        assertThat(userTokenRepository.findOneByTokenHash(UserTokenService.hashKey(user.getActivationKey()))).isNotPresent();
+        assertThat(userService.activateRegistration(user.getActivationKey())).isNotPresent();
+    }
 }
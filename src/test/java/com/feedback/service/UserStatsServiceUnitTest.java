@@ -0,0 +1,103 @@
+package com.feedback.service;
+
+import com.feedback.repository.UserRepository;
+import com.feedback.service.dto.UserStatsDTO;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test class for the reconciliation of the UserStatsService with the user changes committed meanwhile.
+ *
+ * @see UserStatsService
+ */
+public class UserStatsServiceUnitTest {
+
+    private static final Instant CREATED_DATE = Instant.parse("2026-10-18T12:00:00Z");
+
+    private UserRepository userRepository;
+
+    private UserStatsService userStatsService;
+
+    @Before
+    public void setup() {
+        userRepository = mock(UserRepository.class);
+        userStatsService = new UserStatsService(userRepository);
+    }
+
+    @Test
+    public void testReconciliationIsRetriedAfterAConcurrentChange() {
+        AtomicInteger reads = new AtomicInteger();
+        when(userRepository.countByActivatedAndLangKeyAndCreationDay()).thenAnswer(invocation -> {
+            if (reads.incrementAndGet() == 1) {
+                // Committed after the database was read, so not counted by this read
+                userStatsService.userCreated(true, "fr", CREATED_DATE);
+                return rows(0);
+            }
+            return rows(1);
+        });
+
+        userStatsService.reconcile();
+
+        UserStatsDTO stats = userStatsService.getStats();
+        assertThat(stats.getTotalUsers()).isEqualTo(2);
+        assertThat(stats.getUsersByLangKey()).containsEntry("en", 1L).containsEntry("fr", 1L);
+        verify(userRepository, times(2)).countByActivatedAndLangKeyAndCreationDay();
+    }
+
+    @Test
+    public void testChangesOfTheLastAttemptAreReplayed() {
+        AtomicInteger reads = new AtomicInteger();
+        when(userRepository.countByActivatedAndLangKeyAndCreationDay()).thenAnswer(invocation -> {
+            int committedBefore = reads.getAndIncrement();
+            userStatsService.userCreated(true, "fr", CREATED_DATE);
+            return rows(committedBefore);
+        });
+
+        userStatsService.reconcile();
+
+        UserStatsDTO stats = userStatsService.getStats();
+        assertThat(stats.getTotalUsers()).isEqualTo(4);
+        assertThat(stats.getActivatedUsers()).isEqualTo(4);
+        assertThat(stats.getUsersByLangKey()).containsEntry("en", 1L).containsEntry("fr", 3L);
+        verify(userRepository, times(3)).countByActivatedAndLangKeyAndCreationDay();
+    }
+
+    @Test
+    public void testChangesAfterTheReconciliationAreCounted() {
+        when(userRepository.countByActivatedAndLangKeyAndCreationDay()).thenReturn(rows(0));
+        userStatsService.reconcile();
+
+        userStatsService.userCreated(false, "fr", CREATED_DATE);
+        userStatsService.userUpdated(false, "fr", true, "es");
+
+        UserStatsDTO stats = userStatsService.getStats();
+        assertThat(stats.getTotalUsers()).isEqualTo(2);
+        assertThat(stats.getActivatedUsers()).isEqualTo(2);
+        assertThat(stats.getUsersByLangKey()).containsEntry("en", 1L).containsEntry("es", 1L)
+            .doesNotContainKey("fr");
+    }
+
+    /**
+     * @return the rows of the count query for an activated "en" user and the given number of activated "fr" users
+     */
+    private static List<Object[]> rows(int frenchUsers) {
+        List<Object[]> rows = new ArrayList<>();
+        rows.add(new Object[]{true, "en", 2026, 10, 18, 1L});
+        if (frenchUsers > 0) {
+            rows.add(new Object[]{true, "fr", 2026, 10, 18, (long) frenchUsers});
+        }
+        return rows;
+    }
+}
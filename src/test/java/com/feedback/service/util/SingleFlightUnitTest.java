@@ -0,0 +1,152 @@
+package com.feedback.service.util;
+
+import com.codahale.metrics.Counter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+import static org.awaitility.Awaitility.await;
+
+/**
+ * Tests SingleFlight.
+ *
+ * @see SingleFlight
+ */
+public class SingleFlightUnitTest {
+
+    private static final int CALLERS = 8;
+
+    private Counter suppressedLoads;
+
+    private SingleFlight<String, String> singleFlight;
+
+    private ExecutorService executor;
+
+    @Before
+    public void setup() {
+        suppressedLoads = new Counter();
+        singleFlight = new SingleFlight<>(suppressedLoads);
+        executor = Executors.newFixedThreadPool(CALLERS);
+    }
+
+    @After
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testConcurrentLoadsOfAKeyAreCoalesced() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        List<Future<String>> results = submitLoads("user", () -> {
+            loads.incrementAndGet();
+            awaitQuietly(release);
+            return "value";
+        });
+        await().atMost(5, TimeUnit.SECONDS).until(() -> suppressedLoads.getCount() == CALLERS - 1);
+        release.countDown();
+
+        for (Future<String> result : results) {
+            assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo("value");
+        }
+        assertThat(loads.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void testFailedLoadIsThrownToEveryCallerAndNotRemembered() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        List<Future<String>> results = submitLoads("user", () -> {
+            awaitQuietly(release);
+            throw new IllegalStateException("database is down");
+        });
+        await().atMost(5, TimeUnit.SECONDS).until(() -> suppressedLoads.getCount() == CALLERS - 1);
+        release.countDown();
+
+        for (Future<String> result : results) {
+            try {
+                result.get(5, TimeUnit.SECONDS);
+                fail("the load should have failed");
+            } catch (ExecutionException e) {
+                assertThat(e.getCause()).isInstanceOf(IllegalStateException.class).hasMessage("database is down");
+            }
+        }
+        assertThat(singleFlight.load("user", () -> "value")).isEqualTo("value");
+    }
+
+    @Test
+    public void testWaitingCallersGetACopy() throws Exception {
+        singleFlight = new SingleFlight<>(suppressedLoads, value -> new String(value));
+        String loaded = new String("value");
+        CountDownLatch release = new CountDownLatch(1);
+        List<Future<String>> results = submitLoads("user", () -> {
+            awaitQuietly(release);
+            return loaded;
+        });
+        await().atMost(5, TimeUnit.SECONDS).until(() -> suppressedLoads.getCount() == CALLERS - 1);
+        release.countDown();
+
+        int shared = 0;
+        for (Future<String> result : results) {
+            String value = result.get(5, TimeUnit.SECONDS);
+            assertThat(value).isEqualTo("value");
+            if (value == loaded) {
+                shared++;
+            }
+        }
+        assertThat(shared).isEqualTo(1);
+    }
+
+    @Test
+    public void testForgottenLoadIsNotJoined() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<String> stale = executor.submit(() -> singleFlight.load("user", () -> {
+            started.countDown();
+            awaitQuietly(release);
+            return "old value";
+        }));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+        singleFlight.forget("user");
+
+        assertThat(singleFlight.load("user", () -> "new value")).isEqualTo("new value");
+        assertThat(suppressedLoads.getCount()).isEqualTo(0);
+        release.countDown();
+        assertThat(stale.get(5, TimeUnit.SECONDS)).isEqualTo("old value");
+    }
+
+    @Test
+    public void testLoadsOfDifferentKeysAreNotCoalesced() {
+        assertThat(singleFlight.load("user", () -> singleFlight.load("admin", () -> "admin"))).isEqualTo("admin");
+        assertThat(suppressedLoads.getCount()).isEqualTo(0);
+    }
+
+    private List<Future<String>> submitLoads(String key, Supplier<String> loader) {
+        List<Future<String>> results = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            results.add(executor.submit(() -> singleFlight.load(key, loader)));
+        }
+        return results;
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package com.feedback.web.filter;
+
+import com.feedback.RetroApp;
+import com.feedback.config.ApplicationProperties;
+import com.feedback.config.CacheConfiguration;
+import com.feedback.domain.User;
+import com.feedback.repository.UserRepository;
+import com.feedback.service.MailService;
+import com.feedback.service.RegistrationPipeline;
+import com.feedback.service.ResponseCacheService;
+import com.feedback.service.UserService;
+import com.feedback.web.rest.AccountResource;
+
+import io.github.jhipster.config.JHipsterProperties;
+import org.ehcache.core.config.DefaultConfiguration;
+import org.ehcache.jsr107.EhcacheCachingProvider;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.filter.GenericFilterBean;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Test class for the ResponseCacheFilter, in front of the AccountResource.
+ *
+ * @see ResponseCacheFilter
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = RetroApp.class)
+public class ResponseCacheFilterIntTest {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private MappingJackson2HttpMessageConverter jacksonMessageConverter;
+
+    @Mock
+    private UserService mockUserService;
+
+    @Mock
+    private MailService mockMailService;
+
+    @Mock
+    private RegistrationPipeline mockRegistrationPipeline;
+
+    private CacheManager cacheManager;
+
+    private ResponseCacheService responseCacheService;
+
+    private MockMvc restMockMvc;
+
+    @Before
+    public void setup() {
+        MockitoAnnotations.initMocks(this);
+        EhcacheCachingProvider provider =
+            (EhcacheCachingProvider) Caching.getCachingProvider(EhcacheCachingProvider.class.getName());
+        cacheManager = provider.getCacheManager(URI.create("urn:response-cache-test"),
+            new DefaultConfiguration(getClass().getClassLoader()));
+        new CacheConfiguration(new JHipsterProperties(), new ApplicationProperties())
+            .cacheManagerCustomizer().customize(cacheManager);
+        responseCacheService = new ResponseCacheService(Optional.of(cacheManager), new ApplicationProperties());
+
+        AccountResource accountResource =
+            new AccountResource(userRepository, mockUserService, mockMailService, mockRegistrationPipeline);
+        this.restMockMvc = MockMvcBuilders.standaloneSetup(accountResource)
+            .setMessageConverters(jacksonMessageConverter)
+            .addFilters(new ResponseCacheFilter(responseCacheService, true))
+            .build();
+        login("test");
+    }
+
+    @After
+    public void destroy() {
+        SecurityContextHolder.clearContext();
+        cacheManager.close();
+    }
+
+    @Test
+    public void testResponseIsServedFromTheCache() throws Exception {
+        when(mockUserService.getUserWithAuthorities()).thenReturn(createUser("test", "john"));
+
+        String first = getAccount();
+        when(mockUserService.getUserWithAuthorities()).thenReturn(createUser("test", "changed"));
+        String second = getAccount();
+
+        assertThat(second).isEqualTo(first).contains("\"firstName\":\"john\"");
+        verify(mockUserService, times(1)).getUserWithAuthorities();
+    }
+
+    @Test
+    public void testGzippedResponseIsCachedSeparately() throws Exception {
+        when(mockUserService.getUserWithAuthorities()).thenReturn(createUser("test", "john"));
+
+        for (int i = 0; i < 2; i++) {
+            byte[] body = restMockMvc.perform(get("/api/account").header(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8_VALUE))
+                .andReturn().getResponse().getContentAsByteArray();
+            assertThat(gunzip(body)).contains("\"firstName\":\"john\"");
+        }
+        assertThat(getAccount()).contains("\"firstName\":\"john\"");
+        verify(mockUserService, times(2)).getUserWithAuthorities();
+    }
+
+    @Test
+    public void testEvictedResponseIsComputedAgain() throws Exception {
+        when(mockUserService.getUserWithAuthorities()).thenReturn(createUser("test", "john"));
+        getAccount();
+
+        responseCacheService.evict("test");
+        when(mockUserService.getUserWithAuthorities()).thenReturn(createUser("test", "changed"));
+
+        assertThat(getAccount()).contains("\"firstName\":\"changed\"");
+    }
+
+    @Test
+    public void testEvictionRemovesTheGzippedResponsesToo() throws Exception {
+        when(mockUserService.getUserWithAuthorities()).thenReturn(createUser("test", "john"));
+        restMockMvc.perform(get("/api/account").header(HttpHeaders.ACCEPT_ENCODING, "gzip"))
+            .andExpect(status().isOk());
+
+        responseCacheService.evict("test");
+        when(mockUserService.getUserWithAuthorities()).thenReturn(createUser("test", "changed"));
+
+        byte[] body = restMockMvc.perform(get("/api/account").header(HttpHeaders.ACCEPT_ENCODING, "gzip"))
+            .andExpect(status().isOk())
+            .andReturn().getResponse().getContentAsByteArray();
+        assertThat(gunzip(body)).contains("\"firstName\":\"changed\"");
+    }
+
+    @Test
+    public void testCachedHeadersAreMergedWithTheHeadersOfTheResponse() throws Exception {
+        AccountResource accountResource =
+            new AccountResource(userRepository, mockUserService, mockMailService, mockRegistrationPipeline);
+        restMockMvc = MockMvcBuilders.standaloneSetup(accountResource)
+            .setMessageConverters(jacksonMessageConverter)
+            .addFilters(headerFilter("X-Frame-Options", "DENY"),
+                new ResponseCacheFilter(responseCacheService, true),
+                headerFilter("X-Computed", "true"))
+            .build();
+        when(mockUserService.getUserWithAuthorities()).thenReturn(createUser("test", "john"));
+
+        for (int i = 0; i < 2; i++) {
+            MockHttpServletResponse response = restMockMvc.perform(get("/api/account"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Computed", "true"))
+                .andReturn().getResponse();
+            assertThat(response.getHeaders("X-Frame-Options")).containsExactly("DENY");
+            assertThat(response.getHeaders(HttpHeaders.VARY)).containsExactly(HttpHeaders.ACCEPT_ENCODING);
+        }
+        verify(mockUserService, times(1)).getUserWithAuthorities();
+    }
+
+    @Test
+    public void testResponsesAreCachedPerUser() throws Exception {
+        when(mockUserService.getUserWithAuthorities()).thenReturn(createUser("test", "john"));
+        getAccount();
+
+        login("other");
+        when(mockUserService.getUserWithAuthorities()).thenReturn(createUser("other", "jane"));
+
+        assertThat(getAccount()).contains("\"login\":\"other\"");
+    }
+
+    @Test
+    public void testErrorResponseIsNotCached() throws Exception {
+        restMockMvc.perform(get("/api/account")).andExpect(status().isInternalServerError());
+
+        when(mockUserService.getUserWithAuthorities()).thenReturn(createUser("test", "john"));
+
+        assertThat(getAccount()).contains("\"firstName\":\"john\"");
+    }
+
+    private String getAccount() throws Exception {
+        return restMockMvc.perform(get("/api/account"))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8_VALUE))
+            .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING))
+            .andReturn().getResponse().getContentAsString();
+    }
+
+    private static Filter headerFilter(String name, String value) {
+        return new GenericFilterBean() {
+            @Override
+            public void doFilter(ServletRequest request, ServletResponse response, FilterChain filterChain)
+                throws ServletException, IOException {
+                ((HttpServletResponse) response).addHeader(name, value);
+                filterChain.doFilter(request, response);
+            }
+        };
+    }
+
+    private static void login(String login) {
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(login, login));
+    }
+
+    private static User createUser(String login, String firstName) {
+        User user = new User();
+        user.setLogin(login);
+        user.setFirstName(firstName);
+        user.setAuthorities(new HashSet<>());
+        return user;
+    }
+
+    private static String gunzip(byte[] body) throws IOException {
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+            return StreamUtils.copyToString(in, StandardCharsets.UTF_8);
+        }
+    }
+}
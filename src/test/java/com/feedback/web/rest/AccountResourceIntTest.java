@@ -1,13 +1,18 @@
 package com.feedback.web.rest;
 
+import com.codahale.metrics.MetricRegistry;
 import com.feedback.RetroApp;
+import com.feedback.config.ApplicationProperties;
 import com.feedback.domain.Authority;
 import com.feedback.domain.User;
+import com.feedback.domain.enumeration.UserTokenPurpose;
 import com.feedback.repository.AuthorityRepository;
 import com.feedback.repository.UserRepository;
 import com.feedback.security.AuthoritiesConstants;
 import com.feedback.service.MailService;
+import com.feedback.service.RegistrationPipeline;
 import com.feedback.service.UserService;
+import com.feedback.service.UserTokenService;
 import com.feedback.service.dto.UserDTO;
 import com.feedback.web.rest.vm.KeyAndPasswordVM;
 import com.feedback.web.rest.vm.ManagedUserVM;
@@ -28,19 +33,22 @@ import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.time.Instant;
 import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
 import static org.hamcrest.Matchers.hasItem;
 import static org.mockito.Matchers.anyObject;
 import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+import static org.hamcrest.Matchers.startsWith;
 
 /**
  * Test class for the AccountResource REST controller.
@@ -60,9 +68,15 @@ public class AccountResourceIntTest {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private UserTokenService userTokenService;
+
     @Autowired
     private PasswordEncoder passwordEncoder;
 
+    @Autowired
+    private RegistrationPipeline registrationPipeline;
+
     @Autowired
     private HttpMessageConverter[] httpMessageConverters;
 
@@ -82,10 +96,10 @@ public class AccountResourceIntTest {
         doNothing().when(mockMailService).sendActivationEmail(anyObject());
 
         AccountResource accountResource =
-            new AccountResource(userRepository, userService, mockMailService);
+            new AccountResource(userRepository, userService, mockMailService, registrationPipeline);
 
         AccountResource accountUserMockResource =
-            new AccountResource(userRepository, mockUserService, mockMailService);
+            new AccountResource(userRepository, mockUserService, mockMailService, registrationPipeline);
 
         this.restMvc = MockMvcBuilders.standaloneSetup(accountResource)
             .setMessageConverters(httpMessageConverters)
@@ -181,6 +195,103 @@ public class AccountResourceIntTest {
         assertThat(user.isPresent()).isTrue();
     }
 
+    @Test
+    public void testRegisterAsync() throws Exception {
+        RegistrationPipeline asyncPipeline = createAsyncPipeline(10);
+        asyncPipeline.start();
+        MockMvc asyncMvc = MockMvcBuilders.standaloneSetup(
+            new AccountResource(userRepository, userService, mockMailService, asyncPipeline))
+            .setMessageConverters(httpMessageConverters)
+            .build();
+        ManagedUserVM validUser = new ManagedUserVM(
+            null,                   // id
+            "async-joe",            // login
+            "password",             // password
+            "Joe",                  // firstName
+            "Async",                // lastName
+            "async-joe@example.com", // email
+            true,                   // activated
+            "http://placehold.it/50x50", //imageUrl
+            "es",                   // langKey
+            null,                   // createdBy
+            null,                   // createdDate
+            null,                   // lastModifiedBy
+            null,                   // lastModifiedDate
+            new HashSet<>(Collections.singletonList(AuthoritiesConstants.USER)));
+
+        try {
+            String location = asyncMvc.perform(
+                post("/api/register")
+                    .contentType(TestUtil.APPLICATION_JSON_UTF8)
+                    .content(TestUtil.convertObjectToJsonBytes(validUser)))
+                .andExpect(status().isAccepted())
+                .andExpect(header().string("Location", startsWith("/api/register/status/")))
+                .andExpect(jsonPath("$.state").value("PENDING"))
+                .andReturn().getResponse().getHeader("Location");
+
+            await().atMost(10, TimeUnit.SECONDS).until(() ->
+                asyncMvc.perform(get(location)).andReturn().getResponse().getContentAsString().contains("COMPLETED"));
+
+            Optional<User> user = userRepository.findOneByLogin("async-joe");
+            assertThat(user.isPresent()).isTrue();
+            assertThat(passwordEncoder.matches("password", user.get().getPassword())).isTrue();
+            verify(mockMailService).sendActivationEmail(anyObject());
+
+            // the same login again is refused by the persist stage
+            ManagedUserVM duplicateUser = new ManagedUserVM(null, "async-joe", "password", "Joe", "Async",
+                "async-joe2@example.com", true, null, "es", null, null, null, null,
+                new HashSet<>(Collections.singletonList(AuthoritiesConstants.USER)));
+            String duplicateLocation = asyncMvc.perform(
+                post("/api/register")
+                    .contentType(TestUtil.APPLICATION_JSON_UTF8)
+                    .content(TestUtil.convertObjectToJsonBytes(duplicateUser)))
+                .andExpect(status().isAccepted())
+                .andReturn().getResponse().getHeader("Location");
+            await().atMost(10, TimeUnit.SECONDS).until(() ->
+                asyncMvc.perform(get(duplicateLocation)).andReturn().getResponse().getContentAsString().contains("FAILED"));
+            asyncMvc.perform(get(duplicateLocation))
+                .andExpect(jsonPath("$.message").value("login already in use"));
+        } finally {
+            asyncPipeline.stop();
+            userRepository.findOneByLogin("async-joe").ifPresent(userRepository::delete);
+        }
+    }
+
+    @Test
+    public void testRegisterAsyncWhenFull() throws Exception {
+        // workers are not started, so the entry queue fills up
+        RegistrationPipeline asyncPipeline = createAsyncPipeline(1);
+        MockMvc asyncMvc = MockMvcBuilders.standaloneSetup(
+            new AccountResource(userRepository, userService, mockMailService, asyncPipeline))
+            .setMessageConverters(httpMessageConverters)
+            .build();
+        ManagedUserVM validUser = new ManagedUserVM(null, "full-joe", "password", "Joe", "Full",
+            "full-joe@example.com", true, null, "es", null, null, null, null,
+            new HashSet<>(Collections.singletonList(AuthoritiesConstants.USER)));
+
+        asyncMvc.perform(
+            post("/api/register")
+                .contentType(TestUtil.APPLICATION_JSON_UTF8)
+                .content(TestUtil.convertObjectToJsonBytes(validUser)))
+            .andExpect(status().isAccepted());
+        asyncMvc.perform(
+            post("/api/register")
+                .contentType(TestUtil.APPLICATION_JSON_UTF8)
+                .content(TestUtil.convertObjectToJsonBytes(validUser)))
+            .andExpect(status().isServiceUnavailable())
+            .andExpect(header().string("Retry-After", "1"));
+        asyncMvc.perform(get("/api/register/status/unknown"))
+            .andExpect(status().isNotFound());
+    }
+
+    private RegistrationPipeline createAsyncPipeline(int queueCapacity) {
+        ApplicationProperties applicationProperties = new ApplicationProperties();
+        applicationProperties.getRegistration().setAsync(true);
+        applicationProperties.getRegistration().setQueueCapacity(queueCapacity);
+        return new RegistrationPipeline(userRepository, userService, mockMailService, passwordEncoder,
+            applicationProperties, new MetricRegistry());
+    }
+
     @Test
     @Transactional
     public void testRegisterInvalidLogin() throws Exception {
@@ -415,15 +526,14 @@ public class AccountResourceIntTest {
     @Test
     @Transactional
     public void testActivateAccount() throws Exception {
-        final String activationKey = "some activation key";
         User user = new User();
         user.setLogin("activate-account");
         user.setEmail("activate-account@example.com");
         user.setPassword(RandomStringUtils.random(60));
         user.setActivated(false);
-        user.setActivationKey(activationKey);
 
         userRepository.saveAndFlush(user);
+        final String activationKey = userTokenService.createToken(user, UserTokenPurpose.ACTIVATION);
 
         restMvc.perform(get("/api/activate?key={activationKey}", activationKey))
             .andExpect(status().isOk());
@@ -703,12 +813,10 @@ public class AccountResourceIntTest {
         user.setPassword(RandomStringUtils.random(60));
         user.setLogin("finish-password-reset");
         user.setEmail("finish-password-reset@example.com");
-        user.setResetDate(Instant.now().plusSeconds(60));
-        user.setResetKey("reset key");
         userRepository.saveAndFlush(user);
 
         KeyAndPasswordVM keyAndPassword = new KeyAndPasswordVM();
-        keyAndPassword.setKey(user.getResetKey());
+        keyAndPassword.setKey(userTokenService.createToken(user, UserTokenPurpose.PASSWORD_RESET));
         keyAndPassword.setNewPassword("new password");
 
         restMvc.perform(
@@ -728,12 +836,10 @@ public class AccountResourceIntTest {
         user.setPassword(RandomStringUtils.random(60));
         user.setLogin("finish-password-reset-too-small");
         user.setEmail("finish-password-reset-too-small@example.com");
-        user.setResetDate(Instant.now().plusSeconds(60));
-        user.setResetKey("reset key too small");
         userRepository.saveAndFlush(user);
 
         KeyAndPasswordVM keyAndPassword = new KeyAndPasswordVM();
-        keyAndPassword.setKey(user.getResetKey());
+        keyAndPassword.setKey(userTokenService.createToken(user, UserTokenPurpose.PASSWORD_RESET));
         keyAndPassword.setNewPassword("foo");
 
         restMvc.perform(
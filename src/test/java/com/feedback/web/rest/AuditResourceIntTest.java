@@ -3,8 +3,12 @@ package com.feedback.web.rest;
 import com.feedback.RetroApp;
 import com.feedback.config.audit.AuditEventConverter;
 import com.feedback.domain.PersistentAuditEvent;
+import com.feedback.repository.AuditEventArchive;
 import com.feedback.repository.PersistenceAuditEventRepository;
+import com.feedback.service.AuditEventExportService;
+import com.feedback.service.AuditEventSearchService;
 import com.feedback.service.AuditEventService;
+import com.feedback.web.rest.errors.ExceptionTranslator;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -13,16 +17,28 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.data.web.PageableHandlerMethodArgumentResolver;
 import org.springframework.format.support.FormattingConversionService;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.StreamUtils;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.time.format.DateTimeFormatter;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.hasItem;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -48,9 +64,21 @@ public class AuditResourceIntTest {
     @Autowired
     private AuditEventConverter auditEventConverter;
 
+    @Autowired
+    private AuditEventExportService auditEventExportService;
+
+    @Autowired
+    private AuditEventArchive auditEventArchive;
+
+    @Autowired
+    private AuditEventSearchService auditEventSearchService;
+
     @Autowired
     private MappingJackson2HttpMessageConverter jacksonMessageConverter;
 
+    @Autowired
+    private ExceptionTranslator exceptionTranslator;
+
     @Autowired
     private FormattingConversionService formattingConversionService;
 
@@ -65,10 +93,12 @@ public class AuditResourceIntTest {
     public void setup() {
         MockitoAnnotations.initMocks(this);
         AuditEventService auditEventService =
-            new AuditEventService(auditEventRepository, auditEventConverter);
-        AuditResource auditResource = new AuditResource(auditEventService);
+            new AuditEventService(auditEventRepository, auditEventConverter, Optional.empty(),
+                auditEventArchive, auditEventSearchService);
+        AuditResource auditResource = new AuditResource(auditEventService, auditEventExportService);
         this.restAuditMockMvc = MockMvcBuilders.standaloneSetup(auditResource)
             .setCustomArgumentResolvers(pageableArgumentResolver)
+            .setControllerAdvice(exceptionTranslator)
             .setConversionService(formattingConversionService)
             .setMessageConverters(jacksonMessageConverter).build();
     }
@@ -122,6 +152,28 @@ public class AuditResourceIntTest {
             .andExpect(jsonPath("$.[*].principal").value(hasItem(SAMPLE_PRINCIPAL)));
     }
 
+    @Test
+    public void getAuditsByDateSortedByTheCaller() throws Exception {
+        auditEventRepository.save(auditEvent);
+        PersistentAuditEvent olderEvent = new PersistentAuditEvent();
+        olderEvent.setAuditEventType(SAMPLE_TYPE);
+        olderEvent.setPrincipal("ANOTHER_PRINCIPAL");
+        olderEvent.setAuditEventDate(SAMPLE_TIMESTAMP.minusSeconds(60));
+        auditEventRepository.save(olderEvent);
+        String fromDate = SAMPLE_TIMESTAMP.minusSeconds(SECONDS_PER_DAY).toString().substring(0, 10);
+        String toDate = SAMPLE_TIMESTAMP.plusSeconds(SECONDS_PER_DAY).toString().substring(0, 10);
+
+        restAuditMockMvc.perform(get("/management/audits?fromDate=" + fromDate + "&toDate=" + toDate +
+            "&sort=auditEventDate,desc"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[*].principal").value(contains(SAMPLE_PRINCIPAL, "ANOTHER_PRINCIPAL")));
+
+        restAuditMockMvc.perform(get("/management/audits?fromDate=" + fromDate + "&toDate=" + toDate +
+            "&sort=principal,asc"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[*].principal").value(contains("ANOTHER_PRINCIPAL", SAMPLE_PRINCIPAL)));
+    }
+
     @Test
     public void getNonExistingAuditsByDate() throws Exception {
         // Initialize the database
@@ -138,6 +190,157 @@ public class AuditResourceIntTest {
             .andExpect(header().string("X-Total-Count", "0"));
     }
 
+    @Test
+    public void getAuditsByCursorInBothDirections() throws Exception {
+        // Two events share a date, the one with the highest id comes first
+        Instant[] dates = {SAMPLE_TIMESTAMP.plusSeconds(2), SAMPLE_TIMESTAMP, SAMPLE_TIMESTAMP,
+            SAMPLE_TIMESTAMP.minusSeconds(1), SAMPLE_TIMESTAMP.minusSeconds(2)};
+        for (int i = 0; i < dates.length; i++) {
+            PersistentAuditEvent event = new PersistentAuditEvent();
+            event.setAuditEventType(SAMPLE_TYPE);
+            event.setPrincipal("principal-" + i);
+            event.setAuditEventDate(dates[i]);
+            auditEventRepository.save(event);
+        }
+
+        String link = restAuditMockMvc.perform(get("/management/audits?cursor=&size=2"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[*].principal").value(contains("principal-0", "principal-2")))
+            .andExpect(header().doesNotExist("X-Total-Count"))
+            .andReturn().getResponse().getHeader("Link");
+        assertThat(cursor(link, "prev")).isNull();
+
+        link = restAuditMockMvc.perform(get("/management/audits?cursor=" + cursor(link, "next") + "&size=2"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[*].principal").value(contains("principal-1", "principal-3")))
+            .andReturn().getResponse().getHeader("Link");
+
+        String lastPageLink = restAuditMockMvc.perform(get("/management/audits?cursor=" + cursor(link, "next") + "&size=2"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[*].principal").value(contains("principal-4")))
+            .andReturn().getResponse().getHeader("Link");
+        assertThat(cursor(lastPageLink, "next")).isNull();
+
+        link = restAuditMockMvc.perform(get("/management/audits?cursor=" + cursor(lastPageLink, "prev") + "&size=2"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[*].principal").value(contains("principal-1", "principal-3")))
+            .andReturn().getResponse().getHeader("Link");
+
+        link = restAuditMockMvc.perform(get("/management/audits?cursor=" + cursor(link, "prev") + "&size=2"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[*].principal").value(contains("principal-0", "principal-2")))
+            .andReturn().getResponse().getHeader("Link");
+        assertThat(cursor(link, "prev")).isNull();
+        assertThat(cursor(link, "next")).isNotNull();
+    }
+
+    @Test
+    public void getAuditsByCursorAndDates() throws Exception {
+        auditEventRepository.save(auditEvent);
+        String fromDate = SAMPLE_TIMESTAMP.minusSeconds(2 * SECONDS_PER_DAY).toString().substring(0, 10);
+        String toDate = SAMPLE_TIMESTAMP.minusSeconds(SECONDS_PER_DAY).toString().substring(0, 10);
+
+        restAuditMockMvc.perform(get("/management/audits?cursor=&fromDate=" + fromDate + "&toDate=" + toDate))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$").isEmpty());
+    }
+
+    @Test
+    public void getAuditsByInvalidCursor() throws Exception {
+        restAuditMockMvc.perform(get("/management/audits?cursor=after.x"))
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void exportAuditsAsNdjson() throws Exception {
+        saveExportedEvents();
+
+        String body = restAuditMockMvc.perform(get("/management/audits/export?fromDate=2015-08-04&toDate=2015-08-04"))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType("application/x-ndjson;charset=UTF-8"))
+            .andReturn().getResponse().getContentAsString();
+
+        String[] lines = body.split("\n");
+        assertThat(lines).hasSize(2);
+        assertThat(lines[0]).isEqualTo("{\"id\":" + auditEvent.getId() + ",\"timestamp\":\"" + SAMPLE_TIMESTAMP +
+            "\",\"principal\":\"SAMPLE_PRINCIPAL\",\"type\":\"SAMPLE_TYPE\",\"data\":{\"remoteAddress\":\"10.0.0.1\"}}");
+        assertThat(lines[1]).contains("\"principal\":\"other, \\\"quoted\\\"\"")
+            .contains("\"sessionId\":\"abc\"").contains("\"remoteAddress\":\"10.0.0.2\"");
+    }
+
+    @Test
+    public void exportAuditsAsCsv() throws Exception {
+        saveExportedEvents();
+
+        String body = restAuditMockMvc.perform(get("/management/audits/export?fromDate=2015-08-04&toDate=2015-08-04&format=csv"))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType("text/csv;charset=UTF-8"))
+            .andReturn().getResponse().getContentAsString();
+
+        String[] lines = body.split("\r\n");
+        assertThat(lines).hasSize(3);
+        assertThat(lines[0]).isEqualTo("id,timestamp,principal,type,data");
+        assertThat(lines[1]).isEqualTo(auditEvent.getId() + "," + SAMPLE_TIMESTAMP +
+            ",SAMPLE_PRINCIPAL,SAMPLE_TYPE,\"{\"\"remoteAddress\"\":\"\"10.0.0.1\"\"}\"");
+        assertThat(lines[2]).contains(",\"other, \"\"quoted\"\"\",");
+    }
+
+    @Test
+    public void exportAuditsGzipped() throws Exception {
+        saveExportedEvents();
+
+        byte[] body = restAuditMockMvc.perform(get("/management/audits/export?fromDate=2015-08-04&toDate=2015-08-04")
+            .header(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate"))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+            .andReturn().getResponse().getContentAsByteArray();
+
+        assertThat(gunzip(body).split("\n")).hasSize(2);
+    }
+
+    @Test
+    public void exportAuditsWithUnknownFormat() throws Exception {
+        restAuditMockMvc.perform(get("/management/audits/export?fromDate=2015-08-04&toDate=2015-08-04&format=xml"))
+            .andExpect(status().isBadRequest());
+    }
+
+    /**
+     * Save the sample audit and a later one with its data in the collection, both on the same day, and one the day
+     * before. The export reads them with JDBC, so they are flushed.
+     */
+    private void saveExportedEvents() {
+        auditEvent.setEncodedData("{\"remoteAddress\":\"10.0.0.1\"}");
+        auditEventRepository.saveAndFlush(auditEvent);
+
+        PersistentAuditEvent otherEvent = new PersistentAuditEvent();
+        otherEvent.setAuditEventType(SAMPLE_TYPE);
+        otherEvent.setPrincipal("other, \"quoted\"");
+        otherEvent.setAuditEventDate(SAMPLE_TIMESTAMP.plusSeconds(60));
+        otherEvent.getData().put("remoteAddress", "10.0.0.2");
+        otherEvent.getData().put("sessionId", "abc");
+        auditEventRepository.saveAndFlush(otherEvent);
+
+        PersistentAuditEvent oldEvent = new PersistentAuditEvent();
+        oldEvent.setAuditEventType(SAMPLE_TYPE);
+        oldEvent.setPrincipal(SAMPLE_PRINCIPAL);
+        oldEvent.setAuditEventDate(SAMPLE_TIMESTAMP.minusSeconds(SECONDS_PER_DAY));
+        auditEventRepository.saveAndFlush(oldEvent);
+    }
+
+    private static String gunzip(byte[] body) throws IOException {
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+            return StreamUtils.copyToString(in, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * @return the cursor of a relation of the Link header, or null
+     */
+    private static String cursor(String link, String rel) {
+        Matcher matcher = Pattern.compile("<[^>]*cursor=([^&>]*)[^>]*>; rel=\"" + rel + "\"").matcher(link);
+        return matcher.find() ? matcher.group(1) : null;
+    }
+
     @Test
     public void getNonExistingAudit() throws Exception {
         // Get the audit
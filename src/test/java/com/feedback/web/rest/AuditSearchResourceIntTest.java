@@ -0,0 +1,250 @@
+package com.feedback.web.rest;
+
+import com.codahale.metrics.MetricRegistry;
+import com.feedback.RetroApp;
+import com.feedback.config.ApplicationProperties;
+import com.feedback.config.audit.AuditEventBroadcaster;
+import com.feedback.config.audit.AuditEventConverter;
+import com.feedback.domain.PersistentAuditEvent;
+import com.feedback.repository.AuditEventArchive;
+import com.feedback.repository.PersistenceAuditEventRepository;
+import com.feedback.service.AuditEventSearchService;
+import com.feedback.service.AuditEventService;
+import com.feedback.web.rest.errors.ExceptionTranslator;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.web.PageableHandlerMethodArgumentResolver;
+import org.springframework.format.support.FormattingConversionService;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Optional;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Test class for the AuditSearchResource REST controller, and the index of the AuditEventSearchService.
+ *
+ * @see AuditSearchResource
+ * @see AuditEventSearchService
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = RetroApp.class)
+@Transactional
+public class AuditSearchResourceIntTest {
+
+    private static final Instant NOW = Instant.now();
+
+    @Rule
+    public TemporaryFolder indexDirectory = new TemporaryFolder();
+
+    @Autowired
+    private PersistenceAuditEventRepository persistenceAuditEventRepository;
+
+    @Autowired
+    private AuditEventConverter auditEventConverter;
+
+    @Autowired
+    private AuditEventArchive auditEventArchive;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MappingJackson2HttpMessageConverter jacksonMessageConverter;
+
+    @Autowired
+    private ExceptionTranslator exceptionTranslator;
+
+    @Autowired
+    private FormattingConversionService formattingConversionService;
+
+    @Autowired
+    private PageableHandlerMethodArgumentResolver pageableArgumentResolver;
+
+    private ApplicationProperties applicationProperties;
+
+    private AuditEventBroadcaster auditEventBroadcaster;
+
+    private MockMvc restAuditSearchMockMvc;
+
+    @Before
+    public void setup() {
+        persistenceAuditEventRepository.deleteAll();
+        applicationProperties = new ApplicationProperties();
+        applicationProperties.getAudit().getIndex().setEnabled(true);
+        applicationProperties.getAudit().getIndex().setFile(indexDirectory.getRoot().getPath() + "/data-index.bin");
+        applicationProperties.getAudit().getIndex().setNames(Arrays.asList("remoteAddress", "sessionId"));
+        auditEventBroadcaster = new AuditEventBroadcaster(auditEventConverter, applicationProperties,
+            new MetricRegistry());
+    }
+
+    @After
+    public void destroy() {
+        auditEventBroadcaster.stop();
+    }
+
+    @Test
+    public void testEventsAreSearchedByDataAndDates() throws Exception {
+        saveEvent("user", "10.0.0.1", 10);
+        saveEvent("admin", "10.0.0.1", 1);
+        saveEvent("user", "10.0.0.2", 1);
+        open();
+
+        restAuditSearchMockMvc.perform(get("/management/audits/search")
+            .param("name", "remoteAddress")
+            .param("value", "10.0.0.1"))
+            .andExpect(status().isOk())
+            .andExpect(header().string("X-Total-Count", "2"))
+            .andExpect(jsonPath("$.[0].principal", is("admin")))
+            .andExpect(jsonPath("$.[1].principal", is("user")));
+
+        restAuditSearchMockMvc.perform(get("/management/audits/search")
+            .param("name", "remoteAddress")
+            .param("value", "10.0.0.1")
+            .param("fromDate", LocalDate.now().minusDays(5).toString())
+            .param("toDate", LocalDate.now().toString()))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$", hasSize(1)))
+            .andExpect(jsonPath("$.[0].principal", is("admin")));
+    }
+
+    @Test
+    public void testWrittenEventsAreIndexed() throws Exception {
+        open();
+        PersistentAuditEvent event = saveEvent("admin", "10.0.0.3", 0);
+
+        auditEventBroadcaster.publish(event);
+
+        restAuditSearchMockMvc.perform(get("/management/audits/search")
+            .param("name", "remoteAddress")
+            .param("value", "10.0.0.3"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$", hasSize(1)))
+            .andExpect(jsonPath("$.[0].data.remoteAddress", is("10.0.0.3")));
+    }
+
+    @Test
+    public void testIndexIsPersistedAndDeletedEventsAreSkipped() throws Exception {
+        PersistentAuditEvent deleted = saveEvent("user", "10.0.0.4", 2);
+        saveEvent("admin", "10.0.0.4", 1);
+        open().persist();
+
+        persistenceAuditEventRepository.delete(deleted.getId());
+        persistenceAuditEventRepository.flush();
+        // Reading the file, the events are not read again from the database
+        open();
+
+        restAuditSearchMockMvc.perform(get("/management/audits/search")
+            .param("name", "remoteAddress")
+            .param("value", "10.0.0.4")
+            .param("size", "1")
+            .param("page", "1"))
+            .andExpect(status().isOk())
+            .andExpect(header().string("X-Total-Count", "2"))
+            .andExpect(jsonPath("$", hasSize(0)));
+
+        restAuditSearchMockMvc.perform(get("/management/audits/search")
+            .param("name", "remoteAddress")
+            .param("value", "10.0.0.4"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$", hasSize(1)))
+            .andExpect(jsonPath("$.[0].principal", is("admin")));
+    }
+
+    @Test
+    public void testEventsOfOtherNodesAreIndexedByTheRescan() throws Exception {
+        AuditEventSearchService auditEventSearchService = open();
+        // Written by another node, so not published to the broadcaster of this one
+        saveEvent("admin", "10.0.0.5", 0);
+
+        auditEventSearchService.rescan();
+
+        restAuditSearchMockMvc.perform(get("/management/audits/search")
+            .param("name", "remoteAddress")
+            .param("value", "10.0.0.5"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$", hasSize(1)))
+            .andExpect(jsonPath("$.[0].principal", is("admin")));
+    }
+
+    @Test
+    public void testEventCommittedLateWithASmallerIdIsIndexedAtStartup() throws Exception {
+        PersistentAuditEvent late = saveEvent("user", "10.0.0.6", 0);
+        saveEvent("admin", "10.0.0.6", 0);
+        persistenceAuditEventRepository.delete(late.getId());
+        persistenceAuditEventRepository.flush();
+        open().persist();
+
+        new JdbcTemplate(dataSource).update("insert into jhi_persistent_audit_event " +
+            "(event_id, principal, event_date, event_type, encoded_data) values (?, ?, ?, ?, ?)", late.getId(), "user",
+            Timestamp.from(NOW), "AUTHENTICATION_SUCCESS", "{\"remoteAddress\":\"10.0.0.6\"}");
+        open();
+
+        restAuditSearchMockMvc.perform(get("/management/audits/search")
+            .param("name", "remoteAddress")
+            .param("value", "10.0.0.6"))
+            .andExpect(status().isOk())
+            .andExpect(header().string("X-Total-Count", "2"));
+    }
+
+    @Test
+    public void testNameWhichIsNotIndexedIsRejected() throws Exception {
+        open();
+
+        restAuditSearchMockMvc.perform(get("/management/audits/search")
+            .param("name", "message")
+            .param("value", "x"))
+            .andExpect(status().isBadRequest());
+    }
+
+    private AuditEventSearchService open() throws IOException {
+        AuditEventSearchService auditEventSearchService = new AuditEventSearchService(dataSource, transactionManager,
+            auditEventBroadcaster, auditEventConverter, applicationProperties);
+        auditEventSearchService.open();
+        AuditEventService auditEventService = new AuditEventService(persistenceAuditEventRepository,
+            auditEventConverter, Optional.empty(), auditEventArchive, auditEventSearchService);
+        AuditSearchResource auditSearchResource = new AuditSearchResource(auditEventService, auditEventSearchService);
+        this.restAuditSearchMockMvc = MockMvcBuilders.standaloneSetup(auditSearchResource)
+            .setCustomArgumentResolvers(pageableArgumentResolver)
+            .setControllerAdvice(exceptionTranslator)
+            .setConversionService(formattingConversionService)
+            .setMessageConverters(jacksonMessageConverter).build();
+        return auditEventSearchService;
+    }
+
+    private PersistentAuditEvent saveEvent(String principal, String remoteAddress, int daysAgo) {
+        PersistentAuditEvent event = new PersistentAuditEvent();
+        event.setPrincipal(principal);
+        event.setAuditEventType("AUTHENTICATION_SUCCESS");
+        event.setAuditEventDate(NOW.minus(daysAgo, ChronoUnit.DAYS));
+        event.getData().put("remoteAddress", remoteAddress);
+        event.getData().put("message", "test");
+        return persistenceAuditEventRepository.saveAndFlush(event);
+    }
+}
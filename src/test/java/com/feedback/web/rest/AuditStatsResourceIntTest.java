@@ -0,0 +1,222 @@
+package com.feedback.web.rest;
+
+import com.feedback.RetroApp;
+import com.codahale.metrics.MetricRegistry;
+import com.feedback.config.ApplicationProperties;
+import com.feedback.config.audit.AuditEventBroadcaster;
+import com.feedback.config.audit.AuditEventCoalescer;
+import com.feedback.config.audit.AuditEventConverter;
+import com.feedback.config.audit.AuditEventWriter;
+import com.feedback.domain.PersistentAuditEvent;
+import com.feedback.repository.PersistenceAuditEventRepository;
+import com.feedback.service.AuditRollupService;
+import com.feedback.service.dto.AuditStatsDTO;
+import com.feedback.web.rest.errors.ExceptionTranslator;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.format.support.FormattingConversionService;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.hasSize;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Test class for the AuditStatsResource REST controller, and the compaction of the rollup tables.
+ *
+ * @see AuditStatsResource
+ * @see AuditRollupService
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = RetroApp.class)
+@Transactional
+public class AuditStatsResourceIntTest {
+
+    private static final Instant FIRST_HOUR = at(2017, 10, 1, 10, 0);
+
+    @Autowired
+    private PersistenceAuditEventRepository persistenceAuditEventRepository;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MappingJackson2HttpMessageConverter jacksonMessageConverter;
+
+    @Autowired
+    private ExceptionTranslator exceptionTranslator;
+
+    @Autowired
+    private FormattingConversionService formattingConversionService;
+
+    private ApplicationProperties applicationProperties;
+
+    private AuditRollupService auditRollupService;
+
+    private MockMvc restAuditStatsMockMvc;
+
+    @Before
+    public void setup() {
+        persistenceAuditEventRepository.deleteAll();
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.update("delete from jhi_audit_rollup_hourly");
+        jdbcTemplate.update("delete from jhi_audit_rollup_daily");
+        applicationProperties = new ApplicationProperties();
+        auditRollupService = new AuditRollupService(dataSource, transactionManager, applicationProperties);
+        AuditStatsResource auditStatsResource = new AuditStatsResource(auditRollupService);
+        this.restAuditStatsMockMvc = MockMvcBuilders.standaloneSetup(auditStatsResource)
+            .setControllerAdvice(exceptionTranslator)
+            .setConversionService(formattingConversionService)
+            .setMessageConverters(jacksonMessageConverter).build();
+
+        saveEvent("admin", "AUTHENTICATION_FAILURE", at(2017, 10, 1, 10, 5));
+        saveEvent("admin", "AUTHENTICATION_FAILURE", at(2017, 10, 1, 10, 40));
+        saveEvent("user", "AUTHENTICATION_SUCCESS", at(2017, 10, 1, 11, 10));
+        saveEvent("user", "AUTHENTICATION_SUCCESS", at(2017, 10, 2, 9, 0));
+    }
+
+    @Test
+    public void testHoursAndDaysAreCounted() {
+        auditRollupService.compact(at(2017, 10, 3, 0, 30));
+
+        AuditStatsDTO hours = auditRollupService.getStats(AuditRollupService.Granularity.HOUR, FIRST_HOUR,
+            FIRST_HOUR.plusSeconds(3 * 3600), null, null, AuditRollupService.GroupBy.TYPE);
+        assertThat(hours.getBuckets()).extracting(AuditStatsDTO.Bucket::getStart)
+            .containsExactly(FIRST_HOUR, FIRST_HOUR.plusSeconds(3600), FIRST_HOUR.plusSeconds(2 * 3600));
+        assertThat(hours.getBuckets()).extracting(AuditStatsDTO.Bucket::getTotal).containsExactly(2L, 1L, 0L);
+        assertThat(hours.getBuckets().get(0).getCounts()).containsEntry("AUTHENTICATION_FAILURE", 2L).hasSize(1);
+
+        AuditStatsDTO days = auditRollupService.getStats(AuditRollupService.Granularity.DAY, at(2017, 10, 1, 0, 0),
+            at(2017, 10, 3, 0, 0), null, null, AuditRollupService.GroupBy.PRINCIPAL);
+        assertThat(days.getBuckets()).extracting(AuditStatsDTO.Bucket::getTotal).containsExactly(3L, 1L);
+        assertThat(days.getBuckets().get(0).getCounts()).containsEntry("admin", 2L).containsEntry("user", 1L);
+    }
+
+    @Test
+    public void testLateEventsAreCountedWithinTheGracePeriod() {
+        auditRollupService.compact(at(2017, 10, 1, 11, 30));
+        // Written after the compaction, but dated before it
+        saveEvent("user", "AUTHENTICATION_SUCCESS", at(2017, 10, 1, 10, 50));
+        auditRollupService.compact(at(2017, 10, 1, 11, 40));
+
+        AuditStatsDTO hours = auditRollupService.getStats(AuditRollupService.Granularity.HOUR, FIRST_HOUR,
+            FIRST_HOUR.plusSeconds(2 * 3600), null, "user", AuditRollupService.GroupBy.TYPE);
+        assertThat(hours.getBuckets()).extracting(AuditStatsDTO.Bucket::getTotal).containsExactly(1L, 1L);
+    }
+
+    @Test
+    public void testBacklogIsCountedOverSeveralRuns() {
+        applicationProperties.getAudit().getRollup().setMaxHoursPerRun(10);
+        Instant now = at(2017, 10, 3, 0, 30);
+
+        Instant counted;
+        int runs = 0;
+        do {
+            counted = auditRollupService.compact(now);
+            runs++;
+        } while (counted.isBefore(now));
+
+        assertThat(runs).isGreaterThan(1);
+        AuditStatsDTO days = auditRollupService.getStats(AuditRollupService.Granularity.DAY, at(2017, 10, 1, 0, 0),
+            at(2017, 10, 3, 0, 0), "AUTHENTICATION_SUCCESS", null, AuditRollupService.GroupBy.TYPE);
+        assertThat(days.getBuckets()).extracting(AuditStatsDTO.Bucket::getTotal).containsExactly(1L, 1L);
+    }
+
+    @Test
+    public void testCoalescedEventsAreCountedWithTheirCount() {
+        persistenceAuditEventRepository.deleteAll();
+        // The data of the coalesced events is stored in the encoded_data column, then in the collection
+        for (String dataStorage : new String[]{"column", "collection"}) {
+            ApplicationProperties properties = new ApplicationProperties();
+            properties.getAudit().setDataStorage(dataStorage);
+            properties.getAudit().getCoalescing().setWindowMs(60000);
+            properties.getAudit().getCoalescing().setTypes(Collections.singletonList("AUTHENTICATION_FAILURE"));
+            AuditEventConverter auditEventConverter = new AuditEventConverter(properties);
+            MetricRegistry metricRegistry = new MetricRegistry();
+            AuditEventBroadcaster auditEventBroadcaster =
+                new AuditEventBroadcaster(auditEventConverter, properties, metricRegistry);
+            AuditEventWriter auditEventWriter = new AuditEventWriter(persistenceAuditEventRepository,
+                auditEventBroadcaster, transactionManager, properties, metricRegistry);
+            AuditEventCoalescer auditEventCoalescer = new AuditEventCoalescer(auditEventWriter, auditEventConverter,
+                properties, metricRegistry);
+            for (int i = 0; i < 5; i++) {
+                PersistentAuditEvent event = new PersistentAuditEvent();
+                event.setPrincipal(dataStorage);
+                event.setAuditEventType("AUTHENTICATION_FAILURE");
+                event.setAuditEventDate(FIRST_HOUR.plusSeconds(i));
+                auditEventConverter.setData(event, Collections.singletonMap("remoteAddress", "10.0.0.1"));
+                auditEventCoalescer.write(event);
+            }
+            assertThat(auditEventCoalescer.flush(FIRST_HOUR.plusSeconds(120))).isEqualTo(1);
+            auditEventBroadcaster.stop();
+        }
+        persistenceAuditEventRepository.flush();
+        assertThat(persistenceAuditEventRepository.count()).isEqualTo(2);
+
+        auditRollupService.compact(at(2017, 10, 1, 12, 0));
+
+        AuditStatsDTO hours = auditRollupService.getStats(AuditRollupService.Granularity.HOUR, FIRST_HOUR,
+            FIRST_HOUR.plusSeconds(3600), null, null, AuditRollupService.GroupBy.PRINCIPAL);
+        assertThat(hours.getBuckets().get(0).getCounts()).containsEntry("column", 5L).containsEntry("collection", 5L);
+    }
+
+    @Test
+    public void getStats() throws Exception {
+        auditRollupService.compact(at(2017, 10, 3, 0, 30));
+
+        restAuditStatsMockMvc.perform(get("/management/audits/stats?granularity=day&fromDate=2017-09-30" +
+            "&toDate=2017-10-02&groupBy=principal"))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8_VALUE))
+            .andExpect(jsonPath("$.granularity").value("day"))
+            .andExpect(jsonPath("$.groupBy").value("principal"))
+            .andExpect(jsonPath("$.buckets", hasSize(3)))
+            .andExpect(jsonPath("$.buckets[0].total").value(0))
+            .andExpect(jsonPath("$.buckets[1].total").value(3))
+            .andExpect(jsonPath("$.buckets[1].counts.admin").value(2))
+            .andExpect(jsonPath("$.buckets[2].counts.user").value(1));
+    }
+
+    @Test
+    public void getStatsWithInvalidParameters() throws Exception {
+        restAuditStatsMockMvc.perform(get("/management/audits/stats?granularity=minute"))
+            .andExpect(status().isBadRequest());
+        restAuditStatsMockMvc.perform(get("/management/audits/stats?groupBy=remoteAddress"))
+            .andExpect(status().isBadRequest());
+        restAuditStatsMockMvc.perform(get("/management/audits/stats?fromDate=2000-01-01&toDate=2017-10-01"))
+            .andExpect(status().isBadRequest());
+    }
+
+    private void saveEvent(String principal, String type, Instant date) {
+        PersistentAuditEvent event = new PersistentAuditEvent();
+        event.setPrincipal(principal);
+        event.setAuditEventType(type);
+        event.setAuditEventDate(date);
+        persistenceAuditEventRepository.saveAndFlush(event);
+    }
+
+    private static Instant at(int year, int month, int day, int hour, int minute) {
+        return LocalDateTime.of(year, month, day, hour, minute).atZone(ZoneId.systemDefault()).toInstant();
+    }
+}
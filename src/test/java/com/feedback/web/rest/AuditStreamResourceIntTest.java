@@ -0,0 +1,120 @@
+package com.feedback.web.rest;
+
+import com.codahale.metrics.MetricRegistry;
+import com.feedback.RetroApp;
+import com.feedback.config.ApplicationProperties;
+import com.feedback.config.audit.AuditEventBroadcaster;
+import com.feedback.config.audit.AuditEventConverter;
+import com.feedback.domain.PersistentAuditEvent;
+import com.feedback.web.rest.errors.ExceptionTranslator;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.converter.StringHttpMessageConverter;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Test class for the AuditStreamResource REST controller.
+ *
+ * @see AuditStreamResource
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = RetroApp.class)
+public class AuditStreamResourceIntTest {
+
+    @Autowired
+    private AuditEventConverter auditEventConverter;
+
+    @Autowired
+    private MappingJackson2HttpMessageConverter jacksonMessageConverter;
+
+    @Autowired
+    private ExceptionTranslator exceptionTranslator;
+
+    private AuditEventBroadcaster auditEventBroadcaster;
+
+    private MockMvc restAuditStreamMockMvc;
+
+    @Before
+    public void setup() {
+        auditEventBroadcaster = new AuditEventBroadcaster(auditEventConverter, new ApplicationProperties(),
+            new MetricRegistry());
+        AuditStreamResource auditStreamResource = new AuditStreamResource(auditEventBroadcaster);
+        this.restAuditStreamMockMvc = MockMvcBuilders.standaloneSetup(auditStreamResource)
+            .setControllerAdvice(exceptionTranslator)
+            .setMessageConverters(new StringHttpMessageConverter(StandardCharsets.UTF_8), jacksonMessageConverter)
+            .build();
+    }
+
+    @After
+    public void destroy() {
+        auditEventBroadcaster.stop();
+    }
+
+    @Test
+    public void testEventsAreStreamedByType() throws Exception {
+        MockHttpServletResponse response = restAuditStreamMockMvc.perform(get("/management/audits/stream")
+            .param("type", "AUTHENTICATION_FAILURE"))
+            .andExpect(request().asyncStarted())
+            .andReturn().getResponse();
+
+        auditEventBroadcaster.publish(createEvent(1L, "AUTHENTICATION_SUCCESS"));
+        auditEventBroadcaster.publish(createEvent(2L, "AUTHENTICATION_FAILURE"));
+
+        await().atMost(5, TimeUnit.SECONDS).until(() -> response.getContentAsString().contains("id:2"));
+        String content = response.getContentAsString();
+        assertThat(content).contains("event:audit", "\"type\":\"AUTHENTICATION_FAILURE\"",
+            "\"remoteAddress\":\"10.0.0.2\"");
+        assertThat(content).doesNotContain("id:1");
+        assertThat(response.getContentType()).startsWith("text/event-stream");
+    }
+
+    @Test
+    public void testStreamIsResumedAfterTheLastEventId() throws Exception {
+        for (long id = 1; id <= 3; id++) {
+            auditEventBroadcaster.publish(createEvent(id, "AUTHENTICATION_SUCCESS"));
+        }
+
+        MockHttpServletResponse response = restAuditStreamMockMvc.perform(get("/management/audits/stream")
+            .header("Last-Event-ID", "1"))
+            .andExpect(request().asyncStarted())
+            .andReturn().getResponse();
+
+        await().atMost(5, TimeUnit.SECONDS).until(() -> response.getContentAsString().contains("id:3"));
+        assertThat(response.getContentAsString()).contains("id:2").doesNotContain("id:1");
+    }
+
+    @Test
+    public void testInvalidLastEventIdIsRejected() throws Exception {
+        restAuditStreamMockMvc.perform(get("/management/audits/stream")
+            .header("Last-Event-ID", "x"))
+            .andExpect(status().isBadRequest());
+    }
+
+    private static PersistentAuditEvent createEvent(long id, String type) {
+        PersistentAuditEvent event = new PersistentAuditEvent();
+        event.setId(id);
+        event.setPrincipal("admin");
+        event.setAuditEventType(type);
+        event.setAuditEventDate(Instant.parse("2017-10-01T12:00:00Z").plusSeconds(id));
+        event.getData().put("remoteAddress", "10.0.0." + id);
+        return event;
+    }
+}
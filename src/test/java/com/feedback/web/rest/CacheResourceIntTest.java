@@ -0,0 +1,164 @@
+package com.feedback.web.rest;
+
+import com.feedback.RetroApp;
+import com.feedback.config.ApplicationProperties;
+import com.feedback.config.CacheConfiguration;
+import com.feedback.domain.User;
+import com.feedback.service.CacheStatsService;
+
+import io.github.jhipster.config.JHipsterProperties;
+import org.ehcache.core.config.DefaultConfiguration;
+import org.ehcache.jsr107.EhcacheCachingProvider;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import javax.cache.configuration.MutableConfiguration;
+import javax.persistence.EntityManagerFactory;
+import java.net.URI;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.hasItem;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Test class for the CacheResource REST controller.
+ *
+ * @see CacheResource
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = RetroApp.class)
+public class CacheResourceIntTest {
+
+    private static final String USER_REGION = User.class.getName();
+
+    private static final String OTHER_REGION = "test-region";
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private MappingJackson2HttpMessageConverter jacksonMessageConverter;
+
+    private CacheManager cacheManager;
+
+    private MockMvc restCacheMockMvc;
+
+    @Before
+    public void setup() {
+        EhcacheCachingProvider provider =
+            (EhcacheCachingProvider) Caching.getCachingProvider(EhcacheCachingProvider.class.getName());
+        cacheManager = provider.getCacheManager(URI.create("urn:cache-resource-test"),
+            new DefaultConfiguration(getClass().getClassLoader()));
+        new CacheConfiguration(new JHipsterProperties(), new ApplicationProperties())
+            .cacheManagerCustomizer().customize(cacheManager);
+        cacheManager.createCache(OTHER_REGION, new MutableConfiguration<>().setStatisticsEnabled(true));
+
+        CacheStatsService cacheStatsService = new CacheStatsService(Optional.of(cacheManager), entityManagerFactory);
+        cacheStatsService.registerExpiryCounters();
+        this.restCacheMockMvc = MockMvcBuilders.standaloneSetup(new CacheResource(cacheStatsService))
+            .setMessageConverters(jacksonMessageConverter).build();
+    }
+
+    @After
+    public void destroy() {
+        cacheManager.close();
+    }
+
+    @Test
+    public void getAllCaches() throws Exception {
+        Cache<Object, Object> users = cacheManager.getCache(USER_REGION);
+        users.put(1L, "first user");
+        users.put(2L, "second user");
+        users.get(1L);
+        users.get(3L);
+
+        restCacheMockMvc.perform(get("/management/caches"))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8_VALUE))
+            .andExpect(jsonPath("$.[?(@.name == '" + USER_REGION + "')].size").value(2))
+            .andExpect(jsonPath("$.[?(@.name == '" + USER_REGION + "')].hits").value(1))
+            .andExpect(jsonPath("$.[?(@.name == '" + USER_REGION + "')].misses").value(1))
+            .andExpect(jsonPath("$.[?(@.name == '" + USER_REGION + "')].hitRatio").value(0.5))
+            .andExpect(jsonPath("$.[?(@.name == '" + USER_REGION + "')].estimatedMemoryBytes", hasItem(greaterThan(0))))
+            .andExpect(jsonPath("$.[?(@.name == '" + OTHER_REGION + "')].size").value(0));
+    }
+
+    @Test
+    public void getCacheSizeFromTheTierStatistics() throws Exception {
+        Cache<Object, Object> users = cacheManager.getCache(USER_REGION);
+        for (long id = 0; id < 80; id++) {
+            users.put(id, "user " + id);
+        }
+
+        restCacheMockMvc.perform(get("/management/caches"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.[?(@.name == '" + USER_REGION + "')].size").value(80))
+            .andExpect(jsonPath("$.[?(@.name == '" + USER_REGION + "')].hits").value(0))
+            .andExpect(jsonPath("$.[?(@.name == '" + USER_REGION + "')].estimatedMemoryBytes", hasItem(greaterThan(0))));
+    }
+
+    @Test
+    public void evictCache() throws Exception {
+        Cache<Object, Object> users = cacheManager.getCache(USER_REGION);
+        users.put(1L, "first user");
+
+        restCacheMockMvc.perform(delete("/management/caches/{name}", USER_REGION))
+            .andExpect(status().isOk());
+
+        assertThat(users.containsKey(1L)).isFalse();
+    }
+
+    @Test
+    public void evictCacheEntry() throws Exception {
+        Cache<Object, Object> other = cacheManager.getCache(OTHER_REGION);
+        other.put("a", "1");
+        other.put("b", "2");
+
+        restCacheMockMvc.perform(delete("/management/caches/{name}/entries/{key}", OTHER_REGION, "a"))
+            .andExpect(status().isOk());
+
+        assertThat(other.containsKey("a")).isFalse();
+        assertThat(other.containsKey("b")).isTrue();
+    }
+
+    @Test
+    public void evictCacheEntryWithAnotherKeyType() throws Exception {
+        Cache<Object, Object> other = cacheManager.getCache(OTHER_REGION);
+        other.put(1L, "1");
+        other.put(2L, "2");
+
+        restCacheMockMvc.perform(delete("/management/caches/{name}/entries/{key}", OTHER_REGION, "1"))
+            .andExpect(status().isOk());
+
+        assertThat(other.containsKey(1L)).isFalse();
+        assertThat(other.containsKey(2L)).isTrue();
+    }
+
+    @Test
+    public void evictCacheEntryWithInvalidId() throws Exception {
+        restCacheMockMvc.perform(delete("/management/caches/{name}/entries/{key}", USER_REGION, "not-an-id"))
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void evictUnknownCache() throws Exception {
+        restCacheMockMvc.perform(delete("/management/caches/{name}", "unknown"))
+            .andExpect(status().isNotFound());
+    }
+}
@@ -0,0 +1,104 @@
+package com.feedback.web.rest;
+
+import com.feedback.RetroApp;
+import com.feedback.domain.User;
+import com.feedback.repository.UserRepository;
+import com.feedback.service.UserService;
+import com.feedback.service.UserStatsService;
+import com.feedback.service.dto.UserDTO;
+import com.feedback.service.dto.UserStatsDTO;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Test class for the UserStatsResource REST controller.
+ *
+ * @see UserStatsResource
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = RetroApp.class)
+public class UserStatsResourceIntTest {
+
+    private static final String DEFAULT_LOGIN = "statsuser";
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserStatsService userStatsService;
+
+    @Autowired
+    private MappingJackson2HttpMessageConverter jacksonMessageConverter;
+
+    private MockMvc restUserStatsMockMvc;
+
+    @Before
+    public void setup() {
+        userStatsService.reconcile();
+        UserStatsResource userStatsResource = new UserStatsResource(userStatsService);
+        this.restUserStatsMockMvc = MockMvcBuilders.standaloneSetup(userStatsResource)
+            .setMessageConverters(jacksonMessageConverter).build();
+    }
+
+    @After
+    public void cleanup() {
+        userService.deleteUser(DEFAULT_LOGIN);
+    }
+
+    @Test
+    public void getUserStats() throws Exception {
+        long userCount = userRepository.count();
+
+        restUserStatsMockMvc.perform(get("/management/user-stats"))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(MediaType.APPLICATION_JSON_UTF8_VALUE))
+            .andExpect(jsonPath("$.totalUsers").value((int) userCount))
+            .andExpect(jsonPath("$.usersByLangKey.es").exists())
+            .andExpect(jsonPath("$.usersByCreationDay").isNotEmpty());
+    }
+
+    @Test
+    public void assertThatStatsFollowUserMutations() {
+        UserStatsDTO before = userStatsService.getStats();
+
+        User user = userService.createUser(DEFAULT_LOGIN, "password", "Stats", "User", "statsuser@localhost",
+            null, "fr");
+        UserStatsDTO created = userStatsService.getStats();
+        assertThat(created.getTotalUsers()).isEqualTo(before.getTotalUsers() + 1);
+        assertThat(created.getNotActivatedUsers()).isEqualTo(before.getNotActivatedUsers() + 1);
+        assertThat(created.getUsersByLangKey().get("fr"))
+            .isEqualTo(before.getUsersByLangKey().getOrDefault("fr", 0L) + 1);
+
+        UserDTO userDTO = new UserDTO(user.getId(), DEFAULT_LOGIN, "Stats", "User", "statsuser@localhost", true,
+            null, "es", null, null, null, null, Collections.emptySet());
+        userService.updateUser(userDTO);
+        UserStatsDTO updated = userStatsService.getStats();
+        assertThat(updated.getTotalUsers()).isEqualTo(created.getTotalUsers());
+        assertThat(updated.getActivatedUsers()).isEqualTo(created.getActivatedUsers() + 1);
+        assertThat(updated.getUsersByLangKey().getOrDefault("fr", 0L))
+            .isEqualTo(before.getUsersByLangKey().getOrDefault("fr", 0L));
+
+        userService.deleteUser(DEFAULT_LOGIN);
+        UserStatsDTO deleted = userStatsService.getStats();
+        assertThat(deleted.getTotalUsers()).isEqualTo(before.getTotalUsers());
+        assertThat(deleted.getActivatedUsers()).isEqualTo(before.getActivatedUsers());
+    }
+}
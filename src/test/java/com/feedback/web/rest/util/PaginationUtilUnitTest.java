@@ -41,4 +41,15 @@ public class PaginationUtilUnitTest {
         assertTrue(Long.valueOf(xTotalCountHeaders.get(0)).equals(400L));
     }
 
+    @Test
+    public void generateCursorPaginationHttpHeadersTest() {
+        HttpHeaders headers = PaginationUtil.generateCursorPaginationHttpHeaders("/management/audits?fromDate=2017-10-01",
+            "after.1.0.2", null, 20);
+        List<String> strHeaders = headers.get(HttpHeaders.LINK);
+        assertNotNull(strHeaders);
+        String expectedData = "</management/audits?fromDate=2017-10-01&cursor=after.1.0.2&size=20>; rel=\"next\","
+                + "</management/audits?fromDate=2017-10-01&cursor=&size=20>; rel=\"first\"";
+        assertEquals(expectedData, strHeaders.get(0));
+        assertTrue(headers.get("X-Total-Count") == null);
+    }
 }